@@ -0,0 +1,53 @@
+package benchmark;
+
+import federate.Federate;
+import model.BallEntity;
+import model.BallEntityDef;
+import model.EntityDef;
+
+import java.io.File;
+
+/**
+ *
+ * Federates for benchmarks, initialized against a NoOpRtiAmbassador.
+ *
+ */
+final class BenchmarkFederates {
+
+    private BenchmarkFederates() {
+    }
+
+    /**
+     *
+     * An initialized federate with the BallEntity definition
+     *
+     * @return
+     */
+    static Federate create() throws Exception {
+        Federate federate = new Federate("Benchmark Federation", "Benchmark Federate",
+                                         new File("MainSim.xml").toURI().toURL());
+
+        federate.addEntityDefinition(new BallEntityDef(federate));
+        federate.setRtiAmbassador(NoOpRtiAmbassador.create());
+
+        if(!federate.initialize()) {
+            throw new IllegalStateException("Could not initialize benchmark federate");
+        }
+
+        return federate;
+    }
+
+    /**
+     *
+     * Add count moving balls spread over the plane
+     *
+     */
+    static void addBalls(Federate federate, int count) throws Exception {
+        EntityDef ballEntityDef = federate.getEntityDefForClass("BallEntity");
+
+        for(int i = 0; i < count; i++) {
+            federate.addEntity(new BallEntity(i % 1000, i / 1000, 1 + i % 7, 1 + i % 11, 1,
+                                              federate, ballEntityDef));
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package benchmark;
+
+import model.IntAttributeDef;
+import model.VectorAttributeDef;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ * AttributeDef encode/decode, through the generic Object path used by
+ * Entity.updateAttribute and through the static in place codecs used by the
+ * typed slot setters.
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dhlasim.log.level=WARNING")
+@State(Scope.Thread)
+public class CodecBenchmark {
+
+    private IntAttributeDef intDef;
+    private VectorAttributeDef vectorDef;
+
+    private Integer intValue;
+    private int[] vectorValue;
+    private byte[] encodedInt, encodedVector;
+    private ByteBuffer buffer;
+
+    @Setup
+    public void setup() {
+        this.intDef = new IntAttributeDef("Radius");
+        this.vectorDef = new VectorAttributeDef("PositionVector");
+
+        this.intValue = 42;
+        this.vectorValue = new int[] {1234, -5678};
+        this.encodedInt = this.intDef.encode(this.intValue);
+        this.encodedVector = this.vectorDef.encode(this.vectorValue);
+        this.buffer = ByteBuffer.allocate(VectorAttributeDef.ENCODED_LENGTH);
+    }
+
+    @Benchmark
+    public byte[] encodeInt() {
+        return this.intDef.encode(this.intValue);
+    }
+
+    @Benchmark
+    public Object decodeInt() {
+        return this.intDef.decode(this.encodedInt);
+    }
+
+    @Benchmark
+    public byte[] encodeVector() {
+        return this.vectorDef.encode(this.vectorValue);
+    }
+
+    @Benchmark
+    public Object decodeVector() {
+        return this.vectorDef.decode(this.encodedVector);
+    }
+
+    @Benchmark
+    public ByteBuffer encodeVectorInPlace() {
+        this.buffer.clear();
+        VectorAttributeDef.encodeVector(this.vectorValue[0], this.vectorValue[1], this.buffer);
+        return this.buffer;
+    }
+
+    @Benchmark
+    public int decodeIntInPlace() {
+        this.buffer.clear();
+        return IntAttributeDef.decodeInt(this.buffer);
+    }
+}
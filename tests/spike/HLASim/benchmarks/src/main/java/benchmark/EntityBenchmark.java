@@ -0,0 +1,109 @@
+package benchmark;
+
+import federate.Federate;
+import hla.rti1516e.AttributeHandle;
+import model.AttributeDef;
+import model.Entity;
+import model.EntityDef;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ * Per attribute costs on a single entity: updating an attribute by name,
+ * by slot and through the typed setter, and EntityDef attribute lookups.
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dhlasim.log.level=WARNING")
+@State(Scope.Thread)
+public class EntityBenchmark {
+
+    private Federate federate;
+    private EntityDef entityDef;
+    private UpdatingEntity entity;
+    private AttributeHandle positionHandle;
+    private int positionSlot;
+
+    private int[] position;
+    private int x;
+
+    /**
+     *
+     * Exposes Entity's protected update paths to the benchmark
+     *
+     */
+    static class UpdatingEntity extends Entity {
+
+        UpdatingEntity(EntityDef definition, Federate federate) {
+            super(definition, federate);
+        }
+
+        void updateByName(String attrName, Object value) {
+            this.updateAttribute(attrName, value);
+        }
+
+        void updateBySlot(int slot, Object value) {
+            this.updateAttribute(slot, value);
+        }
+
+        void setVector(int slot, int x, int y) {
+            this.setVec2(slot, x, y);
+        }
+
+        @Override
+        public void tick() {
+        }
+
+        @Override
+        public void updateAttributes() {
+        }
+    }
+
+    @Setup
+    public void setup() throws Exception {
+        this.federate = BenchmarkFederates.create();
+        this.entityDef = this.federate.getEntityDefForClass("BallEntity");
+        this.entity = new UpdatingEntity(this.entityDef, this.federate);
+
+        this.positionSlot = this.entityDef.getSlot("PositionVector");
+        this.positionHandle = this.entityDef.getAttributeDef(this.positionSlot).getHandle();
+        this.position = new int[] {1, 2};
+    }
+
+    @Benchmark
+    public void updateAttributeByName() {
+        this.position[0] = this.x++;
+        this.entity.updateByName("PositionVector", this.position);
+    }
+
+    @Benchmark
+    public void updateAttributeBySlot() {
+        this.position[0] = this.x++;
+        this.entity.updateBySlot(this.positionSlot, this.position);
+    }
+
+    @Benchmark
+    public void setVec2() {
+        this.entity.setVector(this.positionSlot, this.x++, 2);
+    }
+
+    @Benchmark
+    public AttributeDef getAttributeDefByName() {
+        return this.entityDef.getAttributeDef("PositionVector");
+    }
+
+    @Benchmark
+    public AttributeDef getAttributeDefBySlot() {
+        return this.entityDef.getAttributeDef(this.positionSlot);
+    }
+
+    @Benchmark
+    public AttributeDef getAttributeDefByHandle() {
+        return this.entityDef.getAttributeDef(this.positionHandle);
+    }
+}
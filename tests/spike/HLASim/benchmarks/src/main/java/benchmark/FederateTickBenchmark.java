@@ -0,0 +1,37 @@
+package benchmark;
+
+import federate.Federate;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ * A full Federate.tick (ingest, entity ticks, publish) over owned BallEntities,
+ * every entity moves and publishes each tick.
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Dhlasim.log.level=WARNING", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class FederateTickBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int entityCount;
+
+    private Federate federate;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        this.federate = BenchmarkFederates.create();
+        BenchmarkFederates.addBalls(this.federate, this.entityCount);
+    }
+
+    @Benchmark
+    public void tick() {
+        this.federate.tick();
+    }
+}
@@ -0,0 +1,152 @@
+package benchmark;
+
+import hla.rti1516e.*;
+import hla.rti1516e.encoding.ByteWrapper;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *
+ * RTIambassador stand-in for benchmarks.  Every call returns immediately: name
+ * lookups and registrations hand out fresh handles, factories return plain
+ * collection backed implementations and everything else (updates, publish,
+ * subscribe, ...) does nothing, so benchmarks measure only the simulation side.
+ *
+ */
+public final class NoOpRtiAmbassador {
+
+    private NoOpRtiAmbassador() {
+    }
+
+    public static RTIambassador create() {
+        HashMap<String, Handle> names = new HashMap<>();
+        AtomicInteger nextHandle = new AtomicInteger(1);
+
+        return (RTIambassador) Proxy.newProxyInstance(
+                RTIambassador.class.getClassLoader(),
+                new Class<?>[] {RTIambassador.class},
+                (proxy, method, args) -> invoke(method, args, names, nextHandle));
+    }
+
+    private static Object invoke(Method method, Object[] args, HashMap<String, Handle> names,
+                                 AtomicInteger nextHandle) {
+        switch(method.getName()) {
+            case "getObjectClassHandle":
+            case "getInteractionClassHandle":
+            case "getDimensionHandle":
+                return names.computeIfAbsent(method.getName() + ":" + args[0],
+                                             n -> new Handle(nextHandle.getAndIncrement()));
+
+            case "getAttributeHandle":
+            case "getParameterHandle":
+                return names.computeIfAbsent(method.getName() + ":" + args[0] + "." + args[1],
+                                             n -> new Handle(nextHandle.getAndIncrement()));
+
+            case "joinFederationExecution":
+            case "registerObjectInstance":
+            case "createRegion":
+                return new Handle(nextHandle.getAndIncrement());
+
+            case "getAttributeHandleValueMapFactory":
+                return (AttributeHandleValueMapFactory) capacity -> new HandleValueMap();
+
+            case "getAttributeHandleSetFactory":
+                return (AttributeHandleSetFactory) HandleSet::new;
+
+            case "hashCode":
+                return 0;
+
+            case "equals":
+                return false;
+
+            case "toString":
+                return "NoOpRtiAmbassador";
+
+            default:
+                Class<?> returnType = method.getReturnType();
+
+                if(returnType == boolean.class) {
+                    return false;
+                } else if(returnType == long.class) {
+                    return 0L;
+                } else if(returnType == int.class) {
+                    return 0;
+                } else if(returnType == double.class) {
+                    return 0.0;
+                }
+                return null;
+        }
+    }
+
+    /**
+     *
+     * One handle type for every kind of handle the federate asks for
+     *
+     */
+    private static class Handle implements AttributeHandle, ObjectClassHandle, ObjectInstanceHandle,
+                                           FederateHandle, InteractionClassHandle, ParameterHandle,
+                                           DimensionHandle, RegionHandle {
+
+        private final int id;
+
+        Handle(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public int hashCode() {
+            return this.id;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Handle && ((Handle) other).id == this.id;
+        }
+
+        @Override
+        public int encodedLength() {
+            return 4;
+        }
+
+        @Override
+        public void encode(byte[] buffer, int offset) {
+            ByteBuffer.wrap(buffer, offset, 4).putInt(this.id);
+        }
+
+        @Override
+        public String toString() {
+            return "Handle(" + this.id + ")";
+        }
+    }
+
+    private static class HandleSet extends HashSet<AttributeHandle> implements AttributeHandleSet {
+
+        @Override
+        public HandleSet clone() {
+            return (HandleSet) super.clone();
+        }
+    }
+
+    private static class HandleValueMap extends HashMap<AttributeHandle, byte[]> implements AttributeHandleValueMap {
+
+        @Override
+        public ByteWrapper getValueReference(AttributeHandle key) {
+            return new ByteWrapper(this.get(key));
+        }
+
+        @Override
+        public ByteWrapper getValueReference(AttributeHandle key, ByteWrapper byteWrapper) {
+            return new ByteWrapper(this.get(key));
+        }
+
+        @Override
+        public HandleValueMap clone() {
+            return (HandleValueMap) super.clone();
+        }
+    }
+}
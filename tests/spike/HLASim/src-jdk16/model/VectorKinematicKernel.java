@@ -0,0 +1,34 @@
+package model;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ *
+ * Vector API implementation of the kinematic kernel.  Lives in src-jdk16 because it
+ * needs JDK 16+ and --add-modules jdk.incubator.vector both to compile and to run.
+ * KinematicStore loads it reflectively and falls back to ScalarKinematicKernel
+ * when it is missing.
+ *
+ */
+public class VectorKinematicKernel implements KinematicKernel {
+
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    @Override
+    public void integrate(int[] position, int[] velocity, int length) {
+        int i = 0;
+        int upperBound = SPECIES.loopBound(length);
+
+        for(; i < upperBound; i += SPECIES.length()) {
+            IntVector p = IntVector.fromArray(SPECIES, position, i);
+            IntVector v = IntVector.fromArray(SPECIES, velocity, i);
+            p.add(v).intoArray(position, i);
+        }
+
+        //  Tail that doesn't fill a whole vector
+        for(; i < length; i++) {
+            position[i] += velocity[i];
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package federate;
+
+import hla.rti1516e.RTIambassador;
+import hla.rti1516e.exceptions.FederateNotExecutionMember;
+import hla.rti1516e.exceptions.NotConnected;
+import metrics.FederateMetrics;
+import util.Log;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ * Dedicated callback thread for the HLA_EVOKED callback model.  It calls
+ * evokeMultipleCallbacks in a loop, each pass bounded by the time budget, so
+ * callbacks are processed off the tick thread at a predictable rate instead of
+ * whenever the RTI's own threads get to them.  The callbacks still only hand
+ * their arguments to the ReflectionIngestor, the tick thread does the decoding.
+ *
+ * The thread stops by itself once the federate is no longer connected or
+ * joined, other failing passes are retried after a growing pause.
+ *
+ */
+public class CallbackEvoker implements Runnable {
+
+    private static final Log LOG = Log.getLog(CallbackEvoker.class);
+
+    //  Pause after a failed pass, doubled per consecutive failure up to the max
+    private static final long MIN_BACKOFF_MILLIS = 10;
+    private static final long MAX_BACKOFF_MILLIS = 5000;
+
+    private final RTIambassador rtiAmbassador;
+    private final FederateMetrics metrics;
+    private final double budgetSeconds;
+    private final Thread thread;
+
+    private volatile boolean running;
+
+    //  Completed passes, guarded by this
+    private long passes;
+
+    /**
+     *
+     * @param rtiAmbassador connected with CallbackModel.HLA_EVOKED
+     * @param metrics
+     * @param budgetSeconds longest a single evokeMultipleCallbacks pass may deliver for
+     * @param name thread name
+     * @throws IllegalArgumentException unless budgetSeconds > 0
+     */
+    public CallbackEvoker(RTIambassador rtiAmbassador, FederateMetrics metrics, double budgetSeconds, String name) {
+        checkBudget(budgetSeconds);
+
+        this.rtiAmbassador = rtiAmbassador;
+        this.metrics = metrics;
+        this.budgetSeconds = budgetSeconds;
+
+        this.thread = new Thread(this, name);
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     *
+     * @param budgetSeconds
+     * @throws IllegalArgumentException unless budgetSeconds > 0, a zero budget spins the callback thread
+     */
+    static void checkBudget(double budgetSeconds) {
+        if(!(budgetSeconds > 0)) {
+            throw new IllegalArgumentException("Need a callback budget > 0, got " + budgetSeconds);
+        }
+    }
+
+    public void start() {
+        this.running = true;
+        this.thread.start();
+    }
+
+    public void stop() {
+        this.running = false;
+        this.thread.interrupt();
+    }
+
+    @Override
+    public void run() {
+        long backoffMillis = 0;
+
+        while(this.running) {
+            long start = System.nanoTime();
+
+            try {
+                //  Waits up to the budget for the first callback, so an idle federation does not spin
+                boolean pending = this.rtiAmbassador.evokeMultipleCallbacks(this.budgetSeconds, this.budgetSeconds);
+                this.metrics.recordEvoke(System.nanoTime() - start, pending);
+
+                backoffMillis = 0;
+            } catch(Exception e) {
+                if(!this.running) {
+                    break;
+                }
+
+                this.metrics.recordException(e);
+
+                //  Nothing to evoke any more, connect starts a new evoker
+                if(e instanceof NotConnected || e instanceof FederateNotExecutionMember) {
+                    LOG.error("Stopped evoking callbacks : " + e);
+                    this.running = false;
+                    break;
+                }
+
+                //  Only the first of consecutive failures is logged in full
+                if(backoffMillis == 0) {
+                    LOG.error("Unhandled exception evoking callbacks : " + e, e);
+                }
+                backoffMillis = Math.min(Math.max(2 * backoffMillis, MIN_BACKOFF_MILLIS), MAX_BACKOFF_MILLIS);
+
+                try {
+                    Thread.sleep(backoffMillis);
+                } catch(InterruptedException interrupted) {
+                    //  stop, running is rechecked
+                }
+            }
+
+            synchronized(this) {
+                this.passes++;
+                this.notifyAll();
+            }
+        }
+
+        synchronized(this) {
+            this.notifyAll();
+        }
+    }
+
+    /**
+     *
+     * Wait until a whole pass started after this call has finished, so callbacks
+     * the RTI had pending when called have been delivered, or maxSeconds passed.
+     *
+     * @param maxSeconds
+     * @return false on timeout
+     */
+    public synchronized boolean awaitPass(double maxSeconds) throws InterruptedException {
+        long target = this.passes + 2;
+        long deadline = System.nanoTime() + (long) (maxSeconds * TimeUnit.SECONDS.toNanos(1));
+
+        while(this.passes < target) {
+            long remaining = deadline - System.nanoTime();
+            if(remaining <= 0 || !this.running) {
+                return false;
+            }
+
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+
+        return true;
+    }
+}
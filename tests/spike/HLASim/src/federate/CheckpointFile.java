@@ -0,0 +1,459 @@
+package federate;
+
+import hla.rti1516e.ObjectInstanceHandle;
+import model.EntityDef;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *
+ * Binary checkpoint of the owned entities of a federate, written and read
+ * through memory mapped windows of the file.  All values are big endian:
+ *
+ *   int magic, int version, long tickCount, long nextEntityId
+ *   short classCount, per class: string className, short attributeCount,
+ *                                per attribute: string attributeName
+ *   int entityCount, per entity: long id, short classIndex,
+ *                                byte handleLength, handleLength bytes of instance handle,
+ *                                per attribute: int length, then all values back to back
+ *
+ * Strings are a short length and that many bytes of UTF-8.  Attribute values
+ * are the encodings of the class's AttributeDefs, copied as they are.
+ * Entities of classes that cannot be restored (EntityDef.canRestore) are left
+ * out.
+ *
+ */
+final class CheckpointFile {
+
+    private static final int MAGIC = 0x48534350;
+    private static final int VERSION = 1;
+
+    //  Size of the mapped windows, records never span two windows
+    private static final int WINDOW_BYTES = 64 << 20;
+
+    private CheckpointFile() {
+    }
+
+    /**
+     *
+     * Write the owned entities of snapshot to file, replacing it only once the
+     * new checkpoint is complete.  Any thread, the snapshot must not be
+     * refilled while writing.
+     *
+     * @param file
+     * @param snapshot
+     * @param nextEntityId
+     * @return the size of the checkpoint in bytes
+     */
+    static long write(File file, StateSnapshot snapshot, long nextEntityId) throws IOException {
+        int count = snapshot.getEntityCount();
+
+        //  Class table, classes are numbered in order of first appearance
+        Map<EntityDef, Integer> classIndexes = new IdentityHashMap<>();
+        List<byte[][]> classNames = new ArrayList<>();
+        int[] classIndex = new int[count];
+        int[] handleLength = new int[count];
+        long size = 4 + 4 + 8 + 8 + 2 + 4;
+        int written = 0;
+
+        for(int i = 0; i < count; i++) {
+            EntityDef definition = snapshot.getEntityDefinition(i);
+            if(!definition.canRestore()) {
+                classIndex[i] = -1;
+                continue;
+            }
+
+            Integer index = classIndexes.get(definition);
+
+            if(index == null) {
+                index = classNames.size();
+                classIndexes.put(definition, index);
+
+                byte[][] names = encodeNames(definition);
+                classNames.add(names);
+                size += 2;
+                for(byte[] name : names) {
+                    size += 2 + name.length;
+                }
+            }
+
+            classIndex[i] = index;
+            written++;
+            handleLength[i] = snapshot.getInstanceHandle(i).encodedLength();
+            if(handleLength[i] > 0xFF) {
+                throw new IOException("Instance handle of " + handleLength[i] + " bytes");
+            }
+
+            int numAttributes = definition.getNumAttributes();
+            size += 8 + 2 + 1 + handleLength[i] + 4 * numAttributes
+                  + snapshot.getAttributeOffset(i, numAttributes) - snapshot.getAttributeOffset(i, 0);
+        }
+
+        if(classNames.size() > Short.MAX_VALUE) {
+            throw new IOException(classNames.size() + " classes");
+        }
+
+        File directory = file.getAbsoluteFile().getParentFile();
+        if(directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+
+        File temporary = File.createTempFile(file.getName() + ".tmp", null, directory);
+        try {
+            try(FileChannel channel = FileChannel.open(temporary.toPath(), StandardOpenOption.READ,
+                                                       StandardOpenOption.WRITE)) {
+                MappedOutput out = new MappedOutput(channel, size);
+
+                ByteBuffer buffer = out.reserve(4 + 4 + 8 + 8 + 2);
+                buffer.putInt(MAGIC);
+                buffer.putInt(VERSION);
+                buffer.putLong(snapshot.getTickCount());
+                buffer.putLong(nextEntityId);
+                buffer.putShort((short) classNames.size());
+
+                for(byte[][] names : classNames) {
+                    putString(out, names[0]);
+                    out.reserve(2).putShort((short) (names.length - 1));
+
+                    for(int slot = 1; slot < names.length; slot++) {
+                        putString(out, names[slot]);
+                    }
+                }
+
+                out.reserve(4).putInt(written);
+
+                byte[] bytes = snapshot.getBytes();
+                byte[] handle = new byte[0xFF];
+
+                for(int i = 0; i < count; i++) {
+                    if(classIndex[i] < 0) {
+                        continue;
+                    }
+
+                    ObjectInstanceHandle instanceHandle = snapshot.getInstanceHandle(i);
+                    int numAttributes = snapshot.getEntityDefinition(i).getNumAttributes();
+                    int start = snapshot.getAttributeOffset(i, 0);
+                    int end = snapshot.getAttributeOffset(i, numAttributes);
+
+                    instanceHandle.encode(handle, 0);
+
+                    buffer = out.reserve(8 + 2 + 1 + handleLength[i] + 4 * numAttributes + end - start);
+                    buffer.putLong(snapshot.getEntityId(i));
+                    buffer.putShort((short) classIndex[i]);
+                    buffer.put((byte) handleLength[i]);
+                    buffer.put(handle, 0, handleLength[i]);
+
+                    for(int slot = 0; slot < numAttributes; slot++) {
+                        buffer.putInt(snapshot.getAttributeOffset(i, slot + 1) - snapshot.getAttributeOffset(i, slot));
+                    }
+
+                    //  The values of an entity are contiguous in the snapshot
+                    buffer.put(bytes, start, end - start);
+                }
+
+                out.finish();
+            }
+
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            temporary.delete();
+        }
+
+        return size;
+    }
+
+    private static void putString(MappedOutput out, byte[] string) throws IOException {
+        out.reserve(2 + string.length).putShort((short) string.length).put(string);
+    }
+
+    /**
+     *
+     * Class name followed by the attribute names in slot order, UTF-8
+     *
+     */
+    private static byte[][] encodeNames(EntityDef definition) throws IOException {
+        String[] attributeNames = definition.getAttributeNames();
+        byte[][] names = new byte[attributeNames.length + 1][];
+
+        names[0] = definition.getClassName().getBytes(StandardCharsets.UTF_8);
+        for(int slot = 0; slot < attributeNames.length; slot++) {
+            names[slot + 1] = attributeNames[slot].getBytes(StandardCharsets.UTF_8);
+        }
+
+        for(byte[] name : names) {
+            if(name.length > Short.MAX_VALUE) {
+                throw new IOException("Name of " + name.length + " bytes in " + definition.getClassName());
+            }
+        }
+
+        return names;
+    }
+
+    /**
+     *
+     * Sequential writes to a file of known size through mapped windows
+     *
+     */
+    private static final class MappedOutput {
+
+        private final FileChannel channel;
+        private final long size;
+        private MappedByteBuffer buffer;
+        private long base;
+
+        MappedOutput(FileChannel channel, long size) throws IOException {
+            this.channel = channel;
+            this.size = size;
+            this.map(0, 0);
+        }
+
+        /**
+         *
+         * @param length
+         * @return the buffer to put the next length bytes into
+         */
+        ByteBuffer reserve(int length) throws IOException {
+            if(this.buffer.remaining() < length) {
+                this.map(this.base + this.buffer.position(), length);
+            }
+
+            return this.buffer;
+        }
+
+        private void map(long position, int length) throws IOException {
+            if(this.buffer != null) {
+                this.buffer.force();
+            }
+
+            long windowSize = Math.min(Math.max(WINDOW_BYTES, length), this.size - position);
+            if(windowSize < length) {
+                throw new IOException("Checkpoint larger than its computed size " + this.size);
+            }
+
+            this.base = position;
+            this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, position, windowSize);
+        }
+
+        void finish() throws IOException {
+            if(this.base + this.buffer.position() != this.size) {
+                throw new IOException("Wrote " + (this.base + this.buffer.position()) + " of " + this.size + " bytes");
+            }
+
+            this.buffer.force();
+        }
+    }
+
+    /**
+     *
+     * Reads a checkpoint entity by entity.  The accessors describe the entity of
+     * the last successful next(), its attribute values are read from
+     * getAttributeBuffer in order, attribute by attribute.
+     *
+     */
+    static final class Reader implements AutoCloseable {
+
+        private final FileChannel channel;
+        private final long size;
+        private MappedByteBuffer buffer;
+        private long base;
+
+        private final long tickCount, nextEntityId;
+        private final String[] classNames;
+        private final String[][] attributeNames;
+        private final int entityCount;
+        private int entitiesRead;
+
+        //  Current entity
+        private long id;
+        private int classIndex;
+        private byte[] instanceHandle;
+        private int[] attributeLengths;
+        private long attributesEnd;
+
+        Reader(File file) throws IOException {
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+
+            try {
+                this.size = this.channel.size();
+                this.map(0, 0);
+
+                ByteBuffer buffer = this.require(4 + 4 + 8 + 8 + 2);
+                if(buffer.getInt() != MAGIC) {
+                    throw new IOException(file + " is not a checkpoint");
+                }
+
+                int version = buffer.getInt();
+                if(version != VERSION) {
+                    throw new IOException(file + " is a version " + version + " checkpoint");
+                }
+
+                this.tickCount = buffer.getLong();
+                this.nextEntityId = buffer.getLong();
+
+                int classCount = buffer.getShort();
+                this.classNames = new String[classCount];
+                this.attributeNames = new String[classCount][];
+
+                for(int index = 0; index < classCount; index++) {
+                    this.classNames[index] = this.readString();
+                    this.attributeNames[index] = new String[this.require(2).getShort()];
+
+                    for(int slot = 0; slot < this.attributeNames[index].length; slot++) {
+                        this.attributeNames[index][slot] = this.readString();
+                    }
+                }
+
+                this.entityCount = this.require(4).getInt();
+                this.attributesEnd = this.base + this.buffer.position();
+            } catch(IOException | RuntimeException e) {
+                this.channel.close();
+                throw e;
+            }
+        }
+
+        private String readString() throws IOException {
+            byte[] bytes = new byte[this.require(2).getShort()];
+            this.require(bytes.length).get(bytes);
+
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /**
+         *
+         * @param length
+         * @return the buffer holding the next length bytes at its position
+         */
+        private ByteBuffer require(int length) throws IOException {
+            if(this.buffer.remaining() < length) {
+                this.map(this.base + this.buffer.position(), length);
+            }
+
+            return this.buffer;
+        }
+
+        private void map(long position, int length) throws IOException {
+            long windowSize = Math.min(Math.max(WINDOW_BYTES, length), this.size - position);
+            if(windowSize < length) {
+                throw new IOException("Truncated checkpoint, " + this.size + " bytes");
+            }
+
+            this.base = position;
+            this.buffer = this.channel.map(FileChannel.MapMode.READ_ONLY, position, windowSize);
+        }
+
+        /**
+         *
+         * Move to the next entity, skipping whatever was not read of the current one
+         *
+         * @return false once all entities were read
+         */
+        boolean next() throws IOException {
+            if(this.entitiesRead == this.entityCount) {
+                return false;
+            }
+
+            this.buffer.position((int) (this.attributesEnd - this.base));
+
+            ByteBuffer buffer = this.require(8 + 2 + 1);
+            this.id = buffer.getLong();
+            this.classIndex = buffer.getShort();
+            if(this.classIndex < 0 || this.classIndex >= this.classNames.length) {
+                throw new IOException("Entity " + this.id + " of unknown class " + this.classIndex);
+            }
+
+            int handleLength = buffer.get() & 0xFF;
+            int numAttributes = this.attributeNames[this.classIndex].length;
+
+            buffer = this.require(handleLength + 4 * numAttributes);
+            this.instanceHandle = new byte[handleLength];
+            buffer.get(this.instanceHandle);
+
+            if(this.attributeLengths == null || this.attributeLengths.length < numAttributes) {
+                this.attributeLengths = new int[numAttributes];
+            }
+
+            int valuesLength = 0;
+            for(int slot = 0; slot < numAttributes; slot++) {
+                this.attributeLengths[slot] = buffer.getInt();
+                valuesLength += this.attributeLengths[slot];
+            }
+
+            buffer = this.require(valuesLength);
+            this.attributesEnd = this.base + buffer.position() + valuesLength;
+            this.entitiesRead++;
+
+            return true;
+        }
+
+        long getTickCount() {
+            return this.tickCount;
+        }
+
+        long getNextEntityId() {
+            return this.nextEntityId;
+        }
+
+        int getEntityCount() {
+            return this.entityCount;
+        }
+
+        int getClassCount() {
+            return this.classNames.length;
+        }
+
+        String getClassName(int classIndex) {
+            return this.classNames[classIndex];
+        }
+
+        /**
+         *
+         * Attribute names of a class in the slot order it was saved with
+         *
+         */
+        String[] getAttributeNames(int classIndex) {
+            return this.attributeNames[classIndex];
+        }
+
+        long getId() {
+            return this.id;
+        }
+
+        int getClassIndex() {
+            return this.classIndex;
+        }
+
+        byte[] getInstanceHandle() {
+            return this.instanceHandle;
+        }
+
+        int getAttributeLength(int savedSlot) {
+            return this.attributeLengths[savedSlot];
+        }
+
+        /**
+         *
+         * Positioned at the first attribute value of the current entity
+         *
+         */
+        ByteBuffer getAttributeBuffer() {
+            return this.buffer;
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.channel.close();
+        }
+    }
+}
@@ -0,0 +1,398 @@
+package federate;
+
+import hla.rti1516e.FederateHandle;
+import hla.rti1516e.ObjectInstanceHandleFactory;
+import hla.rti1516e.RTIambassador;
+import metrics.FederateMetrics;
+import model.Entity;
+import model.EntityDef;
+import util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ *
+ * Checkpoints the owned entities of a federate to a CheckpointFile and
+ * restores them, on request, every so many ticks or as part of an HLA
+ * federation save/restore.
+ *
+ * Checkpointing only stops the tick for the copy into a StateSnapshot, the
+ * file is written on a dedicated thread.  Only attribute values are saved:
+ * entities must be able to rebuild themselves from their attributes (see
+ * Entity.onRestored) and their definition must implement restoreEntity,
+ * entities of classes that cannot be restored (EntityDef.canRestore) are not
+ * saved.
+ * Remote entities are not saved, they are refreshed by later reflections.
+ *
+ * The on* methods are called by SimFederateAmbassador on the RTI's thread,
+ * everything else on the tick thread.
+ *
+ */
+class Checkpointer {
+
+    private static final Log LOG = Log.getLog(Checkpointer.class);
+
+    private final Federate federate;
+    private final FederateState federateState;
+    private final RTIambassador rtiAmbassador;
+    private final FederateMetrics metrics;
+    private final ExecutorService writer;
+
+    //  Where federation saves are written, <label>.<federateName>.checkpoint
+    private File directory;
+
+    //  Periodic checkpoint, off when intervalTicks is 0
+    private File intervalFile;
+    private long intervalTicks;
+
+    //  Snapshot of the last finished write, reused by the next checkpoint, and the write in progress
+    private volatile StateSnapshot spareSnapshot;
+    private CompletableFuture<Long> lastWrite;
+
+    //  Federation save/restore: the label to save or restore on the next tick, and
+    //  whether the federation is saving or restoring (the tick is skipped meanwhile)
+    private volatile String pendingSave;
+    private volatile String[] pendingRestore;
+    private volatile boolean saving, restoring;
+
+    /**
+     *
+     * @param federate
+     * @param federateState
+     * @param rtiAmbassador
+     * @param metrics
+     * @param directory where federation saves are written
+     */
+    Checkpointer(Federate federate, FederateState federateState, RTIambassador rtiAmbassador,
+                 FederateMetrics metrics, File directory) {
+        this.federate = federate;
+        this.federateState = federateState;
+        this.rtiAmbassador = rtiAmbassador;
+        this.metrics = metrics;
+        this.directory = directory;
+        this.lastWrite = CompletableFuture.completedFuture(0L);
+
+        this.writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "hlasim-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    void setInterval(File file, long ticks) {
+        assert ticks >= 0;
+
+        this.intervalFile = file;
+        this.intervalTicks = ticks;
+    }
+
+    /**
+     *
+     * Copy the owned entities into a snapshot and write it to file in the background
+     *
+     * @param file
+     * @return completes with the size of the checkpoint once it is on disk
+     */
+    CompletableFuture<Long> checkpoint(File file) {
+        long start = System.nanoTime();
+
+        StateSnapshot snapshot = this.spareSnapshot;
+        this.spareSnapshot = null;
+        if(snapshot == null) {
+            snapshot = new StateSnapshot();
+        }
+
+        snapshot.fill(this.federateState.getTickCount(), this.federateState.getEntityArray(),
+                      Collections.emptyList());
+
+        long nextEntityId = this.federate.getNextEntityId();
+        long copied = System.nanoTime();
+        StateSnapshot filled = snapshot;
+
+        this.lastWrite = CompletableFuture.supplyAsync(() -> {
+            try {
+                long size = CheckpointFile.write(file, filled, nextEntityId);
+
+                LOG.info("Checkpointed " + filled.getEntityCount() + " entities (" + size + " bytes) to " + file
+                         + ", copy " + (copied - start) / 1000 + "us, write "
+                         + (System.nanoTime() - copied) / 1000000 + "ms");
+                return size;
+            } catch(IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                this.spareSnapshot = filled;
+            }
+        }, this.writer);
+
+        this.lastWrite.whenComplete((size, e) -> {
+            if(e != null) {
+                this.metrics.recordException(e);
+                LOG.error("Could not checkpoint to " + file + " : " + e, e);
+            }
+        });
+
+        return this.lastWrite;
+    }
+
+    /**
+     *
+     * Recreate the entities of a checkpoint.  Reassociating (after a federation
+     * restore, the RTI restored the instances) they take over their saved
+     * instance handles and replace the current entities.  Otherwise they are
+     * registered as new instances, which needs a federate without entities of
+     * classes that can be restored.
+     * Either way every restored attribute is published again on the next tick.
+     *
+     * @param file
+     * @param reassociate
+     * @return the number of entities restored
+     */
+    int restore(File file, boolean reassociate) throws Exception {
+        //  Entities left out of checkpoints (IE: the PartitionLoad instance) can stay
+        if(!reassociate) {
+            for(Entity entity : this.federateState.getEntityArray()) {
+                if(entity.getEntityDefinition().canRestore()) {
+                    throw new IllegalStateException("Cannot restore " + file + " into a federate with entities");
+                }
+            }
+        }
+
+        long start = System.nanoTime();
+        List<Entity> entities;
+        long tickCount;
+
+        try(CheckpointFile.Reader reader = new CheckpointFile.Reader(file)) {
+            int classCount = reader.getClassCount();
+            EntityDef[] definitions = new EntityDef[classCount];
+            int[][] slots = new int[classCount][];
+
+            //  Map each saved class onto its definition and saved slots onto current
+            //  ones by name, attributes the definition no longer has are skipped
+            for(int index = 0; index < classCount; index++) {
+                definitions[index] = this.federate.getEntityDefForClass(reader.getClassName(index));
+                if(definitions[index] == null) {
+                    LOG.warning("Skipping " + reader.getClassName(index) + " entities, class is not defined");
+                    continue;
+                }
+                if(!definitions[index].canRestore()) {
+                    LOG.warning("Skipping " + reader.getClassName(index) + " entities, class cannot be restored");
+                    definitions[index] = null;
+                    continue;
+                }
+
+                String[] attributeNames = reader.getAttributeNames(index);
+                slots[index] = new int[attributeNames.length];
+
+                for(int saved = 0; saved < attributeNames.length; saved++) {
+                    boolean defined = definitions[index].getAttributeDef(attributeNames[saved]) != null;
+                    slots[index][saved] = defined ? definitions[index].getSlot(attributeNames[saved]) : -1;
+                }
+            }
+
+            ObjectInstanceHandleFactory handleFactory =
+                    reassociate ? this.rtiAmbassador.getObjectInstanceHandleFactory() : null;
+            entities = new ArrayList<>(reader.getEntityCount());
+
+            while(reader.next()) {
+                int index = reader.getClassIndex();
+                if(definitions[index] == null) {
+                    continue;
+                }
+
+                Entity entity;
+                try {
+                    entity = definitions[index].restoreEntity(reader.getId());
+                } catch(Exception e) {
+                    this.metrics.recordException(e);
+                    LOG.warning("Skipping " + reader.getClassName(index) + " entities : " + e);
+
+                    definitions[index] = null;
+                    continue;
+                }
+
+                ByteBuffer values = reader.getAttributeBuffer();
+                for(int saved = 0; saved < slots[index].length; saved++) {
+                    int length = reader.getAttributeLength(saved);
+
+                    if(slots[index][saved] >= 0) {
+                        entity.restoreAttribute(slots[index][saved], values, length);
+                    } else {
+                        values.position(values.position() + length);
+                    }
+                }
+                entity.onRestored();
+
+                if(handleFactory != null) {
+                    entity.setInstanceHandle(handleFactory.decode(reader.getInstanceHandle(), 0));
+                }
+                entities.add(entity);
+            }
+
+            this.federate.reserveEntityIds(reader.getNextEntityId());
+            tickCount = reader.getTickCount();
+        }
+
+        int restored = entities.size();
+        if(reassociate) {
+            this.federateState.replaceEntities(entities);
+        } else {
+            Map<Entity, Exception> failures = this.federate.addEntities(entities);
+            restored -= failures.size();
+        }
+        this.federateState.setTickCount(tickCount);
+
+        PartitionManager partitionManager = this.federate.getPartitionManager();
+        if(partitionManager != null) {
+            partitionManager.onRestored();
+        }
+
+        LOG.success("Restored " + restored + " entities from " + file + " (tick " + tickCount + ") in "
+                    + (System.nanoTime() - start) / 1000000 + "ms");
+        return restored;
+    }
+
+    /**
+     *
+     * Called before every tick, carries out a requested federation save or
+     * restore
+     *
+     * @return false while the federation saves or restores, the tick must be skipped
+     */
+    boolean beforeTick() {
+        String label = this.pendingSave;
+        if(label != null) {
+            this.pendingSave = null;
+            this.save(label);
+        }
+
+        String[] restore = this.pendingRestore;
+        if(restore != null) {
+            this.pendingRestore = null;
+            this.restore(restore[0], restore[1]);
+        }
+
+        return !this.saving && !this.restoring;
+    }
+
+    /**
+     *
+     * Called after every tick, takes the periodic checkpoint when due.  A
+     * checkpoint still being written is not queued behind, that interval is
+     * skipped.
+     *
+     */
+    void afterTick() {
+        if(this.intervalTicks == 0 || this.federateState.getTickCount() % this.intervalTicks != 0) {
+            return;
+        }
+
+        if(!this.lastWrite.isDone()) {
+            LOG.warning("Previous checkpoint still being written, skipping tick "
+                        + this.federateState.getTickCount());
+            return;
+        }
+
+        this.checkpoint(this.intervalFile);
+    }
+
+    private File getSaveFile(String label, String federateName) {
+        return new File(this.directory, label + "." + federateName + ".checkpoint");
+    }
+
+    private void save(String label) {
+        try {
+            this.rtiAmbassador.federateSaveBegun();
+        } catch(Exception e) {
+            this.metrics.recordException(e);
+            LOG.error("Could not begin federation save " + label + " : " + e, e);
+            return;
+        }
+
+        String federateName = this.federate.getFederateName();
+        this.checkpoint(this.getSaveFile(label, federateName)).whenComplete((size, error) -> {
+            try {
+                if(error == null) {
+                    this.rtiAmbassador.federateSaveComplete();
+                } else {
+                    this.rtiAmbassador.federateSaveNotComplete();
+                }
+            } catch(Exception e) {
+                this.metrics.recordException(e);
+                LOG.error("Could not complete federation save " + label + " : " + e, e);
+            }
+        });
+    }
+
+    private void restore(String label, String federateName) {
+        try {
+            this.restore(this.getSaveFile(label, federateName), true);
+            this.rtiAmbassador.federateRestoreComplete();
+        } catch(Exception e) {
+            this.metrics.recordException(e);
+            LOG.error("Could not restore " + label + " : " + e, e);
+
+            try {
+                this.rtiAmbassador.federateRestoreNotComplete();
+            } catch(Exception notComplete) {
+                this.metrics.recordException(notComplete);
+                LOG.error("Could not report failed restore " + label + " : " + notComplete, notComplete);
+            }
+        }
+    }
+
+    /*
+     * RTI callback thread
+     */
+
+    void onInitiateSave(String label) {
+        this.saving = true;
+        this.pendingSave = label;
+    }
+
+    void onFederationSaved(boolean saved, String reason) {
+        this.saving = false;
+
+        if(saved) {
+            LOG.success("Federation saved");
+        } else {
+            LOG.warning("Federation not saved : " + reason);
+        }
+    }
+
+    void onFederationRestoreBegun() {
+        this.restoring = true;
+    }
+
+    /**
+     *
+     * @param label
+     * @param federateName the name this federate had when the federation was saved
+     * @param federateHandle this federate's handle from now on
+     */
+    void onInitiateRestore(String label, String federateName, FederateHandle federateHandle) {
+        this.restoring = true;
+        this.federateState.setFederateHandle(federateHandle);
+        this.pendingRestore = new String[] {label, federateName};
+    }
+
+    void onFederationRestored(boolean restored, String reason) {
+        if(restored) {
+            this.federate.onFederationRestored();
+            LOG.success("Federation restored");
+        } else {
+            LOG.warning("Federation not restored : " + reason);
+        }
+
+        this.restoring = false;
+    }
+}
@@ -0,0 +1,50 @@
+package federate;
+
+import model.Entity;
+import model.RemoteEntity;
+
+import java.util.HashMap;
+
+/**
+ *
+ * Partitions by object class, every entity of a class is in the partition
+ * the class was assigned.  Classes without one are not partitioned, nor are
+ * classes that cannot be restored (see PartitionManager).
+ *
+ */
+public class ClassPartitioner implements Partitioner {
+
+    private final HashMap<String, Integer> classNameToPartitionMap;
+
+    public ClassPartitioner() {
+        this.classNameToPartitionMap = new HashMap<>();
+    }
+
+    /**
+     *
+     * Must be called before the federate is initialized
+     *
+     * @param className
+     * @param partition
+     */
+    public void assign(String className, int partition) {
+        assert partition >= 0;
+
+        this.classNameToPartitionMap.put(className, partition);
+    }
+
+    private int getPartition(String className) {
+        Integer partition = this.classNameToPartitionMap.get(className);
+        return partition == null ? UNPARTITIONED : partition;
+    }
+
+    @Override
+    public int getPartition(Entity entity) {
+        return this.getPartition(entity.getClassName());
+    }
+
+    @Override
+    public int getPartition(RemoteEntity remoteEntity, long tick) {
+        return this.getPartition(remoteEntity.getClassName());
+    }
+}
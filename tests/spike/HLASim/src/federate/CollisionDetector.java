@@ -0,0 +1,294 @@
+package federate;
+
+import model.Contact;
+import model.Entity;
+import model.EntityDef;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ *
+ * Collision detection between circular entities (a position vector and a radius
+ * attribute), run by Federate.tick between the compute and publish phases.
+ *
+ * Broad phase is a uniform grid: cells are as wide as the largest body, every body
+ * gets the row-major id of the cell its center is in and bodies are sorted by that
+ * id, so a body can only touch bodies in its own cell, the next cell of its row
+ * and the three adjacent cells of the next row, which all sit in two short runs
+ * further along the sorted order.  Narrow phase is an exact circle overlap test.
+ * With a pool the sort and the neighbour scan are split across its workers, the
+ * scan in fixed chunks whose contacts are concatenated in order, so results are
+ * identical to a single threaded run.
+ *
+ */
+public class CollisionDetector {
+
+    //  Chunks per pool thread for the scan, more chunks balance clustered bodies better
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    //  EntityDef -> {positionSlot, radiusSlot} for every class that collides
+    private final IdentityHashMap<EntityDef, int[]> collidingClasses;
+
+    //  Per tick working arrays, kept between ticks to avoid reallocating.
+    //  Gathered bodies in entity order, then the same bodies in cell order.
+    private Entity[] bodies, sortedBodies;
+    private int[] x, y, r, sortedX, sortedY, sortedR;
+    private long[] sortKeys, sortedCells;
+
+    public CollisionDetector() {
+        this.collidingClasses = new IdentityHashMap<>();
+        this.allocate(1024);
+    }
+
+    /**
+     *
+     * Entities of entityDef take part in collision detection.
+     *
+     * @param entityDef
+     * @param positionAttrName  VectorAttributeDef holding the circle center
+     * @param radiusAttrName    IntAttributeDef holding the circle radius
+     */
+    public void addEntityDefinition(EntityDef entityDef, String positionAttrName, String radiusAttrName) {
+        this.collidingClasses.put(entityDef,
+                new int[] {entityDef.getSlot(positionAttrName), entityDef.getSlot(radiusAttrName)});
+    }
+
+    private void allocate(int capacity) {
+        this.bodies = new Entity[capacity];
+        this.sortedBodies = new Entity[capacity];
+        this.x = new int[capacity];
+        this.y = new int[capacity];
+        this.r = new int[capacity];
+        this.sortedX = new int[capacity];
+        this.sortedY = new int[capacity];
+        this.sortedR = new int[capacity];
+        this.sortKeys = new long[capacity];
+        this.sortedCells = new long[capacity];
+    }
+
+    /**
+     *
+     * Find all overlapping pairs among entities.
+     *
+     * @param entities  all owned entities, entities of classes that don't collide are skipped
+     * @param pool      pool to parallelize over, null runs on the calling thread
+     * @return contacts in grid order (deterministic for a given input)
+     */
+    public List<Contact> detect(Entity[] entities, ForkJoinPool pool) {
+        if(this.bodies.length < entities.length) {
+            this.allocate(Math.max(entities.length, 2 * this.bodies.length));
+        }
+
+        //  Gather the colliding bodies and their bounds
+        int n = 0;
+        long minX = Long.MAX_VALUE, minY = Long.MAX_VALUE, maxX = Long.MIN_VALUE, maxY = Long.MIN_VALUE;
+        int maxR = 0;
+
+        for(Entity entity : entities) {
+            int[] slots = this.collidingClasses.get(entity.getEntityDefinition());
+
+            if(slots == null || entity.getAttributeBytes(slots[0]).length == 0
+                             || entity.getAttributeBytes(slots[1]).length == 0) {
+                continue;
+            }
+
+            int bx = entity.getVec2X(slots[0]);
+            int by = entity.getVec2Y(slots[0]);
+            int br = Math.max(0, entity.getInt(slots[1]));
+
+            this.bodies[n] = entity;
+            this.x[n] = bx;
+            this.y[n] = by;
+            this.r[n] = br;
+
+            minX = Math.min(minX, bx);
+            minY = Math.min(minY, by);
+            maxX = Math.max(maxX, bx);
+            maxY = Math.max(maxY, by);
+            maxR = Math.max(maxR, br);
+            n++;
+        }
+
+        if(n < 2) {
+            Arrays.fill(this.bodies, 0, n, null);
+            return new ArrayList<>();
+        }
+
+        //  Two bodies can only touch if their centers are at most 2 * maxR apart, so with
+        //  cells that wide only adjacent cells need testing.  Cells are made larger if
+        //  the grid would have too many cells for an id to fit next to the body index.
+        long cellSize = Math.max(1, 2L * maxR);
+        long width, height;
+
+        while(true) {
+            width = (maxX - minX) / cellSize + 1;
+            height = (maxY - minY) / cellSize + 1;
+
+            if(width * height <= Integer.MAX_VALUE) {
+                break;
+            }
+            cellSize *= 2;
+        }
+
+        for(int i = 0; i < n; i++) {
+            long cell = ((this.y[i] - minY) / cellSize) * width + (this.x[i] - minX) / cellSize;
+            this.sortKeys[i] = (cell << 32) | i;
+        }
+
+        if(pool != null) {
+            Arrays.parallelSort(this.sortKeys, 0, n);
+        } else {
+            Arrays.sort(this.sortKeys, 0, n);
+        }
+
+        //  Lay the bodies out in cell order so the scan reads sequentially
+        for(int k = 0; k < n; k++) {
+            int i = (int) this.sortKeys[k];
+
+            this.sortedCells[k] = this.sortKeys[k] >>> 32;
+            this.sortedBodies[k] = this.bodies[i];
+            this.sortedX[k] = this.x[i];
+            this.sortedY[k] = this.y[i];
+            this.sortedR[k] = this.r[i];
+        }
+
+        Scan scan = new Scan(this.sortedBodies, this.sortedCells, this.sortedX, this.sortedY, this.sortedR,
+                             n, width);
+        int chunks = pool == null ? 1 : pool.getParallelism() * CHUNKS_PER_THREAD;
+        List<Contact>[] chunkContacts = scan.run(chunks, pool);
+
+        List<Contact> contacts = new ArrayList<>();
+        for(List<Contact> chunk : chunkContacts) {
+            contacts.addAll(chunk);
+        }
+
+        //  Don't keep entities reachable from the working arrays between ticks
+        Arrays.fill(this.bodies, 0, n, null);
+        Arrays.fill(this.sortedBodies, 0, n, null);
+
+        return contacts;
+    }
+
+    /**
+     *
+     * Neighbour scan over bodies sorted by cell id, split into fixed chunks of
+     * bodies so each chunk can run on its own worker.
+     *
+     */
+    private static class Scan {
+
+        private final Entity[] bodies;
+        private final long[] cells;
+        private final int[] x, y, r;
+        private final int n;
+        private final long width;
+
+        Scan(Entity[] bodies, long[] cells, int[] x, int[] y, int[] r, int n, long width) {
+            this.bodies = bodies;
+            this.cells = cells;
+            this.x = x;
+            this.y = y;
+            this.r = r;
+            this.n = n;
+            this.width = width;
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        List<Contact>[] run(int chunks, ForkJoinPool pool) {
+            List<Contact>[] results = new List[chunks];
+
+            if(pool == null) {
+                for(int c = 0; c < chunks; c++) {
+                    results[c] = this.scanChunk(c, chunks);
+                }
+            } else {
+                pool.invoke(new ChunkTask(this, results, 0, chunks));
+            }
+
+            return results;
+        }
+
+        /**
+         *
+         * For each body i in the chunk test
+         * -    the bodies after it in its own cell and the next cell (same row)
+         * -    the bodies in the three cells of the next row around its column
+         * The next row window never overlaps the same row window, so each pair is
+         * tested once.  Cells at the end of a row wrap into the next row's first
+         * cell, which only adds candidates the narrow phase rejects.
+         *
+         */
+        List<Contact> scanChunk(int chunk, int chunks) {
+            int from = (int) ((long) this.n * chunk / chunks);
+            int to = (int) ((long) this.n * (chunk + 1) / chunks);
+            List<Contact> contacts = new ArrayList<>();
+
+            //  Start of the next row window, only ever moves forward
+            int rowStart = from;
+
+            for(int i = from; i < to; i++) {
+                long cell = this.cells[i];
+
+                for(int j = i + 1; j < this.n && this.cells[j] <= cell + 1; j++) {
+                    this.test(i, j, contacts);
+                }
+
+                long rowLow = Math.max(cell + this.width - 1, cell + 2);
+                long rowHigh = cell + this.width + 1;
+
+                while(rowStart < this.n && this.cells[rowStart] < rowLow) {
+                    rowStart++;
+                }
+
+                for(int j = rowStart; j < this.n && this.cells[j] <= rowHigh; j++) {
+                    this.test(i, j, contacts);
+                }
+            }
+
+            return contacts;
+        }
+
+        private void test(int i, int j, List<Contact> contacts) {
+            long dx = (long) this.x[j] - this.x[i];
+            long dy = (long) this.y[j] - this.y[i];
+            long radii = (long) this.r[i] + this.r[j];
+            long distanceSquared = dx * dx + dy * dy;
+
+            if(distanceSquared <= radii * radii) {
+                contacts.add(new Contact(this.bodies[i], this.bodies[j], radii - Math.sqrt(distanceSquared)));
+            }
+        }
+    }
+
+    private static class ChunkTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Scan scan;
+        private final List<Contact>[] results;
+        private final int from, to;
+
+        ChunkTask(Scan scan, List<Contact>[] results, int from, int to) {
+            this.scan = scan;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if(this.to - this.from == 1) {
+                this.results[this.from] = this.scan.scanChunk(this.from, this.results.length);
+            } else {
+                int mid = (this.from + this.to) >>> 1;
+                invokeAll(new ChunkTask(this.scan, this.results, this.from, mid),
+                          new ChunkTask(this.scan, this.results, mid, this.to));
+            }
+        }
+    }
+}
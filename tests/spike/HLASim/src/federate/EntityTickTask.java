@@ -0,0 +1,51 @@
+package federate;
+
+import model.Entity;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ *
+ * Fork/Join task that ticks a contiguous range of entities.  Ranges are split
+ * in half until they are at most THRESHOLD entities long, each leaf ticks its
+ * entities in order on whichever worker picks it up.
+ *
+ */
+public class EntityTickTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    //  Below this many entities the split overhead outweighs the parallelism
+    private static final int THRESHOLD = 256;
+
+    private final Entity[] entities;
+    private final int from, to;
+
+    /**
+     *
+     * Tick entities[from, to).  Entity ticks must only touch their own entity's state,
+     * which keeps the per-tick results independent of how the range gets split.
+     *
+     * @param entities
+     * @param from
+     * @param to
+     */
+    public EntityTickTask(Entity[] entities, int from, int to) {
+        this.entities = entities;
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+        if(this.to - this.from <= THRESHOLD) {
+            for(int i = this.from; i < this.to; i++) {
+                this.entities[i].tick();
+            }
+        } else {
+            int mid = (this.from + this.to) >>> 1;
+            invokeAll(new EntityTickTask(this.entities, this.from, mid),
+                      new EntityTickTask(this.entities, mid, this.to));
+        }
+    }
+}
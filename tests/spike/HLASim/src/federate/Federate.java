@@ -1,13 +1,37 @@
 package federate;
 
 import hla.rti1516e.*;
+import hla.rti1516e.exceptions.FederationExecutionAlreadyExists;
+import metrics.FederateMetrics;
 import model.Entity;
+import model.Contact;
 import model.EntityDef;
+import model.FddEntityDef;
+import model.FddReader;
+import model.Interaction;
+import model.InteractionDef;
+import model.KinematicStore;
+import rti.LoopbackRti;
+import util.Log;
 
+import java.io.File;
+import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 /**
  *
@@ -15,21 +39,80 @@ import java.util.List;
  */
 public class Federate {
 
+    private static final Log LOG = Log.getLog(Federate.class);
+
     private static final String federateType = "JavaFederate";
-    private static final CallbackModel CALLBACK_MODEL = CallbackModel.HLA_IMMEDIATE;
+
+    //  Longest one evokeMultipleCallbacks pass of the callback thread runs for (HLA_EVOKED)
+    private static final double DEFAULT_CALLBACK_BUDGET_SECONDS = 0.005;
+
+    //  Which RTI connect uses when no ambassador was set: "vendor" (RtiFactoryFactory,
+    //  the default) or "loopback" (in-process rti.LoopbackRti, no RTI install needed)
+    private static final String RTI_PROPERTY = "hlasim.rti";
+
+    //  Directory of the vendor RTI's handle cache (see HandleCache), default
+    //  java.io.tmpdir/hlasim-handles, "none" resolves all handles on every start
+    private static final String HANDLE_CACHE_PROPERTY = "hlasim.handleCache";
+
+    //  Directory federation saves are written to and restored from (see Checkpointer),
+    //  default java.io.tmpdir/hlasim-checkpoints
+    private static final String CHECKPOINT_DIRECTORY_PROPERTY = "hlasim.checkpointDir";
+
+    //  How long addEntities waits for the RTI to answer a name reservation
+    private static final long NAME_RESERVATION_TIMEOUT_MILLIS = 10000;
+
+    //  Reflection queue size, and how many queued callbacks are decoded per tick
+    private static final int REFLECTION_QUEUE_CAPACITY = 1 << 16;
+    private static final int REFLECTION_BATCH_SIZE = REFLECTION_QUEUE_CAPACITY;
+
+    //  Received interactions held until polled, more are dropped
+    private static final int INTERACTION_QUEUE_CAPACITY = 1 << 16;
 
     private boolean connected;
 
     private List<EntityDef> entityDefinitions;
+    private List<InteractionDef> interactionDefinitions;
+    private List<KinematicStore> entityStores;
 
     private String federationName, federateName;
-    private FederateAmbassador federateAmbassador;
+    private SimFederateAmbassador federateAmbassador;
     private FederateHandle federateHandle;
     private FederateState federateState;
+    private ReflectionIngestor reflectionIngestor;
+    private InteractionIngestor interactionIngestor;
+    private SpatialInterestManager spatialInterestManager;
+    private CollisionDetector collisionDetector;
+    private Checkpointer checkpointer;
+    private UpdateRecorder recorder;
+    private FederateMetrics metrics;
     private RTIambassador rtiAmbassador;
     private URL fddPath;
+    private File handleCacheDirectory;
 
     private HashMap<String, EntityDef> classNameToEntityDefMap;
+    private HashMap<String, InteractionDef> classNameToInteractionDefMap;
+
+    //  Next entity id, ids start at 1 and are never reused
+    private final AtomicLong nextEntityId;
+
+    //  Entity ticks run on tickPool when tickParallelism > 1, otherwise on the caller
+    private int tickParallelism;
+    private ForkJoinPool tickPool;
+
+    //  Publish a StateSnapshot at the end of every tick
+    private boolean snapshotsEnabled;
+
+    //  HLA_IMMEDIATE callbacks run on the RTI's threads, HLA_EVOKED ones on callbackEvoker
+    private CallbackModel callbackModel;
+    private double callbackBudgetSeconds;
+    private CallbackEvoker callbackEvoker;
+
+    //  Time managed execution when timeStep > 0, see enableTimeManagement
+    private double timeStep, lookahead;
+    private TimeAdvancer timeAdvancer;
+
+    //  Entities split across federates by partition, see enablePartitioning
+    private PartitionManager partitionManager;
 
     /**
      * The federate class encapsulates all data and functionality required of
@@ -47,7 +130,143 @@ public class Federate {
         this.connected = false;
 
         this.classNameToEntityDefMap = new HashMap<String, EntityDef>();
+        this.classNameToInteractionDefMap = new HashMap<>();
+        this.nextEntityId = new AtomicLong(1);
         this.entityDefinitions = new LinkedList<>();
+        this.interactionDefinitions = new LinkedList<>();
+        this.entityStores = new LinkedList<>();
+        this.tickParallelism = 1;
+        this.callbackModel = CallbackModel.HLA_IMMEDIATE;
+        this.callbackBudgetSeconds = DEFAULT_CALLBACK_BUDGET_SECONDS;
+        this.metrics = new FederateMetrics();
+    }
+
+    /**
+     *
+     * Set the number of threads used to compute entity ticks.  1 (the default)
+     * ticks every entity on the calling thread, anything greater ticks entities
+     * on a dedicated ForkJoinPool of that size.  Publishing to the HLA always
+     * happens on the calling thread.
+     *
+     * @param parallelism
+     */
+    public void setTickParallelism(int parallelism) {
+        assert parallelism > 0;
+
+        if(this.tickPool != null) {
+            this.tickPool.shutdown();
+            this.tickPool = null;
+        }
+
+        this.tickParallelism = parallelism;
+        if(parallelism > 1) {
+            this.tickPool = new ForkJoinPool(parallelism);
+        }
+    }
+
+    public int getTickParallelism() {
+        return this.tickParallelism;
+    }
+
+    /**
+     *
+     * Publish a snapshot of the federate state at the end of every tick, for
+     * readers on other threads (see FederateState.acquireSnapshot).  Off by
+     * default, taking the snapshot copies every attribute value once per tick.
+     *
+     * @param snapshotsEnabled
+     */
+    public void setSnapshotsEnabled(boolean snapshotsEnabled) {
+        this.snapshotsEnabled = snapshotsEnabled;
+    }
+
+    /**
+     *
+     * Choose how RTI callbacks are delivered, must be called before initialize.
+     * HLA_IMMEDIATE (the default) lets the RTI call back on its own threads
+     * whenever it likes.  HLA_EVOKED delivers them on a dedicated callback
+     * thread, in evokeMultipleCallbacks passes of at most budgetSeconds.  Either
+     * way callbacks are only queued for the tick thread.
+     *
+     * @param callbackModel
+     * @param budgetSeconds
+     * @throws IllegalArgumentException unless budgetSeconds > 0
+     */
+    public void setCallbackModel(CallbackModel callbackModel, double budgetSeconds) {
+        CallbackEvoker.checkBudget(budgetSeconds);
+
+        this.callbackModel = callbackModel;
+        this.callbackBudgetSeconds = budgetSeconds;
+    }
+
+    public CallbackModel getCallbackModel() {
+        return this.callbackModel;
+    }
+
+    /**
+     *
+     * Run time managed (regulating and constrained), each tick advancing logical
+     * time by stepSeconds and publishing timestamped updates.  Must be called
+     * before initialize, 0 < lookaheadSeconds <= stepSeconds.
+     *
+     * @param stepSeconds
+     * @param lookaheadSeconds
+     * @throws IllegalArgumentException unless 0 < lookaheadSeconds <= stepSeconds
+     */
+    public void enableTimeManagement(double stepSeconds, double lookaheadSeconds) {
+        TimeAdvancer.checkTimes(stepSeconds, lookaheadSeconds);
+
+        this.timeStep = stepSeconds;
+        this.lookahead = lookaheadSeconds;
+    }
+
+    public TimeAdvancer getTimeAdvancer() {
+        return this.timeAdvancer;
+    }
+
+    /**
+     *
+     * Own only the entities of the given partitions, see PartitionManager.
+     * Must be called before initialize, after adding the entity definitions.
+     * The PartitionLoad class used for rebalancing is defined from the FDD when
+     * it was not added.
+     *
+     * @param partitioner
+     * @param partitions the partitions this federate starts out owning
+     * @return the manager, IE: to set up rebalancing
+     */
+    public PartitionManager enablePartitioning(Partitioner partitioner, Collection<Integer> partitions) {
+        EntityDef loadDefinition = null;
+        for(EntityDef entityDef : this.entityDefinitions) {
+            if(PartitionManager.LOAD_CLASS_NAME.equals(entityDef.getClassName())) {
+                loadDefinition = entityDef;
+            }
+        }
+
+        if(loadDefinition == null) {
+            try {
+                loadDefinition = new FddReader(this.fddPath).createEntityDef(PartitionManager.LOAD_CLASS_NAME, this);
+
+                if(loadDefinition != null) {
+                    this.entityDefinitions.add(loadDefinition);
+                }
+            } catch(Exception e) {
+                this.metrics.recordException(e);
+                LOG.warning("Could not read " + this.fddPath + " : " + e);
+            }
+        }
+
+        //  The federate registers its own PartitionLoad instance
+        if(loadDefinition instanceof FddEntityDef) {
+            ((FddEntityDef) loadDefinition).setPublished(true);
+        }
+
+        this.partitionManager = new PartitionManager(this, partitioner, partitions);
+        return this.partitionManager;
+    }
+
+    public PartitionManager getPartitionManager() {
+        return this.partitionManager;
     }
 
     /**
@@ -56,8 +275,6 @@ public class Federate {
      * Initialize connects to the HLA, creates and connects to the Federation
      * Execution and initializes all object classes and interactions.
      *
-     * TODO: Interactions
-     *
      * @return
      */
     public boolean initialize() {
@@ -65,26 +282,43 @@ public class Federate {
         this.connect();
 
         if (!this.connected) {
-            System.out.println("ERROR: Could not connect");
+            LOG.error("Could not connect");
             return false;
         }
 
         if(!this.createFedEx()) {
-            System.out.println("ERROR: Could not create FedEx");
+            LOG.error("Could not create FedEx");
             return false;
         }
 
         if(!this.joinFedEx()) {
-            System.out.println("ERROR: Could not join FedEx");
+            LOG.error("Could not join FedEx");
             return false;
         }
 
         if(!this.initializeEntityDefinitions()) {
-            System.out.println("ERROR: Could initialize entity Definitions");
+            LOG.error("Could initialize entity Definitions");
+            return false;
+        }
+
+        if(!this.initializeInteractionDefinitions()) {
+            LOG.error("Could not initialize interaction Definitions");
+            return false;
+        }
+
+        if(this.timeStep > 0 && !this.initializeTimeManagement()) {
+            LOG.error("Could not enable time management");
             return false;
         }
 
-        System.out.println("SUCCESS: Federate initialized!");
+        if(this.partitionManager != null) {
+            this.partitionManager.start(this.federateState, this.rtiAmbassador, this.metrics,
+                                        this.getEntityDefForClass(PartitionManager.LOAD_CLASS_NAME));
+        }
+
+        this.metrics.register(this.federateName);
+
+        LOG.success("Federate initialized!");
         return true;
 
     }
@@ -100,6 +334,130 @@ public class Federate {
         this.entityDefinitions.add(entityDef);
     }
 
+    /**
+     *
+     * Add a definition read from the FDD (see FddReader) for every object class
+     * that has no definition yet, and check the definitions already added
+     * against the FDD.  Call before initialize, after adding the hand written
+     * definitions.  The added definitions are only subscribed to, and skipped
+     * when they cannot be initialized.
+     *
+     * @return the definitions added, empty if the FDD could not be read
+     */
+    public List<EntityDef> addFddEntityDefinitions() {
+        List<EntityDef> added = new ArrayList<>();
+        FddReader fddReader;
+
+        try {
+            fddReader = new FddReader(this.fddPath);
+        } catch(Exception e) {
+            this.metrics.recordException(e);
+            LOG.error("Could not read " + this.fddPath + " : " + e, e);
+
+            return added;
+        }
+
+        Set<String> defined = new HashSet<>();
+        for(EntityDef entityDef : this.entityDefinitions) {
+            fddReader.verify(entityDef);
+            defined.add(entityDef.getClassName());
+        }
+
+        for(String className : fddReader.getObjectClassNames()) {
+            if(!defined.contains(className)) {
+                added.add(fddReader.createEntityDef(className, this));
+            }
+        }
+
+        this.entityDefinitions.addAll(added);
+        LOG.info("Added " + added.size() + " entity definitions from " + this.fddPath);
+        return added;
+    }
+
+    /**
+     *
+     * Add an interaction definition, all interaction definitions must be added
+     * before initialize.  Interactions of its class are then published and
+     * subscribed to.
+     *
+     * @param interactionDef
+     */
+    public void addInteractionDefinition(InteractionDef interactionDef) {
+        this.interactionDefinitions.add(interactionDef);
+    }
+
+    /**
+     *
+     * Add a definition read from the FDD (see FddReader) for every interaction
+     * class that has no definition yet.  Call before initialize.
+     *
+     * @return the definitions added, empty if the FDD could not be read
+     */
+    public List<InteractionDef> addFddInteractionDefinitions() {
+        List<InteractionDef> added = new ArrayList<>();
+        FddReader fddReader;
+
+        try {
+            fddReader = new FddReader(this.fddPath);
+        } catch(Exception e) {
+            this.metrics.recordException(e);
+            LOG.error("Could not read " + this.fddPath + " : " + e, e);
+
+            return added;
+        }
+
+        Set<String> defined = new HashSet<>();
+        for(InteractionDef interactionDef : this.interactionDefinitions) {
+            defined.add(interactionDef.getClassName());
+        }
+
+        for(String className : fddReader.getInteractionClassNames()) {
+            if(!defined.contains(className)) {
+                added.add(fddReader.createInteractionDef(className, this));
+            }
+        }
+
+        this.interactionDefinitions.addAll(added);
+        LOG.info("Added " + added.size() + " interaction definitions from " + this.fddPath);
+        return added;
+    }
+
+    /**
+     *
+     * Enable spatial interest management (DDM) for the classes registered with the
+     * manager.  Must be set before initialize.
+     *
+     * @param spatialInterestManager
+     */
+    public void setSpatialInterestManager(SpatialInterestManager spatialInterestManager) {
+        this.spatialInterestManager = spatialInterestManager;
+    }
+
+    public SpatialInterestManager getSpatialInterestManager() {
+        return this.spatialInterestManager;
+    }
+
+    /**
+     *
+     * Enable the collision phase of the tick for the classes registered with the detector.
+     *
+     * @param collisionDetector
+     */
+    public void setCollisionDetector(CollisionDetector collisionDetector) {
+        this.collisionDetector = collisionDetector;
+    }
+
+    /**
+     *
+     * Add a columnar entity store, stores are advanced in bulk at the start of
+     * each tick before individual entities (including the store's views) are ticked.
+     *
+     * @param store
+     */
+    public void addEntityStore(KinematicStore store) {
+        this.entityStores.add(store);
+    }
+
     /**
      *
      * Initialize all the entity definitions that have been added.
@@ -107,39 +465,137 @@ public class Federate {
      * 1.   First initialize all federation attributes on the definition
      *      IE: get and set the ObjectClassHandle for the entity
      * 2.   Initialize all the attributes (get the attribute handles)
-     *      and publish the set of attributes for each class.
-     * 3.   Set up the ClassName -> EntityDef mappings
+     *      and publish/subscribe the set of attributes for each class.
+     * 3.   Set up the ClassName -> EntityDef mappings (and ClassHandle -> EntityDef
+     *      in federateState for decoding reflections)
      *
      * @return
      */
     public boolean initializeEntityDefinitions() {
+        if(this.spatialInterestManager != null && !this.spatialInterestManager.initialize()) {
+            return false;
+        }
+
+        //  Resolve all handles in one go, definitions the cache could not resolve
+        //  fall back to their own lookups below
+        if(this.handleCacheDirectory != null) {
+            try {
+                new HandleCache(this.rtiAmbassador, this.fddPath, this.handleCacheDirectory)
+                        .resolve(this.entityDefinitions);
+            } catch(Exception e) {
+                this.metrics.recordException(e);
+                LOG.warning("Handle cache unavailable : " + e);
+            }
+        }
+
         for(EntityDef entityDef : this.entityDefinitions) {
             try {
-                entityDef.initializeFederationAttributes();
+                if(!entityDef.initializeFederationAttributes()) {
+                    throw new IllegalStateException("Could not resolve the handles of " + entityDef.getClassName());
+                }
+
+                //  Only classes this federate registers instances of are published
+                if(entityDef.isPublished()) {
+                    this.rtiAmbassador.publishObjectClassAttributes(
+                                        entityDef.getClassHandle(),
+                                        entityDef.getAttributeHandleSet());
+                }
 
-                this.rtiAmbassador.publishObjectClassAttributes(
-                                    entityDef.getClassHandle(),
-                                    entityDef.getAttributeHandleSet());
+                //  Subscribe so other federates' instances are mirrored as RemoteEntities,
+                //  spatially managed classes subscribe by area instead
+                if(this.spatialInterestManager == null || !this.spatialInterestManager.isManaged(entityDef)) {
+                    this.rtiAmbassador.subscribeObjectClassAttributes(
+                                        entityDef.getClassHandle(),
+                                        entityDef.getAttributeHandleSet());
+                }
 
                 this.evokeCallbacks(0.1, 0.2);
 
                 this.classNameToEntityDefMap.put(entityDef.getClassName(), entityDef);
-                System.out.println("SUCCESS: Initialized entityDef: " + entityDef.getClassName());
+                this.federateState.addEntityDefinition(entityDef);
+                LOG.success("Initialized entityDef: " + entityDef.getClassName());
 
             } catch (Exception e) {
-                String msg = "ERROR: Could not initialize entityDef " + entityDef.getClassName()
+                String msg = "Could not initialize entityDef " + entityDef.getClassName()
                         + "\n\tGot Exception " +e;
-                System.out.println(msg);
-                e.printStackTrace();
+                this.metrics.recordException(e);
+
+                //  Classes only mirrored from other federates are not worth failing over
+                if(!entityDef.isPublished()) {
+                    LOG.warning(msg + "\n\tSkipped, its instances will not be reflected");
+                    continue;
+                }
+
+                LOG.error(msg, e);
+                return false;
+            }
+        }
+
+        LOG.success("All entityDefs initialized!");
+        return true;
+    }
+
+    /**
+     *
+     * Initialize all the interaction definitions that have been added: look up
+     * and cache their handles, publish and subscribe their classes, and set up
+     * the ClassName -> InteractionDef mapping (and ClassHandle -> InteractionDef
+     * in the interactionIngestor for decoding received interactions)
+     *
+     * @return
+     */
+    public boolean initializeInteractionDefinitions() {
+        for(InteractionDef interactionDef : this.interactionDefinitions) {
+            if(!interactionDef.initializeFederationHandles()) {
+                return false;
+            }
+
+            try {
+                this.rtiAmbassador.publishInteractionClass(interactionDef.getClassHandle());
+                this.rtiAmbassador.subscribeInteractionClass(interactionDef.getClassHandle());
+
+                this.classNameToInteractionDefMap.put(interactionDef.getClassName(), interactionDef);
+                this.interactionIngestor.addInteractionDefinition(interactionDef);
+                LOG.success("Initialized interactionDef: " + interactionDef.getClassName());
+
+            } catch(Exception e) {
+                String msg = "Could not initialize interactionDef " + interactionDef.getClassName()
+                        + "\n\tGot Exception " + e;
+                this.metrics.recordException(e);
+                LOG.error(msg, e);
 
                 return false;
             }
         }
 
-        System.out.println("SUCCESS: All entityDefs initialized!");
+        LOG.success("All interactionDefs initialized!");
         return true;
     }
 
+    /**
+     *
+     * Become regulating and constrained, must succeed when time management was enabled.
+     *
+     * @return
+     */
+    public boolean initializeTimeManagement() {
+        try {
+            this.timeAdvancer = new TimeAdvancer(this.rtiAmbassador, this.timeStep, this.lookahead);
+            this.federateAmbassador.setTimeAdvancer(this.timeAdvancer);
+            this.timeAdvancer.enable();
+
+            return true;
+        } catch(Exception e) {
+            this.timeAdvancer = null;
+            this.federateAmbassador.setTimeAdvancer(null);
+
+            this.metrics.recordException(e);
+            LOG.error("Unhandled exception enabling time management : " + e, e);
+
+            return false;
+        }
+    }
+
     /**
      *
      * Create the Federation Execution (Call to rtiAmbassador) must succeed.
@@ -151,24 +607,29 @@ public class Federate {
         || this.federateName == null
         || this.fddPath == null
         || this.rtiAmbassador == null) {
-            String msg = "ERROR: Could not create FedEx something is null: " +
+            String msg = "Could not create FedEx something is null: " +
                          "\n\tfederationName=" + this.federationName +
                          "\n\trtiAmbassador=" + this.rtiAmbassador +
                          "\n\tfederateName=" + this.federateName +
                          "\n\tfddPath=" + this.fddPath;
 
-            System.out.println(msg);
+            LOG.error(msg);
             return false;
         }
 
         try {
             this.rtiAmbassador.createFederationExecution(this.federationName, this.fddPath);
-            System.out.println("SUCCESS: Created FedEx!");
+            LOG.success("Created FedEx!");
+
+            return true;
+        } catch (FederationExecutionAlreadyExists e) {
+            //  Another federate got there first, join it
+            LOG.success("FedEx already exists, " + this.federationName);
 
             return true;
         } catch (Exception e) {
-            System.out.println("ERROR: Unhandled exception creating FedEx : " + e);
-            e.printStackTrace();
+            this.metrics.recordException(e);
+            LOG.error("Unhandled exception creating FedEx : " + e, e);
 
             return false;
         }
@@ -186,13 +647,13 @@ public class Federate {
                 || this.federateName == null
                 || federateType == null
                 || this.federateState == null) {
-            String msg = "ERROR: Could not join FedEx something is null: " +
+            String msg = "Could not join FedEx something is null: " +
                     "\n\tfederationName=" + this.federationName +
                     "\n\tfederateName=" + this.federateName +
                     "\n\tfederateState=" + this.federateState +
                     "\n\tfederateType=" + federateType;
 
-            System.out.println(msg);
+            LOG.error(msg);
             return false;
         }
 
@@ -209,19 +670,20 @@ public class Federate {
 
                 joined = true;
             } catch(Exception e) {
-                String msg = "WARNING: Could not join federation on attempt " + tries
+                String msg = "Could not join federation on attempt " + tries
                             + "\n\tGot Exception : " + e;
 
-                System.out.println(msg);
+                this.metrics.recordException(e);
+                LOG.warning(msg);
             }
         }
 
         if(!joined) {
-            System.out.println("ERROR: Could not join FedEx, timed out after " + tries + " attempts");
+            LOG.error("Could not join FedEx, timed out after " + tries + " attempts");
             return false;
         } else {
             this.evokeCallbacks(0.1, 0.2);
-            System.out.println("SUCCESS: Joined FedEx! (" + this.federateHandle + ")");
+            LOG.success("Joined FedEx! (" + this.federateHandle + ")");
 
             return true;
         }
@@ -229,28 +691,65 @@ public class Federate {
 
     /**
      *
-     * Initialize the FederateState/Ambassador and Connect to the HLA
+     * Initialize the FederateState/Ambassador and Connect to the HLA.  Uses the
+     * RTIambassador given to setRtiAmbassador, if any, otherwise the RTI selected
+     * by the hlasim.rti property: the in-process LoopbackRti for "loopback", the
+     * vendor RTI from the RtiFactory otherwise.  Only the vendor RTI uses the
+     * handle cache, the other RTIs number handles differently on every run.
      *
      */
     public void connect() {
         try {
-            RtiFactory factory = RtiFactoryFactory.getRtiFactory();
+            if(this.rtiAmbassador == null) {
+                if("loopback".equals(System.getProperty(RTI_PROPERTY, "vendor"))) {
+                    this.rtiAmbassador = LoopbackRti.getInstance().getRtiAmbassador();
+                } else {
+                    RtiFactory factory = RtiFactoryFactory.getRtiFactory();
 
-            this.rtiAmbassador = factory.getRtiAmbassador();
+                    this.rtiAmbassador = factory.getRtiAmbassador();
+
+                    String handleCache = System.getProperty(HANDLE_CACHE_PROPERTY,
+                            new File(System.getProperty("java.io.tmpdir"), "hlasim-handles").getPath());
+                    if(!"none".equals(handleCache)) {
+                        this.handleCacheDirectory = new File(handleCache);
+                    }
+                }
+            }
 
             this.federateState = new FederateState();
-            this.federateAmbassador = new SimFederateAmbassador(this.federateState);
+            this.reflectionIngestor = new ReflectionIngestor(this.federateState, REFLECTION_QUEUE_CAPACITY);
+            this.federateAmbassador = new SimFederateAmbassador(this.federateState, this.reflectionIngestor);
+            this.metrics.setCallbackBacklog(this.reflectionIngestor::getBacklog);
+
+            this.checkpointer = new Checkpointer(this, this.federateState, this.rtiAmbassador, this.metrics,
+                    new File(System.getProperty(CHECKPOINT_DIRECTORY_PROPERTY,
+                            new File(System.getProperty("java.io.tmpdir"), "hlasim-checkpoints").getPath())));
+            this.federateAmbassador.setCheckpointer(this.checkpointer);
+            this.federateAmbassador.setPartitionManager(this.partitionManager);
+
+            this.interactionIngestor = new InteractionIngestor(INTERACTION_QUEUE_CAPACITY);
+            this.federateAmbassador.setInteractionIngestor(this.interactionIngestor);
 
-            this.rtiAmbassador.connect(this.federateAmbassador, CALLBACK_MODEL);
+            this.rtiAmbassador.connect(this.federateAmbassador, this.callbackModel);
             this.connected = true;
 
-            System.out.println("SUCCESS: Connected to HLA successfully!");
+            if(this.callbackModel == CallbackModel.HLA_EVOKED) {
+                if(this.callbackEvoker != null) {
+                    this.callbackEvoker.stop();
+                }
+
+                this.callbackEvoker = new CallbackEvoker(this.rtiAmbassador, this.metrics,
+                                                         this.callbackBudgetSeconds,
+                                                         "hlasim-callbacks-" + this.federateName);
+                this.callbackEvoker.start();
+            }
+
+            LOG.success("Connected to HLA successfully!");
         } catch(Exception e) {
             this.connected = false;
 
-            System.out.println("ERROR: Unhandled exception connecting to federation : " + e);
-            System.out.println(this);
-            e.printStackTrace();
+            this.metrics.recordException(e);
+            LOG.error("Unhandled exception connecting to federation : " + e + "\n\t" + this, e);
         }
     }
 
@@ -265,32 +764,157 @@ public class Federate {
         if(entity.getInstanceHandle() == null) {
             try {
                 ObjectClassHandle classHandle = entity.getEntityDefinition().getClassHandle();
-                this.evokeCallbacks(0.1, 0.2);
 
                 //  This "instantiates" the instance within the HLA and returns
                 //  A handle to access the object later on
+                long start = System.nanoTime();
                 ObjectInstanceHandle instanceHandle =
                     this.rtiAmbassador.registerObjectInstance(classHandle);
+                this.metrics.recordRtiCall(FederateMetrics.REGISTER_OBJECT_INSTANCE, System.nanoTime() - start);
 
                 //  Entities must have an instance handle once they've been instantiated
                 entity.setInstanceHandle(instanceHandle);
                 this.federateState.addEntity(entity);
-                this.evokeCallbacks(0.1, 0.2);
 
                 //  After adding the entity, update the entity attributes internally
                 entity.updateAttributes();
 
                 //  Push the initialized attributes to the HLA
                 this.updateEntityAttributes(entity);
-                System.out.println("SUCCESS: Added " + entity.getClassName() + " entity!");
+                this.metrics.recordEntityAdded(entity.getClassName());
+                LOG.success("Added " + entity.getClassName() + " entity!");
             } catch(Exception e) {
-                String msg = "ERROR: Could not add entity " + entity + " to federation"
+                String msg = "Could not add entity " + entity + " to federation"
                            + "\n\tGot exception : " + e;
-                System.out.println(msg);
-                e.printStackTrace();
+                this.metrics.recordException(e);
+                LOG.error(msg, e);
             }
         } else {
-            System.out.println("WARNING: Attempting to add registered entity " + entity);
+            LOG.warning("Attempting to add registered entity " + entity);
+        }
+    }
+
+    public Map<Entity, Exception> addEntities(Collection<? extends Entity> entities) {
+        return this.addEntities(entities, null);
+    }
+
+    /**
+     *
+     * Add many entities at once.  Unlike addEntity nothing is pushed to the HLA
+     * here: the entities' initial attributes are left dirty and go out with the
+     * next tick's publish phase, coalesced with whatever that tick changes.  An
+     * entity that fails is reported and skipped, the rest of the batch carries on.
+     *
+     * With a namePrefix the instance names namePrefix0, namePrefix1, ... are
+     * reserved in one reserveMultipleObjectInstanceName call before registering,
+     * if the reservation fails the RTI names the instances instead.
+     *
+     * @param entities
+     * @param namePrefix null lets the RTI name the instances
+     * @return the entities that could not be added and why, empty if all were
+     */
+    public Map<Entity, Exception> addEntities(Collection<? extends Entity> entities, String namePrefix) {
+        Map<Entity, Exception> failures = new LinkedHashMap<>();
+        List<Entity> registered = new ArrayList<>(entities.size());
+        String[] names = namePrefix == null ? null : this.reserveInstanceNames(namePrefix, entities.size());
+        Set<String> unusedNames = new HashSet<>();
+
+        long start = System.nanoTime();
+        int index = 0;
+
+        for(Entity entity : entities) {
+            String name = names == null ? null : names[index++];
+
+            if(entity.getInstanceHandle() != null) {
+                failures.put(entity, new IllegalStateException("Entity is already registered"));
+                if(name != null) {
+                    unusedNames.add(name);
+                }
+                continue;
+            }
+
+            try {
+                ObjectClassHandle classHandle = entity.getEntityDefinition().getClassHandle();
+                long registerStart = System.nanoTime();
+                ObjectInstanceHandle instanceHandle = name == null
+                        ? this.rtiAmbassador.registerObjectInstance(classHandle)
+                        : this.rtiAmbassador.registerObjectInstance(classHandle, name);
+                this.metrics.recordRtiCall(FederateMetrics.REGISTER_OBJECT_INSTANCE, System.nanoTime() - registerStart);
+
+                entity.setInstanceHandle(instanceHandle);
+                entity.updateAttributes();
+                registered.add(entity);
+            } catch(Exception e) {
+                failures.put(entity, e);
+                this.metrics.recordException(e);
+                if(name != null) {
+                    unusedNames.add(name);
+                }
+            }
+        }
+
+        this.federateState.addEntities(registered);
+        for(Entity entity : registered) {
+            this.metrics.recordEntityAdded(entity.getClassName());
+        }
+
+        //  Names reserved for the entities that failed would stay reserved otherwise
+        if(!unusedNames.isEmpty()) {
+            this.releaseInstanceNames(unusedNames);
+        }
+
+        for(Map.Entry<Entity, Exception> failure : failures.entrySet()) {
+            LOG.error("Could not add entity " + failure.getKey() + " to federation"
+                      + "\n\tGot exception : " + failure.getValue());
+        }
+
+        LOG.success("Added " + registered.size() + " of " + entities.size() + " entities in "
+                    + (System.nanoTime() - start) / 1000000 + "ms");
+        return failures;
+    }
+
+    /**
+     *
+     * Reserve namePrefix0 .. namePrefix(count - 1) in one call
+     *
+     * @return the names, or null if they could not be reserved
+     */
+    private String[] reserveInstanceNames(String namePrefix, int count) {
+        String[] names = new String[count];
+        for(int i = 0; i < count; i++) {
+            names[i] = namePrefix + i;
+        }
+
+        NameReservation reservation = new NameReservation(new HashSet<>(Arrays.asList(names)));
+        this.federateAmbassador.setNameReservation(reservation);
+
+        try {
+            long start = System.nanoTime();
+            this.rtiAmbassador.reserveMultipleObjectInstanceName(reservation.getNames());
+
+            boolean reserved = reservation.await(NAME_RESERVATION_TIMEOUT_MILLIS);
+            this.metrics.recordRtiCall(FederateMetrics.RESERVE_OBJECT_INSTANCE_NAMES, System.nanoTime() - start);
+
+            if(reserved) {
+                return names;
+            }
+            LOG.warning("Could not reserve " + count + " instance names " + namePrefix + "*, the RTI names them");
+        } catch(Exception e) {
+            this.metrics.recordException(e);
+            LOG.warning("Could not reserve instance names " + namePrefix + "* : " + e);
+        } finally {
+            this.federateAmbassador.setNameReservation(null);
+        }
+
+        return null;
+    }
+
+    private void releaseInstanceNames(Set<String> names) {
+        try {
+            this.rtiAmbassador.releaseMultipleObjectInstanceName(names);
+        } catch(Exception e) {
+            this.metrics.recordException(e);
+            LOG.warning("Could not release " + names.size() + " reserved instance names : " + e);
         }
     }
 
@@ -298,11 +922,28 @@ public class Federate {
     /**
      *
      * Update the HLA attributes for an entity.  The entity should have been ticked
-     * before calling (or else old data will get pushed to the HLA)
+     * before calling (or else old data will get pushed to the HLA).  Only attributes
+     * that changed since the last successful update are sent, and entities with no
+     * changes do not call the RTI at all.
      *
      * @param entity
      */
     public void updateEntityAttributes(Entity entity) {
+        this.updateEntityAttributes(entity, null);
+    }
+
+    /**
+     *
+     * Update the HLA attributes for an entity, timestamped when time is not null.
+     *
+     * @param entity
+     * @param time
+     */
+    public void updateEntityAttributes(Entity entity, LogicalTime time) {
+        if(!entity.hasDirtyAttributes()) {
+            return;
+        }
+
         try {
             String tag = "TAG: " + entity.getClassName() + "-" + System.currentTimeMillis();
 
@@ -312,39 +953,395 @@ public class Federate {
             //  in a uniform, generic way (IE: we don't need to define classes in the simulator,
             //  rather use an instanceHandle to point to the instance of the object and pass the
             //  mappings which are expected to comply with the entity as defined in the XML)
-            AttributeHandleValueMap attributeHandleValueMap = entity.getAttributeHandleValueMap();
-            this.rtiAmbassador.updateAttributeValues(entity.getInstanceHandle(), attributeHandleValueMap, tag.getBytes());
+            //  The delta map holds only the changed handles, unchanged values are not resent.
+            AttributeHandleValueMap attributeHandleValueMap = entity.getDirtyAttributeHandleValueMap();
+            long start = System.nanoTime();
+            if(time == null) {
+                this.rtiAmbassador.updateAttributeValues(entity.getInstanceHandle(), attributeHandleValueMap,
+                                                         tag.getBytes());
+            } else {
+                this.rtiAmbassador.updateAttributeValues(entity.getInstanceHandle(), attributeHandleValueMap,
+                                                         tag.getBytes(), time);
+            }
+            this.metrics.recordRtiCall(FederateMetrics.UPDATE_ATTRIBUTE_VALUES, System.nanoTime() - start);
+            this.metrics.recordUpdate(entity.getDirtyEncodedLength());
+
+            if(this.recorder != null) {
+                try {
+                    //  Updates sent between ticks (IE: by addEntity) belong to the next tick
+                    this.recorder.beginTick(this.federateState.getTickCount());
+                    this.recorder.recordUpdate(entity, attributeHandleValueMap);
+                } catch(IOException e) {
+                    LOG.warning("Could not record update of " + entity + " : " + e);
+                }
+            }
+
+            //  Only clear once the RTI accepted the update, failed updates are retried next tick
+            entity.clearDirtyAttributes();
+        } catch(Exception e) {
+            String msg = "Could not update attributes for entity " + entity
+                       + "\n\tGot Exception : " + e;
+
+            this.metrics.recordException(e);
+            LOG.error(msg);
+        }
+    }
+
+    /**
+     *
+     * Send an interaction, receive ordered.  Can be called from any thread.
+     *
+     * @param interaction
+     * @return false if the RTI did not accept it
+     */
+    public boolean sendInteraction(Interaction interaction) {
+        InteractionDef interactionDef = interaction.getDefinition();
+        ParameterHandleValueMap parameters = interactionDef.acquireParameterMap();
+
+        try {
+            return this.sendInteraction(interaction, parameters);
+        } finally {
+            interactionDef.releaseParameterMap(parameters);
+        }
+    }
+
+    /**
+     *
+     * Send a batch of interactions in order, one pooled ParameterHandleValueMap
+     * is filled and sent again for every interaction of the same class in a
+     * row.  Can be called from any thread.  Interactions the RTI did not accept
+     * are logged and skipped, the rest of the batch is still sent.
+     *
+     * @param interactions
+     * @return the number of interactions the RTI accepted
+     */
+    public int sendInteractions(Collection<? extends Interaction> interactions) {
+        int sent = 0;
+        InteractionDef mapDef = null;
+        ParameterHandleValueMap parameters = null;
+
+        try {
+            for(Interaction interaction : interactions) {
+                InteractionDef interactionDef = interaction.getDefinition();
+
+                if(interactionDef != mapDef) {
+                    if(parameters != null) {
+                        mapDef.releaseParameterMap(parameters);
+                    }
+                    mapDef = interactionDef;
+                    parameters = interactionDef.acquireParameterMap();
+                } else {
+                    parameters.clear();
+                }
+
+                if(this.sendInteraction(interaction, parameters)) {
+                    sent++;
+                }
+            }
+        } finally {
+            if(parameters != null) {
+                mapDef.releaseParameterMap(parameters);
+            }
+        }
+
+        return sent;
+    }
+
+    /**
+     *
+     * The RTI copies the parameters before sendInteraction returns, so the map
+     * and the interaction's arrays can be reused right after
+     *
+     */
+    private boolean sendInteraction(Interaction interaction, ParameterHandleValueMap parameters) {
+        InteractionDef interactionDef = interaction.getDefinition();
+        assert interactionDef.getClassHandle() != null : interactionDef.getClassName() + " is not initialized";
+
+        try {
+            int encodedLength = interaction.putParameters(parameters);
+
+            long start = System.nanoTime();
+            this.rtiAmbassador.sendInteraction(interactionDef.getClassHandle(), parameters, interaction.getTag());
+            this.metrics.recordRtiCall(FederateMetrics.SEND_INTERACTION, System.nanoTime() - start);
+            this.metrics.recordInteraction(encodedLength);
+
+            return true;
         } catch(Exception e) {
-            String msg = "ERROR: Could not update attributes for entity " + entity
+            String msg = "Could not send interaction " + interaction
                        + "\n\tGot Exception : " + e;
 
-            System.out.println(msg);
+            this.metrics.recordException(e);
+            LOG.error(msg);
+            return false;
+        }
+    }
+
+    /**
+     *
+     * Take the oldest received interaction.  Received interactions are not
+     * tied to the tick, any thread can poll them as soon as they arrive.
+     *
+     * @return null if none is waiting
+     */
+    public Interaction pollInteraction() {
+        return this.interactionIngestor.poll();
+    }
+
+    /**
+     *
+     * Hand up to maxBatch received interactions to handler, oldest first
+     *
+     * @param handler
+     * @param maxBatch
+     * @return the number handled
+     */
+    public int drainInteractions(Consumer<? super Interaction> handler, int maxBatch) {
+        return this.interactionIngestor.drain(handler, maxBatch);
+    }
+
+    /**
+     *
+     * Let the RTI deliver the callbacks it has pending, e.g. discoveries after a
+     * subscribe.  With HLA_EVOKED this waits (maxSeconds at most) until the
+     * callback thread has run a whole evoke pass.  With HLA_IMMEDIATE callbacks
+     * arrive by themselves, so it returns right away.  minSeconds is not waited
+     * out, the callback thread keeps evoking after this returns anyway.
+     *
+     * @param minSeconds
+     * @param maxSeconds
+     */
+    public void evokeCallbacks(double minSeconds, double maxSeconds) {
+        if(this.callbackEvoker == null) {
+            return;
+        }
+
+        try {
+            if(!this.callbackEvoker.awaitPass(maxSeconds)) {
+                LOG.warning("Callbacks still pending after " + maxSeconds + "s");
+            }
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     *
+     * Checkpoint the owned entities to file.  Call between ticks on the tick
+     * thread, only copying the state holds up the caller, the file is written in
+     * the background.
+     *
+     * @param file
+     * @return completes with the size of the checkpoint once it is on disk
+     */
+    public CompletableFuture<Long> checkpoint(File file) {
+        return this.checkpointer.checkpoint(file);
+    }
+
+    /**
+     *
+     * Checkpoint to file every ticks ticks, 0 turns it off.  Must be called after
+     * initialize.
+     *
+     * @param file
+     * @param ticks
+     */
+    public void setCheckpointInterval(File file, long ticks) {
+        this.checkpointer.setInterval(file, ticks);
+    }
+
+    /**
+     *
+     * Recreate the entities of a checkpoint as new instances, in place of adding
+     * entities after initialize.
+     *
+     * @param file
+     * @return
+     */
+    public boolean restore(File file) {
+        try {
+            this.checkpointer.restore(file, false);
+            return true;
+        } catch(Exception e) {
+            this.metrics.recordException(e);
+            LOG.error("Could not restore " + file + " : " + e, e);
+
+            return false;
+        }
+    }
+
+    /**
+     *
+     * Record every update sent and every discovery, reflection and removal
+     * ingested to directory from the next tick on, for UpdateReplayer.  Must be
+     * called after initialize, on the tick thread.
+     *
+     * @param directory a new directory, or an empty one
+     * @return
+     */
+    public boolean startRecording(File directory) {
+        this.stopRecording();
+
+        try {
+            this.recorder = new UpdateRecorder(directory, this.entityDefinitions, this.federateState.getTickCount());
+            this.reflectionIngestor.setRecorder(this.recorder);
+            return true;
+        } catch(IOException e) {
+            this.metrics.recordException(e);
+            LOG.error("Could not record to " + directory + " : " + e, e);
+
+            return false;
+        }
+    }
+
+    /**
+     *
+     * Write out and close the recording, if any
+     *
+     */
+    public void stopRecording() {
+        if(this.recorder == null) {
+            return;
+        }
+
+        UpdateRecorder recorder = this.recorder;
+        this.recorder = null;
+        this.reflectionIngestor.setRecorder(null);
+
+        try {
+            recorder.close();
+        } catch(IOException e) {
+            this.metrics.recordException(e);
+            LOG.error("Could not close recording : " + e, e);
+        }
+    }
+
+    /**
+     *
+     * Ask the RTI to save the whole federation.  Each federate checkpoints its
+     * entities when told to (see Checkpointer), ticks stop until the federation
+     * is saved.
+     *
+     * @param label
+     * @return
+     */
+    public boolean requestFederationSave(String label) {
+        try {
+            this.rtiAmbassador.requestFederationSave(label);
+            return true;
+        } catch(Exception e) {
+            this.metrics.recordException(e);
+            LOG.error("Could not request federation save " + label + " : " + e, e);
+
+            return false;
+        }
+    }
+
+    /**
+     *
+     * Ask the RTI to restore the whole federation to a save, each federate
+     * reloads its entities from its checkpoint of that save.
+     *
+     * @param label
+     * @return
+     */
+    public boolean requestFederationRestore(String label) {
+        try {
+            this.rtiAmbassador.requestFederationRestore(label);
+            return true;
+        } catch(Exception e) {
+            this.metrics.recordException(e);
+            LOG.error("Could not request federation restore " + label + " : " + e, e);
+
+            return false;
         }
     }
 
     /**
      *
-     * Not sure how the implementation of this should look yet, blank for now
-     * TODO
-     * @param a
-     * @param b
+     * The RTI restored the federation, logical time is the saved one again
+     *
      */
-    public void evokeCallbacks(double a, double b) {
+    void onFederationRestored() {
+        if(this.timeAdvancer == null) {
+            return;
+        }
+
+        try {
+            this.timeAdvancer.onFederationRestored(this.rtiAmbassador.queryLogicalTime());
+        } catch(Exception e) {
+            this.metrics.recordException(e);
+            LOG.error("Could not query logical time after restore : " + e, e);
+        }
+    }
 
+    public String getFederateName() {
+        return this.federateName;
     }
 
     public FederateState getFederateState() {
         return this.federateState;
     }
 
+    public ReflectionIngestor getReflectionIngestor() {
+        return this.reflectionIngestor;
+    }
+
+    public InteractionIngestor getInteractionIngestor() {
+        return this.interactionIngestor;
+    }
+
+    public FederateMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     *
+     * Use rtiAmbassador instead of one created by the RtiFactory, must be called
+     * before initialize.  Lets benchmarks run the federate against a stand-in RTI.
+     *
+     * @param rtiAmbassador
+     */
+    public void setRtiAmbassador(RTIambassador rtiAmbassador) {
+        this.rtiAmbassador = rtiAmbassador;
+    }
+
     public RTIambassador getRtiAmbassador() {
         return this.rtiAmbassador;
     }
 
+    /**
+     *
+     * Allocate the id of a new entity, unique within this federate.  Called by
+     * the Entity constructor.
+     *
+     * @return
+     */
+    public long newEntityId() {
+        return this.nextEntityId.getAndIncrement();
+    }
+
+    long getNextEntityId() {
+        return this.nextEntityId.get();
+    }
+
+    /**
+     *
+     * Never allocate ids below nextEntityId, IE: ids of restored entities
+     *
+     * @param nextEntityId
+     */
+    void reserveEntityIds(long nextEntityId) {
+        this.nextEntityId.accumulateAndGet(nextEntityId, Math::max);
+    }
+
     public EntityDef getEntityDefForClass(String className) {
         return this.classNameToEntityDefMap.get(className);
     }
 
+    public InteractionDef getInteractionDefForClass(String className) {
+        return this.classNameToInteractionDefMap.get(className);
+    }
+
     /**
      *
      * Tick the federate state.  Each federate tick consists of an update
@@ -352,13 +1349,144 @@ public class Federate {
      * and a call to this.updateEntityAttributes which will push the internal
      * representations to the HLA via the rtiAmbassador.
      *
+     * The tick runs in three phases:
+     * 0.   Ingest, reflections queued by the ambassador since the last tick are
+     *      decoded into the federateState's remote entities, then when
+     *      partitioned entities change owner (see PartitionManager)
+     * 1.   Compute, every entity is ticked (in parallel when tickParallelism > 1),
+     *      then contacts are detected and handed to the entities involved
+     * 2.   Publish, changed attributes are pushed to the HLA in one pass, in
+     *      insertion order, on the calling thread
+     * 3.   Snapshot, when enabled the finished tick's state is copied into a
+     *      StateSnapshot and published to readers with a reference swap, and
+     *      a periodic checkpoint is taken when due, and the tick's records are
+     *      written out when recording
+     *
+     * No tick runs while the federation is being saved or restored.
+     *
+     * When time managed the tick first waits for the grant requested at the end
+     * of the previous tick, so the RTI works out that grant between ticks, and
+     * the publish phase publishes at grantedTime + step and requests the next
+     * step without waiting.  A tick whose grant does not come (see
+     * TimeAdvancer.awaitGrant) is skipped before anything is computed, so it is
+     * run in full by a later call.
+     *
+     * Entities only update their own state during tick, so the results of a
+     * tick do not depend on how the compute phase was scheduled.
+     *
      */
     public void tick() {
-        for(Entity entity : this.federateState.getEntityCollection()) {
-            //  Tick the entity and push all the attributes to the HLA
-            entity.tick();
-            this.updateEntityAttributes(entity);
+        if(!this.checkpointer.beforeTick()) {
+            return;
+        }
+
+        long tickStart = System.nanoTime();
+
+        LogicalTime updateTime = null;
+        if(this.timeAdvancer != null) {
+            try {
+                this.timeAdvancer.awaitGrant();
+                updateTime = this.timeAdvancer.getUpdateTime();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                LOG.warning("Interrupted waiting for the time advance grant, tick skipped");
+                return;
+            } catch(TimeoutException e) {
+                //  A stalled peer, ticks resume once it advances
+                this.metrics.recordException(e);
+                LOG.warning(e.getMessage() + ", tick skipped");
+                return;
+            } catch(Exception e) {
+                this.metrics.recordException(e);
+                LOG.error("Could not advance time, tick skipped : " + e, e);
+                return;
+            }
+
+            this.metrics.recordRtiCall(FederateMetrics.TIME_ADVANCE_GRANT, System.nanoTime() - tickStart);
+        }
+
+        if(this.recorder != null) {
+            try {
+                this.recorder.beginTick(this.federateState.getTickCount());
+            } catch(IOException e) {
+                this.metrics.recordException(e);
+                LOG.error("Could not record, recording stopped : " + e, e);
+                this.stopRecording();
+            }
         }
+
+        //  Phase 0: ingest, entities taken over or handed off are in the array from here on
+        this.reflectionIngestor.drain(REFLECTION_BATCH_SIZE);
+        if(this.partitionManager != null) {
+            this.partitionManager.tick();
+        }
+        Entity[] entities = this.federateState.getEntityArray();
+
+        //  Phase 1: compute, bulk stores first so their views see this tick's values
+        long computeStart = System.nanoTime();
+        for(KinematicStore store : this.entityStores) {
+            store.tick();
+        }
+
+        if(this.tickPool == null) {
+            for(Entity entity : entities) {
+                entity.tick();
+            }
+        } else {
+            this.tickPool.invoke(new EntityTickTask(entities, 0, entities.length));
+        }
+
+        if(this.collisionDetector != null) {
+            for(Contact contact : this.collisionDetector.detect(entities, this.tickPool)) {
+                contact.getEntityA().onContact(contact);
+                contact.getEntityB().onContact(contact);
+            }
+        }
+
+        long publishStart = System.nanoTime();
+        this.metrics.recordCompute(publishStart - computeStart);
+
+        //  Phase 2: push the changed attributes to the HLA, moving update regions of
+        //  entities that changed grid cell and holding back positions receivers can
+        //  still dead reckon
+        for(Entity entity : entities) {
+            if(this.spatialInterestManager != null) {
+                this.spatialInterestManager.updateRegion(entity);
+            }
+
+            entity.applyDeadReckoning();
+            this.updateEntityAttributes(entity, updateTime);
+        }
+
+        if(this.timeAdvancer != null) {
+            try {
+                this.timeAdvancer.requestAdvance();
+            } catch(Exception e) {
+                this.metrics.recordException(e);
+                LOG.error("Could not request time advance : " + e, e);
+            }
+        }
+
+        this.metrics.recordPublish(System.nanoTime() - publishStart);
+        this.federateState.incrementTickCount();
+
+        //  Phase 3: snapshot for readers on other threads
+        if(this.snapshotsEnabled) {
+            this.federateState.publishSnapshot();
+        }
+        this.checkpointer.afterTick();
+
+        if(this.recorder != null) {
+            try {
+                this.recorder.endTick();
+            } catch(IOException e) {
+                this.metrics.recordException(e);
+                LOG.error("Could not record, recording stopped : " + e, e);
+                this.stopRecording();
+            }
+        }
+
+        this.metrics.recordTick(System.nanoTime() - tickStart);
     }
 
     public boolean isConnected() {
@@ -2,8 +2,16 @@ package federate;
 
 import hla.rti1516e.*;
 import model.Entity;
+import model.EntityDef;
+import model.RemoteEntity;
+import util.LongObjectMap;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -14,9 +22,27 @@ public class FederateState {
     private FederateHandle federateHandle;
     private ConcurrentHashMap<String, ObjectClassHandle> classNameToObjectHandleMap;
 
-    //  Entity data
-    private ConcurrentHashMap<String, ObjectInstanceHandle> entityIdToInstanceHandleMap;
-    private ConcurrentHashMap<String, Entity> entityIdToInstanceMap;
+    //  Entity data, id -> entity and instance handle -> entity.  Both indexes and
+    //  entityList are guarded by entityList
+    private final LongObjectMap<Entity> entityIdToEntityMap;
+    private final HashMap<ObjectInstanceHandle, Entity> instanceHandleToEntityMap;
+
+    //  Entities in the order they were added, the tick walks this so that
+    //  publish order is the same from run to run
+    private final List<Entity> entityList;
+    private volatile Entity[] entityArray;
+
+    //  Remote entity data (instances owned by other federates)
+    private ConcurrentHashMap<ObjectClassHandle, EntityDef> classHandleToEntityDefMap;
+    private ConcurrentHashMap<ObjectInstanceHandle, RemoteEntity> instanceHandleToRemoteEntityMap;
+
+    //  Number of completed federate ticks
+    private volatile long tickCount;
+
+    //  Double buffered end of tick snapshots: readers only ever see currentSnapshot,
+    //  the tick thread refills spareSnapshot and swaps the two
+    private volatile StateSnapshot currentSnapshot;
+    private StateSnapshot spareSnapshot;
 
     public FederateHandle getFederateHandle() {
         return federateHandle;
@@ -33,24 +59,235 @@ public class FederateState {
      * Making data thread-safe and encapsulating within the Federate class
      * would also work for the purposes described.
      *
+     * Entities are mutated in place during the tick, so such readers should use
+     * acquireSnapshot (see Federate.setSnapshotsEnabled) rather than reading
+     * entities directly.
+     *
      */
     public FederateState() {
         this.classNameToObjectHandleMap = new ConcurrentHashMap<String, ObjectClassHandle>();
-        this.entityIdToInstanceHandleMap = new ConcurrentHashMap<String, ObjectInstanceHandle>();
-        this.entityIdToInstanceMap = new ConcurrentHashMap<String, Entity>();
+        this.entityIdToEntityMap = new LongObjectMap<>();
+        this.instanceHandleToEntityMap = new HashMap<>();
+        this.entityList = new ArrayList<>();
+        this.entityArray = new Entity[0];
+
+        this.classHandleToEntityDefMap = new ConcurrentHashMap<ObjectClassHandle, EntityDef>();
+        this.instanceHandleToRemoteEntityMap = new ConcurrentHashMap<ObjectInstanceHandle, RemoteEntity>();
     }
 
     public void setFederateHandle(FederateHandle federateHandle) {
         this.federateHandle = federateHandle;
     }
 
+    public long getTickCount() {
+        return this.tickCount;
+    }
+
+    void incrementTickCount() {
+        this.tickCount++;
+    }
+
+    void setTickCount(long tickCount) {
+        this.tickCount = tickCount;
+    }
+
     public void addEntity(Entity entity) {
         assert entity.getInstanceHandle() != null;
-        this.entityIdToInstanceHandleMap.put(entity.getId(), entity.getInstanceHandle());
-        this.entityIdToInstanceMap.put(entity.getId(), entity);
+
+        synchronized(this.entityList) {
+            this.index(entity);
+            this.entityList.add(entity);
+            this.entityArray = null;
+        }
     }
 
+    /**
+     *
+     * Add many registered entities at once, the entity array is rebuilt once
+     * instead of once per entity.
+     *
+     * @param entities
+     */
+    public void addEntities(Collection<? extends Entity> entities) {
+        synchronized(this.entityList) {
+            for(Entity entity : entities) {
+                assert entity.getInstanceHandle() != null;
+                this.index(entity);
+            }
+
+            this.entityList.addAll(entities);
+            this.entityArray = null;
+        }
+    }
+
+    /**
+     *
+     * Stop holding an entity this federate no longer owns, IE: one divested
+     * to another federate.
+     *
+     * @param entity
+     * @return false if the entity was not held
+     */
+    boolean removeEntity(Entity entity) {
+        synchronized(this.entityList) {
+            if(this.entityIdToEntityMap.get(entity.getId()) != entity) {
+                return false;
+            }
+
+            this.entityIdToEntityMap.remove(entity.getId());
+            this.instanceHandleToEntityMap.remove(entity.getInstanceHandle());
+            this.entityList.remove(entity);
+            this.entityArray = null;
+
+            return true;
+        }
+    }
+
+    /**
+     *
+     * Replace all entities with registered ones, IE: those of a restored
+     * checkpoint.
+     *
+     * @param entities
+     */
+    void replaceEntities(Collection<? extends Entity> entities) {
+        synchronized(this.entityList) {
+            this.entityIdToEntityMap.clear();
+            this.instanceHandleToEntityMap.clear();
+            this.entityList.clear();
+
+            this.addEntities(entities);
+        }
+    }
+
+    private void index(Entity entity) {
+        Entity previous = this.entityIdToEntityMap.put(entity.getId(), entity);
+        assert previous == null : "Duplicate entity id " + entity.getId();
+
+        this.instanceHandleToEntityMap.put(entity.getInstanceHandle(), entity);
+    }
+
+    /**
+     *
+     * @param id
+     * @return the entity with that id, or null
+     */
+    public Entity getEntity(long id) {
+        synchronized(this.entityList) {
+            return this.entityIdToEntityMap.get(id);
+        }
+    }
+
+    /**
+     *
+     * @param instanceHandle
+     * @return the owned entity registered as instanceHandle, or null
+     */
+    public Entity getEntity(ObjectInstanceHandle instanceHandle) {
+        synchronized(this.entityList) {
+            return this.instanceHandleToEntityMap.get(instanceHandle);
+        }
+    }
+
+    public int getEntityCount() {
+        synchronized(this.entityList) {
+            return this.entityList.size();
+        }
+    }
+
+    /**
+     *
+     * All entities in insertion order.  The array is cached until the next
+     * addEntity, callers must not modify it.
+     *
+     * @return
+     */
+    public Entity[] getEntityArray() {
+        Entity[] entities = this.entityArray;
+
+        if(entities == null) {
+            synchronized(this.entityList) {
+                entities = this.entityList.toArray(new Entity[0]);
+                this.entityArray = entities;
+            }
+        }
+
+        return entities;
+    }
+
+    /**
+     *
+     * All entities in insertion order, a read-only view of getEntityArray
+     *
+     * @return
+     */
     public Collection<Entity> getEntityCollection() {
-        return this.entityIdToInstanceMap.values();
+        return Collections.unmodifiableList(Arrays.asList(this.getEntityArray()));
+    }
+
+    /**
+     *
+     * The snapshot of the last completed tick, lock-free.  The caller must close
+     * it when done, it stays consistent until then.
+     *
+     * @return null if no snapshot was published yet
+     */
+    public StateSnapshot acquireSnapshot() {
+        while(true) {
+            StateSnapshot snapshot = this.currentSnapshot;
+            if(snapshot == null) {
+                return null;
+            }
+
+            //  Only a snapshot that is still current after registering as a reader
+            //  is safe, the tick thread never refills the current snapshot
+            snapshot.readers.incrementAndGet();
+            if(snapshot == this.currentSnapshot) {
+                return snapshot;
+            }
+            snapshot.readers.decrementAndGet();
+        }
+    }
+
+    /**
+     *
+     * Copy the state into the spare snapshot and make it current.  A spare still
+     * held by a reader is left to it and a new one is used instead.  Tick thread only.
+     *
+     */
+    void publishSnapshot() {
+        StateSnapshot snapshot = this.spareSnapshot;
+        if(snapshot == null || snapshot.readers.get() != 0) {
+            snapshot = new StateSnapshot();
+        }
+
+        snapshot.fill(this.tickCount, this.getEntityArray(), this.instanceHandleToRemoteEntityMap.values());
+
+        this.spareSnapshot = this.currentSnapshot;
+        this.currentSnapshot = snapshot;
+    }
+
+    public void addEntityDefinition(EntityDef entityDef) {
+        this.classHandleToEntityDefMap.put(entityDef.getClassHandle(), entityDef);
+    }
+
+    public EntityDef getEntityDefinition(ObjectClassHandle classHandle) {
+        return this.classHandleToEntityDefMap.get(classHandle);
+    }
+
+    public void addRemoteEntity(RemoteEntity remoteEntity) {
+        this.instanceHandleToRemoteEntityMap.put(remoteEntity.getInstanceHandle(), remoteEntity);
+    }
+
+    public RemoteEntity removeRemoteEntity(ObjectInstanceHandle instanceHandle) {
+        return this.instanceHandleToRemoteEntityMap.remove(instanceHandle);
+    }
+
+    public RemoteEntity getRemoteEntity(ObjectInstanceHandle instanceHandle) {
+        return this.instanceHandleToRemoteEntityMap.get(instanceHandle);
+    }
+
+    public Collection<RemoteEntity> getRemoteEntityCollection() {
+        return this.instanceHandleToRemoteEntityMap.values();
     }
 }
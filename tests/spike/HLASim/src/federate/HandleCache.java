@@ -0,0 +1,331 @@
+package federate;
+
+import hla.rti1516e.AttributeHandle;
+import hla.rti1516e.AttributeHandleFactory;
+import hla.rti1516e.ObjectClassHandle;
+import hla.rti1516e.ObjectClassHandleFactory;
+import hla.rti1516e.RTIambassador;
+import model.EntityDef;
+import util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ *
+ * Resolves the class and attribute handles of all entity definitions at once
+ * and keeps them in a file so the next start does not ask the RTI again.
+ *
+ * The file is keyed by a hash of the FDD and the RTI's HLA version, handles
+ * are stored with the handles' own encoding and read back through the RTI's
+ * handle factories.  A hit is validated with one class and one attribute
+ * lookup before it is used, a stale file is thrown away and rewritten.
+ * Classes missing from the file are resolved concurrently, one task per
+ * definition.
+ *
+ * Only valid for RTIs that hand out the same handles for the same FDD on
+ * every run (vendor RTIs do, the loopback RTI does not).
+ *
+ */
+public class HandleCache {
+
+    private static final Log LOG = Log.getLog(HandleCache.class);
+
+    //  Most concurrent lookups on a cache miss
+    private static final int RESOLVE_PARALLELISM = 8;
+
+    private final RTIambassador rtiAmbassador;
+    private final File cacheFile;
+
+    /**
+     *
+     * @param rtiAmbassador joined to the federation execution
+     * @param fddPath the FDD the federation was created with
+     * @param directory where cache files are kept
+     */
+    public HandleCache(RTIambassador rtiAmbassador, URL fddPath, File directory) throws Exception {
+        this.rtiAmbassador = rtiAmbassador;
+        this.cacheFile = new File(directory, getKey(fddPath, rtiAmbassador.getHLAversion()) + ".handles");
+    }
+
+    /**
+     *
+     * Set the handles of every definition, from the cache where possible
+     *
+     * @param entityDefinitions
+     * @return false if a handle could not be resolved
+     */
+    public boolean resolve(List<EntityDef> entityDefinitions) {
+        long start = System.nanoTime();
+        Properties cached = this.load();
+
+        Map<EntityDef, Handles> resolved = new LinkedHashMap<>();
+        List<EntityDef> misses = new ArrayList<>();
+
+        for(EntityDef entityDef : entityDefinitions) {
+            Handles handles = this.decode(cached, entityDef);
+
+            if(handles != null) {
+                resolved.put(entityDef, handles);
+            } else {
+                misses.add(entityDef);
+            }
+        }
+
+        if(!resolved.isEmpty() && !this.validate(resolved.entrySet().iterator().next())) {
+            LOG.warning("Stale handle cache " + this.cacheFile + ", resolving all handles");
+
+            cached.clear();
+            misses = new ArrayList<>(entityDefinitions);
+            resolved.clear();
+        }
+
+        try {
+            resolved.putAll(this.lookup(misses));
+
+            for(Map.Entry<EntityDef, Handles> entry : resolved.entrySet()) {
+                entry.getKey().setHandles(entry.getValue().classHandle, entry.getValue().attributeHandles);
+            }
+        } catch(Exception e) {
+            LOG.error("Could not resolve handles : " + e, e);
+            return false;
+        }
+
+        if(!misses.isEmpty()) {
+            for(EntityDef entityDef : misses) {
+                this.encode(cached, entityDef, resolved.get(entityDef));
+            }
+            this.store(cached);
+        }
+
+        LOG.info("Resolved handles of " + entityDefinitions.size() + " classes (" + misses.size()
+                 + " from the RTI) in " + (System.nanoTime() - start) / 1000 + "us");
+        return true;
+    }
+
+    /**
+     *
+     * Look up the handles of the definitions concurrently, one task per definition
+     *
+     */
+    private Map<EntityDef, Handles> lookup(List<EntityDef> entityDefinitions) throws Exception {
+        Map<EntityDef, Handles> resolved = new LinkedHashMap<>();
+        if(entityDefinitions.isEmpty()) {
+            return resolved;
+        }
+
+        List<Callable<Handles>> tasks = new ArrayList<>();
+        for(EntityDef entityDef : entityDefinitions) {
+            tasks.add(() -> this.lookup(entityDef));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(RESOLVE_PARALLELISM, tasks.size()));
+        try {
+            List<Future<Handles>> results = executor.invokeAll(tasks);
+
+            for(int i = 0; i < results.size(); i++) {
+                resolved.put(entityDefinitions.get(i), results.get(i).get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        return resolved;
+    }
+
+    private Handles lookup(EntityDef entityDef) throws Exception {
+        String[] attributeNames = entityDef.getAttributeNames();
+        ObjectClassHandle classHandle = this.rtiAmbassador.getObjectClassHandle(entityDef.getClassName());
+        AttributeHandle[] attributeHandles = new AttributeHandle[attributeNames.length];
+
+        for(int slot = 0; slot < attributeNames.length; slot++) {
+            attributeHandles[slot] = this.rtiAmbassador.getAttributeHandle(classHandle, attributeNames[slot]);
+        }
+
+        return new Handles(classHandle, attributeHandles);
+    }
+
+    /**
+     *
+     * Compare one cached definition against the RTI, handles are assigned for
+     * the whole FDD at once so one matching class and attribute stand for all
+     *
+     */
+    private boolean validate(Map.Entry<EntityDef, Handles> sample) {
+        try {
+            EntityDef entityDef = sample.getKey();
+            Handles handles = sample.getValue();
+            ObjectClassHandle classHandle = this.rtiAmbassador.getObjectClassHandle(entityDef.getClassName());
+
+            if(!classHandle.equals(handles.classHandle)) {
+                return false;
+            }
+
+            int last = handles.attributeHandles.length - 1;
+            return last < 0 || this.rtiAmbassador.getAttributeHandle(classHandle, entityDef.getAttributeNames()[last])
+                                                 .equals(handles.attributeHandles[last]);
+        } catch(Exception e) {
+            return false;
+        }
+    }
+
+    /*
+     * File format, one property per handle: className and className.attributeName
+     * mapped to the base64 of the encoded handle
+     */
+
+    private Handles decode(Properties cached, EntityDef entityDef) {
+        String className = entityDef.getClassName();
+        String encodedClass = cached.getProperty(className);
+        if(encodedClass == null) {
+            return null;
+        }
+
+        try {
+            ObjectClassHandleFactory classFactory = this.rtiAmbassador.getObjectClassHandleFactory();
+            AttributeHandleFactory attributeFactory = this.rtiAmbassador.getAttributeHandleFactory();
+            String[] attributeNames = entityDef.getAttributeNames();
+            AttributeHandle[] attributeHandles = new AttributeHandle[attributeNames.length];
+
+            for(int slot = 0; slot < attributeNames.length; slot++) {
+                String encodedAttribute = cached.getProperty(className + "." + attributeNames[slot]);
+                if(encodedAttribute == null) {
+                    return null;
+                }
+
+                attributeHandles[slot] = attributeFactory.decode(Base64.getDecoder().decode(encodedAttribute), 0);
+            }
+
+            return new Handles(classFactory.decode(Base64.getDecoder().decode(encodedClass), 0), attributeHandles);
+        } catch(Exception e) {
+            LOG.debug("Could not decode cached handles of " + className + " : " + e);
+            return null;
+        }
+    }
+
+    private void encode(Properties cached, EntityDef entityDef, Handles handles) {
+        String className = entityDef.getClassName();
+        String[] attributeNames = entityDef.getAttributeNames();
+
+        cached.setProperty(className, encode(handles.classHandle));
+        for(int slot = 0; slot < attributeNames.length; slot++) {
+            cached.setProperty(className + "." + attributeNames[slot], encode(handles.attributeHandles[slot]));
+        }
+    }
+
+    private static String encode(ObjectClassHandle handle) {
+        byte[] buffer = new byte[handle.encodedLength()];
+        handle.encode(buffer, 0);
+        return Base64.getEncoder().encodeToString(buffer);
+    }
+
+    private static String encode(AttributeHandle handle) {
+        byte[] buffer = new byte[handle.encodedLength()];
+        handle.encode(buffer, 0);
+        return Base64.getEncoder().encodeToString(buffer);
+    }
+
+    private Properties load() {
+        Properties cached = new Properties();
+        if(!this.cacheFile.isFile()) {
+            return cached;
+        }
+
+        try(InputStream in = new FileInputStream(this.cacheFile)) {
+            cached.load(in);
+        } catch(Exception e) {
+            LOG.warning("Could not read handle cache " + this.cacheFile + " : " + e);
+            cached.clear();
+        }
+
+        return cached;
+    }
+
+    /**
+     *
+     * Write to a temporary file and rename it over the cache, so concurrent
+     * federates never read a half written file
+     *
+     */
+    private void store(Properties cached) {
+        File directory = this.cacheFile.getParentFile();
+        File temporary = null;
+
+        try {
+            if(directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+                throw new IllegalStateException("Could not create " + directory);
+            }
+
+            temporary = File.createTempFile(this.cacheFile.getName(), ".tmp", directory);
+            try(OutputStream out = new FileOutputStream(temporary)) {
+                cached.store(out, "HLASim handle cache");
+            }
+
+            if(!temporary.renameTo(this.cacheFile)) {
+                this.cacheFile.delete();
+
+                if(!temporary.renameTo(this.cacheFile)) {
+                    throw new IllegalStateException("Could not rename " + temporary);
+                }
+            }
+        } catch(Exception e) {
+            LOG.warning("Could not write handle cache " + this.cacheFile + " : " + e);
+
+            if(temporary != null) {
+                temporary.delete();
+            }
+        }
+    }
+
+    /**
+     *
+     * SHA-256 of the FDD contents and the HLA version, in hex
+     *
+     */
+    private static String getKey(URL fddPath, String hlaVersion) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+        try(InputStream in = fddPath.openStream()) {
+            byte[] buffer = new byte[8192];
+
+            for(int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        digest.update(String.valueOf(hlaVersion).getBytes(StandardCharsets.UTF_8));
+
+        StringBuilder key = new StringBuilder();
+        for(byte b : digest.digest()) {
+            key.append(String.format("%02x", b));
+        }
+
+        return key.toString();
+    }
+
+    private static final class Handles {
+
+        final ObjectClassHandle classHandle;
+        final AttributeHandle[] attributeHandles;
+
+        Handles(ObjectClassHandle classHandle, AttributeHandle[] attributeHandles) {
+            this.classHandle = classHandle;
+            this.attributeHandles = attributeHandles;
+        }
+    }
+}
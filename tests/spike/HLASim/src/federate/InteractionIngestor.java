@@ -0,0 +1,136 @@
+package federate;
+
+import hla.rti1516e.InteractionClassHandle;
+import hla.rti1516e.ParameterHandle;
+import hla.rti1516e.ParameterHandleValueMap;
+import model.Interaction;
+import model.InteractionDef;
+import util.BoundedRingQueue;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ *
+ * Queue of received interactions between the RTI callback thread and the
+ * threads handling them.
+ *
+ * Producer side (onReceive, called by SimFederateAmbassador on the RTI's
+ * thread) copies the parameters into an Interaction of the class's
+ * InteractionDef and offers it to a bounded lock-free queue, dropping and
+ * counting it when the queue is full.  Interactions of classes without a
+ * definition, and parameters not in the definition, are ignored.
+ *
+ * Consumer side (poll, drain) can be called from any thread, IE: a command
+ * handler thread that does not wait for the next tick.
+ *
+ */
+public class InteractionIngestor {
+
+    private final BoundedRingQueue<Interaction> queue;
+    private final ConcurrentHashMap<InteractionClassHandle, InteractionDef> classHandleToDefMap;
+
+    private final AtomicLong received, dropped, ignored, processed;
+
+    public InteractionIngestor(int capacity) {
+        this.queue = new BoundedRingQueue<>(capacity);
+        this.classHandleToDefMap = new ConcurrentHashMap<>();
+
+        this.received = new AtomicLong();
+        this.dropped = new AtomicLong();
+        this.ignored = new AtomicLong();
+        this.processed = new AtomicLong();
+    }
+
+    /**
+     *
+     * Receive interactions of interactionDef's class, once its handles are initialized
+     *
+     * @param interactionDef
+     */
+    void addInteractionDefinition(InteractionDef interactionDef) {
+        this.classHandleToDefMap.put(interactionDef.getClassHandle(), interactionDef);
+    }
+
+    /*
+     * Producer side, RTI callback thread
+     */
+
+    /**
+     *
+     * Copy the parameter values out of the RTI owned map, the RTI is free to
+     * reuse the map and its arrays once the callback returns.
+     *
+     * @param classHandle
+     * @param parameters
+     * @param tag
+     */
+    public void onReceive(InteractionClassHandle classHandle, ParameterHandleValueMap parameters, byte[] tag) {
+        this.received.incrementAndGet();
+
+        InteractionDef def = this.classHandleToDefMap.get(classHandle);
+        if(def == null) {
+            this.ignored.incrementAndGet();
+            return;
+        }
+
+        Interaction interaction = def.newInteraction();
+        for(Map.Entry<ParameterHandle, byte[]> entry : parameters.entrySet()) {
+            int slot = def.getSlot(entry.getKey());
+
+            if(slot >= 0) {
+                interaction.setBytes(slot, entry.getValue().clone());
+            }
+        }
+
+        if(tag != null && tag.length > 0) {
+            interaction.setTag(tag.clone());
+        }
+
+        if(!this.queue.offer(interaction)) {
+            this.dropped.incrementAndGet();
+        }
+    }
+
+    /*
+     * Consumer side, any thread
+     */
+
+    /**
+     *
+     * @return the oldest received interaction, null if there is none
+     */
+    public Interaction poll() {
+        Interaction interaction = this.queue.poll();
+
+        if(interaction != null) {
+            this.processed.incrementAndGet();
+        }
+
+        return interaction;
+    }
+
+    /**
+     *
+     * Hand up to maxBatch received interactions to handler, in the order they
+     * were received.
+     *
+     * @param handler
+     * @param maxBatch
+     * @return number of interactions handled
+     */
+    public int drain(Consumer<? super Interaction> handler, int maxBatch) {
+        int count = this.queue.drainTo(handler, maxBatch);
+
+        this.processed.addAndGet(count);
+        return count;
+    }
+
+    public long getReceivedCount() { return this.received.get(); }
+    public long getDroppedCount() { return this.dropped.get(); }
+    public long getIgnoredCount() { return this.ignored.get(); }
+    public long getProcessedCount() { return this.processed.get(); }
+    public int getBacklog() { return this.queue.size(); }
+}
@@ -0,0 +1,57 @@
+package federate;
+
+import java.util.Set;
+
+/**
+ *
+ * One outstanding reserveMultipleObjectInstanceName, completed by
+ * SimFederateAmbassador on the RTI's thread.
+ *
+ */
+class NameReservation {
+
+    private final Set<String> names;
+
+    //  Guarded by this, null until the RTI answered
+    private Boolean succeeded;
+
+    NameReservation(Set<String> names) {
+        this.names = names;
+    }
+
+    Set<String> getNames() {
+        return this.names;
+    }
+
+    /**
+     *
+     * @param timeoutMillis
+     * @return whether the names were reserved, false on timeout
+     */
+    synchronized boolean await(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+
+        while(this.succeeded == null) {
+            long remaining = deadline - System.currentTimeMillis();
+            if(remaining <= 0) {
+                return false;
+            }
+
+            this.wait(remaining);
+        }
+
+        return this.succeeded;
+    }
+
+    /**
+     *
+     * @param names the names of the callback, ignored unless they are this reservation's
+     * @param succeeded
+     */
+    synchronized void complete(Set<String> names, boolean succeeded) {
+        if(this.names.equals(names)) {
+            this.succeeded = succeeded;
+            this.notifyAll();
+        }
+    }
+}
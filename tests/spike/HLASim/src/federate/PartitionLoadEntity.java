@@ -0,0 +1,61 @@
+package federate;
+
+import model.Entity;
+import model.EntityDef;
+
+/**
+ *
+ * This federate's instance of the PartitionLoad object class: its name, the
+ * partitions it owns, how many partitioned entities it owns and its last
+ * partition handoff, see PartitionManager.
+ *
+ */
+class PartitionLoadEntity extends Entity {
+
+    //  Only changed values are sent, federates that join later get everything with the next heartbeat
+    static final long HEARTBEAT_TICKS = 50;
+
+    //  Out of the range of Federate.newEntityId, so entities restored next to it never share its id
+    static final long ID = Long.MAX_VALUE;
+
+    private final PartitionManager partitionManager;
+    private final String federateName;
+
+    private final int federateNameSlot, entityCountSlot, partitionsSlot, handoffSlot;
+    private long ticks;
+
+    PartitionLoadEntity(EntityDef entityDef, Federate federate, PartitionManager partitionManager) {
+        super(entityDef, federate, ID);
+
+        this.partitionManager = partitionManager;
+        this.federateName = federate.getFederateName();
+
+        this.federateNameSlot = entityDef.getSlot(PartitionManager.FEDERATE_NAME);
+        this.entityCountSlot = entityDef.getSlot(PartitionManager.ENTITY_COUNT);
+        this.partitionsSlot = entityDef.getSlot(PartitionManager.PARTITIONS);
+        this.handoffSlot = entityDef.getSlot(PartitionManager.HANDOFF);
+    }
+
+    @Override
+    public void tick() {
+        this.updateAttributes();
+
+        if(++this.ticks % HEARTBEAT_TICKS == 0) {
+            this.markAllAttributesDirty();
+        }
+    }
+
+    /**
+     *
+     * Unchanged values are not resent, so this only costs an update when the
+     * load or the partitions change
+     *
+     */
+    @Override
+    public void updateAttributes() {
+        this.updateAttribute(this.federateNameSlot, this.federateName);
+        this.setInt(this.entityCountSlot, this.partitionManager.getOwnedCount());
+        this.updateAttribute(this.partitionsSlot, this.partitionManager.getPartitionList());
+        this.updateAttribute(this.handoffSlot, this.partitionManager.getHandoff());
+    }
+}
@@ -0,0 +1,887 @@
+package federate;
+
+import hla.rti1516e.AttributeHandleSet;
+import hla.rti1516e.ObjectClassHandle;
+import hla.rti1516e.ObjectInstanceHandle;
+import hla.rti1516e.RTIambassador;
+import metrics.FederateMetrics;
+import model.Entity;
+import model.EntityDef;
+import model.RemoteEntity;
+import util.Log;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ *
+ * Splits a simulation across federates: every federate owns the entities of
+ * the partitions assigned to it (see Partitioner), an entity that moves into
+ * another federate's partition changes owner through HLA ownership management.
+ *
+ * Once per tick, after reflections are ingested, every owned entity outside
+ * this federate's partitions is offered with a negotiated divestiture, and the
+ * offer is cancelled if it comes back.  The federate owning the entity's
+ * partition acquires it when asked to assume it.  Offers made before a
+ * federate discovered the instance or owned its partition reach nobody, so
+ * remote entities are also pulled with attributeOwnershipAcquisition when a
+ * partition is gained and every RESCAN_TICKS.  An owner asked to release an
+ * entity of one of its own partitions denies it, otherwise it offers it.
+ *
+ * The owner confirms the divestiture with the entity's encoded attribute
+ * values as the tag, the acquirer rebuilds the entity from them like a
+ * checkpoint restore (EntityDef.restoreEntity, Entity.onRestored) and carries
+ * on from exactly that state, held back dead reckoned positions included.  The
+ * previous owner keeps the instance as a RemoteEntity.  Partitioned classes
+ * must therefore be restorable (EntityDef.canRestore), the entities of other
+ * classes are never offered nor acquired, whatever the Partitioner says.
+ *
+ * Rebalancing: every federate publishes a PartitionLoad instance with its
+ * partitions and the number of partitioned entities it owns.  Every
+ * rebalanceTicks a federate owning more than overloadFactor times the mean
+ * hands the partition that best evens out the pair to the least loaded
+ * federate by publishing the handoff "sequence,partition,federateName".  Only
+ * peers whose load was reflected within LOAD_EXPIRY_TICKS are considered.
+ * The receiver starts owning the partition when it reflects a handoff
+ * sequence it has not seen from that federate yet, and the sender stops
+ * owning it, so its entities are offered, once the receiver's Partitions list
+ * it.  A handoff not taken within HANDOFF_TIMEOUT_TICKS (IE: the receiver
+ * resigned) is withdrawn and the sender keeps the partition.  The next
+ * handoff waits COOLDOWN_INTERVALS intervals for the loads to settle.
+ *
+ * The on* methods are called by SimFederateAmbassador on the RTI's thread and
+ * only queue, everything else runs on the tick thread.
+ *
+ */
+public class PartitionManager {
+
+    private static final Log LOG = Log.getLog(PartitionManager.class);
+
+    public static final String LOAD_CLASS_NAME = "PartitionLoad";
+
+    //  Attributes of the PartitionLoad class
+    static final String FEDERATE_NAME = "FederateName";
+    static final String ENTITY_COUNT = "EntityCount";
+    static final String PARTITIONS = "Partitions";
+    static final String HANDOFF = "Handoff";
+
+    private static final String PRIVILEGE_TO_DELETE = "HLAprivilegeToDeleteObject";
+
+    private static final long RESCAN_TICKS = 50;
+    private static final int COOLDOWN_INTERVALS = 3;
+
+    //  Peers whose load was not reflected for longer, several heartbeats, are left out of rebalancing
+    private static final long LOAD_EXPIRY_TICKS = 3 * PartitionLoadEntity.HEARTBEAT_TICKS;
+    private static final long HANDOFF_TIMEOUT_TICKS = 2 * PartitionLoadEntity.HEARTBEAT_TICKS;
+
+    private static final byte[] NO_TAG = new byte[0];
+
+    private enum EventKind {
+        ASSUME,
+        RELEASE,
+        CONFIRM,
+        ACQUIRED,
+        UNAVAILABLE
+    }
+
+    private static final class OwnershipEvent {
+
+        final EventKind kind;
+        final ObjectInstanceHandle instanceHandle;
+        final byte[] tag;
+
+        OwnershipEvent(EventKind kind, ObjectInstanceHandle instanceHandle, byte[] tag) {
+            this.kind = kind;
+            this.instanceHandle = instanceHandle;
+            this.tag = tag;
+        }
+    }
+
+    private final Federate federate;
+    private final Partitioner partitioner;
+
+    //  Partitions owned by this federate, and their published comma separated list (null when changed)
+    private final BitSet partitions;
+    private String partitionList;
+
+    //  Ownership callbacks, queued by the RTI's thread
+    private final ConcurrentLinkedQueue<OwnershipEvent> events;
+
+    private FederateState federateState;
+    private RTIambassador rtiAmbassador;
+    private FederateMetrics metrics;
+
+    //  Attributes transferred per class, all of the class's and the privilege to delete
+    private final IdentityHashMap<EntityDef, AttributeHandleSet> transferSets;
+
+    //  Owned instances offered since they left the partitions, remote ones being acquired
+    private final Set<ObjectInstanceHandle> offered, acquiring;
+    private boolean rescanDue;
+
+    //  Partitioned entities owned at the last tick
+    private int ownedCount;
+    private long acquiredCount, divestedCount;
+
+    //  Rebalancing, off while rebalanceTicks is 0 or the FOM has no PartitionLoad class
+    private long rebalanceTicks;
+    private double overloadFactor;
+    private long cooldownUntilTick;
+    private long handoffSequence;
+    private String handoff;
+    private final HashMap<String, Long> handoffsSeen;
+
+    //  Partition handed off and still owned until handoffTarget lists it, -1 when none
+    private int handoffPartition;
+    private String handoffTarget;
+    private long handoffDeadline;
+
+    private EntityDef loadDefinition;
+    private PartitionLoadEntity loadEntity;
+    private int federateNameSlot, entityCountSlot, partitionsSlot, handoffSlot;
+    private final List<RemoteEntity> peerLoads;
+
+    /**
+     *
+     * @param federate
+     * @param partitioner
+     * @param partitions the partitions this federate starts out owning
+     */
+    public PartitionManager(Federate federate, Partitioner partitioner, Collection<Integer> partitions) {
+        this.federate = federate;
+        this.partitioner = partitioner;
+        this.partitions = new BitSet();
+        for(int partition : partitions) {
+            assert partition >= 0;
+            this.partitions.set(partition);
+        }
+
+        this.events = new ConcurrentLinkedQueue<>();
+        this.transferSets = new IdentityHashMap<>();
+        this.offered = new HashSet<>();
+        this.acquiring = new HashSet<>();
+        this.rescanDue = true;
+
+        this.handoff = "";
+        this.handoffsSeen = new HashMap<>();
+        this.handoffPartition = -1;
+        this.peerLoads = new ArrayList<>();
+    }
+
+    /**
+     *
+     * Move partitions away from this federate while it owns more than
+     * overloadFactor times the mean number of partitioned entities.
+     *
+     * @param intervalTicks how often to check, 0 turns rebalancing off
+     * @param overloadFactor at least 1
+     */
+    public void setRebalancing(long intervalTicks, double overloadFactor) {
+        assert intervalTicks >= 0 && overloadFactor >= 1;
+
+        this.rebalanceTicks = intervalTicks;
+        this.overloadFactor = overloadFactor;
+    }
+
+    /**
+     *
+     * Called by the federate once its entity definitions are initialized,
+     * registers the PartitionLoad instance when the FOM has the class
+     *
+     * @param loadDefinition definition of the PartitionLoad class, or null
+     */
+    void start(FederateState federateState, RTIambassador rtiAmbassador, FederateMetrics metrics,
+               EntityDef loadDefinition) {
+        this.federateState = federateState;
+        this.rtiAmbassador = rtiAmbassador;
+        this.metrics = metrics;
+
+        if(loadDefinition == null) {
+            LOG.warning("No " + LOAD_CLASS_NAME + " object class, partitions will not be rebalanced");
+            return;
+        }
+
+        this.loadDefinition = loadDefinition;
+        this.federateNameSlot = loadDefinition.getSlot(FEDERATE_NAME);
+        this.entityCountSlot = loadDefinition.getSlot(ENTITY_COUNT);
+        this.partitionsSlot = loadDefinition.getSlot(PARTITIONS);
+        this.handoffSlot = loadDefinition.getSlot(HANDOFF);
+
+        this.loadEntity = new PartitionLoadEntity(loadDefinition, this.federate, this);
+        this.federate.addEntity(this.loadEntity);
+        LOG.success("Partitioning started, partitions " + this.getPartitionList());
+    }
+
+    /**
+     *
+     * Called by the Checkpointer once entities were restored.  Checkpoints
+     * leave out the PartitionLoad instance, so it is held again if the restore
+     * replaced it (it was registered before any save, the RTI restores it
+     * along with the others) and published in full.  Ownership transfers under
+     * way are forgotten, the remote entities are pulled again on the next tick.
+     *
+     */
+    void onRestored() {
+        this.offered.clear();
+        this.acquiring.clear();
+        this.events.clear();
+        this.rescanDue = true;
+
+        if(this.loadEntity != null) {
+            if(this.federateState.getEntity(this.loadEntity.getId()) != this.loadEntity) {
+                this.federateState.addEntity(this.loadEntity);
+            }
+            this.loadEntity.markAllAttributesDirty();
+        }
+    }
+
+    /*
+     * RTI thread
+     */
+
+    void onRequestAssumption(ObjectInstanceHandle instanceHandle) {
+        this.events.add(new OwnershipEvent(EventKind.ASSUME, instanceHandle, null));
+    }
+
+    void onRequestRelease(ObjectInstanceHandle instanceHandle) {
+        this.events.add(new OwnershipEvent(EventKind.RELEASE, instanceHandle, null));
+    }
+
+    void onRequestDivestitureConfirmation(ObjectInstanceHandle instanceHandle) {
+        this.events.add(new OwnershipEvent(EventKind.CONFIRM, instanceHandle, null));
+    }
+
+    void onAcquisitionNotification(ObjectInstanceHandle instanceHandle, byte[] tag) {
+        this.events.add(new OwnershipEvent(EventKind.ACQUIRED, instanceHandle, tag));
+    }
+
+    void onOwnershipUnavailable(ObjectInstanceHandle instanceHandle) {
+        this.events.add(new OwnershipEvent(EventKind.UNAVAILABLE, instanceHandle, null));
+    }
+
+    /*
+     * Tick thread
+     */
+
+    public boolean ownsPartition(int partition) {
+        return partition >= 0 && this.partitions.get(partition);
+    }
+
+    /**
+     *
+     * Start owning a partition, its remote entities are acquired on the next tick
+     *
+     * @param partition
+     */
+    public void assignPartition(int partition) {
+        assert partition >= 0;
+
+        if(!this.partitions.get(partition)) {
+            this.partitions.set(partition);
+            this.partitionList = null;
+            this.rescanDue = true;
+        }
+    }
+
+    /**
+     *
+     * Stop owning a partition, its entities are offered on the next tick
+     *
+     * @param partition
+     */
+    public void releasePartition(int partition) {
+        if(this.ownsPartition(partition)) {
+            this.partitions.clear(partition);
+            this.partitionList = null;
+        }
+    }
+
+    /**
+     *
+     * @return the owned partitions, comma separated in ascending order
+     */
+    public String getPartitionList() {
+        String partitionList = this.partitionList;
+
+        if(partitionList == null) {
+            StringBuilder list = new StringBuilder();
+            for(int partition = this.partitions.nextSetBit(0); partition >= 0;
+                    partition = this.partitions.nextSetBit(partition + 1)) {
+                list.append(list.length() == 0 ? "" : ",").append(partition);
+            }
+
+            partitionList = list.toString();
+            this.partitionList = partitionList;
+        }
+
+        return partitionList;
+    }
+
+    /**
+     *
+     * @return the last handoff published, "" before the first and once withdrawn
+     */
+    public String getHandoff() {
+        return this.handoff;
+    }
+
+    public int getOwnedCount() {
+        return this.ownedCount;
+    }
+
+    public long getAcquiredCount() {
+        return this.acquiredCount;
+    }
+
+    public long getDivestedCount() {
+        return this.divestedCount;
+    }
+
+    /**
+     *
+     * Called by the federate every tick after the reflections are ingested and
+     * before the entities are ticked
+     *
+     */
+    void tick() {
+        long tick = this.federateState.getTickCount();
+
+        for(OwnershipEvent event = this.events.poll(); event != null; event = this.events.poll()) {
+            this.handle(event, tick);
+        }
+
+        this.receiveHandoffs();
+        if(this.handoffPartition >= 0) {
+            this.completeHandoff(tick);
+        }
+        this.offerEntities();
+
+        if(this.rescanDue || tick % RESCAN_TICKS == 0) {
+            this.pullEntities();
+        }
+
+        if(this.rebalanceTicks > 0 && tick % this.rebalanceTicks == 0 && tick >= this.cooldownUntilTick
+                && this.handoffPartition < 0) {
+            this.rebalance(tick);
+        }
+    }
+
+    private void handle(OwnershipEvent event, long tick) {
+        ObjectInstanceHandle instanceHandle = event.instanceHandle;
+
+        switch(event.kind) {
+            case ASSUME: {
+                RemoteEntity remoteEntity = this.federateState.getRemoteEntity(instanceHandle);
+                if(remoteEntity != null) {
+                    this.acquireIfOwned(remoteEntity);
+                }
+                break;
+            }
+            case RELEASE: {
+                Entity entity = this.federateState.getEntity(instanceHandle);
+                if(entity == null || this.offered.contains(instanceHandle)) {
+                    break;
+                }
+
+                if(this.ownsPartition(this.getPartition(entity))) {
+                    this.denyRelease(entity);
+                } else {
+                    //  The acquirer is pending, the offer is confirmed right back
+                    this.offer(entity);
+                }
+                break;
+            }
+            case CONFIRM: {
+                Entity entity = this.federateState.getEntity(instanceHandle);
+
+                //  Not offered any more when the entity came back before the request arrived
+                if(entity != null && this.offered.contains(instanceHandle)) {
+                    this.divest(entity, tick);
+                }
+                break;
+            }
+            case ACQUIRED:
+                this.acquiring.remove(instanceHandle);
+                this.adopt(instanceHandle, event.tag, tick);
+                break;
+            case UNAVAILABLE:
+                this.acquiring.remove(instanceHandle);
+                break;
+        }
+    }
+
+    //  An acquirer could not rebuild an entity of a class that cannot be restored
+    //  (PartitionLoad included), so those are left with their owner
+    private int getPartition(Entity entity) {
+        return !entity.getEntityDefinition().canRestore()
+                ? Partitioner.UNPARTITIONED : this.partitioner.getPartition(entity);
+    }
+
+    private int getPartition(RemoteEntity remoteEntity) {
+        return !remoteEntity.getEntityDefinition().canRestore()
+                ? Partitioner.UNPARTITIONED
+                : this.partitioner.getPartition(remoteEntity, this.federateState.getTickCount());
+    }
+
+    /**
+     *
+     * Offer owned entities outside the partitions, take back offers of those
+     * that returned, and count the partitioned entities
+     *
+     */
+    private void offerEntities() {
+        int owned = 0;
+
+        for(Entity entity : this.federateState.getEntityArray()) {
+            int partition = this.getPartition(entity);
+            if(partition == Partitioner.UNPARTITIONED) {
+                continue;
+            }
+
+            owned++;
+            boolean offered = this.offered.contains(entity.getInstanceHandle());
+            boolean inside = this.partitions.get(partition);
+
+            if(!inside && !offered) {
+                this.offer(entity);
+            } else if(inside && offered) {
+                this.cancelOffer(entity);
+            }
+        }
+
+        this.ownedCount = owned;
+    }
+
+    /**
+     *
+     * Acquire remote entities of the owned partitions, and drop acquisitions of
+     * those that left them or were removed
+     *
+     */
+    private void pullEntities() {
+        this.rescanDue = false;
+        this.peerLoads.clear();
+
+        for(RemoteEntity remoteEntity : this.federateState.getRemoteEntityCollection()) {
+            if(remoteEntity.getEntityDefinition() == this.loadDefinition) {
+                this.peerLoads.add(remoteEntity);
+            } else {
+                this.acquireIfOwned(remoteEntity);
+            }
+        }
+
+        for(Iterator<ObjectInstanceHandle> i = this.acquiring.iterator(); i.hasNext(); ) {
+            ObjectInstanceHandle instanceHandle = i.next();
+            RemoteEntity remoteEntity = this.federateState.getRemoteEntity(instanceHandle);
+
+            if(remoteEntity == null) {
+                i.remove();
+            } else if(!this.ownsPartition(this.getPartition(remoteEntity))) {
+                i.remove();
+
+                try {
+                    this.rtiAmbassador.cancelAttributeOwnershipAcquisition(instanceHandle,
+                            this.getTransferSet(remoteEntity.getEntityDefinition()));
+                } catch(Exception e) {
+                    //  Already acquired, the notification is on its way and the entity is offered again
+                    LOG.debug("Could not cancel acquiring " + remoteEntity + " : " + e);
+                }
+            }
+        }
+    }
+
+    private void acquireIfOwned(RemoteEntity remoteEntity) {
+        ObjectInstanceHandle instanceHandle = remoteEntity.getInstanceHandle();
+
+        if(!this.ownsPartition(this.getPartition(remoteEntity)) || this.acquiring.contains(instanceHandle)) {
+            return;
+        }
+
+        try {
+            this.rtiAmbassador.attributeOwnershipAcquisition(instanceHandle,
+                    this.getTransferSet(remoteEntity.getEntityDefinition()), NO_TAG);
+            this.acquiring.add(instanceHandle);
+        } catch(Exception e) {
+            this.metrics.recordException(e);
+            LOG.warning("Could not acquire " + remoteEntity + " : " + e);
+        }
+    }
+
+    /**
+     *
+     * Offer an entity, an offer that fails is not retried until the entity
+     * has been back inside the partitions
+     *
+     */
+    private void offer(Entity entity) {
+        this.offered.add(entity.getInstanceHandle());
+
+        try {
+            this.rtiAmbassador.negotiatedAttributeOwnershipDivestiture(entity.getInstanceHandle(),
+                    this.getTransferSet(entity.getEntityDefinition()), NO_TAG);
+            LOG.debug("Offered " + entity + " of partition " + this.getPartition(entity));
+        } catch(Exception e) {
+            this.metrics.recordException(e);
+            LOG.warning("Could not offer " + entity + " : " + e);
+        }
+    }
+
+    private void cancelOffer(Entity entity) {
+        this.offered.remove(entity.getInstanceHandle());
+
+        try {
+            this.rtiAmbassador.cancelNegotiatedAttributeOwnershipDivestiture(entity.getInstanceHandle(),
+                    this.getTransferSet(entity.getEntityDefinition()));
+        } catch(Exception e) {
+            LOG.debug("Could not cancel offering " + entity + " : " + e);
+        }
+    }
+
+    private void denyRelease(Entity entity) {
+        try {
+            this.rtiAmbassador.attributeOwnershipReleaseDenied(entity.getInstanceHandle(),
+                    this.getTransferSet(entity.getEntityDefinition()));
+        } catch(Exception e) {
+            this.metrics.recordException(e);
+            LOG.warning("Could not deny release of " + entity + " : " + e);
+        }
+    }
+
+    /**
+     *
+     * Hand an offered entity to its acquirer along with its state, and keep
+     * mirroring it as a remote entity
+     *
+     */
+    private void divest(Entity entity, long tick) {
+        ObjectInstanceHandle instanceHandle = entity.getInstanceHandle();
+        EntityDef entityDef = entity.getEntityDefinition();
+
+        try {
+            this.rtiAmbassador.confirmDivestiture(instanceHandle, this.getTransferSet(entityDef), encodeState(entity));
+        } catch(Exception e) {
+            this.metrics.recordException(e);
+            LOG.warning("Could not divest " + entity + " : " + e);
+            return;
+        }
+
+        this.offered.remove(instanceHandle);
+        this.federateState.removeEntity(entity);
+        this.metrics.recordEntityRemoved(entity.getClassName());
+
+        RemoteEntity remoteEntity = new RemoteEntity(instanceHandle, this.getInstanceName(instanceHandle), entityDef);
+        for(int slot = 0; slot < entityDef.getNumAttributes(); slot++) {
+            byte[] bytes = entity.getAttributeBytes(slot);
+
+            if(bytes.length > 0) {
+                remoteEntity.reflectAttribute(slot, ByteBuffer.wrap(bytes), tick);
+            }
+        }
+        this.federateState.addRemoteEntity(remoteEntity);
+
+        this.divestedCount++;
+        LOG.debug("Divested " + entity + " of partition " + this.getPartition(remoteEntity));
+    }
+
+    /**
+     *
+     * Take over an acquired instance as a new owned entity, from the state in
+     * the tag or, failing that, from the values last reflected
+     *
+     */
+    private void adopt(ObjectInstanceHandle instanceHandle, byte[] tag, long tick) {
+        RemoteEntity remoteEntity = this.federateState.removeRemoteEntity(instanceHandle);
+        EntityDef entityDef = remoteEntity != null ? remoteEntity.getEntityDefinition()
+                                                   : this.getKnownDefinition(instanceHandle);
+
+        Entity entity;
+        try {
+            if(entityDef == null) {
+                throw new IllegalStateException("instance of an unknown class");
+            }
+
+            entity = entityDef.restoreEntity(this.federate.newEntityId());
+            if(!restoreState(entity, tag)) {
+                if(remoteEntity == null) {
+                    throw new IllegalStateException("no state to start from");
+                }
+
+                for(int slot = 0; slot < entityDef.getNumAttributes(); slot++) {
+                    Object value = remoteEntity.getAttributeValue(slot);
+
+                    if(value != null) {
+                        byte[] bytes = entityDef.getAttributeDef(slot).encode(value);
+                        entity.restoreAttribute(slot, ByteBuffer.wrap(bytes), bytes.length);
+                    }
+                }
+            }
+        } catch(Exception e) {
+            this.metrics.recordException(e);
+            LOG.error("Could not take over " + instanceHandle + ", divesting it : " + e, e);
+
+            if(remoteEntity != null) {
+                this.federateState.addRemoteEntity(remoteEntity);
+            }
+            try {
+                this.rtiAmbassador.unconditionalAttributeOwnershipDivestiture(instanceHandle,
+                        this.getTransferSet(entityDef));
+            } catch(Exception divestException) {
+                this.metrics.recordException(divestException);
+                LOG.error("Could not divest " + instanceHandle + " : " + divestException);
+            }
+            return;
+        }
+
+        entity.onRestored();
+        entity.setInstanceHandle(instanceHandle);
+        this.federateState.addEntity(entity);
+        this.metrics.recordEntityAdded(entity.getClassName());
+
+        this.acquiredCount++;
+        LOG.debug("Acquired " + entity + " at tick " + tick);
+    }
+
+    /**
+     *
+     * int slotCount, then per slot int length and the encoded value
+     *
+     */
+    private static byte[] encodeState(Entity entity) {
+        int numAttributes = entity.getEntityDefinition().getNumAttributes();
+
+        int length = 4;
+        for(int slot = 0; slot < numAttributes; slot++) {
+            length += 4 + entity.getAttributeBytes(slot).length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        buffer.putInt(numAttributes);
+        for(int slot = 0; slot < numAttributes; slot++) {
+            byte[] bytes = entity.getAttributeBytes(slot);
+            buffer.putInt(bytes.length).put(bytes);
+        }
+
+        return buffer.array();
+    }
+
+    /**
+     *
+     * @return false if the tag holds no state of the entity's class
+     */
+    private static boolean restoreState(Entity entity, byte[] tag) {
+        int numAttributes = entity.getEntityDefinition().getNumAttributes();
+        if(tag == null || tag.length < 4) {
+            return false;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(tag);
+        if(buffer.getInt() != numAttributes) {
+            return false;
+        }
+
+        for(int slot = 0; slot < numAttributes; slot++) {
+            entity.restoreAttribute(slot, buffer, buffer.getInt());
+        }
+
+        return true;
+    }
+
+    private String getInstanceName(ObjectInstanceHandle instanceHandle) {
+        try {
+            return this.rtiAmbassador.getObjectInstanceName(instanceHandle);
+        } catch(Exception e) {
+            return String.valueOf(instanceHandle);
+        }
+    }
+
+    private EntityDef getKnownDefinition(ObjectInstanceHandle instanceHandle) {
+        try {
+            ObjectClassHandle classHandle = this.rtiAmbassador.getKnownObjectClassHandle(instanceHandle);
+            return this.federateState.getEntityDefinition(classHandle);
+        } catch(Exception e) {
+            return null;
+        }
+    }
+
+    private AttributeHandleSet getTransferSet(EntityDef entityDef) throws Exception {
+        AttributeHandleSet transferSet = this.transferSets.get(entityDef);
+
+        if(transferSet == null) {
+            transferSet = this.rtiAmbassador.getAttributeHandleSetFactory().create();
+            transferSet.addAll(entityDef.getAttributeHandleSet());
+            transferSet.add(this.rtiAmbassador.getAttributeHandle(entityDef.getClassHandle(), PRIVILEGE_TO_DELETE));
+
+            this.transferSets.put(entityDef, transferSet);
+        }
+
+        return transferSet;
+    }
+
+    /*
+     * Rebalancing
+     */
+
+    /**
+     *
+     * Take over the partitions handed to this federate
+     *
+     */
+    private void receiveHandoffs() {
+        for(RemoteEntity peerLoad : this.peerLoads) {
+            String peerName = (String) peerLoad.getAttributeValue(this.federateNameSlot);
+            String peerHandoff = (String) peerLoad.getAttributeValue(this.handoffSlot);
+            if(peerName == null || peerHandoff == null) {
+                continue;
+            }
+
+            String[] fields = peerHandoff.split(",", 3);
+            if(fields.length != 3 || !fields[2].equals(this.federate.getFederateName())) {
+                continue;
+            }
+
+            try {
+                long sequence = Long.parseLong(fields[0]);
+                Long seen = this.handoffsSeen.get(peerName);
+
+                if(seen == null || sequence > seen) {
+                    this.handoffsSeen.put(peerName, sequence);
+                    this.assignPartition(Integer.parseInt(fields[1]));
+
+                    LOG.info("Took over partition " + fields[1] + " from " + peerName);
+                }
+            } catch(NumberFormatException e) {
+                LOG.warning("Malformed handoff " + peerHandoff + " from " + peerName);
+            }
+        }
+    }
+
+    /**
+     *
+     * Stop owning the partition handed off once its receiver lists it, or
+     * withdraw the handoff when the receiver did not take it in time
+     *
+     */
+    private void completeHandoff(long tick) {
+        String partition = Integer.toString(this.handoffPartition);
+
+        for(RemoteEntity peerLoad : this.peerLoads) {
+            String peerPartitions = (String) peerLoad.getAttributeValue(this.partitionsSlot);
+
+            if(this.handoffTarget.equals(peerLoad.getAttributeValue(this.federateNameSlot))
+                    && peerPartitions != null && Arrays.asList(peerPartitions.split(",")).contains(partition)) {
+                this.releasePartition(this.handoffPartition);
+                this.handoffPartition = -1;
+
+                LOG.info("Partition " + partition + " taken over by " + this.handoffTarget);
+                return;
+            }
+        }
+
+        if(tick >= this.handoffDeadline) {
+            //  A receiver reflecting the handoff from here on does not take the partition
+            this.handoff = "";
+            this.handoffPartition = -1;
+
+            LOG.warning("Partition " + partition + " not taken over by " + this.handoffTarget + " within "
+                        + HANDOFF_TIMEOUT_TICKS + " ticks, keeping it");
+        }
+    }
+
+    /**
+     *
+     * @return false if the peer's load left the federation or was not reflected lately (IE: a stalled peer)
+     */
+    private boolean isLive(RemoteEntity peerLoad, long tick) {
+        return this.federateState.getRemoteEntity(peerLoad.getInstanceHandle()) == peerLoad
+                && tick - peerLoad.getLastReflectedTick() <= LOAD_EXPIRY_TICKS;
+    }
+
+    private void rebalance(long tick) {
+        Map<String, Integer> peerCounts = new HashMap<>();
+        for(RemoteEntity peerLoad : this.peerLoads) {
+            if(!this.isLive(peerLoad, tick)) {
+                continue;
+            }
+
+            String peerName = (String) peerLoad.getAttributeValue(this.federateNameSlot);
+            Integer peerCount = (Integer) peerLoad.getAttributeValue(this.entityCountSlot);
+
+            if(peerName != null && peerCount != null) {
+                peerCounts.put(peerName, peerCount);
+            }
+        }
+
+        if(peerCounts.isEmpty() || this.partitions.cardinality() < 2) {
+            return;
+        }
+
+        int total = this.ownedCount;
+        String target = null;
+        int targetCount = Integer.MAX_VALUE;
+        for(Map.Entry<String, Integer> peerCount : peerCounts.entrySet()) {
+            total += peerCount.getValue();
+
+            if(peerCount.getValue() < targetCount
+                    || (peerCount.getValue() == targetCount && peerCount.getKey().compareTo(target) < 0)) {
+                target = peerCount.getKey();
+                targetCount = peerCount.getValue();
+            }
+        }
+
+        double mean = total / (double) (peerCounts.size() + 1);
+        if(this.ownedCount <= this.overloadFactor * mean) {
+            return;
+        }
+
+        HashMap<Integer, int[]> partitionCounts = new HashMap<>();
+        for(Entity entity : this.federateState.getEntityArray()) {
+            int partition = this.getPartition(entity);
+
+            if(this.ownsPartition(partition)) {
+                partitionCounts.computeIfAbsent(partition, p -> new int[1])[0]++;
+            }
+        }
+
+        //  The partition leaving the lower peak of the two loads, only if that is below the current one
+        int best = -1;
+        int bestPeak = this.ownedCount;
+        for(int partition = this.partitions.nextSetBit(0); partition >= 0;
+                partition = this.partitions.nextSetBit(partition + 1)) {
+            int[] count = partitionCounts.get(partition);
+            if(count == null) {
+                continue;
+            }
+
+            int peak = Math.max(this.ownedCount - count[0], targetCount + count[0]);
+            if(peak < bestPeak) {
+                best = partition;
+                bestPeak = peak;
+            }
+        }
+
+        if(best < 0) {
+            return;
+        }
+
+        //  Still owned until target lists it, see completeHandoff
+        this.handoffPartition = best;
+        this.handoffTarget = target;
+        this.handoffDeadline = tick + HANDOFF_TIMEOUT_TICKS;
+        this.handoffSequence++;
+        this.handoff = this.handoffSequence + "," + best + "," + target;
+        this.cooldownUntilTick = tick + COOLDOWN_INTERVALS * this.rebalanceTicks;
+
+        LOG.info("Handing partition " + best + " (" + partitionCounts.get(best)[0] + " entities) to " + target
+                 + ", " + this.ownedCount + " entities owned, mean " + String.format("%.1f", mean));
+    }
+}
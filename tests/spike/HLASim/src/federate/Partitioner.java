@@ -0,0 +1,32 @@
+package federate;
+
+import model.Entity;
+import model.RemoteEntity;
+
+/**
+ *
+ * Assigns entities to partitions, each partition is owned by one federate
+ * (see PartitionManager).  Partitions are numbered from 0.  Called on the
+ * tick thread, once per owned entity every tick, so it must be cheap.
+ *
+ */
+public interface Partitioner {
+
+    //  Not partitioned, the entity stays with whichever federate owns it
+    int UNPARTITIONED = -1;
+
+    /**
+     *
+     * @param entity an owned entity
+     * @return its partition, or UNPARTITIONED
+     */
+    int getPartition(Entity entity);
+
+    /**
+     *
+     * @param remoteEntity an entity owned by another federate
+     * @param tick the federate's current tick, to dead reckon the last reflected values to
+     * @return its partition, or UNPARTITIONED (IE: nothing reflected yet)
+     */
+    int getPartition(RemoteEntity remoteEntity, long tick);
+}
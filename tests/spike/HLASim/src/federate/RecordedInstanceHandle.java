@@ -0,0 +1,56 @@
+package federate;
+
+import hla.rti1516e.ObjectInstanceHandle;
+
+import java.util.Arrays;
+
+/**
+ *
+ * Instance handle of a replayed recording, the encoded handle as recorded.
+ * Only equal to handles recorded with the same bytes, there is no RTI to
+ * decode them with.
+ *
+ */
+final class RecordedInstanceHandle implements ObjectInstanceHandle {
+
+    private static final long serialVersionUID = 1L;
+
+    private final byte[] bytes;
+    private final int hashCode;
+
+    RecordedInstanceHandle(byte[] bytes) {
+        this.bytes = bytes;
+        this.hashCode = Arrays.hashCode(bytes);
+    }
+
+    @Override
+    public int hashCode() {
+        return this.hashCode;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof RecordedInstanceHandle
+               && Arrays.equals(((RecordedInstanceHandle) other).bytes, this.bytes);
+    }
+
+    @Override
+    public int encodedLength() {
+        return this.bytes.length;
+    }
+
+    @Override
+    public void encode(byte[] buffer, int offset) {
+        System.arraycopy(this.bytes, 0, buffer, offset, this.bytes.length);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("RecordedInstanceHandle(");
+        for(byte b : this.bytes) {
+            builder.append(String.format("%02x", b));
+        }
+
+        return builder.append(")").toString();
+    }
+}
@@ -0,0 +1,229 @@
+package federate;
+
+import hla.rti1516e.AttributeHandle;
+import hla.rti1516e.AttributeHandleValueMap;
+import hla.rti1516e.ObjectClassHandle;
+import hla.rti1516e.ObjectInstanceHandle;
+import model.EntityDef;
+import model.RemoteEntity;
+import util.BoundedRingQueue;
+import util.Log;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *
+ * Two sided pipeline between the RTI callback thread and the federate thread.
+ *
+ * Producer side (on*, called by SimFederateAmbassador on the RTI's thread) only
+ * copies the callback arguments and offers them to a bounded lock-free queue.
+ * When the queue is full reflections are dropped and counted, discoveries and
+ * removals apply back-pressure by retrying for a short while before giving up.
+ *
+ * Consumer side (drain, called by the federate thread once per tick) decodes
+ * the queued callbacks in order into the RemoteEntity mirror in FederateState,
+ * and into the UpdateRecorder while the federate records.
+ *
+ */
+public class ReflectionIngestor {
+
+    private static final Log LOG = Log.getLog(ReflectionIngestor.class);
+
+    //  How many times discover/remove retry a full queue before dropping
+    private static final int MAX_OFFER_ATTEMPTS = 10000;
+
+    private final FederateState federateState;
+    private final BoundedRingQueue<ReflectedCallback> queue;
+
+    private final AtomicLong received, dropped;
+    private volatile long processed, orphaned;
+
+    //  Federate thread only, null when not recording
+    private UpdateRecorder recorder;
+
+    public ReflectionIngestor(FederateState federateState, int capacity) {
+        this.federateState = federateState;
+        this.queue = new BoundedRingQueue<>(capacity);
+
+        this.received = new AtomicLong();
+        this.dropped = new AtomicLong();
+    }
+
+    void setRecorder(UpdateRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    /*
+     * Producer side, RTI callback thread
+     */
+
+    public void onDiscover(ObjectInstanceHandle instanceHandle, ObjectClassHandle classHandle, String name) {
+        this.offerWithBackPressure(new ReflectedCallback(
+                ReflectedCallback.Kind.DISCOVER, instanceHandle, classHandle, name, null, null));
+    }
+
+    public void onRemove(ObjectInstanceHandle instanceHandle) {
+        this.offerWithBackPressure(new ReflectedCallback(
+                ReflectedCallback.Kind.REMOVE, instanceHandle, null, null, null, null));
+    }
+
+    /**
+     *
+     * Copy the reflected values out of the RTI owned map, the RTI is free to
+     * reuse the map and its arrays once the callback returns.
+     *
+     * @param instanceHandle
+     * @param attributes
+     */
+    public void onReflect(ObjectInstanceHandle instanceHandle, AttributeHandleValueMap attributes) {
+        this.received.incrementAndGet();
+
+        AttributeHandle[] handles = new AttributeHandle[attributes.size()];
+        byte[][] values = new byte[handles.length][];
+
+        int i = 0;
+        for(Map.Entry<AttributeHandle, byte[]> entry : attributes.entrySet()) {
+            handles[i] = entry.getKey();
+            values[i] = entry.getValue().clone();
+            i++;
+        }
+
+        ReflectedCallback callback = new ReflectedCallback(
+                ReflectedCallback.Kind.REFLECT, instanceHandle, null, null, handles, values);
+
+        if(!this.queue.offer(callback)) {
+            this.dropped.incrementAndGet();
+        }
+    }
+
+    private void offerWithBackPressure(ReflectedCallback callback) {
+        this.received.incrementAndGet();
+
+        for(int attempt = 0; attempt < MAX_OFFER_ATTEMPTS; attempt++) {
+            if(this.queue.offer(callback)) {
+                return;
+            }
+            Thread.yield();
+        }
+
+        this.dropped.incrementAndGet();
+        LOG.warning("Reflection queue full, dropped callback for " + callback.instanceHandle);
+    }
+
+    /*
+     * Consumer side, federate thread
+     */
+
+    /**
+     *
+     * Decode up to maxBatch queued callbacks into FederateState.
+     *
+     * @param maxBatch
+     * @return number of callbacks processed
+     */
+    public int drain(int maxBatch) {
+        int count = 0;
+        ReflectedCallback callback;
+
+        while(count < maxBatch && (callback = this.queue.poll()) != null) {
+            this.process(callback);
+            count++;
+        }
+
+        this.processed += count;
+        return count;
+    }
+
+    private void process(ReflectedCallback callback) {
+        switch(callback.kind) {
+            case DISCOVER:
+                EntityDef def = this.federateState.getEntityDefinition(callback.classHandle);
+
+                //  Subclasses of subscribed classes we have no definition for are ignored
+                if(def != null) {
+                    this.federateState.addRemoteEntity(
+                            new RemoteEntity(callback.instanceHandle, callback.name, def));
+                    this.record(callback, def);
+                }
+                break;
+
+            case REFLECT:
+                RemoteEntity remote = this.federateState.getRemoteEntity(callback.instanceHandle);
+
+                if(remote == null) {
+                    this.orphaned++;
+                    break;
+                }
+
+                long tick = this.federateState.getTickCount();
+                for(int i = 0; i < callback.handles.length; i++) {
+                    remote.reflectAttribute(callback.handles[i], callback.values[i], tick);
+                }
+                this.record(callback, remote.getEntityDefinition());
+                break;
+
+            case REMOVE:
+                if(this.federateState.removeRemoteEntity(callback.instanceHandle) != null) {
+                    this.record(callback, null);
+                }
+                break;
+        }
+    }
+
+    private void record(ReflectedCallback callback, EntityDef def) {
+        if(this.recorder == null) {
+            return;
+        }
+
+        try {
+            switch(callback.kind) {
+                case DISCOVER:
+                    this.recorder.recordDiscover(def, callback.instanceHandle, callback.name);
+                    break;
+                case REFLECT:
+                    this.recorder.recordReflect(def, callback.instanceHandle, callback.handles, callback.values);
+                    break;
+                case REMOVE:
+                    this.recorder.recordRemove(callback.instanceHandle);
+                    break;
+            }
+        } catch(IOException e) {
+            LOG.warning("Could not record " + callback.kind + " of " + callback.instanceHandle + " : " + e);
+        }
+    }
+
+    public long getReceivedCount() { return this.received.get(); }
+    public long getDroppedCount() { return this.dropped.get(); }
+    public long getProcessedCount() { return this.processed; }
+    public long getOrphanedCount() { return this.orphaned; }
+    public int getBacklog() { return this.queue.size(); }
+
+    /**
+     *
+     * Copy of a single discover, reflect or remove callback
+     *
+     */
+    private static class ReflectedCallback {
+
+        enum Kind { DISCOVER, REFLECT, REMOVE }
+
+        final Kind kind;
+        final ObjectInstanceHandle instanceHandle;
+        final ObjectClassHandle classHandle;
+        final String name;
+        final AttributeHandle[] handles;
+        final byte[][] values;
+
+        ReflectedCallback(Kind kind, ObjectInstanceHandle instanceHandle, ObjectClassHandle classHandle,
+                          String name, AttributeHandle[] handles, byte[][] values) {
+            this.kind = kind;
+            this.instanceHandle = instanceHandle;
+            this.classHandle = classHandle;
+            this.name = name;
+            this.handles = handles;
+            this.values = values;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package federate;
+
+/**
+ *
+ * Receives a recording from UpdateReplayer, on the replaying thread.
+ *
+ */
+public interface ReplayListener {
+
+    /**
+     *
+     * Called when the replay reaches the start of a tick, before its records
+     *
+     * @param tick
+     */
+    void onTick(long tick);
+
+    void onRecord(UpdateRecord record);
+}
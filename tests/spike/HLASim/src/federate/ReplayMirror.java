@@ -0,0 +1,134 @@
+package federate;
+
+import model.AttributeDef;
+import model.EntityDef;
+import model.RemoteEntity;
+import util.Log;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *
+ * Rebuilds the entities of a recording as RemoteEntity mirrors in a
+ * FederateState of its own, both the ones the recording federate owned and the
+ * ones it reflected, and publishes a snapshot at every tick.  Analysis tools
+ * read the replay through acquireSnapshot exactly as they would read a live
+ * federate.
+ *
+ * Classes and attributes are matched to the definitions by name, those without
+ * a definition are skipped.
+ *
+ */
+public class ReplayMirror implements ReplayListener {
+
+    private static final Log LOG = Log.getLog(ReplayMirror.class);
+
+    private final FederateState federateState;
+    private final Map<String, EntityDef> classNameToEntityDefMap;
+
+    private long skipped;
+
+    public ReplayMirror(List<EntityDef> entityDefinitions) {
+        this.federateState = new FederateState();
+        this.classNameToEntityDefMap = new HashMap<>();
+
+        for(EntityDef entityDef : entityDefinitions) {
+            this.classNameToEntityDefMap.put(entityDef.getClassName(), entityDef);
+        }
+    }
+
+    @Override
+    public void onTick(long tick) {
+        //  The snapshot of a tick is taken at the start of the next one
+        if(this.federateState.getTickCount() != tick) {
+            this.federateState.publishSnapshot();
+            this.federateState.setTickCount(tick);
+        }
+    }
+
+    @Override
+    public void onRecord(UpdateRecord record) {
+        RecordedInstanceHandle instanceHandle = new RecordedInstanceHandle(record.getInstanceHandle());
+
+        switch(record.getKind()) {
+            case DISCOVER:
+                EntityDef entityDef = this.classNameToEntityDefMap.get(record.getClassName());
+
+                if(entityDef == null) {
+                    this.skipped++;
+                    break;
+                }
+                this.federateState.addRemoteEntity(new RemoteEntity(instanceHandle, record.getInstanceName(), entityDef));
+                break;
+
+            case UPDATE:
+            case REFLECT:
+                RemoteEntity remote = this.federateState.getRemoteEntity(instanceHandle);
+
+                if(remote == null) {
+                    EntityDef def = this.classNameToEntityDefMap.get(record.getClassName());
+
+                    //  Owned entities are never discovered, they appear with their first update
+                    if(def == null || record.getKind() != UpdateRecord.Kind.UPDATE) {
+                        this.skipped++;
+                        break;
+                    }
+
+                    remote = new RemoteEntity(instanceHandle, String.valueOf(record.getEntityId()), def);
+                    this.federateState.addRemoteEntity(remote);
+                }
+
+                this.reflect(remote, record);
+                break;
+
+            case REMOVE:
+                this.federateState.removeRemoteEntity(instanceHandle);
+                break;
+        }
+    }
+
+    private void reflect(RemoteEntity remote, UpdateRecord record) {
+        EntityDef entityDef = remote.getEntityDefinition();
+
+        for(int i = 0; i < record.getValueCount(); i++) {
+            AttributeDef attributeDef = entityDef.getAttributeDef(record.getAttributeName(i));
+
+            if(attributeDef != null) {
+                remote.reflectAttribute(attributeDef.getSlot(), record.getValue(i), record.getTick());
+            }
+        }
+    }
+
+    /**
+     *
+     * Publish the snapshot of the last replayed tick, called once the replay is done
+     *
+     */
+    public void finish() {
+        this.federateState.publishSnapshot();
+
+        if(this.skipped > 0) {
+            LOG.warning("Skipped " + this.skipped + " records of undefined classes or undiscovered instances");
+        }
+    }
+
+    /**
+     *
+     * Snapshot of the last completed tick, see FederateState.acquireSnapshot
+     *
+     * @return
+     */
+    public StateSnapshot acquireSnapshot() {
+        return this.federateState.acquireSnapshot();
+    }
+
+    public FederateState getFederateState() {
+        return this.federateState;
+    }
+
+    public long getSkippedCount() {
+        return this.skipped;
+    }
+}
@@ -1,6 +1,9 @@
 package federate;
 
-import hla.rti1516e.NullFederateAmbassador;
+import hla.rti1516e.*;
+import hla.rti1516e.exceptions.FederateInternalError;
+
+import java.util.Set;
 
 /**
  *
@@ -8,15 +11,327 @@ import hla.rti1516e.NullFederateAmbassador;
  *
  * Why do we need an rtiAmbassador AND a custom ambassador implementation?
  *
+ * Object discovery, reflection and removal callbacks are handed to the
+ * ReflectionIngestor, which copies them onto a queue and returns immediately.
+ * The callbacks themselves must stay cheap, they run on the RTI's thread.
+ * Time management callbacks go to the TimeAdvancer, when time managed, and
+ * name reservation callbacks to the outstanding NameReservation, save and
+ * restore callbacks to the Checkpointer and ownership callbacks to the
+ * PartitionManager, when partitioned.  Received interactions are queued by
+ * the InteractionIngestor.
  *
  * Created by Andrew on 10/8/2016.
  */
 public class SimFederateAmbassador extends NullFederateAmbassador {
 
     private FederateState federateState;
+    private ReflectionIngestor reflectionIngestor;
+    private volatile InteractionIngestor interactionIngestor;
+    private volatile TimeAdvancer timeAdvancer;
+    private volatile NameReservation nameReservation;
+    private volatile Checkpointer checkpointer;
+    private volatile PartitionManager partitionManager;
 
-    public SimFederateAmbassador(FederateState federateState) {
+    public SimFederateAmbassador(FederateState federateState, ReflectionIngestor reflectionIngestor) {
         this.federateState = federateState;
+        this.reflectionIngestor = reflectionIngestor;
+    }
+
+    public void setTimeAdvancer(TimeAdvancer timeAdvancer) {
+        this.timeAdvancer = timeAdvancer;
+    }
+
+    void setNameReservation(NameReservation nameReservation) {
+        this.nameReservation = nameReservation;
+    }
+
+    void setCheckpointer(Checkpointer checkpointer) {
+        this.checkpointer = checkpointer;
+    }
+
+    void setPartitionManager(PartitionManager partitionManager) {
+        this.partitionManager = partitionManager;
+    }
+
+    void setInteractionIngestor(InteractionIngestor interactionIngestor) {
+        this.interactionIngestor = interactionIngestor;
+    }
+
+    @Override
+    public void requestAttributeOwnershipAssumption(ObjectInstanceHandle theObject,
+                                                    AttributeHandleSet offeredAttributes,
+                                                    byte[] userSuppliedTag) throws FederateInternalError {
+        PartitionManager partitionManager = this.partitionManager;
+        if(partitionManager != null) {
+            partitionManager.onRequestAssumption(theObject);
+        }
+    }
+
+    @Override
+    public void requestDivestitureConfirmation(ObjectInstanceHandle theObject,
+                                               AttributeHandleSet offeredAttributes) throws FederateInternalError {
+        PartitionManager partitionManager = this.partitionManager;
+        if(partitionManager != null) {
+            partitionManager.onRequestDivestitureConfirmation(theObject);
+        }
+    }
+
+    @Override
+    public void attributeOwnershipAcquisitionNotification(ObjectInstanceHandle theObject,
+                                                          AttributeHandleSet securedAttributes,
+                                                          byte[] userSuppliedTag) throws FederateInternalError {
+        PartitionManager partitionManager = this.partitionManager;
+        if(partitionManager != null) {
+            partitionManager.onAcquisitionNotification(theObject, userSuppliedTag);
+        }
+    }
+
+    @Override
+    public void attributeOwnershipUnavailable(ObjectInstanceHandle theObject,
+                                              AttributeHandleSet theAttributes) throws FederateInternalError {
+        PartitionManager partitionManager = this.partitionManager;
+        if(partitionManager != null) {
+            partitionManager.onOwnershipUnavailable(theObject);
+        }
+    }
+
+    @Override
+    public void requestAttributeOwnershipRelease(ObjectInstanceHandle theObject,
+                                                 AttributeHandleSet candidateAttributes,
+                                                 byte[] userSuppliedTag) throws FederateInternalError {
+        PartitionManager partitionManager = this.partitionManager;
+        if(partitionManager != null) {
+            partitionManager.onRequestRelease(theObject);
+        }
+    }
+
+    @Override
+    public void initiateFederateSave(String label) throws FederateInternalError {
+        if(this.checkpointer != null) {
+            this.checkpointer.onInitiateSave(label);
+        }
+    }
+
+    /**
+     *
+     * Timed saves are taken right away as well, the tick that would pass time
+     * waits for the save anyway
+     *
+     */
+    @Override
+    public void initiateFederateSave(String label, LogicalTime time) throws FederateInternalError {
+        if(this.checkpointer != null) {
+            this.checkpointer.onInitiateSave(label);
+        }
+    }
+
+    @Override
+    public void federationSaved() throws FederateInternalError {
+        if(this.checkpointer != null) {
+            this.checkpointer.onFederationSaved(true, null);
+        }
+    }
+
+    @Override
+    public void federationNotSaved(SaveFailureReason reason) throws FederateInternalError {
+        if(this.checkpointer != null) {
+            this.checkpointer.onFederationSaved(false, String.valueOf(reason));
+        }
+    }
+
+    @Override
+    public void requestFederationRestoreFailed(String label) throws FederateInternalError {
+        if(this.checkpointer != null) {
+            this.checkpointer.onFederationRestored(false, "request for " + label + " failed");
+        }
+    }
+
+    @Override
+    public void federationRestoreBegun() throws FederateInternalError {
+        if(this.checkpointer != null) {
+            this.checkpointer.onFederationRestoreBegun();
+        }
+    }
+
+    @Override
+    public void initiateFederateRestore(String label, String federateName, FederateHandle federateHandle)
+            throws FederateInternalError {
+        if(this.checkpointer != null) {
+            this.checkpointer.onInitiateRestore(label, federateName, federateHandle);
+        }
+    }
+
+    @Override
+    public void federationRestored() throws FederateInternalError {
+        if(this.checkpointer != null) {
+            this.checkpointer.onFederationRestored(true, null);
+        }
+    }
+
+    @Override
+    public void federationNotRestored(RestoreFailureReason reason) throws FederateInternalError {
+        if(this.checkpointer != null) {
+            this.checkpointer.onFederationRestored(false, String.valueOf(reason));
+        }
+    }
+
+    @Override
+    public void multipleObjectInstanceNameReservationSucceeded(Set<String> objectNames) throws FederateInternalError {
+        NameReservation nameReservation = this.nameReservation;
+        if(nameReservation != null) {
+            nameReservation.complete(objectNames, true);
+        }
+    }
+
+    @Override
+    public void multipleObjectInstanceNameReservationFailed(Set<String> objectNames) throws FederateInternalError {
+        NameReservation nameReservation = this.nameReservation;
+        if(nameReservation != null) {
+            nameReservation.complete(objectNames, false);
+        }
+    }
+
+    @Override
+    public void timeRegulationEnabled(LogicalTime time) throws FederateInternalError {
+        if(this.timeAdvancer != null) {
+            this.timeAdvancer.onTimeRegulationEnabled(time);
+        }
+    }
+
+    @Override
+    public void timeConstrainedEnabled(LogicalTime time) throws FederateInternalError {
+        if(this.timeAdvancer != null) {
+            this.timeAdvancer.onTimeConstrainedEnabled(time);
+        }
+    }
+
+    @Override
+    public void timeAdvanceGrant(LogicalTime theTime) throws FederateInternalError {
+        if(this.timeAdvancer != null) {
+            this.timeAdvancer.onTimeAdvanceGrant(theTime);
+        }
+    }
+
+    @Override
+    public void discoverObjectInstance(ObjectInstanceHandle theObject,
+                                       ObjectClassHandle theObjectClass,
+                                       String objectName) throws FederateInternalError {
+        this.reflectionIngestor.onDiscover(theObject, theObjectClass, objectName);
+    }
+
+    @Override
+    public void discoverObjectInstance(ObjectInstanceHandle theObject,
+                                       ObjectClassHandle theObjectClass,
+                                       String objectName,
+                                       FederateHandle producingFederate) throws FederateInternalError {
+        this.reflectionIngestor.onDiscover(theObject, theObjectClass, objectName);
+    }
+
+    @Override
+    public void reflectAttributeValues(ObjectInstanceHandle theObject,
+                                       AttributeHandleValueMap theAttributes,
+                                       byte[] userSuppliedTag,
+                                       OrderType sentOrdering,
+                                       TransportationTypeHandle theTransport,
+                                       SupplementalReflectInfo reflectInfo) throws FederateInternalError {
+        this.reflectionIngestor.onReflect(theObject, theAttributes);
+    }
+
+    @Override
+    public void reflectAttributeValues(ObjectInstanceHandle theObject,
+                                       AttributeHandleValueMap theAttributes,
+                                       byte[] userSuppliedTag,
+                                       OrderType sentOrdering,
+                                       TransportationTypeHandle theTransport,
+                                       LogicalTime theTime,
+                                       OrderType receivedOrdering,
+                                       SupplementalReflectInfo reflectInfo) throws FederateInternalError {
+        this.reflectionIngestor.onReflect(theObject, theAttributes);
+    }
+
+    @Override
+    public void reflectAttributeValues(ObjectInstanceHandle theObject,
+                                       AttributeHandleValueMap theAttributes,
+                                       byte[] userSuppliedTag,
+                                       OrderType sentOrdering,
+                                       TransportationTypeHandle theTransport,
+                                       LogicalTime theTime,
+                                       OrderType receivedOrdering,
+                                       MessageRetractionHandle retractionHandle,
+                                       SupplementalReflectInfo reflectInfo) throws FederateInternalError {
+        this.reflectionIngestor.onReflect(theObject, theAttributes);
+    }
+
+    @Override
+    public void removeObjectInstance(ObjectInstanceHandle theObject,
+                                     byte[] userSuppliedTag,
+                                     OrderType sentOrdering,
+                                     SupplementalRemoveInfo removeInfo) throws FederateInternalError {
+        this.reflectionIngestor.onRemove(theObject);
+    }
+
+    @Override
+    public void removeObjectInstance(ObjectInstanceHandle theObject,
+                                     byte[] userSuppliedTag,
+                                     OrderType sentOrdering,
+                                     LogicalTime theTime,
+                                     OrderType receivedOrdering,
+                                     SupplementalRemoveInfo removeInfo) throws FederateInternalError {
+        this.reflectionIngestor.onRemove(theObject);
     }
 
+    @Override
+    public void removeObjectInstance(ObjectInstanceHandle theObject,
+                                     byte[] userSuppliedTag,
+                                     OrderType sentOrdering,
+                                     LogicalTime theTime,
+                                     OrderType receivedOrdering,
+                                     MessageRetractionHandle retractionHandle,
+                                     SupplementalRemoveInfo removeInfo) throws FederateInternalError {
+        this.reflectionIngestor.onRemove(theObject);
+    }
+
+    @Override
+    public void receiveInteraction(InteractionClassHandle interactionClass,
+                                   ParameterHandleValueMap theParameters,
+                                   byte[] userSuppliedTag,
+                                   OrderType sentOrdering,
+                                   TransportationTypeHandle theTransport,
+                                   SupplementalReceiveInfo receiveInfo) throws FederateInternalError {
+        this.onReceiveInteraction(interactionClass, theParameters, userSuppliedTag);
+    }
+
+    @Override
+    public void receiveInteraction(InteractionClassHandle interactionClass,
+                                   ParameterHandleValueMap theParameters,
+                                   byte[] userSuppliedTag,
+                                   OrderType sentOrdering,
+                                   TransportationTypeHandle theTransport,
+                                   LogicalTime theTime,
+                                   OrderType receivedOrdering,
+                                   SupplementalReceiveInfo receiveInfo) throws FederateInternalError {
+        this.onReceiveInteraction(interactionClass, theParameters, userSuppliedTag);
+    }
+
+    @Override
+    public void receiveInteraction(InteractionClassHandle interactionClass,
+                                   ParameterHandleValueMap theParameters,
+                                   byte[] userSuppliedTag,
+                                   OrderType sentOrdering,
+                                   TransportationTypeHandle theTransport,
+                                   LogicalTime theTime,
+                                   OrderType receivedOrdering,
+                                   MessageRetractionHandle retractionHandle,
+                                   SupplementalReceiveInfo receiveInfo) throws FederateInternalError {
+        this.onReceiveInteraction(interactionClass, theParameters, userSuppliedTag);
+    }
+
+    private void onReceiveInteraction(InteractionClassHandle interactionClass,
+                                      ParameterHandleValueMap theParameters,
+                                      byte[] userSuppliedTag) {
+        InteractionIngestor interactionIngestor = this.interactionIngestor;
+        if(interactionIngestor != null) {
+            interactionIngestor.onReceive(interactionClass, theParameters, userSuppliedTag);
+        }
+    }
 }
@@ -0,0 +1,263 @@
+package federate;
+
+import hla.rti1516e.*;
+import hla.rti1516e.exceptions.RTIexception;
+import model.Entity;
+import model.EntityDef;
+import util.Log;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+/**
+ *
+ * Spatial interest management on top of HLA Data Distribution Management.
+ *
+ * The plane is divided into a uniform grid of cellSize x cellSize cells, each
+ * cell maps to one point in the SpatialX/SpatialY dimensions declared in the
+ * FOM.  Owned entities of managed classes have their attribute updates
+ * associated with the region of the cell their position is in, and the
+ * association only changes when the entity crosses a cell boundary.
+ * Subscribers declare the area they care about with subscribeArea, the RTI
+ * then only delivers updates whose cell region overlaps it.
+ *
+ * Managed classes are not subscribed without regions by the Federate,
+ * otherwise the federate would still receive every update.
+ *
+ */
+public class SpatialInterestManager {
+
+    private static final Log LOG = Log.getLog(SpatialInterestManager.class);
+
+    public static final String X_DIMENSION = "SpatialX";
+    public static final String Y_DIMENSION = "SpatialY";
+
+    //  Marks an entity that has not been associated with any cell yet
+    public static final long NO_CELL = Long.MIN_VALUE;
+
+    private final Federate federate;
+    private final int cellSize;
+
+    //  EntityDef -> slot of the position attribute, for every managed class
+    private final IdentityHashMap<EntityDef, Integer> managedClasses;
+
+    //  Lazily created update region per cell
+    private final HashMap<Long, RegionHandle> cellToRegionMap;
+
+    private DimensionHandle xDimension, yDimension;
+    private DimensionHandleSet dimensions;
+    private long xUpperBound, yUpperBound;
+
+    /**
+     *
+     * @param federate
+     * @param cellSize  grid cell edge length in position units
+     */
+    public SpatialInterestManager(Federate federate, int cellSize) {
+        assert cellSize > 0;
+
+        this.federate = federate;
+        this.cellSize = cellSize;
+        this.managedClasses = new IdentityHashMap<>();
+        this.cellToRegionMap = new HashMap<>();
+    }
+
+    /**
+     *
+     * Manage interest for a class, must be called before the federate is initialized.
+     *
+     * @param entityDef
+     * @param positionAttrName  VectorAttributeDef holding the position
+     */
+    public void addEntityDefinition(EntityDef entityDef, String positionAttrName) {
+        this.managedClasses.put(entityDef, entityDef.getSlot(positionAttrName));
+    }
+
+    public boolean isManaged(EntityDef entityDef) {
+        return this.managedClasses.containsKey(entityDef);
+    }
+
+    /**
+     *
+     * Resolve the dimension handles, must be connected to the FedEx.
+     *
+     * @return
+     */
+    public boolean initialize() {
+        try {
+            RTIambassador rtiAmbassador = this.federate.getRtiAmbassador();
+
+            this.xDimension = rtiAmbassador.getDimensionHandle(X_DIMENSION);
+            this.yDimension = rtiAmbassador.getDimensionHandle(Y_DIMENSION);
+            this.xUpperBound = rtiAmbassador.getDimensionUpperBound(this.xDimension);
+            this.yUpperBound = rtiAmbassador.getDimensionUpperBound(this.yDimension);
+
+            this.dimensions = rtiAmbassador.getDimensionHandleSetFactory().create();
+            this.dimensions.add(this.xDimension);
+            this.dimensions.add(this.yDimension);
+
+            LOG.success("Initialized spatial interest management, cellSize=" + this.cellSize);
+            return true;
+        } catch(Exception e) {
+            LOG.error("Could not initialize spatial interest management : " + e, e);
+            return false;
+        }
+    }
+
+    private long toCellX(long x) {
+        return clamp(Math.floorDiv(x, (long) this.cellSize) + this.xUpperBound / 2, this.xUpperBound);
+    }
+
+    private long toCellY(long y) {
+        return clamp(Math.floorDiv(y, (long) this.cellSize) + this.yUpperBound / 2, this.yUpperBound);
+    }
+
+    private static long clamp(long cell, long upperBound) {
+        return Math.max(0, Math.min(cell, upperBound - 1));
+    }
+
+    private static long cellKey(long cellX, long cellY) {
+        return (cellX << 32) | cellY;
+    }
+
+    /**
+     *
+     * Called for each owned entity once per tick, before its attributes are
+     * published.  Moves the entity's update region association when it has
+     * crossed into a new cell, and marks all its attributes dirty so federates
+     * that just became interested receive its full state.
+     *
+     * @param entity
+     */
+    public void updateRegion(Entity entity) {
+        Integer positionSlot = this.managedClasses.get(entity.getEntityDefinition());
+        if(positionSlot == null || entity.getAttributeBytes(positionSlot).length == 0) {
+            return;
+        }
+
+        long cell = cellKey(this.toCellX(entity.getVec2X(positionSlot)),
+                            this.toCellY(entity.getVec2Y(positionSlot)));
+        long previousCell = entity.getSpatialCell();
+
+        if(cell == previousCell) {
+            return;
+        }
+
+        try {
+            RTIambassador rtiAmbassador = this.federate.getRtiAmbassador();
+            AttributeHandleSet attributes = entity.getEntityDefinition().getAttributeHandleSet();
+
+            if(previousCell != NO_CELL) {
+                rtiAmbassador.unassociateRegionsForUpdates(entity.getInstanceHandle(),
+                        this.createRegionList(attributes, this.getCellRegion(previousCell)));
+            }
+
+            rtiAmbassador.associateRegionsForUpdates(entity.getInstanceHandle(),
+                    this.createRegionList(attributes, this.getCellRegion(cell)));
+
+            entity.setSpatialCell(cell);
+            entity.markAllAttributesDirty();
+        } catch(Exception e) {
+            this.federate.getMetrics().recordException(e);
+            LOG.error("Could not update region for entity " + entity
+                             + "\n\tGot Exception : " + e);
+        }
+    }
+
+    /**
+     *
+     * Get/Create the update region for a cell
+     *
+     * @param cell
+     * @return
+     * @throws RTIexception
+     */
+    private RegionHandle getCellRegion(long cell) throws RTIexception {
+        RegionHandle region = this.cellToRegionMap.get(cell);
+
+        if(region == null) {
+            long cellX = cell >>> 32;
+            long cellY = cell & 0xFFFFFFFFL;
+
+            region = this.createRegion(cellX, cellY, cellX + 1, cellY + 1);
+            this.cellToRegionMap.put(cell, region);
+        }
+
+        return region;
+    }
+
+    /**
+     *
+     * Create and commit a region spanning cells [cellX0, cellX1) x [cellY0, cellY1)
+     *
+     */
+    private RegionHandle createRegion(long cellX0, long cellY0, long cellX1, long cellY1) throws RTIexception {
+        RTIambassador rtiAmbassador = this.federate.getRtiAmbassador();
+
+        RegionHandle region = rtiAmbassador.createRegion(this.dimensions);
+        rtiAmbassador.setRangeBounds(region, this.xDimension, new RangeBounds(cellX0, cellX1));
+        rtiAmbassador.setRangeBounds(region, this.yDimension, new RangeBounds(cellY0, cellY1));
+
+        RegionHandleSet regions = rtiAmbassador.getRegionHandleSetFactory().create();
+        regions.add(region);
+        rtiAmbassador.commitRegionModifications(regions);
+
+        return region;
+    }
+
+    private AttributeSetRegionSetPairList createRegionList(AttributeHandleSet attributes, RegionHandle region)
+            throws RTIexception {
+        RTIambassador rtiAmbassador = this.federate.getRtiAmbassador();
+
+        RegionHandleSet regions = rtiAmbassador.getRegionHandleSetFactory().create();
+        regions.add(region);
+
+        AttributeSetRegionSetPairList list = rtiAmbassador.getAttributeSetRegionSetPairListFactory().create(1);
+        list.add(new AttributeRegionAssociation(attributes, regions));
+
+        return list;
+    }
+
+    /**
+     *
+     * Subscribe to all attributes of entityDef for entities positioned inside
+     * the rectangle [minX, maxX] x [minY, maxY] (rounded out to whole cells).
+     *
+     * @param entityDef
+     * @return the subscription region, to be passed to unsubscribeArea
+     */
+    public RegionHandle subscribeArea(EntityDef entityDef, int minX, int minY, int maxX, int maxY) {
+        try {
+            RegionHandle region = this.createRegion(this.toCellX(minX), this.toCellY(minY),
+                                                    this.toCellX(maxX) + 1, this.toCellY(maxY) + 1);
+
+            this.federate.getRtiAmbassador().subscribeObjectClassAttributesWithRegions(
+                    entityDef.getClassHandle(),
+                    this.createRegionList(entityDef.getAttributeHandleSet(), region));
+
+            return region;
+        } catch(Exception e) {
+            LOG.error("Could not subscribe area for " + entityDef.getClassName()
+                             + "\n\tGot Exception : " + e);
+            return null;
+        }
+    }
+
+    public void unsubscribeArea(EntityDef entityDef, RegionHandle region) {
+        try {
+            RTIambassador rtiAmbassador = this.federate.getRtiAmbassador();
+
+            rtiAmbassador.unsubscribeObjectClassAttributesWithRegions(
+                    entityDef.getClassHandle(),
+                    this.createRegionList(entityDef.getAttributeHandleSet(), region));
+            rtiAmbassador.deleteRegion(region);
+        } catch(Exception e) {
+            LOG.error("Could not unsubscribe area for " + entityDef.getClassName()
+                             + "\n\tGot Exception : " + e);
+        }
+    }
+
+    public int getCellSize() {
+        return this.cellSize;
+    }
+}
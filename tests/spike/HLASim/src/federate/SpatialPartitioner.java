@@ -0,0 +1,109 @@
+package federate;
+
+import model.DeadReckoningModel;
+import model.Entity;
+import model.EntityDef;
+import model.RemoteEntity;
+
+import java.util.IdentityHashMap;
+
+/**
+ *
+ * Partitions the plane into a columns x rows grid of cellSize x cellSize
+ * cells starting at the origin, cell (column, row) is partition
+ * column + row * columns.  Positions outside the grid belong to the nearest
+ * edge cell, so every position of a managed class has a partition.
+ *
+ */
+public class SpatialPartitioner implements Partitioner {
+
+    private final int cellSize, columns, rows;
+
+    //  EntityDef -> slot of the position attribute, for every partitioned class
+    private final IdentityHashMap<EntityDef, Integer> partitionedClasses;
+
+    /**
+     *
+     * @param cellSize  cell edge length in position units
+     * @param columns
+     * @param rows
+     */
+    public SpatialPartitioner(int cellSize, int columns, int rows) {
+        assert cellSize > 0 && columns > 0 && rows > 0;
+
+        this.cellSize = cellSize;
+        this.columns = columns;
+        this.rows = rows;
+        this.partitionedClasses = new IdentityHashMap<>();
+    }
+
+    /**
+     *
+     * Partition the entities of a class by position, must be called before
+     * the federate is initialized.
+     *
+     * @param entityDef a class that can be restored (see PartitionManager)
+     * @param positionAttrName  VectorAttributeDef holding the position
+     * @throws IllegalArgumentException if entityDef cannot be restored
+     */
+    public void addEntityDefinition(EntityDef entityDef, String positionAttrName) {
+        if(!entityDef.canRestore()) {
+            throw new IllegalArgumentException(entityDef.getClassName() + " cannot be restored, nor partitioned");
+        }
+
+        this.partitionedClasses.put(entityDef, entityDef.getSlot(positionAttrName));
+    }
+
+    public int getPartitionCount() {
+        return this.columns * this.rows;
+    }
+
+    /**
+     *
+     * @param x
+     * @param y
+     * @return the partition of the cell holding (x, y)
+     */
+    public int getPartition(int x, int y) {
+        int column = clamp(Math.floorDiv(x, this.cellSize), this.columns);
+        int row = clamp(Math.floorDiv(y, this.cellSize), this.rows);
+
+        return column + row * this.columns;
+    }
+
+    private static int clamp(int cell, int upperBound) {
+        return Math.max(0, Math.min(cell, upperBound - 1));
+    }
+
+    @Override
+    public int getPartition(Entity entity) {
+        Integer positionSlot = this.partitionedClasses.get(entity.getEntityDefinition());
+        if(positionSlot == null || entity.getAttributeBytes(positionSlot).length == 0) {
+            return UNPARTITIONED;
+        }
+
+        return this.getPartition(entity.getVec2X(positionSlot), entity.getVec2Y(positionSlot));
+    }
+
+    /**
+     *
+     * Owners hold back positions receivers can dead reckon, so the position is
+     * dead reckoned when it is the one of the class's DeadReckoningModel
+     *
+     */
+    @Override
+    public int getPartition(RemoteEntity remoteEntity, long tick) {
+        EntityDef entityDef = remoteEntity.getEntityDefinition();
+        Integer positionSlot = this.partitionedClasses.get(entityDef);
+        if(positionSlot == null) {
+            return UNPARTITIONED;
+        }
+
+        DeadReckoningModel model = entityDef.getDeadReckoningModel();
+        int[] position = model != null && model.getPositionSlot() == positionSlot
+                       ? remoteEntity.getDeadReckonedPosition(tick)
+                       : (int[]) remoteEntity.getAttributeValue(positionSlot);
+
+        return position == null ? UNPARTITIONED : this.getPartition(position[0], position[1]);
+    }
+}
@@ -0,0 +1,317 @@
+package federate;
+
+import hla.rti1516e.ObjectInstanceHandle;
+import model.Entity;
+import model.EntityDef;
+import model.RemoteEntity;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *
+ * Immutable copy of a FederateState taken at the end of a tick: the encoded
+ * attribute values of every owned entity and the decoded values of every
+ * remote entity.  Readers get one from FederateState.acquireSnapshot and must
+ * close it when done, closed snapshots are refilled by later ticks.
+ *
+ * Owned entities are indexed 0 .. getEntityCount() - 1 in insertion order,
+ * remote entities 0 .. getRemoteEntityCount() - 1 in no particular order.
+ *
+ */
+public final class StateSnapshot implements AutoCloseable {
+
+    //  Readers holding this snapshot, the tick thread only refills it at zero
+    final AtomicInteger readers;
+
+    private long tickCount, timestampNanos;
+
+    //  Owned entities, attribute a of entity i is
+    //  bytes[attributeOffsets[slotOffsets[i] + a] .. attributeOffsets[slotOffsets[i] + a + 1])
+    private int entityCount;
+    private long[] ids;
+    private ObjectInstanceHandle[] instanceHandles;
+    private EntityDef[] definitions;
+    private int[] slotOffsets;
+    private int[] attributeOffsets;
+    private byte[] bytes;
+
+    //  Remote entities, attribute a of remote entity r is remoteValues[remoteSlotOffsets[r] + a].
+    //  Decoded values are never modified after decoding, so they are shared, not copied
+    private int remoteCount, remoteValueCount;
+    private ObjectInstanceHandle[] remoteInstanceHandles;
+    private String[] remoteNames;
+    private EntityDef[] remoteDefinitions;
+    private int[] remoteSlotOffsets;
+    private Object[] remoteValues;
+
+    StateSnapshot() {
+        this.readers = new AtomicInteger();
+
+        this.ids = new long[0];
+        this.instanceHandles = new ObjectInstanceHandle[0];
+        this.definitions = new EntityDef[0];
+        this.slotOffsets = new int[1];
+        this.attributeOffsets = new int[1];
+        this.bytes = new byte[0];
+
+        this.remoteInstanceHandles = new ObjectInstanceHandle[0];
+        this.remoteNames = new String[0];
+        this.remoteDefinitions = new EntityDef[0];
+        this.remoteSlotOffsets = new int[1];
+        this.remoteValues = new Object[0];
+    }
+
+    /**
+     *
+     * Copy the state into this snapshot, reusing its arrays when they are big
+     * enough.  Tick thread only, never while readers hold the snapshot.
+     *
+     */
+    void fill(long tickCount, Entity[] entities, Collection<RemoteEntity> remoteEntities) {
+        this.tickCount = tickCount;
+        this.timestampNanos = System.nanoTime();
+
+        int count = entities.length;
+
+        if(this.ids.length < count) {
+            int capacity = grow(this.ids.length, count);
+
+            this.ids = new long[capacity];
+            this.instanceHandles = new ObjectInstanceHandle[capacity];
+            this.definitions = new EntityDef[capacity];
+            this.slotOffsets = new int[capacity + 1];
+        }
+
+        //  One pass over the entities, the attribute arrays grow as needed
+        int attribute = 0;
+        int position = 0;
+
+        for(int i = 0; i < count; i++) {
+            Entity entity = entities[i];
+            EntityDef definition = entity.getEntityDefinition();
+            int numAttributes = definition.getNumAttributes();
+
+            this.ids[i] = entity.getId();
+            this.instanceHandles[i] = entity.getInstanceHandle();
+            this.definitions[i] = definition;
+            this.slotOffsets[i] = attribute;
+
+            if(this.attributeOffsets.length < attribute + numAttributes + 1) {
+                this.attributeOffsets = Arrays.copyOf(this.attributeOffsets,
+                                                      grow(this.attributeOffsets.length, attribute + numAttributes + 1));
+            }
+
+            for(int slot = 0; slot < numAttributes; slot++) {
+                byte[] value = entity.getAttributeBytes(slot);
+
+                if(this.bytes.length < position + value.length) {
+                    this.bytes = Arrays.copyOf(this.bytes, grow(this.bytes.length, position + value.length));
+                }
+
+                this.attributeOffsets[attribute++] = position;
+                System.arraycopy(value, 0, this.bytes, position, value.length);
+                position += value.length;
+            }
+        }
+
+        this.slotOffsets[count] = attribute;
+        this.attributeOffsets[attribute] = position;
+
+        //  Drop references to entities that are no longer there
+        Arrays.fill(this.instanceHandles, count, Math.max(this.entityCount, count), null);
+        Arrays.fill(this.definitions, count, Math.max(this.entityCount, count), null);
+        this.entityCount = count;
+
+        this.fillRemote(remoteEntities);
+    }
+
+    private void fillRemote(Collection<RemoteEntity> remoteEntities) {
+        //  Remote entities only change on the tick thread, the size holds while iterating
+        int capacity = remoteEntities.size();
+        int valueCount = 0;
+
+        if(this.remoteInstanceHandles.length < capacity) {
+            int grown = grow(this.remoteInstanceHandles.length, capacity);
+
+            this.remoteInstanceHandles = new ObjectInstanceHandle[grown];
+            this.remoteNames = new String[grown];
+            this.remoteDefinitions = new EntityDef[grown];
+            this.remoteSlotOffsets = new int[grown + 1];
+        }
+
+        int count = 0;
+        for(RemoteEntity remoteEntity : remoteEntities) {
+            EntityDef definition = remoteEntity.getEntityDefinition();
+            int numAttributes = definition.getNumAttributes();
+
+            if(this.remoteValues.length < valueCount + numAttributes) {
+                this.remoteValues = Arrays.copyOf(this.remoteValues,
+                                                  grow(this.remoteValues.length, valueCount + numAttributes));
+            }
+
+            this.remoteInstanceHandles[count] = remoteEntity.getInstanceHandle();
+            this.remoteNames[count] = remoteEntity.getName();
+            this.remoteDefinitions[count] = definition;
+            this.remoteSlotOffsets[count] = valueCount;
+
+            for(int slot = 0; slot < numAttributes; slot++) {
+                this.remoteValues[valueCount++] = remoteEntity.getAttributeValue(slot);
+            }
+            count++;
+        }
+
+        this.remoteSlotOffsets[count] = valueCount;
+
+        int previous = Math.max(this.remoteCount, count);
+        Arrays.fill(this.remoteInstanceHandles, count, previous, null);
+        Arrays.fill(this.remoteNames, count, previous, null);
+        Arrays.fill(this.remoteDefinitions, count, previous, null);
+        Arrays.fill(this.remoteValues, valueCount, Math.max(this.remoteValueCount, valueCount), null);
+        this.remoteCount = count;
+        this.remoteValueCount = valueCount;
+    }
+
+    private static int grow(int current, int needed) {
+        return Math.max(needed, current + (current >> 1));
+    }
+
+    /**
+     *
+     * Release the snapshot, it must not be read afterwards
+     *
+     */
+    @Override
+    public void close() {
+        int remaining = this.readers.decrementAndGet();
+        assert remaining >= 0;
+    }
+
+    public long getTickCount() {
+        return this.tickCount;
+    }
+
+    /**
+     *
+     * System.nanoTime() when the snapshot was taken
+     *
+     * @return
+     */
+    public long getTimestampNanos() {
+        return this.timestampNanos;
+    }
+
+    /*
+     * Owned entities
+     */
+
+    public int getEntityCount() {
+        return this.entityCount;
+    }
+
+    public long getEntityId(int index) {
+        return this.ids[index];
+    }
+
+    public ObjectInstanceHandle getInstanceHandle(int index) {
+        return this.instanceHandles[index];
+    }
+
+    public EntityDef getEntityDefinition(int index) {
+        return this.definitions[index];
+    }
+
+    /**
+     *
+     * Read-only view of the encoded attribute value, valid until close
+     *
+     * @param index
+     * @param slot
+     * @return
+     */
+    public ByteBuffer getAttributeBuffer(int index, int slot) {
+        int attribute = this.slotOffsets[index] + slot;
+        int start = this.attributeOffsets[attribute];
+
+        return ByteBuffer.wrap(this.bytes, start, this.attributeOffsets[attribute + 1] - start)
+                         .slice().asReadOnlyBuffer();
+    }
+
+    /**
+     *
+     * Decoded attribute value, null if the attribute was never set
+     *
+     * @param index
+     * @param slot
+     * @return
+     */
+    public Object getAttributeValue(int index, int slot) {
+        int attribute = this.slotOffsets[index] + slot;
+        int start = this.attributeOffsets[attribute];
+        int end = this.attributeOffsets[attribute + 1];
+
+        return start == end ? null
+                            : this.definitions[index].getAttributeDef(slot)
+                                                     .decode(Arrays.copyOfRange(this.bytes, start, end));
+    }
+
+    public int getInt(int index, int slot) {
+        return this.readInt(this.attributeOffsets[this.slotOffsets[index] + slot]);
+    }
+
+    public int getVec2X(int index, int slot) {
+        return this.readInt(this.attributeOffsets[this.slotOffsets[index] + slot]);
+    }
+
+    public int getVec2Y(int index, int slot) {
+        return this.readInt(this.attributeOffsets[this.slotOffsets[index] + slot] + 4);
+    }
+
+    /**
+     *
+     * Start of the value of slot in getBytes, slot numAttributes gives the end
+     * of the entity's last value.  The values of an entity are contiguous.
+     *
+     */
+    int getAttributeOffset(int index, int slot) {
+        return this.attributeOffsets[this.slotOffsets[index] + slot];
+    }
+
+    byte[] getBytes() {
+        return this.bytes;
+    }
+
+    //  Big endian, like the attribute encodings
+    private int readInt(int position) {
+        return (this.bytes[position] << 24)
+             | ((this.bytes[position + 1] & 0xFF) << 16)
+             | ((this.bytes[position + 2] & 0xFF) << 8)
+             | (this.bytes[position + 3] & 0xFF);
+    }
+
+    /*
+     * Remote entities
+     */
+
+    public int getRemoteEntityCount() {
+        return this.remoteCount;
+    }
+
+    public ObjectInstanceHandle getRemoteInstanceHandle(int index) {
+        return this.remoteInstanceHandles[index];
+    }
+
+    public String getRemoteName(int index) {
+        return this.remoteNames[index];
+    }
+
+    public EntityDef getRemoteEntityDefinition(int index) {
+        return this.remoteDefinitions[index];
+    }
+
+    public Object getRemoteAttributeValue(int index, int slot) {
+        return this.remoteValues[this.remoteSlotOffsets[index] + slot];
+    }
+}
@@ -0,0 +1,203 @@
+package federate;
+
+import hla.rti1516e.LogicalTime;
+import hla.rti1516e.RTIambassador;
+import hla.rti1516e.time.HLAfloat64Interval;
+import hla.rti1516e.time.HLAfloat64Time;
+import hla.rti1516e.time.HLAfloat64TimeFactory;
+import util.Log;
+
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
+
+/**
+ *
+ * Time managed (regulating and constrained) execution with a pipelined
+ * timeAdvanceRequest.  Every tick publishes at grantedTime + step and then
+ * requests grantedTime + step without waiting for the grant, so the RTI works
+ * out the grant until the next tick starts; the federate only blocks on it
+ * then, for at most GRANT_TIMEOUT_MILLIS.
+ *
+ * Updates sent at grantedTime + step are legal both before and after the
+ * request as long as 0 < lookahead <= step.
+ *
+ * The on* methods are called by SimFederateAmbassador on the RTI's thread.
+ *
+ */
+public class TimeAdvancer {
+
+    private static final Log LOG = Log.getLog(TimeAdvancer.class);
+
+    //  How long enable waits for the RTI to confirm regulation, then constraint
+    private static final long ENABLE_TIMEOUT_MILLIS = 10000;
+
+    //  How long a tick waits for its grant (IE: behind a stalled regulating federate) before it is skipped
+    private static final long GRANT_TIMEOUT_MILLIS = 1000;
+
+    private final RTIambassador rtiAmbassador;
+    private final HLAfloat64TimeFactory timeFactory;
+    private final HLAfloat64Interval step, lookahead;
+
+    //  Guarded by this
+    private HLAfloat64Time grantedTime;
+    private boolean regulating, constrained, advancing;
+
+    /**
+     *
+     * @param rtiAmbassador must be connected, the time factory comes from it
+     * @param stepSeconds logical time advanced per tick
+     * @param lookaheadSeconds 0 < lookaheadSeconds <= stepSeconds, a zero lookahead stalls the federation
+     */
+    public TimeAdvancer(RTIambassador rtiAmbassador, double stepSeconds, double lookaheadSeconds) throws Exception {
+        checkTimes(stepSeconds, lookaheadSeconds);
+
+        this.rtiAmbassador = rtiAmbassador;
+        this.timeFactory = (HLAfloat64TimeFactory) rtiAmbassador.getTimeFactory();
+        this.step = this.timeFactory.makeInterval(stepSeconds);
+        this.lookahead = this.timeFactory.makeInterval(lookaheadSeconds);
+        this.grantedTime = this.timeFactory.makeInitial();
+    }
+
+    /**
+     *
+     * @param stepSeconds
+     * @param lookaheadSeconds
+     * @throws IllegalArgumentException unless 0 < lookaheadSeconds <= stepSeconds
+     */
+    static void checkTimes(double stepSeconds, double lookaheadSeconds) {
+        if(!(lookaheadSeconds > 0 && lookaheadSeconds <= stepSeconds)) {
+            throw new IllegalArgumentException("Need 0 < lookahead <= step, got lookahead " + lookaheadSeconds
+                                               + " step " + stepSeconds);
+        }
+    }
+
+    /**
+     *
+     * Become regulating and constrained, blocks until the RTI confirmed both.
+     * Must be called after joining.
+     *
+     * @throws TimeoutException when a confirmation does not arrive within ENABLE_TIMEOUT_MILLIS
+     */
+    public void enable() throws Exception {
+        this.rtiAmbassador.enableTimeRegulation(this.lookahead);
+        if(!this.awaitEnabled(() -> this.regulating, ENABLE_TIMEOUT_MILLIS)) {
+            throw new TimeoutException("Time regulation not enabled after " + ENABLE_TIMEOUT_MILLIS + "ms");
+        }
+
+        this.rtiAmbassador.enableTimeConstrained();
+        if(!this.awaitEnabled(() -> this.constrained, ENABLE_TIMEOUT_MILLIS)) {
+            throw new TimeoutException("Time constrained not enabled after " + ENABLE_TIMEOUT_MILLIS + "ms");
+        }
+
+        LOG.success("Time managed at " + this.grantedTime + ", step " + this.step + ", lookahead " + this.lookahead);
+    }
+
+    /**
+     *
+     * @param enabled read while holding this
+     * @param timeoutMillis
+     * @return false on timeout
+     */
+    private synchronized boolean awaitEnabled(BooleanSupplier enabled, long timeoutMillis)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+
+        while(!enabled.getAsBoolean()) {
+            long remaining = deadline - System.currentTimeMillis();
+            if(remaining <= 0) {
+                return false;
+            }
+
+            this.wait(remaining);
+        }
+
+        return true;
+    }
+
+    /**
+     *
+     * Block until the outstanding request (if any) is granted
+     *
+     * @throws TimeoutException when the grant does not arrive within GRANT_TIMEOUT_MILLIS,
+     *                          the request stays outstanding
+     */
+    public void awaitGrant() throws InterruptedException, TimeoutException {
+        if(!this.awaitEnabled(() -> !this.advancing, GRANT_TIMEOUT_MILLIS)) {
+            throw new TimeoutException("No time advance grant after " + GRANT_TIMEOUT_MILLIS + "ms, at "
+                                       + this.getGrantedTime());
+        }
+    }
+
+    /**
+     *
+     * Timestamp for this tick's updates, only valid after awaitGrant
+     *
+     * @return
+     */
+    public synchronized HLAfloat64Time getUpdateTime() throws Exception {
+        return this.grantedTime.add(this.step);
+    }
+
+    /**
+     *
+     * Request the next step and return without waiting for the grant
+     *
+     */
+    public void requestAdvance() throws Exception {
+        HLAfloat64Time next;
+
+        synchronized(this) {
+            assert !this.advancing;
+
+            next = this.grantedTime.add(this.step);
+            this.advancing = true;
+        }
+
+        try {
+            this.rtiAmbassador.timeAdvanceRequest(next);
+        } catch(Exception e) {
+            synchronized(this) {
+                this.advancing = false;
+            }
+            throw e;
+        }
+    }
+
+    public synchronized HLAfloat64Time getGrantedTime() {
+        return this.grantedTime;
+    }
+
+    /*
+     * RTI callback thread
+     */
+
+    public synchronized void onTimeRegulationEnabled(LogicalTime time) {
+        this.grantedTime = (HLAfloat64Time) time;
+        this.regulating = true;
+        this.notifyAll();
+    }
+
+    public synchronized void onTimeConstrainedEnabled(LogicalTime time) {
+        this.grantedTime = (HLAfloat64Time) time;
+        this.constrained = true;
+        this.notifyAll();
+    }
+
+    public synchronized void onTimeAdvanceGrant(LogicalTime time) {
+        this.grantedTime = (HLAfloat64Time) time;
+        this.advancing = false;
+        this.notifyAll();
+    }
+
+    /**
+     *
+     * The federation was restored to time, any outstanding request is gone
+     *
+     * @param time
+     */
+    public synchronized void onFederationRestored(LogicalTime time) {
+        this.grantedTime = (HLAfloat64Time) time;
+        this.advancing = false;
+        this.notifyAll();
+    }
+}
@@ -0,0 +1,138 @@
+package federate;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ *
+ * One record of a recording as handed to a ReplayListener.  The replayer
+ * reuses the same instance for every record, nothing of it (including the
+ * value buffers) may be kept after the callback returns.
+ *
+ */
+public final class UpdateRecord {
+
+    public enum Kind {
+        //  Sent for an owned entity
+        UPDATE,
+        //  Reflected for a remote entity
+        REFLECT,
+        DISCOVER,
+        REMOVE
+    }
+
+    private Kind kind;
+    private long tick, entityId;
+    private String className, instanceName;
+    private String[] attributeNames;
+    private byte[] instanceHandle;
+
+    private int valueCount;
+    private int[] slots;
+    private ByteBuffer[] values;
+
+    UpdateRecord() {
+        this.instanceHandle = new byte[0];
+        this.slots = new int[0];
+        this.values = new ByteBuffer[0];
+    }
+
+    void set(Kind kind, long tick, long entityId, String className, String[] attributeNames,
+             byte[] instanceHandle, String instanceName) {
+        this.kind = kind;
+        this.tick = tick;
+        this.entityId = entityId;
+        this.className = className;
+        this.attributeNames = attributeNames;
+        this.instanceHandle = instanceHandle;
+        this.instanceName = instanceName;
+        this.valueCount = 0;
+    }
+
+    void addValue(int slot, ByteBuffer value) {
+        if(this.valueCount == this.slots.length) {
+            int capacity = Math.max(4, 2 * this.slots.length);
+
+            this.slots = Arrays.copyOf(this.slots, capacity);
+            this.values = Arrays.copyOf(this.values, capacity);
+        }
+
+        this.slots[this.valueCount] = slot;
+        this.values[this.valueCount] = value;
+        this.valueCount++;
+    }
+
+    public Kind getKind() {
+        return this.kind;
+    }
+
+    public long getTick() {
+        return this.tick;
+    }
+
+    /**
+     *
+     * @return the id of the owned entity, 0 for anything but UPDATE
+     */
+    public long getEntityId() {
+        return this.entityId;
+    }
+
+    /**
+     *
+     * Encoded instance handle, identifies the instance within the recording
+     *
+     * @return
+     */
+    public byte[] getInstanceHandle() {
+        return this.instanceHandle;
+    }
+
+    /**
+     *
+     * @return null for anything but DISCOVER
+     */
+    public String getInstanceName() {
+        return this.instanceName;
+    }
+
+    /**
+     *
+     * @return null for REMOVE
+     */
+    public String getClassName() {
+        return this.className;
+    }
+
+    /**
+     *
+     * Number of values of an UPDATE or REFLECT
+     *
+     * @return
+     */
+    public int getValueCount() {
+        return this.valueCount;
+    }
+
+    /**
+     *
+     * Slot of value i in the class as it was recorded
+     *
+     */
+    public int getSlot(int i) {
+        return this.slots[i];
+    }
+
+    public String getAttributeName(int i) {
+        return this.attributeNames[this.slots[i]];
+    }
+
+    /**
+     *
+     * Read-only view of the encoded value i
+     *
+     */
+    public ByteBuffer getValue(int i) {
+        return this.values[i];
+    }
+}
@@ -0,0 +1,383 @@
+package federate;
+
+import hla.rti1516e.AttributeHandle;
+import hla.rti1516e.AttributeHandleValueMap;
+import hla.rti1516e.ObjectInstanceHandle;
+import model.AttributeDef;
+import model.Entity;
+import model.EntityDef;
+import util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *
+ * Append-only recording of the attribute updates a federate sends and
+ * reflects, for UpdateReplayer.  A recording is a directory of segment files
+ * and a tick index:
+ *
+ *   segment-N.log   int magic, int version, int segment number, class table
+ *                   (short classCount, per class: string className,
+ *                   short attributeCount, per attribute: string name),
+ *                   then records
+ *   ticks.idx       one entry per tick: long tick, long elapsedNanos,
+ *                   int segment, int offset of the tick's TICK record
+ *
+ * Records start with their type byte:
+ *
+ *   TICK      long tick, long elapsedNanos since the recording started
+ *   UPDATE    long entityId, short classIndex, handle, values
+ *   REFLECT   short classIndex, handle, values
+ *   DISCOVER  short classIndex, handle, string instanceName
+ *   REMOVE    handle
+ *
+ * A handle is a byte length and the encoded instance handle.  Values are a
+ * byte count and, per value, a byte slot, an int length and the encoded
+ * value.  Strings are a short length and UTF-8, everything is big endian.
+ * Segments roll over between ticks once they pass the segment size, a tick
+ * never spans two segments.  Records are buffered and written at the end of
+ * every tick.
+ *
+ * Ticks increase, except when a checkpoint restore rewinds the federate's
+ * tick count.  A rewound tick starts a new segment, and UpdateReplayer plays
+ * what was recorded after the restore in place of the ticks it replaced.
+ *
+ * Tick thread only.
+ *
+ */
+public class UpdateRecorder implements AutoCloseable {
+
+    private static final Log LOG = Log.getLog(UpdateRecorder.class);
+
+    static final int MAGIC = 0x48535552;
+    static final int VERSION = 1;
+
+    static final String INDEX_FILE = "ticks.idx";
+    static final int INDEX_ENTRY_BYTES = 8 + 8 + 4 + 4;
+
+    static final byte TICK = 0;
+    static final byte UPDATE = 1;
+    static final byte REFLECT = 2;
+    static final byte DISCOVER = 3;
+    static final byte REMOVE = 4;
+
+    private static final long DEFAULT_SEGMENT_BYTES = 256L << 20;
+    private static final int INITIAL_BUFFER_BYTES = 1 << 20;
+
+    private final File directory;
+    private final long segmentBytes;
+    private final long startNanos;
+
+    //  Class indexes of the class table, in the order of the definitions
+    private final List<EntityDef> entityDefinitions;
+    private final Map<EntityDef, Integer> classIndexes;
+
+    private FileChannel segment, index;
+    private int segmentNumber;
+    private long segmentPosition;
+
+    //  Records and index entries not written yet
+    private ByteBuffer buffer;
+    private final ByteBuffer indexBuffer;
+
+    private long tick;
+    private final byte[] handleBytes;
+
+    static String getSegmentName(int segmentNumber) {
+        return String.format("segment-%06d.log", segmentNumber);
+    }
+
+    public UpdateRecorder(File directory, List<EntityDef> entityDefinitions, long tick) throws IOException {
+        this(directory, entityDefinitions, tick, DEFAULT_SEGMENT_BYTES);
+    }
+
+    /**
+     *
+     * Start a new recording in directory, which must not hold one already
+     *
+     * @param directory
+     * @param entityDefinitions every class that will be recorded
+     * @param tick the federate's current tick
+     * @param segmentBytes size after which the next tick starts a new segment, below 2GB
+     */
+    public UpdateRecorder(File directory, List<EntityDef> entityDefinitions, long tick, long segmentBytes)
+            throws IOException {
+        assert segmentBytes > 0 && segmentBytes < Integer.MAX_VALUE;
+
+        if(!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        if(new File(directory, INDEX_FILE).exists()) {
+            throw new IOException(directory + " already holds a recording");
+        }
+
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.startNanos = System.nanoTime();
+        this.entityDefinitions = entityDefinitions;
+        this.classIndexes = new IdentityHashMap<>();
+        for(EntityDef entityDef : entityDefinitions) {
+            //  Slots and value counts are recorded in a byte
+            if(entityDef.getNumAttributes() > 0xFF) {
+                throw new IOException(entityDef.getClassName() + " has more than 255 attributes");
+            }
+            this.classIndexes.put(entityDef, this.classIndexes.size());
+        }
+
+        this.buffer = ByteBuffer.allocate(INITIAL_BUFFER_BYTES);
+        this.indexBuffer = ByteBuffer.allocate(64 * INDEX_ENTRY_BYTES);
+        this.handleBytes = new byte[0xFF];
+
+        this.index = FileChannel.open(new File(directory, INDEX_FILE).toPath(), StandardOpenOption.CREATE_NEW,
+                                      StandardOpenOption.WRITE);
+        this.openSegment(0);
+
+        this.tick = tick;
+        this.writeTick();
+
+        LOG.success("Recording to " + directory);
+    }
+
+    private void openSegment(int segmentNumber) throws IOException {
+        if(this.segment != null) {
+            this.segment.close();
+        }
+
+        this.segment = FileChannel.open(new File(this.directory, getSegmentName(segmentNumber)).toPath(),
+                                        StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        this.segmentNumber = segmentNumber;
+        this.segmentPosition = 0;
+
+        this.reserve(12).putInt(MAGIC).putInt(VERSION).putInt(segmentNumber);
+        this.reserve(2).putShort((short) this.entityDefinitions.size());
+
+        for(EntityDef entityDef : this.entityDefinitions) {
+            this.putString(entityDef.getClassName());
+            this.reserve(2).putShort((short) entityDef.getNumAttributes());
+
+            for(String attributeName : entityDef.getAttributeNames()) {
+                this.putString(attributeName);
+            }
+        }
+    }
+
+    /**
+     *
+     * Start recording the records of tick, called before the tick ingests
+     * reflections and before records made between ticks, which then belong
+     * to the next tick.  Does nothing when tick is already being recorded.
+     *
+     * @param tick
+     */
+    public void beginTick(long tick) throws IOException {
+        if(tick == this.tick) {
+            return;
+        }
+
+        boolean rewound = tick < this.tick;
+        this.tick = tick;
+        if(rewound || this.segmentPosition + this.buffer.position() >= this.segmentBytes) {
+            this.flush();
+            this.openSegment(this.segmentNumber + 1);
+        }
+
+        this.writeTick();
+    }
+
+    private void writeTick() throws IOException {
+        long elapsed = System.nanoTime() - this.startNanos;
+
+        if(this.indexBuffer.remaining() < INDEX_ENTRY_BYTES) {
+            this.flush();
+        }
+        this.indexBuffer.putLong(this.tick).putLong(elapsed).putInt(this.segmentNumber)
+                        .putInt((int) (this.segmentPosition + this.buffer.position()));
+
+        this.reserve(17).put(TICK).putLong(this.tick).putLong(elapsed);
+    }
+
+    /**
+     *
+     * Write the records of the tick, called at the end of the tick
+     *
+     */
+    public void endTick() throws IOException {
+        this.flush();
+    }
+
+    /*
+     * The record* methods check everything that can fail before buffering
+     * anything, a record that is refused leaves no trace in the recording
+     */
+
+    /**
+     *
+     * Record an update sent for an owned entity
+     *
+     * @param entity
+     * @param attributes the values sent
+     */
+    public void recordUpdate(Entity entity, AttributeHandleValueMap attributes) throws IOException {
+        EntityDef entityDef = entity.getEntityDefinition();
+        short classIndex = this.getClassIndex(entityDef);
+        int handleLength = this.encode(entity.getInstanceHandle());
+
+        ByteBuffer buffer = this.reserve(1 + 8 + 2 + 1 + handleLength + 1);
+        buffer.put(UPDATE).putLong(entity.getId()).putShort(classIndex);
+        buffer.put((byte) handleLength).put(this.handleBytes, 0, handleLength);
+
+        int countPosition = buffer.position();
+        int count = 0;
+        buffer.put((byte) 0);
+
+        for(Map.Entry<AttributeHandle, byte[]> attribute : attributes.entrySet()) {
+            if(this.putValue(entityDef, attribute.getKey(), attribute.getValue())) {
+                count++;
+            }
+        }
+        this.buffer.put(countPosition, (byte) count);
+    }
+
+    /**
+     *
+     * Record a reflected update of a remote entity
+     *
+     * @param entityDef
+     * @param instanceHandle
+     * @param handles
+     * @param values
+     */
+    void recordReflect(EntityDef entityDef, ObjectInstanceHandle instanceHandle, AttributeHandle[] handles,
+                       byte[][] values) throws IOException {
+        short classIndex = this.getClassIndex(entityDef);
+        int handleLength = this.encode(instanceHandle);
+
+        ByteBuffer buffer = this.reserve(1 + 2 + 1 + handleLength + 1);
+        buffer.put(REFLECT).putShort(classIndex);
+        buffer.put((byte) handleLength).put(this.handleBytes, 0, handleLength);
+
+        int countPosition = buffer.position();
+        int count = 0;
+        buffer.put((byte) 0);
+
+        for(int i = 0; i < handles.length; i++) {
+            if(this.putValue(entityDef, handles[i], values[i])) {
+                count++;
+            }
+        }
+        this.buffer.put(countPosition, (byte) count);
+    }
+
+    void recordDiscover(EntityDef entityDef, ObjectInstanceHandle instanceHandle, String name) throws IOException {
+        short classIndex = this.getClassIndex(entityDef);
+        int handleLength = this.encode(instanceHandle);
+
+        ByteBuffer buffer = this.reserve(1 + 2 + 1 + handleLength);
+        buffer.put(DISCOVER).putShort(classIndex);
+        buffer.put((byte) handleLength).put(this.handleBytes, 0, handleLength);
+
+        this.putString(name == null ? "" : name);
+    }
+
+    void recordRemove(ObjectInstanceHandle instanceHandle) throws IOException {
+        int handleLength = this.encode(instanceHandle);
+
+        this.reserve(1 + 1 + handleLength).put(REMOVE).put((byte) handleLength).put(this.handleBytes, 0, handleLength);
+    }
+
+    /**
+     *
+     * @return false for attributes the definition does not know, they are left out
+     */
+    private boolean putValue(EntityDef entityDef, AttributeHandle handle, byte[] value) {
+        AttributeDef attributeDef = entityDef.getAttributeDef(handle);
+        if(attributeDef == null) {
+            return false;
+        }
+
+        this.reserve(1 + 4 + value.length).put((byte) attributeDef.getSlot()).putInt(value.length).put(value);
+        return true;
+    }
+
+    private short getClassIndex(EntityDef entityDef) throws IOException {
+        Integer index = this.classIndexes.get(entityDef);
+        if(index == null) {
+            throw new IOException(entityDef.getClassName() + " is not in the recording's class table");
+        }
+
+        return (short) (int) index;
+    }
+
+    private int encode(ObjectInstanceHandle instanceHandle) throws IOException {
+        int length = instanceHandle.encodedLength();
+        if(length > this.handleBytes.length) {
+            throw new IOException("Instance handle of " + length + " bytes");
+        }
+
+        instanceHandle.encode(this.handleBytes, 0);
+        return length;
+    }
+
+    private void putString(String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        this.reserve(2 + bytes.length).putShort((short) bytes.length).put(bytes);
+    }
+
+    /**
+     *
+     * The buffer, with room for length more bytes.  Records only move when the
+     * buffer grows, never when it is written out, so positions within the record
+     * being built stay valid.
+     *
+     */
+    private ByteBuffer reserve(int length) {
+        if(this.buffer.remaining() < length) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(2 * this.buffer.capacity(),
+                                                            this.buffer.position() + length));
+            this.buffer.flip();
+            grown.put(this.buffer);
+            this.buffer = grown;
+        }
+
+        return this.buffer;
+    }
+
+    /**
+     *
+     * Write the buffered records, then the index entries pointing into them
+     *
+     */
+    private void flush() throws IOException {
+        this.buffer.flip();
+        while(this.buffer.hasRemaining()) {
+            this.segmentPosition += this.segment.write(this.buffer);
+        }
+        this.buffer.clear();
+
+        this.indexBuffer.flip();
+        while(this.indexBuffer.hasRemaining()) {
+            this.index.write(this.indexBuffer);
+        }
+        this.indexBuffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            this.flush();
+        } finally {
+            this.segment.close();
+            this.index.close();
+        }
+
+        LOG.success("Recorded " + (this.segmentNumber + 1) + " segments to " + this.directory);
+    }
+}
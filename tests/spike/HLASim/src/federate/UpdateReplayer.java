@@ -0,0 +1,375 @@
+package federate;
+
+import util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ *
+ * Plays back a recording of an UpdateRecorder to a ReplayListener, no RTI
+ * involved.  Ticks are paced by the time they were recorded at divided by the
+ * speed, so speed 100 replays an hour in 36 seconds, or as fast as the
+ * listener keeps up with a speed of 0.  The tick index lets a replay start at
+ * any tick without reading what came before.
+ *
+ * A recording cut short (IE: the recording federate crashed) replays up to
+ * its last complete record.
+ *
+ * The index is split into runs wherever the recorded ticks went back (a
+ * checkpoint restore), ticks recorded by a later run replace the same and
+ * later ticks of the runs before it.
+ *
+ */
+public class UpdateReplayer {
+
+    private static final Log LOG = Log.getLog(UpdateReplayer.class);
+
+    private final File directory;
+
+    //  The tick index, in recording order
+    private final int tickCount;
+    private final long[] ticks, elapsedNanos;
+    private final int[] segments, offsets;
+
+    //  Per run: index of its first entry, and the last of its ticks that no later run replaced
+    private final int[] runStarts;
+    private final long[] runLastTicks;
+
+    public UpdateReplayer(File directory) throws IOException {
+        this.directory = directory;
+
+        ByteBuffer index = ByteBuffer.wrap(Files.readAllBytes(new File(directory, UpdateRecorder.INDEX_FILE).toPath()));
+
+        //  A partly written last entry is ignored
+        this.tickCount = index.remaining() / UpdateRecorder.INDEX_ENTRY_BYTES;
+        this.ticks = new long[this.tickCount];
+        this.elapsedNanos = new long[this.tickCount];
+        this.segments = new int[this.tickCount];
+        this.offsets = new int[this.tickCount];
+
+        for(int i = 0; i < this.tickCount; i++) {
+            this.ticks[i] = index.getLong();
+            this.elapsedNanos[i] = index.getLong();
+            this.segments[i] = index.getInt();
+            this.offsets[i] = index.getInt();
+        }
+
+        int runCount = this.tickCount == 0 ? 0 : 1;
+        for(int i = 1; i < this.tickCount; i++) {
+            if(this.ticks[i] <= this.ticks[i - 1]) {
+                runCount++;
+            }
+        }
+
+        this.runStarts = new int[runCount];
+        this.runLastTicks = new long[runCount];
+        for(int i = 0, run = 0; i < this.tickCount; i++) {
+            if(i == 0 || this.ticks[i] <= this.ticks[i - 1]) {
+                this.runStarts[run++] = i;
+            }
+        }
+
+        long replacedFrom = Long.MAX_VALUE;
+        for(int run = runCount - 1; run >= 0; run--) {
+            this.runLastTicks[run] = Math.min(this.ticks[this.getRunEnd(run) - 1], replacedFrom - 1);
+            replacedFrom = Math.min(replacedFrom, this.ticks[this.runStarts[run]]);
+        }
+    }
+
+    private int getRunEnd(int run) {
+        return run + 1 < this.runStarts.length ? this.runStarts[run + 1] : this.tickCount;
+    }
+
+    /**
+     *
+     * @return the first recorded tick, -1 for an empty recording
+     */
+    public long getFirstTick() {
+        long first = -1;
+
+        for(int run = this.runStarts.length - 1; run >= 0; run--) {
+            if(this.ticks[this.runStarts[run]] <= this.runLastTicks[run]) {
+                first = this.ticks[this.runStarts[run]];
+            }
+        }
+
+        return first;
+    }
+
+    /**
+     *
+     * @return the last recorded tick, -1 for an empty recording
+     */
+    public long getLastTick() {
+        return this.tickCount == 0 ? -1 : this.ticks[this.tickCount - 1];
+    }
+
+    /**
+     *
+     * Replay the ticks fromTick to toTick (inclusive) of the recording.
+     *
+     * @param fromTick
+     * @param toTick
+     * @param speed recorded time per replay time, 0 or less for as fast as possible
+     * @param listener
+     * @return the number of records replayed, not counting ticks
+     */
+    public long replay(long fromTick, long toTick, double speed, ReplayListener listener)
+            throws IOException, InterruptedException {
+        Pacer pacer = null;
+        UpdateRecord record = new UpdateRecord();
+        long records = 0;
+        long start = System.nanoTime();
+
+        for(int run = 0; run < this.runStarts.length; run++) {
+            long lastTick = Math.min(toTick, this.runLastTicks[run]);
+
+            int first = Arrays.binarySearch(this.ticks, this.runStarts[run], this.getRunEnd(run), fromTick);
+            if(first < 0) {
+                first = -first - 1;
+            }
+            if(first == this.getRunEnd(run) || this.ticks[first] > lastTick) {
+                continue;
+            }
+
+            if(pacer == null) {
+                pacer = new Pacer(this.elapsedNanos[first], speed);
+            }
+            records += this.replay(first, lastTick, pacer, record, listener);
+        }
+
+        LOG.info("Replayed " + records + " records of ticks " + fromTick + " to " + Math.min(toTick, this.getLastTick())
+                 + " in " + (System.nanoTime() - start) / 1000000 + "ms");
+        return records;
+    }
+
+    /**
+     *
+     * Replay from the index entry first on, up to toTick
+     *
+     */
+    private long replay(int first, long toTick, Pacer pacer, UpdateRecord record, ReplayListener listener)
+            throws IOException, InterruptedException {
+        long records = 0;
+        int offset = this.offsets[first];
+
+        for(int segment = this.segments[first]; ; segment++) {
+            File file = new File(this.directory, UpdateRecorder.getSegmentName(segment));
+            if(!file.isFile()) {
+                break;
+            }
+
+            Segment reader = new Segment(file);
+            long replayed = reader.replay(offset, toTick, pacer, record, listener);
+
+            offset = -1;
+            if(replayed < 0) {
+                records += -replayed - 1;
+                break;
+            }
+            records += replayed;
+        }
+
+        return records;
+    }
+
+    /**
+     *
+     * Holds the replay back until a tick's recorded time, scaled by the speed, has passed
+     *
+     */
+    private static final class Pacer {
+
+        private final long firstElapsedNanos, startNanos;
+        private final double speed;
+
+        Pacer(long firstElapsedNanos, double speed) {
+            this.firstElapsedNanos = firstElapsedNanos;
+            this.startNanos = System.nanoTime();
+            this.speed = speed;
+        }
+
+        void await(long elapsedNanos) throws InterruptedException {
+            if(this.speed <= 0) {
+                return;
+            }
+
+            long due = this.startNanos + (long) ((elapsedNanos - this.firstElapsedNanos) / this.speed);
+            for(long remaining = due - System.nanoTime(); remaining > 0; remaining = due - System.nanoTime()) {
+                LockSupport.parkNanos(remaining);
+
+                if(Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        }
+    }
+
+    /**
+     *
+     * One mapped segment file and its class table
+     *
+     */
+    private static final class Segment {
+
+        private final File file;
+        private final ByteBuffer buffer;
+        private final String[] classNames;
+        private final String[][] attributeNames;
+
+        Segment(File file) throws IOException {
+            this.file = file;
+
+            try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+
+            try {
+                if(this.buffer.getInt() != UpdateRecorder.MAGIC || this.buffer.getInt() != UpdateRecorder.VERSION) {
+                    throw new IOException(file + " is not a version " + UpdateRecorder.VERSION + " recording");
+                }
+                this.buffer.getInt();
+
+                int classCount = this.buffer.getShort();
+                this.classNames = new String[classCount];
+                this.attributeNames = new String[classCount][];
+
+                for(int index = 0; index < classCount; index++) {
+                    this.classNames[index] = this.getString();
+                    this.attributeNames[index] = new String[this.buffer.getShort()];
+
+                    for(int slot = 0; slot < this.attributeNames[index].length; slot++) {
+                        this.attributeNames[index][slot] = this.getString();
+                    }
+                }
+            } catch(BufferUnderflowException e) {
+                throw new IOException("Truncated header in " + file);
+            }
+        }
+
+        private String getString() {
+            byte[] bytes = new byte[this.buffer.getShort()];
+            this.buffer.get(bytes);
+
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private byte[] getHandle() {
+            byte[] handle = new byte[this.buffer.get() & 0xFF];
+            this.buffer.get(handle);
+
+            return handle;
+        }
+
+        /**
+         *
+         * @param offset of the first record to replay, -1 for the first record after the header
+         * @return the number of records replayed, or -(records + 1) once past toTick
+         *         or at the end of a truncated segment
+         */
+        long replay(int offset, long toTick, Pacer pacer, UpdateRecord record, ReplayListener listener)
+                throws IOException, InterruptedException {
+            if(offset >= 0) {
+                this.buffer.position(offset);
+            }
+
+            long records = 0;
+            long tick = -1;
+
+            while(this.buffer.hasRemaining()) {
+                int recordStart = this.buffer.position();
+
+                try {
+                    byte type = this.buffer.get();
+
+                    if(type == UpdateRecorder.TICK) {
+                        tick = this.buffer.getLong();
+                        long elapsed = this.buffer.getLong();
+
+                        if(tick > toTick) {
+                            return -(records + 1);
+                        }
+
+                        pacer.await(elapsed);
+                        listener.onTick(tick);
+                        continue;
+                    }
+
+                    this.read(type, tick, record);
+                } catch(BufferUnderflowException e) {
+                    LOG.warning("Truncated record at " + recordStart + " of " + this.file);
+                    return -(records + 1);
+                }
+
+                listener.onRecord(record);
+                records++;
+            }
+
+            return records;
+        }
+
+        private void read(byte type, long tick, UpdateRecord record) throws IOException {
+            switch(type) {
+                case UpdateRecorder.UPDATE: {
+                    long entityId = this.buffer.getLong();
+                    int classIndex = this.buffer.getShort();
+
+                    record.set(UpdateRecord.Kind.UPDATE, tick, entityId, this.classNames[classIndex],
+                               this.attributeNames[classIndex], this.getHandle(), null);
+                    this.readValues(record);
+                    break;
+                }
+                case UpdateRecorder.REFLECT: {
+                    int classIndex = this.buffer.getShort();
+
+                    record.set(UpdateRecord.Kind.REFLECT, tick, 0, this.classNames[classIndex],
+                               this.attributeNames[classIndex], this.getHandle(), null);
+                    this.readValues(record);
+                    break;
+                }
+                case UpdateRecorder.DISCOVER: {
+                    int classIndex = this.buffer.getShort();
+                    byte[] handle = this.getHandle();
+
+                    record.set(UpdateRecord.Kind.DISCOVER, tick, 0, this.classNames[classIndex],
+                               this.attributeNames[classIndex], handle, this.getString());
+                    break;
+                }
+                case UpdateRecorder.REMOVE:
+                    record.set(UpdateRecord.Kind.REMOVE, tick, 0, null, null, this.getHandle(), null);
+                    break;
+                default:
+                    throw new IOException("Unknown record type " + type + " at "
+                                          + (this.buffer.position() - 1) + " of " + this.file);
+            }
+        }
+
+        private void readValues(UpdateRecord record) {
+            int count = this.buffer.get() & 0xFF;
+
+            for(int i = 0; i < count; i++) {
+                int slot = this.buffer.get() & 0xFF;
+                int length = this.buffer.getInt();
+
+                if(length > this.buffer.remaining()) {
+                    throw new BufferUnderflowException();
+                }
+
+                ByteBuffer value = this.buffer.slice();
+                value.limit(length);
+                record.addValue(slot, value.asReadOnlyBuffer());
+
+                this.buffer.position(this.buffer.position() + length);
+            }
+        }
+    }
+}
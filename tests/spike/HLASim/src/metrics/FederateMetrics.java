@@ -0,0 +1,351 @@
+package metrics;
+
+import util.Log;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ *
+ * Metrics registry for one federate.  The Federate records into it from the
+ * tick path (histograms and counters are lock-free) and it is published as an
+ * MXBean so JMX clients (jconsole, dashboards) can read it from a running
+ * federate.
+ *
+ */
+public class FederateMetrics implements FederateMetricsMXBean {
+
+    private static final Log LOG = Log.getLog(FederateMetrics.class);
+
+    //  RTI call names used as keys of getRtiCallLatency
+    public static final String UPDATE_ATTRIBUTE_VALUES = "updateAttributeValues";
+    public static final String REGISTER_OBJECT_INSTANCE = "registerObjectInstance";
+    public static final String TIME_ADVANCE_GRANT = "timeAdvanceGrant";
+    public static final String RESERVE_OBJECT_INSTANCE_NAMES = "reserveMultipleObjectInstanceName";
+    public static final String SEND_INTERACTION = "sendInteraction";
+
+    private static final long RATE_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final AtomicLong tickCount;
+    private final Histogram tickTime, computeTime, publishTime, evokeTime;
+    private final ConcurrentHashMap<String, Histogram> rtiCallLatency;
+    private final ConcurrentHashMap<String, LongAdder> entityCounts;
+    private final ConcurrentHashMap<String, LongAdder> exceptionCounts;
+
+    private final AtomicLong updatesSent, bytesSent, interactionsSent, interactionBytesSent, saturatedEvokes;
+    private volatile IntSupplier callbackBacklog;
+
+    //  Rate window, only touched by the tick thread in tickFinished
+    private long windowStartNanos, windowStartUpdates, windowStartBytes;
+    private volatile double updatesPerSecond, bytesPerSecond;
+
+    private ObjectName objectName;
+
+    public FederateMetrics() {
+        this.tickCount = new AtomicLong();
+        this.tickTime = new Histogram();
+        this.computeTime = new Histogram();
+        this.publishTime = new Histogram();
+        this.evokeTime = new Histogram();
+        this.rtiCallLatency = new ConcurrentHashMap<>();
+        this.entityCounts = new ConcurrentHashMap<>();
+        this.exceptionCounts = new ConcurrentHashMap<>();
+        this.updatesSent = new AtomicLong();
+        this.bytesSent = new AtomicLong();
+        this.interactionsSent = new AtomicLong();
+        this.interactionBytesSent = new AtomicLong();
+        this.saturatedEvokes = new AtomicLong();
+        this.callbackBacklog = () -> 0;
+        this.windowStartNanos = System.nanoTime();
+    }
+
+    /**
+     *
+     * Register with the platform MBeanServer, replacing a previous registration
+     * under the same name.
+     *
+     * @param federateName
+     * @return
+     */
+    public boolean register(String federateName) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("hlasim:type=Federate,name=" + ObjectName.quote(federateName));
+
+            if(server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+
+            server.registerMBean(this, name);
+            this.objectName = name;
+
+            LOG.success("Registered metrics MBean " + name);
+            return true;
+        } catch(Exception e) {
+            LOG.error("Could not register metrics MBean for " + federateName + " : " + e);
+            return false;
+        }
+    }
+
+    public void unregister() {
+        if(this.objectName == null) {
+            return;
+        }
+
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.objectName);
+            this.objectName = null;
+        } catch(Exception e) {
+            LOG.error("Could not unregister metrics MBean " + this.objectName + " : " + e);
+        }
+    }
+
+    /*
+     * Recording, called by the Federate
+     */
+
+    public void recordCompute(long nanos) {
+        this.computeTime.record(nanos);
+    }
+
+    public void recordPublish(long nanos) {
+        this.publishTime.record(nanos);
+    }
+
+    /**
+     *
+     * Record a whole tick, and roll the update/byte rates over once a second
+     * of ticks has passed.  Tick thread only.
+     *
+     * @param nanos
+     */
+    public void recordTick(long nanos) {
+        this.tickTime.record(nanos);
+        this.tickCount.incrementAndGet();
+
+        long now = System.nanoTime();
+        long elapsed = now - this.windowStartNanos;
+
+        if(elapsed >= RATE_WINDOW_NANOS) {
+            long updates = this.updatesSent.get();
+            long bytes = this.bytesSent.get();
+
+            this.updatesPerSecond = (updates - this.windowStartUpdates) * 1e9 / elapsed;
+            this.bytesPerSecond = (bytes - this.windowStartBytes) * 1e9 / elapsed;
+
+            this.windowStartNanos = now;
+            this.windowStartUpdates = updates;
+            this.windowStartBytes = bytes;
+        }
+    }
+
+    public void recordRtiCall(String call, long nanos) {
+        Histogram histogram = this.rtiCallLatency.get(call);
+
+        if(histogram == null) {
+            histogram = this.rtiCallLatency.computeIfAbsent(call, c -> new Histogram());
+        }
+
+        histogram.record(nanos);
+    }
+
+    /**
+     *
+     * An attribute update of encodedBytes bytes was accepted by the RTI
+     *
+     * @param encodedBytes
+     */
+    public void recordUpdate(int encodedBytes) {
+        this.updatesSent.incrementAndGet();
+        this.bytesSent.addAndGet(encodedBytes);
+    }
+
+    /**
+     *
+     * An interaction of encodedBytes bytes of parameters was accepted by the RTI,
+     * may be called from any thread
+     *
+     * @param encodedBytes
+     */
+    public void recordInteraction(int encodedBytes) {
+        this.interactionsSent.incrementAndGet();
+        this.interactionBytesSent.addAndGet(encodedBytes);
+    }
+
+    /**
+     *
+     * One evokeMultipleCallbacks pass took nanos, pending is what it returned:
+     * whether callbacks were still waiting when the budget ran out
+     *
+     * @param nanos
+     * @param pending
+     */
+    public void recordEvoke(long nanos, boolean pending) {
+        this.evokeTime.record(nanos);
+
+        if(pending) {
+            this.saturatedEvokes.incrementAndGet();
+        }
+    }
+
+    public void setCallbackBacklog(IntSupplier callbackBacklog) {
+        this.callbackBacklog = callbackBacklog;
+    }
+
+    public void recordEntityAdded(String className) {
+        this.entityCounts.computeIfAbsent(className, c -> new LongAdder()).increment();
+    }
+
+    /**
+     *
+     * An owned entity went away, IE: its ownership was transferred to another federate
+     *
+     * @param className
+     */
+    public void recordEntityRemoved(String className) {
+        this.entityCounts.computeIfAbsent(className, c -> new LongAdder()).decrement();
+    }
+
+    public void recordException(Throwable e) {
+        this.exceptionCounts.computeIfAbsent(e.getClass().getSimpleName(), c -> new LongAdder()).increment();
+    }
+
+    /*
+     * FederateMetricsMXBean
+     */
+
+    @Override
+    public long getTickCount() {
+        return this.tickCount.get();
+    }
+
+    @Override
+    public HistogramSnapshot getTickTime() {
+        return this.tickTime.snapshot();
+    }
+
+    @Override
+    public HistogramSnapshot getComputeTime() {
+        return this.computeTime.snapshot();
+    }
+
+    @Override
+    public HistogramSnapshot getPublishTime() {
+        return this.publishTime.snapshot();
+    }
+
+    @Override
+    public Map<String, HistogramSnapshot> getRtiCallLatency() {
+        Map<String, HistogramSnapshot> snapshots = new TreeMap<>();
+
+        for(Map.Entry<String, Histogram> entry : this.rtiCallLatency.entrySet()) {
+            snapshots.put(entry.getKey(), entry.getValue().snapshot());
+        }
+
+        return snapshots;
+    }
+
+    @Override
+    public int getCallbackBacklog() {
+        return this.callbackBacklog.getAsInt();
+    }
+
+    @Override
+    public HistogramSnapshot getEvokeTime() {
+        return this.evokeTime.snapshot();
+    }
+
+    @Override
+    public long getSaturatedEvokeCount() {
+        return this.saturatedEvokes.get();
+    }
+
+    @Override
+    public Map<String, Long> getEntityCounts() {
+        return sumAll(this.entityCounts);
+    }
+
+    @Override
+    public long getUpdatesSent() {
+        return this.updatesSent.get();
+    }
+
+    @Override
+    public long getBytesSent() {
+        return this.bytesSent.get();
+    }
+
+    @Override
+    public long getInteractionsSent() {
+        return this.interactionsSent.get();
+    }
+
+    @Override
+    public long getInteractionBytesSent() {
+        return this.interactionBytesSent.get();
+    }
+
+    @Override
+    public double getUpdatesPerSecond() {
+        return this.updatesPerSecond;
+    }
+
+    @Override
+    public double getBytesPerSecond() {
+        return this.bytesPerSecond;
+    }
+
+    @Override
+    public Map<String, Long> getExceptionCounts() {
+        return sumAll(this.exceptionCounts);
+    }
+
+    @Override
+    public long getExceptionCount() {
+        long total = 0;
+
+        for(LongAdder count : this.exceptionCounts.values()) {
+            total += count.sum();
+        }
+
+        return total;
+    }
+
+    /**
+     *
+     * Clear the timing histograms, counters that describe the federate's state
+     * (entity counts, totals sent) are kept.
+     *
+     */
+    @Override
+    public void reset() {
+        this.tickTime.reset();
+        this.computeTime.reset();
+        this.publishTime.reset();
+        this.evokeTime.reset();
+
+        for(Histogram histogram : this.rtiCallLatency.values()) {
+            histogram.reset();
+        }
+
+        this.exceptionCounts.clear();
+    }
+
+    private static Map<String, Long> sumAll(Map<String, LongAdder> counters) {
+        Map<String, Long> sums = new TreeMap<>();
+
+        for(Map.Entry<String, LongAdder> entry : counters.entrySet()) {
+            sums.put(entry.getKey(), entry.getValue().sum());
+        }
+
+        return sums;
+    }
+}
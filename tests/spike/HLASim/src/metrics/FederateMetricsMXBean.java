@@ -0,0 +1,49 @@
+package metrics;
+
+import java.util.Map;
+
+/**
+ *
+ * Management interface of FederateMetrics, registered with the platform
+ * MBeanServer as hlasim:type=Federate,name=[federateName].
+ *
+ */
+public interface FederateMetricsMXBean {
+
+    long getTickCount();
+
+    //  Whole tick, compute phase (entity ticks + collisions) and publish phase
+    HistogramSnapshot getTickTime();
+    HistogramSnapshot getComputeTime();
+    HistogramSnapshot getPublishTime();
+
+    //  RTI call name -> latency of that call
+    Map<String, HistogramSnapshot> getRtiCallLatency();
+
+    //  Callbacks received but not yet processed by the tick thread
+    int getCallbackBacklog();
+
+    //  HLA_EVOKED only: time per evokeMultipleCallbacks pass, and passes that
+    //  used their whole budget with callbacks still pending at the RTI
+    HistogramSnapshot getEvokeTime();
+    long getSaturatedEvokeCount();
+
+    //  Object class name -> number of owned entities
+    Map<String, Long> getEntityCounts();
+
+    //  Attribute updates only, interactions are counted apart
+    long getUpdatesSent();
+    long getBytesSent();
+    long getInteractionsSent();
+    long getInteractionBytesSent();
+
+    //  Over the last complete second of ticks
+    double getUpdatesPerSecond();
+    double getBytesPerSecond();
+
+    //  Exception class name -> count
+    Map<String, Long> getExceptionCounts();
+    long getExceptionCount();
+
+    void reset();
+}
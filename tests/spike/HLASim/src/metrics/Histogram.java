@@ -0,0 +1,118 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ *
+ * Fixed size, lock-free histogram of nanosecond durations.  Buckets are
+ * log-linear: each power of two is split into SUB_BUCKETS equal buckets, so
+ * any value is recorded with at most 1/SUB_BUCKETS relative error and
+ * recording is a few shifts and one atomic increment, cheap enough to call
+ * from the tick path.
+ *
+ */
+public class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = 64 * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets;
+    private final AtomicLong count, sum, max;
+
+    public Histogram() {
+        this.buckets = new AtomicLongArray(BUCKETS);
+        this.count = new AtomicLong();
+        this.sum = new AtomicLong();
+        this.max = new AtomicLong();
+    }
+
+    private static int bucketIndex(long value) {
+        if(value < SUB_BUCKETS) {
+            return (int) Math.max(0, value);
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     *
+     * Largest value recorded in a bucket
+     *
+     */
+    private static long bucketUpperBound(int index) {
+        if(index < SUB_BUCKETS) {
+            return index;
+        }
+
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = index % SUB_BUCKETS;
+
+        return ((SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    public void record(long nanos) {
+        this.buckets.incrementAndGet(bucketIndex(nanos));
+        this.count.incrementAndGet();
+        this.sum.addAndGet(nanos);
+
+        long currentMax = this.max.get();
+        while(nanos > currentMax && !this.max.compareAndSet(currentMax, nanos)) {
+            currentMax = this.max.get();
+        }
+    }
+
+    public long getCount() {
+        return this.count.get();
+    }
+
+    /**
+     *
+     * @param percentile    0 - 100
+     * @return upper bound of the bucket holding the percentile, in nanoseconds
+     */
+    public long getPercentile(double percentile) {
+        long total = this.count.get();
+        if(total == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+
+        for(int i = 0; i < BUCKETS; i++) {
+            seen += this.buckets.get(i);
+
+            if(seen >= rank) {
+                return Math.min(bucketUpperBound(i), this.max.get());
+            }
+        }
+
+        return this.max.get();
+    }
+
+    public HistogramSnapshot snapshot() {
+        long total = this.count.get();
+        double mean = total == 0 ? 0 : (double) this.sum.get() / total;
+
+        return new HistogramSnapshot(total, mean / 1e6,
+                                     this.getPercentile(50) / 1e6,
+                                     this.getPercentile(90) / 1e6,
+                                     this.getPercentile(99) / 1e6,
+                                     this.max.get() / 1e6);
+    }
+
+    public void reset() {
+        for(int i = 0; i < BUCKETS; i++) {
+            this.buckets.set(i, 0);
+        }
+
+        this.count.set(0);
+        this.sum.set(0);
+        this.max.set(0);
+    }
+}
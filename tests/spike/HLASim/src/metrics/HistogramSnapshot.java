@@ -0,0 +1,37 @@
+package metrics;
+
+/**
+ *
+ * Point in time summary of a Histogram, in milliseconds.  Exposed to JMX
+ * clients as CompositeData.
+ *
+ */
+public class HistogramSnapshot {
+
+    private final long count;
+    private final double meanMillis, p50Millis, p90Millis, p99Millis, maxMillis;
+
+    public HistogramSnapshot(long count, double meanMillis, double p50Millis, double p90Millis,
+                             double p99Millis, double maxMillis) {
+        this.count = count;
+        this.meanMillis = meanMillis;
+        this.p50Millis = p50Millis;
+        this.p90Millis = p90Millis;
+        this.p99Millis = p99Millis;
+        this.maxMillis = maxMillis;
+    }
+
+    public long getCount() { return this.count; }
+    public double getMeanMillis() { return this.meanMillis; }
+    public double getP50Millis() { return this.p50Millis; }
+    public double getP90Millis() { return this.p90Millis; }
+    public double getP99Millis() { return this.p99Millis; }
+    public double getMaxMillis() { return this.maxMillis; }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d mean=%.3fms p50=%.3fms p90=%.3fms p99=%.3fms max=%.3fms",
+                             this.count, this.meanMillis, this.p50Millis, this.p90Millis,
+                             this.p99Millis, this.maxMillis);
+    }
+}
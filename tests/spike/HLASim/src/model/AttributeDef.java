@@ -2,6 +2,8 @@ package model;
 
 import hla.rti1516e.AttributeHandle;
 
+import java.nio.ByteBuffer;
+
 /**
  * Created by Andrew on 10/8/2016.
  */
@@ -10,6 +12,9 @@ public abstract class AttributeDef {
     protected String name;
     protected AttributeHandle handle;
 
+    //  Index of this attribute within its EntityDef, assigned by the EntityDef
+    protected int slot = -1;
+
 
     /**
      *
@@ -27,6 +32,11 @@ public abstract class AttributeDef {
 
     public String getName() { return this.name; }
     public AttributeHandle getHandle() { return this.handle; }
+    public int getSlot() { return this.slot; }
+
+    void setSlot(int slot) {
+        this.slot = slot;
+    }
 
     public void setHandle(AttributeHandle handle) {
         //  We can't use a null attribute handle, if this is null
@@ -35,6 +45,60 @@ public abstract class AttributeDef {
         this.handle = handle;
     }
 
-    public abstract byte[] encode(Object value);
-    public abstract Object decode(byte[] bytes);
+    /**
+     *
+     * Encode the value into a freshly allocated byte[] of exactly
+     * getEncodedLength(value) bytes.  Prefer encode(value, buffer) on hot
+     * paths where the caller can reuse a buffer.
+     *
+     * @param value
+     * @return
+     */
+    public byte[] encode(Object value) {
+        byte[] bytes = new byte[this.getEncodedLength(value)];
+        this.encode(value, ByteBuffer.wrap(bytes));
+
+        return bytes;
+    }
+
+    public Object decode(byte[] bytes) {
+        return this.decode(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     *
+     * Human readable representation of a decoded value, used for logging only.
+     *
+     * @param value
+     * @return
+     */
+    public String format(Object value) {
+        return String.valueOf(value);
+    }
+
+    /**
+     *
+     * Octet boundary of the data type, the encoded value starts at a multiple
+     * of it within an HLAfixedRecord (see RecordAttributeDef).  Basic types
+     * align to their size, variable arrays to at least their HLAinteger32BE
+     * count.
+     *
+     * @return 1 unless overridden, IE: for values passed through as encoded
+     */
+    public int getOctetBoundary() {
+        return 1;
+    }
+
+    /**
+     *
+     * Codecs follow the basic data representations declared in the FOM
+     * (HLAinteger32BE, HLAfloat64BE, ...).  encode writes at the buffer's current
+     * position and decode reads from it, both advancing the position by
+     * getEncodedLength bytes.  Buffers are expected to be big endian (the
+     * ByteBuffer default).
+     *
+     */
+    public abstract int getEncodedLength(Object value);
+    public abstract void encode(Object value, ByteBuffer buffer);
+    public abstract Object decode(ByteBuffer buffer);
 }
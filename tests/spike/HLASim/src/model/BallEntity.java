@@ -5,14 +5,20 @@ import hla.rti1516e.exceptions.FederateNotExecutionMember;
 import hla.rti1516e.exceptions.NameNotFound;
 import hla.rti1516e.exceptions.NotConnected;
 import hla.rti1516e.exceptions.RTIinternalError;
+import util.Log;
 
 /**
  * Created by Andrew on 10/8/2016.
  */
 public class BallEntity extends Entity {
 
+    private static final Log LOG = Log.getLog(BallEntity.class);
+
     private int x, y, vx, vy, r;
 
+    //  Attribute slots, resolved once from the definition
+    private final int positionSlot, velocitySlot, radiusSlot;
+
     /**
      *
      * Example of a simple entity.  Real attribute values can be stored in
@@ -41,13 +47,47 @@ public class BallEntity extends Entity {
         this.vx = vx;
         this.vy = vy;
         this.r = r;
+
+        this.positionSlot = entityDef.getSlot("PositionVector");
+        this.velocitySlot = entityDef.getSlot("VelocityVector");
+        this.radiusSlot = entityDef.getSlot("Radius");
+    }
+
+    /**
+     *
+     * Empty ball restored from a checkpoint, see onRestored
+     *
+     * @param id
+     * @param federate
+     * @param entityDef
+     */
+    BallEntity(long id, Federate federate, EntityDef entityDef) {
+        super(entityDef, federate, id);
+
+        this.positionSlot = entityDef.getSlot("PositionVector");
+        this.velocitySlot = entityDef.getSlot("VelocityVector");
+        this.radiusSlot = entityDef.getSlot("Radius");
+    }
+
+    /**
+     *
+     * Reload the fields from the restored attribute slots
+     *
+     */
+    @Override
+    public void onRestored() {
+        this.x = this.getVec2X(this.positionSlot);
+        this.y = this.getVec2Y(this.positionSlot);
+        this.vx = this.getVec2X(this.velocitySlot);
+        this.vy = this.getVec2Y(this.velocitySlot);
+        this.r = this.getInt(this.radiusSlot);
     }
 
     /**
      *
      * Do the update calculations, in this case we simply "move" the ball
      * updating the object attributes (this.x, this.y) first and then
-     * updating the AttributeNameToValue and AttributeHandleValue maps.
+     * updating the encoded attribute slots.
      *
      */
     @Override
@@ -57,22 +97,31 @@ public class BallEntity extends Entity {
 
         this.updateAttributes();
 
-        System.out.println(this.getClassName() + "(" + this.getInstanceHandle() + ")");
-        for(String attrName : this.getAttributeNames()) {
-            System.out.println("\tattrName=" + new String(this.getAttributeBytes(attrName)));
+        //  Per tick dump, only decoded when TRACE is on for BallEntity and this tick is sampled
+        if(LOG.isSampled(Log.Level.TRACE)) {
+            StringBuilder msg = new StringBuilder(this.getClassName() + "(" + this.getInstanceHandle() + ")");
+            String[] attrNames = this.getAttributeNames();
+
+            for(int slot = 0; slot < attrNames.length; slot++) {
+                AttributeDef def = this.getEntityDefinition().getAttributeDef(slot);
+                msg.append("\n\t").append(attrNames[slot]).append("=")
+                   .append(def.format(this.getAttributeValue(slot)));
+            }
+
+            LOG.trace(msg.toString());
         }
     }
 
     /**
      *
-     * Make the proper calls to this.updateAttribute for all attributes, can probably
-     * refactor this to be more generic.  This works for now.
+     * Write all attributes through the typed slot setters, no boxing or
+     * intermediate arrays.
      *
      */
     @Override
     public void updateAttributes() {
-        this.updateAttribute("PositionVector", new int[] {this.x, this.y});
-        this.updateAttribute("VelocityVector", new int[] {this.vx, this.vy});
-        this.updateAttribute("Radius", this.r);
+        this.setVec2(this.positionSlot, this.x, this.y);
+        this.setVec2(this.velocitySlot, this.vx, this.vy);
+        this.setInt(this.radiusSlot, this.r);
     }
 }
@@ -24,4 +24,14 @@ public class BallEntityDef extends EntityDef {
         super("BallEntity", attributeDefs, federate);
     }
 
+    @Override
+    public boolean canRestore() {
+        return true;
+    }
+
+    @Override
+    public Entity restoreEntity(long id) throws Exception {
+        return new BallEntity(id, this.getFederate(), this);
+    }
+
 }
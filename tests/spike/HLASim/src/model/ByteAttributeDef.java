@@ -0,0 +1,40 @@
+package model;
+
+import java.nio.ByteBuffer;
+
+/**
+ *
+ * HLAoctet attribute, decoded as a boxed Byte, see IntAttributeDef
+ *
+ */
+public final class ByteAttributeDef extends AttributeDef {
+
+    public static final int ENCODED_LENGTH = 1;
+
+    public ByteAttributeDef(String name) {
+        super(name);
+    }
+
+    @Override
+    public int getEncodedLength(Object value) {
+        return ENCODED_LENGTH;
+    }
+
+    @Override
+    public void encode(Object value, ByteBuffer buffer) {
+        encodeByte((byte) value, buffer);
+    }
+
+    @Override
+    public Object decode(ByteBuffer buffer) {
+        return decodeByte(buffer);
+    }
+
+    public static void encodeByte(byte value, ByteBuffer buffer) {
+        buffer.put(value);
+    }
+
+    public static byte decodeByte(ByteBuffer buffer) {
+        return buffer.get();
+    }
+}
@@ -0,0 +1,57 @@
+package model;
+
+import java.nio.ByteBuffer;
+
+/**
+ *
+ * Opaque attribute, object = byte[].  Counted (HLAopaqueData) the bytes are
+ * preceded by their HLAinteger32BE count, otherwise the attribute is passed
+ * through as it was encoded, for data types without a codec of their own.
+ *
+ */
+public final class BytesAttributeDef extends AttributeDef {
+
+    private final boolean counted;
+
+    public BytesAttributeDef(String name, boolean counted) {
+        super(name);
+        this.counted = counted;
+    }
+
+    public boolean isCounted() {
+        return this.counted;
+    }
+
+    @Override
+    public int getEncodedLength(Object value) {
+        return (this.counted ? IntAttributeDef.ENCODED_LENGTH : 0) + ((byte[]) value).length;
+    }
+
+    @Override
+    public int getOctetBoundary() {
+        return this.counted ? IntAttributeDef.ENCODED_LENGTH : 1;
+    }
+
+    @Override
+    public void encode(Object value, ByteBuffer buffer) {
+        byte[] bytes = (byte[]) value;
+
+        if(this.counted) {
+            IntAttributeDef.encodeInt(bytes.length, buffer);
+        }
+        buffer.put(bytes);
+    }
+
+    @Override
+    public Object decode(ByteBuffer buffer) {
+        byte[] bytes = new byte[this.counted ? IntAttributeDef.decodeInt(buffer) : buffer.remaining()];
+        buffer.get(bytes);
+
+        return bytes;
+    }
+
+    @Override
+    public String format(Object value) {
+        return ((byte[]) value).length + " bytes";
+    }
+}
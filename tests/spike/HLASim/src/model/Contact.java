@@ -0,0 +1,45 @@
+package model;
+
+/**
+ *
+ * A contact between two circular entities found by the collision detector.
+ * Entity A is the one that comes first in the detector's grid order.
+ *
+ */
+public class Contact {
+
+    private final Entity entityA, entityB;
+    private final double penetration;
+
+    /**
+     *
+     * @param entityA
+     * @param entityB
+     * @param penetration   how far the circles overlap, (rA + rB) - distance
+     */
+    public Contact(Entity entityA, Entity entityB, double penetration) {
+        this.entityA = entityA;
+        this.entityB = entityB;
+        this.penetration = penetration;
+    }
+
+    public Entity getEntityA() { return this.entityA; }
+    public Entity getEntityB() { return this.entityB; }
+    public double getPenetration() { return this.penetration; }
+
+    /**
+     *
+     * Convenience for contact handlers, the entity on the other side of the contact
+     *
+     * @param self
+     * @return
+     */
+    public Entity getOther(Entity self) {
+        return self == this.entityA ? this.entityB : this.entityA;
+    }
+
+    @Override
+    public String toString() {
+        return "Contact(" + this.entityA.getId() + ", " + this.entityB.getId() + ", " + this.penetration + ")";
+    }
+}
@@ -0,0 +1,61 @@
+package model;
+
+/**
+ *
+ * Dead reckoning configuration for an EntityDef.  Entities of a class with a
+ * dead reckoning model only publish their position when it drifts more than
+ * threshold away from where receivers would extrapolate it to
+ * (lastPosition + lastVelocity * ticksSinceLastPublish), when the velocity
+ * changes, or when heartbeatTicks ticks pass without a position update.
+ *
+ * Velocities are in position units per tick, which is how BallEntity and
+ * KinematicStore integrate them.
+ *
+ */
+public class DeadReckoningModel {
+
+    private final int positionSlot, velocitySlot;
+    private final double threshold;
+    private final int heartbeatTicks;
+
+    /**
+     *
+     * @param entityDef         definition the model applies to
+     * @param positionAttrName  VectorAttributeDef holding the position
+     * @param velocityAttrName  VectorAttributeDef holding the velocity
+     * @param threshold         maximum tolerated extrapolation error
+     * @param heartbeatTicks    publish at least this often even without drift
+     */
+    public DeadReckoningModel(EntityDef entityDef, String positionAttrName, String velocityAttrName,
+                              double threshold, int heartbeatTicks) {
+        assert threshold >= 0 && heartbeatTicks > 0;
+
+        this.positionSlot = entityDef.getSlot(positionAttrName);
+        this.velocitySlot = entityDef.getSlot(velocityAttrName);
+        this.threshold = threshold;
+        this.heartbeatTicks = heartbeatTicks;
+    }
+
+    public int getPositionSlot() { return this.positionSlot; }
+    public int getVelocitySlot() { return this.velocitySlot; }
+    public double getThreshold() { return this.threshold; }
+    public int getHeartbeatTicks() { return this.heartbeatTicks; }
+
+    /**
+     *
+     * Should the owner publish, given its true position and the last published state?
+     *
+     * @return true if the error exceeds the threshold or the heartbeat is due
+     */
+    public boolean exceedsThreshold(int x, int y, int publishedX, int publishedY,
+                                    int publishedVx, int publishedVy, long ticksSincePublish) {
+        if(ticksSincePublish >= this.heartbeatTicks) {
+            return true;
+        }
+
+        double dx = x - (publishedX + (double) publishedVx * ticksSincePublish);
+        double dy = y - (publishedY + (double) publishedVy * ticksSincePublish);
+
+        return dx * dx + dy * dy > this.threshold * this.threshold;
+    }
+}
@@ -0,0 +1,45 @@
+package model;
+
+import java.nio.ByteBuffer;
+
+/**
+ *
+ * HLAfloat64BE attribute, decoded as a boxed Double, see IntAttributeDef
+ *
+ */
+public final class DoubleAttributeDef extends AttributeDef {
+
+    public static final int ENCODED_LENGTH = 8;
+
+    public DoubleAttributeDef(String name) {
+        super(name);
+    }
+
+    @Override
+    public int getEncodedLength(Object value) {
+        return ENCODED_LENGTH;
+    }
+
+    @Override
+    public int getOctetBoundary() {
+        return ENCODED_LENGTH;
+    }
+
+    @Override
+    public void encode(Object value, ByteBuffer buffer) {
+        encodeDouble((double) value, buffer);
+    }
+
+    @Override
+    public Object decode(ByteBuffer buffer) {
+        return decodeDouble(buffer);
+    }
+
+    public static void encodeDouble(double value, ByteBuffer buffer) {
+        buffer.putDouble(value);
+    }
+
+    public static double decodeDouble(ByteBuffer buffer) {
+        return buffer.getDouble();
+    }
+}
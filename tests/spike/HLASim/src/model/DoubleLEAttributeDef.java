@@ -0,0 +1,47 @@
+package model;
+
+import java.nio.ByteBuffer;
+
+/**
+ *
+ * HLAfloat64LE attribute, decoded as a boxed Double like DoubleAttributeDef.
+ * The bytes are reversed around the big endian buffer access, so no little
+ * endian view of the buffer is needed.
+ *
+ */
+public final class DoubleLEAttributeDef extends AttributeDef {
+
+    public static final int ENCODED_LENGTH = 8;
+
+    public DoubleLEAttributeDef(String name) {
+        super(name);
+    }
+
+    @Override
+    public int getEncodedLength(Object value) {
+        return ENCODED_LENGTH;
+    }
+
+    @Override
+    public int getOctetBoundary() {
+        return ENCODED_LENGTH;
+    }
+
+    @Override
+    public void encode(Object value, ByteBuffer buffer) {
+        encodeDoubleLE((double) value, buffer);
+    }
+
+    @Override
+    public Object decode(ByteBuffer buffer) {
+        return decodeDoubleLE(buffer);
+    }
+
+    public static void encodeDoubleLE(double value, ByteBuffer buffer) {
+        buffer.putLong(Long.reverseBytes(Double.doubleToRawLongBits(value)));
+    }
+
+    public static double decodeDoubleLE(ByteBuffer buffer) {
+        return Double.longBitsToDouble(Long.reverseBytes(buffer.getLong()));
+    }
+}
@@ -1,22 +1,30 @@
 package model;
 
 import federate.Federate;
+import federate.SpatialInterestManager;
 import hla.rti1516e.*;
+import util.Log;
 
-import java.util.HashMap;
+import java.nio.ByteBuffer;
+import java.util.BitSet;
 
 /**
  * Entity classes encapsulate data related to
  * entities in the simulation.
  *
- *
+ * Attribute values are addressed by slot, the small integer index the
+ * EntityDef assigned to each attribute.  The encoded byte[] of each slot is
+ * the single source of truth for the attribute value, typed setters write
+ * straight into it and getters decode from it.
  *
  * Created by Andrew on 10/8/2016.
  */
 public abstract class Entity {
 
-    //  A unique id for this entity instance
-    private String id;
+    private static final Log LOG = Log.getLog(Entity.class);
+
+    //  Unique among the entities of this entity's federate, see Federate.newEntityId
+    private final long id;
 
     //  The className for the type of this entity (as defined in the XML)
     private String className;
@@ -30,14 +38,30 @@ public abstract class Entity {
     //  A handle to the HLA object instance (Needed to access/update in-sim entity)
     private ObjectInstanceHandle instanceHandle;
 
-    //  A mapping from AttributeHandles -> byte[] values for
-    //  all the attributes belonging to this entity instance
-    private AttributeHandleValueMap attributeHandleValueMap;
+    //  Encoded value of each attribute indexed by slot, and a ByteBuffer view of
+    //  each array used for in place typed reads/writes.  Arrays are reused
+    //  between updates as long as the encoded length doesn't change.
+    private byte[][] encodedValues;
+    private ByteBuffer[] encodedBuffers;
+
+    //  Scratch buffer for the generic (Object) update path
+    private ByteBuffer scratchBuffer;
 
-    //  A mapping from AttributeNames -> Object representations
-    //  of their value.  Objects will need to be encoded to byte[]
-    //  For processing by the HLA (IE: translate to attributeHandleValueMap)
-    private HashMap<String, Object> attributeNameToValueMap;
+    //  Slots whose encoded value changed since the last successful push
+    //  to the HLA, and a reusable map holding only those values
+    private BitSet dirtySlots;
+    private AttributeHandleValueMap dirtyAttributeHandleValueMap;
+    private int dirtyEncodedLength;
+
+    //  Dead reckoning state, the position/velocity receivers last saw and how many
+    //  ticks they have been extrapolating it (only used with a DeadReckoningModel)
+    private int publishedX, publishedY, publishedVx, publishedVy;
+    private long ticksSincePositionPublished;
+    private boolean positionPublished;
+
+    //  Spatial grid cell the entity's updates are currently associated with
+    //  (see federate.SpatialInterestManager), NO_CELL for none
+    private long spatialCell = SpatialInterestManager.NO_CELL;
 
     /**
      *
@@ -51,14 +75,26 @@ public abstract class Entity {
      * @param federate
      */
     public Entity(EntityDef definition, Federate federate) {
-        //  Simple, reasonably valid way of creating a unique entity id.
-        this.id = className + System.currentTimeMillis();
+        this(definition, federate, federate.newEntityId());
+    }
+
+    /**
+     *
+     * Recreate an entity with the id it had when it was checkpointed, see
+     * EntityDef.restoreEntity.
+     *
+     * @param definition
+     * @param federate
+     * @param id
+     */
+    protected Entity(EntityDef definition, Federate federate, long id) {
+        this.id = id;
         this.definition = definition;
         this.federate = federate;
 
         this.className = this.definition.getClassName();
 
-        //  Create the attributeNameToValueMap and attributeHandleValueMap
+        //  Create the slot arrays and the dirty attributeHandleValueMap
         this.initializeAttributes();
     }
 
@@ -68,21 +104,27 @@ public abstract class Entity {
 
     /**
      *
-     * Initialize the attributeNameToValueMap and the attributeHandleValueMap
+     * Initialize the per slot arrays and the dirty attributeHandleValueMap.  Every
+     * slot starts out empty, so the first update of each attribute is always dirty.
      *
      */
     private void initializeAttributes() {
-        this.attributeNameToValueMap = new HashMap<>();
-        this.createAttributeHandleValueMap();
+        int numAttributes = this.definition.getNumAttributes();
 
-        for(AttributeDef attributeDef : this.definition.getAttributeDefinitions()) {
-            this.attributeNameToValueMap.put(attributeDef.getName(), null);
-            this.attributeHandleValueMap.put(attributeDef.getHandle(), new byte[] {});
+        this.encodedValues = new byte[numAttributes][];
+        this.encodedBuffers = new ByteBuffer[numAttributes];
+        this.scratchBuffer = ByteBuffer.allocate(16);
+        this.dirtySlots = new BitSet(numAttributes);
+
+        for(int slot = 0; slot < numAttributes; slot++) {
+            this.setEncodedValue(slot, new byte[0]);
         }
+
+        this.createAttributeHandleValueMap();
     }
 
-    public String getId() {
-        return id;
+    public long getId() {
+        return this.id;
     }
 
     public String getClassName() {
@@ -95,26 +137,20 @@ public abstract class Entity {
         return instanceHandle;
     }
 
-    public String[] getAttributeNames() {
-        return this.federate.getEntityDefForClass(this.className).getAttributeNames();
+    public long getSpatialCell() {
+        return this.spatialCell;
     }
 
-    /**
-     * Get/Create the attributeHandleValueMap
-     *
-     * @return
-     */
-    public AttributeHandleValueMap getAttributeHandleValueMap() {
-        if(this.attributeHandleValueMap == null) {
-            this.createAttributeHandleValueMap();
-            assert this.attributeHandleValueMap != null;
-        }
+    public void setSpatialCell(long spatialCell) {
+        this.spatialCell = spatialCell;
+    }
 
-        return this.attributeHandleValueMap;
+    public String[] getAttributeNames() {
+        return this.definition.getAttributeNames();
     }
 
     /**
-     * Simply create the attributeHandleValueMap, don't populate with anything
+     * Simply create the dirty attributeHandleValueMap, don't populate with anything
      *
      */
     private void createAttributeHandleValueMap() {
@@ -123,25 +159,65 @@ public abstract class Entity {
             factory = this.federate.getRtiAmbassador()
                           .getAttributeHandleValueMapFactory();
 
-            this.attributeHandleValueMap = factory.create(this.definition.getNumAttributes());
+            this.dirtyAttributeHandleValueMap = factory.create(this.definition.getNumAttributes());
         } catch(Exception e) {
-            String msg = "ERROR: Exception creating attribute handle to value map : " + e;
-            e.printStackTrace();
-            System.out.println(msg);
+            String msg = "Exception creating attribute handle to value map : " + e;
+            this.federate.getMetrics().recordException(e);
+            LOG.error(msg, e);
+        }
+    }
+
+    private void setEncodedValue(int slot, byte[] bytes) {
+        this.encodedValues[slot] = bytes;
+        this.encodedBuffers[slot] = ByteBuffer.wrap(bytes);
+    }
+
+    /**
+     *
+     * Make sure the slot holds an array of exactly length bytes, returns true
+     * if a new array had to be allocated (IE: the slot was empty).
+     *
+     * @param slot
+     * @param length
+     * @return
+     */
+    private boolean ensureEncodedLength(int slot, int length) {
+        if(this.encodedValues[slot].length != length) {
+            this.setEncodedValue(slot, new byte[length]);
+            return true;
         }
+
+        return false;
     }
 
     /**
      *
-     * Get the byte representation of the attribute value of attrName by using
-     * the decode method defined by the corresponding attribute definition
+     * Get the encoded representation of the attribute value in slot.  The
+     * returned array is owned by the entity and overwritten by later updates.
      *
-     * @param attrName
+     * @param slot
      * @return
      */
+    public byte[] getAttributeBytes(int slot) {
+        return this.encodedValues[slot];
+    }
+
     protected byte[] getAttributeBytes(String attrName) {
-        AttributeDef def = this.definition.getAttributeDef(attrName);
-        return def.encode(this.attributeNameToValueMap.get(attrName));
+        return this.getAttributeBytes(this.definition.getSlot(attrName));
+    }
+
+    /**
+     *
+     * Get the Object representation of the attribute value in slot by using
+     * the decode method defined by the corresponding attribute definition.
+     * Returns null if the attribute was never set.
+     *
+     * @param slot
+     * @return
+     */
+    public Object getAttributeValue(int slot) {
+        byte[] bytes = this.encodedValues[slot];
+        return bytes.length == 0 ? null : this.definition.getAttributeDef(slot).decode(bytes);
     }
 
     /**
@@ -152,19 +228,282 @@ public abstract class Entity {
      * be reflected within other federates until federate.updateAttributes
      * is called for this entity.
      *
-     * @param attrName
+     * This is the generic path, attributes with a known type should use the
+     * typed setters (setInt, setVec2) which avoid boxing and the scratch copy.
+     *
+     * @param slot
      * @param attrValue
      */
+    protected void updateAttribute(int slot, Object attrValue) {
+        AttributeDef def = this.definition.getAttributeDef(slot);
+        int length = def.getEncodedLength(attrValue);
+
+        if(this.scratchBuffer.capacity() < length) {
+            this.scratchBuffer = ByteBuffer.allocate(Math.max(length, 2 * this.scratchBuffer.capacity()));
+        }
+
+        this.scratchBuffer.clear();
+        def.encode(attrValue, this.scratchBuffer);
+        this.scratchBuffer.flip();
+
+        //  Only attributes whose encoded value actually changed need to be sent
+        boolean changed = this.ensureEncodedLength(slot, length)
+                       || !this.scratchBuffer.equals(this.encodedBuffers[slot]);
+
+        if(changed) {
+            System.arraycopy(this.scratchBuffer.array(), 0, this.encodedValues[slot], 0, length);
+            this.dirtySlots.set(slot);
+        }
+    }
+
     protected void updateAttribute(String attrName, Object attrValue) {
-        AttributeHandle handle = this.definition.getAttributeDef(attrName).getHandle();
+        this.updateAttribute(this.definition.getSlot(attrName), attrValue);
+    }
+
+    /**
+     *
+     * Typed setter for IntAttributeDef slots.
+     *
+     * @param slot
+     * @param value
+     */
+    protected void setInt(int slot, int value) {
+        ByteBuffer buffer = this.encodedBuffers[slot];
+
+        if(this.ensureEncodedLength(slot, IntAttributeDef.ENCODED_LENGTH)) {
+            buffer = this.encodedBuffers[slot];
+        } else if(buffer.getInt(0) == value) {
+            return;
+        }
+
+        buffer.putInt(0, value);
+        this.dirtySlots.set(slot);
+    }
+
+    /**
+     *
+     * Typed setter for VectorAttributeDef slots.
+     *
+     * @param slot
+     * @param x
+     * @param y
+     */
+    protected void setVec2(int slot, int x, int y) {
+        ByteBuffer buffer = this.encodedBuffers[slot];
+
+        if(this.ensureEncodedLength(slot, VectorAttributeDef.ENCODED_LENGTH)) {
+            buffer = this.encodedBuffers[slot];
+        } else if(buffer.getInt(0) == x && buffer.getInt(IntAttributeDef.ENCODED_LENGTH) == y) {
+            return;
+        }
+
+        buffer.putInt(0, x);
+        buffer.putInt(IntAttributeDef.ENCODED_LENGTH, y);
+        this.dirtySlots.set(slot);
+    }
+
+    /**
+     *
+     * Typed setter for LongAttributeDef slots.
+     *
+     * @param slot
+     * @param value
+     */
+    protected void setLong(int slot, long value) {
+        ByteBuffer buffer = this.encodedBuffers[slot];
+
+        if(this.ensureEncodedLength(slot, LongAttributeDef.ENCODED_LENGTH)) {
+            buffer = this.encodedBuffers[slot];
+        } else if(buffer.getLong(0) == value) {
+            return;
+        }
+
+        buffer.putLong(0, value);
+        this.dirtySlots.set(slot);
+    }
 
-        //  Update the internal representation of the attribute first
-        //  Then update the handle->value map
-        this.attributeNameToValueMap.put(attrName, attrValue);
+    /**
+     *
+     * Typed setter for DoubleAttributeDef slots, compares the encoded bits so
+     * that NaN is unchanged by NaN.
+     *
+     * @param slot
+     * @param value
+     */
+    protected void setDouble(int slot, double value) {
+        ByteBuffer buffer = this.encodedBuffers[slot];
+        long bits = Double.doubleToLongBits(value);
 
-        if(this.attributeHandleValueMap != null) {
-            this.attributeHandleValueMap.put(handle, this.getAttributeBytes(attrName));
+        if(this.ensureEncodedLength(slot, DoubleAttributeDef.ENCODED_LENGTH)) {
+            buffer = this.encodedBuffers[slot];
+        } else if(buffer.getLong(0) == bits) {
+            return;
         }
+
+        buffer.putLong(0, bits);
+        this.dirtySlots.set(slot);
+    }
+
+    public int getInt(int slot) {
+        return this.encodedBuffers[slot].getInt(0);
+    }
+
+    public int getVec2X(int slot) {
+        return this.encodedBuffers[slot].getInt(0);
+    }
+
+    public int getVec2Y(int slot) {
+        return this.encodedBuffers[slot].getInt(IntAttributeDef.ENCODED_LENGTH);
+    }
+
+    public long getLong(int slot) {
+        return this.encodedBuffers[slot].getLong(0);
+    }
+
+    public double getDouble(int slot) {
+        return this.encodedBuffers[slot].getDouble(0);
+    }
+
+    /**
+     *
+     * Overwrite the encoded value of slot with the next length bytes of source
+     * and mark it dirty.  Used when restoring a checkpoint, onRestored is called
+     * once every slot has been restored.
+     *
+     * @param slot
+     * @param source
+     * @param length
+     */
+    public void restoreAttribute(int slot, ByteBuffer source, int length) {
+        this.ensureEncodedLength(slot, length);
+        source.get(this.encodedValues[slot], 0, length);
+        this.dirtySlots.set(slot);
+    }
+
+    /**
+     *
+     * Called once all attributes have been restored from a checkpoint.  Entities
+     * that keep state outside their attribute slots reload it from them here,
+     * by default nothing is done.
+     *
+     */
+    public void onRestored() {
+    }
+
+    public boolean hasDirtyAttributes() {
+        return !this.dirtySlots.isEmpty();
+    }
+
+    /**
+     *
+     * Mark every attribute as changed, used when the full state must be
+     * pushed to the HLA again (IE: a remote federate requests an update).
+     *
+     */
+    public void markAllAttributesDirty() {
+        this.dirtySlots.set(0, this.definition.getNumAttributes());
+    }
+
+    /**
+     *
+     * Build the AttributeHandle -> byte[] map for only the attributes that changed
+     * since the last call to clearDirtyAttributes.  The returned map (and the arrays
+     * in it) are reused between calls so it must not be held on to.
+     *
+     * @return
+     */
+    public AttributeHandleValueMap getDirtyAttributeHandleValueMap() {
+        this.dirtyAttributeHandleValueMap.clear();
+        this.dirtyEncodedLength = 0;
+
+        for(int slot = this.dirtySlots.nextSetBit(0); slot >= 0; slot = this.dirtySlots.nextSetBit(slot + 1)) {
+            //  Never set slots have nothing to send
+            if(this.encodedValues[slot].length > 0) {
+                this.dirtyAttributeHandleValueMap.put(
+                        this.definition.getAttributeDef(slot).getHandle(), this.encodedValues[slot]);
+                this.dirtyEncodedLength += this.encodedValues[slot].length;
+            }
+        }
+
+        return this.dirtyAttributeHandleValueMap;
+    }
+
+    /**
+     *
+     * Total encoded size of the values in the last map built by
+     * getDirtyAttributeHandleValueMap, for metrics.
+     *
+     * @return
+     */
+    public int getDirtyEncodedLength() {
+        return this.dirtyEncodedLength;
+    }
+
+    /**
+     *
+     * Called once per tick before publishing.  With a DeadReckoningModel on the
+     * definition a changed position is held back (its slot is no longer dirty)
+     * while receivers can still extrapolate it within the threshold.  A changed
+     * velocity always publishes the position along with it.
+     *
+     */
+    public void applyDeadReckoning() {
+        DeadReckoningModel model = this.definition.getDeadReckoningModel();
+        if(model == null) {
+            return;
+        }
+
+        int positionSlot = model.getPositionSlot();
+        int velocitySlot = model.getVelocitySlot();
+        this.ticksSincePositionPublished++;
+
+        if(!this.positionPublished || this.dirtySlots.get(velocitySlot)) {
+            this.dirtySlots.set(positionSlot);
+            return;
+        }
+
+        boolean publish = model.exceedsThreshold(
+                this.getVec2X(positionSlot), this.getVec2Y(positionSlot),
+                this.publishedX, this.publishedY, this.publishedVx, this.publishedVy,
+                this.ticksSincePositionPublished);
+
+        if(publish) {
+            this.dirtySlots.set(positionSlot);
+        } else {
+            this.dirtySlots.clear(positionSlot);
+        }
+    }
+
+    /**
+     *
+     * Called once the dirty attributes have been pushed to the HLA successfully.
+     *
+     */
+    public void clearDirtyAttributes() {
+        DeadReckoningModel model = this.definition.getDeadReckoningModel();
+
+        //  Remember what receivers will extrapolate from
+        if(model != null && this.dirtySlots.get(model.getPositionSlot())) {
+            this.publishedX = this.getVec2X(model.getPositionSlot());
+            this.publishedY = this.getVec2Y(model.getPositionSlot());
+            this.publishedVx = this.getVec2X(model.getVelocitySlot());
+            this.publishedVy = this.getVec2Y(model.getVelocitySlot());
+            this.ticksSincePositionPublished = 0;
+            this.positionPublished = true;
+        }
+
+        this.dirtySlots.clear();
+    }
+
+    /**
+     *
+     * Called on the federate thread for every contact this entity is part of,
+     * after all entities have been ticked and before attributes are published.
+     * Entities that react to collisions override this, by default contacts are ignored.
+     *
+     * @param contact
+     */
+    public void onContact(Contact contact) {
     }
 
     /**
@@ -177,8 +516,8 @@ public abstract class Entity {
 
     /**
      *
-     * Child classes must define a method to call updateAttribute on all defined attributes.
-     * This can probably be refactored in a generic way so subclasses won't have to implement.
+     * Child classes must define a method to set all defined attributes
+     * (through the typed setters or updateAttribute).
      *
      */
     public abstract void updateAttributes();
@@ -2,7 +2,9 @@ package model;
 
 import federate.Federate;
 import hla.rti1516e.*;
+import util.Log;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 
@@ -12,17 +14,24 @@ import java.util.HashMap;
  */
 public abstract class EntityDef {
 
-    private int numAttributes;
+    private static final Log LOG = Log.getLog(EntityDef.class);
 
     private String className;
     private Federate federate;
     private ObjectClassHandle classHandle;
     private AttributeHandleSet attributeHandleSet;
 
+    //  Attribute definitions indexed by slot, slots are assigned in the order the
+    //  definitions were passed to the constructor and never change afterwards
+    private AttributeDef[] attributeDefs;
     private String[] attributeNames;
+
     private HashMap<String, AttributeDef> attributeNameToDefMap;
     private HashMap<AttributeHandle, AttributeDef> attributeHandleToDefMap;
 
+    //  Optional, null publishes position every time it changes
+    private DeadReckoningModel deadReckoningModel;
+
     /**
      *
      * Entity Definitions are the Java representation of objects defined by the
@@ -30,17 +39,25 @@ public abstract class EntityDef {
      * definition variables such as the ObjectClassHandle and AttributeHandleSet.
      * They also provide access to attribute definitions and their encode/decode.
      *
+     * Each attribute is assigned a slot (its index in attributeDefs) which entities
+     * use to address attribute values without any name lookups.
+     *
      * @param className
      * @param attributeDefs
      * @param federate
      */
     public EntityDef(String className, AttributeDef[] attributeDefs, Federate federate) {
-        this.numAttributes = -1;
         this.federate = federate;
         this.className = className;
+        this.attributeDefs = attributeDefs.clone();
+        this.attributeNames = new String[attributeDefs.length];
 
         this.attributeNameToDefMap = new HashMap<>();
-        for(AttributeDef def : attributeDefs) {
+        for(int slot = 0; slot < attributeDefs.length; slot++) {
+            AttributeDef def = attributeDefs[slot];
+
+            def.setSlot(slot);
+            this.attributeNames[slot] = def.getName();
             this.attributeNameToDefMap.put(def.getName(), def);
         }
     }
@@ -49,16 +66,23 @@ public abstract class EntityDef {
      *
      * Initialize all the attributes for which connection to the FedEx is required
      * (ObjectClassHandle, AttributeHandleSet both require factory methods from HLA)
+     * Does nothing when the handles were already set with setHandles.
      *
+     * @return false if the RTI could not resolve the class or one of its attributes
      */
-    public void initializeFederationAttributes() {
+    public boolean initializeFederationAttributes() {
         assert this.federate.isConnected();
 
-        //  These must complete successfully for all definitions
-        assert this.initializeObjectHandle();
-        assert this.initializeAttributeHandleSet();
+        if(this.classHandle != null && this.attributeHandleSet != null) {
+            return true;
+        }
+
+        if(!this.initializeObjectHandle() || !this.initializeAttributeHandleSet()) {
+            return false;
+        }
 
-        System.out.println("SUCCESS: InitializedFederationAttributes entityDef: " + getClassName());
+        LOG.success("InitializedFederationAttributes entityDef: " + getClassName());
+        return true;
     }
 
     /**
@@ -71,13 +95,13 @@ public abstract class EntityDef {
         try {
             this.classHandle = this.federate.getRtiAmbassador()
                     .getObjectClassHandle(this.className);
-            System.out.println("SUCCESS: initializeObjectHandle : " + this.classHandle);
+            LOG.success("initializeObjectHandle : " + this.classHandle);
             return true;
         } catch(Exception e) {
-            String msg = "ERROR: Exception initializingObjectHandle for class : " + this.className
+            String msg = "Exception initializingObjectHandle for class : " + this.className
                        + "Got Exception : " + e;
 
-            System.out.println(msg);
+            LOG.error(msg);
             return false;
         }
     }
@@ -107,29 +131,57 @@ public abstract class EntityDef {
      */
     private boolean initializeAttributeHandleSet() {
         try {
-            AttributeHandleSetFactory factory = this.federate.getRtiAmbassador().getAttributeHandleSetFactory();
-            this.attributeHandleSet = factory.create();
-            this.attributeHandleToDefMap = new HashMap<>();
-
-            for(AttributeDef attributeDef : this.attributeNameToDefMap.values()) {
-                AttributeHandle handle = this.federate.getRtiAmbassador().getAttributeHandle(
-                                                    this.getClassHandle(), attributeDef.getName());
+            AttributeHandle[] attributeHandles = new AttributeHandle[this.attributeDefs.length];
 
-                attributeDef.setHandle(handle);
-                this.attributeHandleSet.add(handle);
-                this.attributeHandleToDefMap.put(handle, attributeDef);
+            for(int slot = 0; slot < attributeHandles.length; slot++) {
+                attributeHandles[slot] = this.federate.getRtiAmbassador().getAttributeHandle(
+                                                    this.getClassHandle(), this.attributeNames[slot]);
             }
-            System.out.println("SUCCESS: attributeHandleSet : " + this.attributeHandleSet);
+
+            this.setAttributeHandles(attributeHandles);
+            LOG.success("attributeHandleSet : " + this.attributeHandleSet);
             return true;
         } catch(Exception e) {
-            String msg = "ERROR: Exception initializeAttributeHandleSet for class : " + this.className
+            String msg = "Exception initializeAttributeHandleSet for class : " + this.className
                        + "Got Exception : " + e;
 
-            System.out.println(msg);
+            LOG.error(msg);
             return false;
         }
     }
 
+    /**
+     *
+     * Set handles resolved elsewhere (IE: by the HandleCache) instead of looking
+     * them up one at a time.
+     *
+     * @param classHandle
+     * @param attributeHandles indexed by slot
+     */
+    public void setHandles(ObjectClassHandle classHandle, AttributeHandle[] attributeHandles) throws Exception {
+        assert attributeHandles.length == this.attributeDefs.length;
+
+        this.classHandle = classHandle;
+        this.setAttributeHandles(attributeHandles);
+    }
+
+    private void setAttributeHandles(AttributeHandle[] attributeHandles) throws Exception {
+        AttributeHandleSetFactory factory = this.federate.getRtiAmbassador().getAttributeHandleSetFactory();
+        AttributeHandleSet handleSet = factory.create();
+        HashMap<AttributeHandle, AttributeDef> handleToDefMap = new HashMap<>();
+
+        for(int slot = 0; slot < attributeHandles.length; slot++) {
+            AttributeDef attributeDef = this.attributeDefs[slot];
+
+            attributeDef.setHandle(attributeHandles[slot]);
+            handleSet.add(attributeHandles[slot]);
+            handleToDefMap.put(attributeHandles[slot], attributeDef);
+        }
+
+        this.attributeHandleToDefMap = handleToDefMap;
+        this.attributeHandleSet = handleSet;
+    }
+
     /**
      *
      * Get/Create the AttributeHandleSet
@@ -149,46 +201,114 @@ public abstract class EntityDef {
         return this.className;
     }
 
+    public Federate getFederate() {
+        return this.federate;
+    }
+
     /**
      *
-     * Convenience
+     * Whether this federate registers instances of the class.  The federate
+     * publishes and subscribes such classes, the others it only subscribes to.
      *
-     * @return
+     * @return true unless overridden
      */
-    public int getNumAttributes() {
-        if(this.numAttributes == -1) {
-            this.numAttributes = this.attributeNameToDefMap.values().size();
-        }
+    public boolean isPublished() {
+        return true;
+    }
 
-        return this.numAttributes;
+    /**
+     *
+     * Whether restoreEntity is implemented.  Entities of classes that cannot be
+     * restored are left out of checkpoints and cannot change owner (see
+     * federate.PartitionManager).
+     *
+     * @return false unless overridden together with restoreEntity
+     */
+    public boolean canRestore() {
+        return false;
     }
 
     /**
      *
-     * Convenience
+     * Create an empty entity of this class with the given id, its attributes are
+     * then restored from a checkpoint (see Entity.restoreAttribute).  Classes
+     * that can be checkpointed override this and canRestore.
      *
+     * @param id
      * @return
      */
-    public String[] getAttributeNames() {
-        if(this.attributeNames == null) {
-            this.attributeNames = new String[this.getNumAttributes()];
+    public Entity restoreEntity(long id) throws Exception {
+        throw new UnsupportedOperationException(this.className + " entities cannot be restored");
+    }
+
+    /**
+     *
+     * Enable dead reckoning for all entities of this class, see DeadReckoningModel.
+     *
+     * @param deadReckoningModel
+     */
+    public void setDeadReckoningModel(DeadReckoningModel deadReckoningModel) {
+        this.deadReckoningModel = deadReckoningModel;
+    }
 
-            int i = 0;
+    public DeadReckoningModel getDeadReckoningModel() {
+        return this.deadReckoningModel;
+    }
 
-            for(AttributeDef attrDef : this.attributeNameToDefMap.values()) {
-                this.attributeNames[i] = attrDef.getName();
-                i++;
-            }
-        }
+    /**
+     *
+     * Convenience
+     *
+     * @return
+     */
+    public int getNumAttributes() {
+        return this.attributeDefs.length;
+    }
 
+    /**
+     *
+     * Attribute names indexed by slot
+     *
+     * @return
+     */
+    public String[] getAttributeNames() {
         return this.attributeNames;
     }
 
+    /**
+     *
+     * Attribute definitions in slot order
+     *
+     * @return
+     */
     public Collection<AttributeDef> getAttributeDefinitions() {
-        return this.attributeNameToDefMap.values();
+        return Arrays.asList(this.attributeDefs);
+    }
+
+    public AttributeDef getAttributeDef(int slot) {
+        return this.attributeDefs[slot];
     }
 
     public AttributeDef getAttributeDef(String attributeName) {
         return this.attributeNameToDefMap.get(attributeName);
     }
+
+    /**
+     *
+     * Resolve an attribute name to its slot, meant to be called once at setup
+     * (IE: in an Entity constructor) and the slot kept for the hot path.
+     *
+     * @param attributeName
+     * @return
+     */
+    public int getSlot(String attributeName) {
+        AttributeDef def = this.attributeNameToDefMap.get(attributeName);
+        assert def != null : "No attribute " + attributeName + " on " + this.className;
+
+        return def.getSlot();
+    }
+
+    public AttributeDef getAttributeDef(AttributeHandle handle) {
+        return this.attributeHandleToDefMap.get(handle);
+    }
 }
@@ -0,0 +1,38 @@
+package model;
+
+import federate.Federate;
+
+/**
+ *
+ * Definition of an object class read from the FDD by FddReader, for classes
+ * this federate only reflects (or records, or replays).  Owning instances
+ * still takes an Entity subclass and, to restore them, a definition that
+ * implements canRestore and restoreEntity.
+ *
+ * Not published unless set otherwise, IE: for a class whose instances are
+ * registered by the federate itself (see federate.PartitionManager).
+ *
+ */
+public class FddEntityDef extends EntityDef {
+
+    private boolean published;
+
+    public FddEntityDef(String className, AttributeDef[] attributeDefs, Federate federate) {
+        super(className, attributeDefs, federate);
+    }
+
+    /**
+     *
+     * Must be called before the federate is initialized
+     *
+     * @param published
+     */
+    public void setPublished(boolean published) {
+        this.published = published;
+    }
+
+    @Override
+    public boolean isPublished() {
+        return this.published;
+    }
+}
@@ -0,0 +1,420 @@
+package model;
+
+import federate.Federate;
+import util.Log;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *
+ * Builds entity and attribute definitions from the object classes and data
+ * types declared in an FDD, so a FOM needs no hand written EntityDef.
+ *
+ * Every attribute gets the codec of its declared dataType, resolved through
+ * simple, enumerated, array and fixed record types down to the basic data
+ * representations:
+ *
+ *   HLAoctet, HLAintegerNNBE     Byte/Short/Int/LongAttributeDef
+ *   HLAfloat32BE, HLAfloat64BE   Float/DoubleAttributeDef
+ *   HLAintegerNNLE, HLAfloatNNLE the LE variants of the above
+ *   HLAASCIIstring, HLAunicodeString    StringAttributeDef
+ *   other dynamic octet arrays   BytesAttributeDef, counted
+ *   two HLAinteger32BE fields    VectorAttributeDef
+ *   other fixed records          RecordAttributeDef
+ *   anything else (IE: NA, or a basic representation of the FOM's own)
+ *                                BytesAttributeDef, passed through as encoded
+ *
+ * Attributes of HLAobjectRoot (HLAprivilegeToDeleteObject) and the MOM classes
+ * under HLAmanager are left out, subclasses inherit the attributes of their
+ * other superclasses.  Classes are named by their unqualified name.
+ *
+ * Interaction classes are read the same way, their parameters get the same
+ * codecs (see InteractionDef).
+ *
+ */
+public class FddReader {
+
+    private static final Log LOG = Log.getLog(FddReader.class);
+
+    private static final String OBJECT_ROOT = "HLAobjectRoot";
+    private static final String INTERACTION_ROOT = "HLAinteractionRoot";
+    private static final String MOM_ROOT = "HLAmanager";
+
+    //  Records nest, this only guards against a data type that contains itself
+    private static final int MAX_TYPE_DEPTH = 16;
+
+    private final URL fddPath;
+
+    //  Data type name -> its basicData, simpleData, enumeratedData, arrayData or fixedRecordData element
+    private final Map<String, Element> dataTypes;
+
+    //  Class name -> {attribute name, data type} in declaration order, inherited attributes first
+    private final Map<String, List<String[]>> objectClasses;
+
+    //  Interaction class name -> {parameter name, data type}, inherited parameters first
+    private final Map<String, List<String[]>> interactionClasses;
+
+    public FddReader(URL fddPath) throws Exception {
+        this.fddPath = fddPath;
+        this.dataTypes = new HashMap<>();
+        this.objectClasses = new LinkedHashMap<>();
+        this.interactionClasses = new LinkedHashMap<>();
+
+        Document fdd;
+        try(InputStream in = fddPath.openStream()) {
+            fdd = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(in);
+        }
+
+        for(Element dataTypes : getChildren(fdd.getDocumentElement(), "dataTypes")) {
+            this.readDataTypes(dataTypes);
+        }
+
+        for(Element objects : getChildren(fdd.getDocumentElement(), "objects")) {
+            for(Element objectClass : getChildren(objects, "objectClass")) {
+                this.readObjectClass(objectClass, new ArrayList<>());
+            }
+        }
+
+        for(Element interactions : getChildren(fdd.getDocumentElement(), "interactions")) {
+            for(Element interactionClass : getChildren(interactions, "interactionClass")) {
+                this.readInteractionClass(interactionClass, new ArrayList<>());
+            }
+        }
+    }
+
+    /**
+     *
+     * Collect the data types of the *DataTypes (and basicDataRepresentations) groups
+     *
+     */
+    private void readDataTypes(Element dataTypes) {
+        for(Node group = dataTypes.getFirstChild(); group != null; group = group.getNextSibling()) {
+            for(Node node = group.getFirstChild(); node != null; node = node.getNextSibling()) {
+                if(node instanceof Element) {
+                    this.dataTypes.put(getChildText((Element) node, "name"), (Element) node);
+                }
+            }
+        }
+    }
+
+    private void readObjectClass(Element objectClass, List<String[]> inherited) {
+        String className = getChildText(objectClass, "name");
+        if(MOM_ROOT.equals(className)) {
+            return;
+        }
+
+        List<String[]> attributes = new ArrayList<>(inherited);
+        if(!OBJECT_ROOT.equals(className)) {
+            for(Element attribute : getChildren(objectClass, "attribute")) {
+                attributes.add(new String[] {getChildText(attribute, "name"), getChildText(attribute, "dataType")});
+            }
+
+            if(!attributes.isEmpty()) {
+                this.objectClasses.put(className, attributes);
+            }
+        }
+
+        for(Element subclass : getChildren(objectClass, "objectClass")) {
+            this.readObjectClass(subclass, attributes);
+        }
+    }
+
+    /**
+     *
+     * Unlike object classes, interaction classes without parameters are kept,
+     * sending one is an event in itself
+     *
+     */
+    private void readInteractionClass(Element interactionClass, List<String[]> inherited) {
+        String className = getChildText(interactionClass, "name");
+        if(MOM_ROOT.equals(className)) {
+            return;
+        }
+
+        List<String[]> parameters = new ArrayList<>(inherited);
+        if(!INTERACTION_ROOT.equals(className)) {
+            for(Element parameter : getChildren(interactionClass, "parameter")) {
+                parameters.add(new String[] {getChildText(parameter, "name"), getChildText(parameter, "dataType")});
+            }
+
+            this.interactionClasses.put(className, parameters);
+        }
+
+        for(Element subclass : getChildren(interactionClass, "interactionClass")) {
+            this.readInteractionClass(subclass, parameters);
+        }
+    }
+
+    /**
+     *
+     * @return every object class with attributes, in declaration order
+     */
+    public List<String> getObjectClassNames() {
+        return new ArrayList<>(this.objectClasses.keySet());
+    }
+
+    /**
+     *
+     * Create a definition of className with a codec for each of its attributes
+     *
+     * @param className
+     * @param federate
+     * @return null if the FDD has no such class
+     */
+    public EntityDef createEntityDef(String className, Federate federate) {
+        AttributeDef[] attributeDefs = this.createAttributeDefs(className);
+
+        return attributeDefs == null ? null : new FddEntityDef(className, attributeDefs, federate);
+    }
+
+    /**
+     *
+     * @return definitions of every object class with attributes
+     */
+    public List<EntityDef> createEntityDefs(Federate federate) {
+        List<EntityDef> entityDefs = new ArrayList<>();
+
+        for(String className : this.objectClasses.keySet()) {
+            entityDefs.add(this.createEntityDef(className, federate));
+        }
+
+        return entityDefs;
+    }
+
+    /**
+     *
+     * @param className
+     * @return the attribute definitions of className in declaration order, null if the FDD has no such class
+     */
+    public AttributeDef[] createAttributeDefs(String className) {
+        return this.createDefs(this.objectClasses.get(className));
+    }
+
+    private AttributeDef[] createDefs(List<String[]> attributes) {
+        if(attributes == null) {
+            return null;
+        }
+
+        AttributeDef[] attributeDefs = new AttributeDef[attributes.size()];
+        for(int i = 0; i < attributeDefs.length; i++) {
+            attributeDefs[i] = this.createAttributeDef(attributes.get(i)[0], attributes.get(i)[1], 0);
+        }
+
+        return attributeDefs;
+    }
+
+    /**
+     *
+     * @return every interaction class, in declaration order
+     */
+    public List<String> getInteractionClassNames() {
+        return new ArrayList<>(this.interactionClasses.keySet());
+    }
+
+    /**
+     *
+     * Create a definition of the interaction class className with a codec for
+     * each of its parameters
+     *
+     * @param className
+     * @param federate
+     * @return null if the FDD has no such interaction class
+     */
+    public InteractionDef createInteractionDef(String className, Federate federate) {
+        AttributeDef[] parameterDefs = this.createParameterDefs(className);
+
+        return parameterDefs == null ? null : new InteractionDef(className, parameterDefs, federate);
+    }
+
+    /**
+     *
+     * @param className
+     * @return the parameter definitions of className in declaration order, null if the FDD has no such class
+     */
+    public AttributeDef[] createParameterDefs(String className) {
+        return this.createDefs(this.interactionClasses.get(className));
+    }
+
+    /**
+     *
+     * Check a hand written definition against the FDD, every attribute must be
+     * declared and use the codec its data type resolves to.  Mismatches are
+     * logged.
+     *
+     * @param entityDef
+     * @return false on any mismatch
+     */
+    public boolean verify(EntityDef entityDef) {
+        List<String[]> attributes = this.objectClasses.get(entityDef.getClassName());
+        if(attributes == null) {
+            LOG.warning(entityDef.getClassName() + " is not an object class of " + this.fddPath);
+            return false;
+        }
+
+        Map<String, String> dataTypes = new HashMap<>();
+        for(String[] attribute : attributes) {
+            dataTypes.put(attribute[0], attribute[1]);
+        }
+
+        boolean matches = true;
+        for(AttributeDef attributeDef : entityDef.getAttributeDefinitions()) {
+            String dataType = dataTypes.get(attributeDef.getName());
+
+            if(dataType == null) {
+                LOG.warning(entityDef.getClassName() + "." + attributeDef.getName() + " is not declared in " + this.fddPath);
+                matches = false;
+                continue;
+            }
+
+            AttributeDef expected = this.createAttributeDef(attributeDef.getName(), dataType, 0);
+            if(expected.getClass() != attributeDef.getClass()) {
+                LOG.warning(entityDef.getClassName() + "." + attributeDef.getName() + " is a " + dataType
+                            + ", expected a " + expected.getClass().getSimpleName() + " not a "
+                            + attributeDef.getClass().getSimpleName());
+                matches = false;
+            }
+        }
+
+        return matches;
+    }
+
+    /**
+     *
+     * The codec of dataType, for the attribute (or record field) name
+     *
+     */
+    private AttributeDef createAttributeDef(String name, String dataType, int depth) {
+        Element element = this.dataTypes.get(dataType);
+
+        if(element == null || depth > MAX_TYPE_DEPTH) {
+            return new BytesAttributeDef(name, false);
+        }
+
+        switch(element.getNodeName()) {
+            case "basicData":
+                return createBasicAttributeDef(name, dataType);
+
+            case "simpleData":
+            case "enumeratedData":
+                return this.createAttributeDef(name, getChildText(element, "representation"), depth + 1);
+
+            case "arrayData":
+                return this.createArrayAttributeDef(name, element, depth);
+
+            case "fixedRecordData":
+                return this.createRecordAttributeDef(name, element, depth);
+
+            default:
+                return new BytesAttributeDef(name, false);
+        }
+    }
+
+    /**
+     *
+     * The codec of a basic data representation, chosen by its name since the
+     * encoding is only described in prose
+     *
+     */
+    private static AttributeDef createBasicAttributeDef(String name, String basicDataName) {
+        switch(basicDataName) {
+            case "HLAoctet":
+                return new ByteAttributeDef(name);
+            case "HLAinteger16BE":
+            case "HLAoctetPairBE":
+                return new ShortAttributeDef(name);
+            case "HLAinteger16LE":
+            case "HLAoctetPairLE":
+                return new ShortLEAttributeDef(name);
+            case "HLAinteger32BE":
+                return new IntAttributeDef(name);
+            case "HLAinteger32LE":
+                return new IntLEAttributeDef(name);
+            case "HLAinteger64BE":
+                return new LongAttributeDef(name);
+            case "HLAinteger64LE":
+                return new LongLEAttributeDef(name);
+            case "HLAfloat32BE":
+                return new FloatAttributeDef(name);
+            case "HLAfloat32LE":
+                return new FloatLEAttributeDef(name);
+            case "HLAfloat64BE":
+                return new DoubleAttributeDef(name);
+            case "HLAfloat64LE":
+                return new DoubleLEAttributeDef(name);
+            default:
+                return new BytesAttributeDef(name, false);
+        }
+    }
+
+    private AttributeDef createArrayAttributeDef(String name, Element arrayData, int depth) {
+        String elementType = getChildText(arrayData, "dataType");
+
+        if(!"Dynamic".equals(getChildText(arrayData, "cardinality"))) {
+            return new BytesAttributeDef(name, false);
+        }
+
+        if("HLAASCIIchar".equals(elementType) || "HLAunicodeChar".equals(elementType)) {
+            return new StringAttributeDef(name, "HLAunicodeChar".equals(elementType));
+        }
+
+        if(this.createAttributeDef(name, elementType, depth + 1) instanceof ByteAttributeDef) {
+            return new BytesAttributeDef(name, true);
+        }
+
+        return new BytesAttributeDef(name, false);
+    }
+
+    private AttributeDef createRecordAttributeDef(String name, Element fixedRecordData, int depth) {
+        List<Element> fieldElements = getChildren(fixedRecordData, "field");
+        AttributeDef[] fields = new AttributeDef[fieldElements.size()];
+
+        for(int i = 0; i < fields.length; i++) {
+            fields[i] = this.createAttributeDef(getChildText(fieldElements.get(i), "name"),
+                                                getChildText(fieldElements.get(i), "dataType"), depth + 1);
+
+            //  Fields after one of unknown length could not be found
+            if(fields[i] instanceof BytesAttributeDef && !((BytesAttributeDef) fields[i]).isCounted()) {
+                return new BytesAttributeDef(name, false);
+            }
+        }
+
+        if(fields.length == 2 && fields[0].getClass() == IntAttributeDef.class
+                              && fields[1].getClass() == IntAttributeDef.class) {
+            return new VectorAttributeDef(name);
+        }
+
+        return new RecordAttributeDef(name, fields);
+    }
+
+    private static List<Element> getChildren(Element element, String tagName) {
+        List<Element> children = new ArrayList<>();
+
+        for(Node node = element.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if(node instanceof Element && tagName.equals(node.getNodeName())) {
+                children.add((Element) node);
+            }
+        }
+
+        return children;
+    }
+
+    /**
+     *
+     * @return the trimmed text of the first tagName child, "" if there is none
+     */
+    private static String getChildText(Element element, String tagName) {
+        List<Element> children = getChildren(element, tagName);
+
+        return children.isEmpty() ? "" : children.get(0).getTextContent().trim();
+    }
+}
@@ -0,0 +1,45 @@
+package model;
+
+import java.nio.ByteBuffer;
+
+/**
+ *
+ * HLAfloat32BE attribute, decoded as a boxed Float, see IntAttributeDef
+ *
+ */
+public final class FloatAttributeDef extends AttributeDef {
+
+    public static final int ENCODED_LENGTH = 4;
+
+    public FloatAttributeDef(String name) {
+        super(name);
+    }
+
+    @Override
+    public int getEncodedLength(Object value) {
+        return ENCODED_LENGTH;
+    }
+
+    @Override
+    public int getOctetBoundary() {
+        return ENCODED_LENGTH;
+    }
+
+    @Override
+    public void encode(Object value, ByteBuffer buffer) {
+        encodeFloat((float) value, buffer);
+    }
+
+    @Override
+    public Object decode(ByteBuffer buffer) {
+        return decodeFloat(buffer);
+    }
+
+    public static void encodeFloat(float value, ByteBuffer buffer) {
+        buffer.putFloat(value);
+    }
+
+    public static float decodeFloat(ByteBuffer buffer) {
+        return buffer.getFloat();
+    }
+}
@@ -0,0 +1,47 @@
+package model;
+
+import java.nio.ByteBuffer;
+
+/**
+ *
+ * HLAfloat32LE attribute, decoded as a boxed Float like FloatAttributeDef.
+ * The bytes are reversed around the big endian buffer access, so no little
+ * endian view of the buffer is needed.
+ *
+ */
+public final class FloatLEAttributeDef extends AttributeDef {
+
+    public static final int ENCODED_LENGTH = 4;
+
+    public FloatLEAttributeDef(String name) {
+        super(name);
+    }
+
+    @Override
+    public int getEncodedLength(Object value) {
+        return ENCODED_LENGTH;
+    }
+
+    @Override
+    public int getOctetBoundary() {
+        return ENCODED_LENGTH;
+    }
+
+    @Override
+    public void encode(Object value, ByteBuffer buffer) {
+        encodeFloatLE((float) value, buffer);
+    }
+
+    @Override
+    public Object decode(ByteBuffer buffer) {
+        return decodeFloatLE(buffer);
+    }
+
+    public static void encodeFloatLE(float value, ByteBuffer buffer) {
+        buffer.putInt(Integer.reverseBytes(Float.floatToRawIntBits(value)));
+    }
+
+    public static float decodeFloatLE(ByteBuffer buffer) {
+        return Float.intBitsToFloat(Integer.reverseBytes(buffer.getInt()));
+    }
+}
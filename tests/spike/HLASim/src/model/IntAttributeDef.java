@@ -1,15 +1,19 @@
 package model;
 
+import java.nio.ByteBuffer;
+
 /**
  * Created by Andrew on 10/9/2016.
  */
 public class IntAttributeDef extends AttributeDef {
 
+    public static final int ENCODED_LENGTH = 4;
+
     /**
      *
      * Simple integer attribute definition of form
      *
-     * byte[] = "int"
+     * byte[] = HLAinteger32BE
      * object = int
      *
      * @param name
@@ -19,15 +23,37 @@ public class IntAttributeDef extends AttributeDef {
     }
 
     @Override
-    public byte[] encode(Object value) {
-        int data = (int) value;
-        return (""+data).getBytes();
+    public int getEncodedLength(Object value) {
+        return ENCODED_LENGTH;
+    }
+
+    @Override
+    public int getOctetBoundary() {
+        return ENCODED_LENGTH;
+    }
+
+    @Override
+    public void encode(Object value, ByteBuffer buffer) {
+        encodeInt((int) value, buffer);
     }
 
     @Override
-    public Object decode(byte[] bytes) {
-        return null;
+    public Object decode(ByteBuffer buffer) {
+        return decodeInt(buffer);
     }
 
+    /**
+     *
+     * Primitive variants, avoid boxing when the caller knows the type
+     *
+     * @param value
+     * @param buffer
+     */
+    public static void encodeInt(int value, ByteBuffer buffer) {
+        buffer.putInt(value);
+    }
 
+    public static int decodeInt(ByteBuffer buffer) {
+        return buffer.getInt();
+    }
 }
@@ -0,0 +1,47 @@
+package model;
+
+import java.nio.ByteBuffer;
+
+/**
+ *
+ * HLAinteger32LE attribute, decoded as a boxed Integer like IntAttributeDef.
+ * The bytes are reversed around the big endian buffer access, so no little
+ * endian view of the buffer is needed.
+ *
+ */
+public final class IntLEAttributeDef extends AttributeDef {
+
+    public static final int ENCODED_LENGTH = 4;
+
+    public IntLEAttributeDef(String name) {
+        super(name);
+    }
+
+    @Override
+    public int getEncodedLength(Object value) {
+        return ENCODED_LENGTH;
+    }
+
+    @Override
+    public int getOctetBoundary() {
+        return ENCODED_LENGTH;
+    }
+
+    @Override
+    public void encode(Object value, ByteBuffer buffer) {
+        encodeIntLE((int) value, buffer);
+    }
+
+    @Override
+    public Object decode(ByteBuffer buffer) {
+        return decodeIntLE(buffer);
+    }
+
+    public static void encodeIntLE(int value, ByteBuffer buffer) {
+        buffer.putInt(Integer.reverseBytes(value));
+    }
+
+    public static int decodeIntLE(ByteBuffer buffer) {
+        return Integer.reverseBytes(buffer.getInt());
+    }
+}
@@ -0,0 +1,253 @@
+package model;
+
+import hla.rti1516e.ParameterHandleValueMap;
+
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+
+/**
+ *
+ * One interaction of an InteractionDef's class, to send (see
+ * Federate.sendInteraction) or as received (see Federate.pollInteraction).
+ *
+ * Parameter values are held encoded and addressed by slot like entity
+ * attributes.  Only the parameters that were set are sent.  Senders can reuse
+ * an instance: clear it and set the parameters again, the typed setters then
+ * write into the arrays of the previous values without allocating.
+ *
+ * Not thread safe, an instance belongs to one thread at a time.
+ *
+ */
+public class Interaction {
+
+    private static final byte[] EMPTY_TAG = new byte[0];
+
+    private final InteractionDef definition;
+
+    //  Encoded parameter values indexed by slot, null until first set, and
+    //  kept over clear so they can be reused
+    private final byte[][] encodedValues;
+    private final ByteBuffer[] encodedBuffers;
+    private final BitSet setSlots;
+
+    private byte[] tag;
+
+    public Interaction(InteractionDef definition) {
+        this.definition = definition;
+        this.encodedValues = new byte[definition.getNumParameters()][];
+        this.encodedBuffers = new ByteBuffer[this.encodedValues.length];
+        this.setSlots = new BitSet(this.encodedValues.length);
+        this.tag = EMPTY_TAG;
+    }
+
+    public InteractionDef getDefinition() {
+        return this.definition;
+    }
+
+    public String getClassName() {
+        return this.definition.getClassName();
+    }
+
+    /**
+     *
+     * Unset every parameter and the tag
+     *
+     */
+    public void clear() {
+        this.setSlots.clear();
+        this.tag = EMPTY_TAG;
+    }
+
+    public boolean isSet(int slot) {
+        return this.setSlots.get(slot);
+    }
+
+    /**
+     *
+     * Array of exactly length bytes for slot, the previous one when it fits
+     *
+     */
+    private ByteBuffer prepare(int slot, int length) {
+        if(this.encodedValues[slot] == null || this.encodedValues[slot].length != length) {
+            this.encodedValues[slot] = new byte[length];
+            this.encodedBuffers[slot] = ByteBuffer.wrap(this.encodedValues[slot]);
+        }
+
+        this.setSlots.set(slot);
+        return this.encodedBuffers[slot];
+    }
+
+    /**
+     *
+     * Set a parameter with the codec of its definition.  Parameters with a
+     * known type should use the typed setters, which avoid boxing.
+     *
+     * @param slot
+     * @param value
+     */
+    public void set(int slot, Object value) {
+        AttributeDef def = this.definition.getParameterDef(slot);
+        ByteBuffer buffer = this.prepare(slot, def.getEncodedLength(value));
+
+        buffer.clear();
+        def.encode(value, buffer);
+    }
+
+    public void set(String parameterName, Object value) {
+        this.set(this.definition.getSlot(parameterName), value);
+    }
+
+    /**
+     *
+     * Typed setter for IntAttributeDef parameters
+     *
+     * @param slot
+     * @param value
+     */
+    public void setInt(int slot, int value) {
+        this.prepare(slot, IntAttributeDef.ENCODED_LENGTH).putInt(0, value);
+    }
+
+    /**
+     *
+     * Typed setter for LongAttributeDef parameters
+     *
+     * @param slot
+     * @param value
+     */
+    public void setLong(int slot, long value) {
+        this.prepare(slot, LongAttributeDef.ENCODED_LENGTH).putLong(0, value);
+    }
+
+    /**
+     *
+     * Typed setter for DoubleAttributeDef parameters
+     *
+     * @param slot
+     * @param value
+     */
+    public void setDouble(int slot, double value) {
+        this.prepare(slot, DoubleAttributeDef.ENCODED_LENGTH).putDouble(0, value);
+    }
+
+    /**
+     *
+     * Typed setter for VectorAttributeDef parameters
+     *
+     * @param slot
+     * @param x
+     * @param y
+     */
+    public void setVec2(int slot, int x, int y) {
+        ByteBuffer buffer = this.prepare(slot, VectorAttributeDef.ENCODED_LENGTH);
+
+        buffer.putInt(0, x);
+        buffer.putInt(IntAttributeDef.ENCODED_LENGTH, y);
+    }
+
+    /**
+     *
+     * Set the encoded value of a parameter, the array is not copied and belongs
+     * to the interaction from here on
+     *
+     * @param slot
+     * @param bytes
+     */
+    public void setBytes(int slot, byte[] bytes) {
+        this.encodedValues[slot] = bytes;
+        this.encodedBuffers[slot] = ByteBuffer.wrap(bytes);
+        this.setSlots.set(slot);
+    }
+
+    /**
+     *
+     * @param slot
+     * @return the encoded value, null if the parameter is not set
+     */
+    public byte[] getBytes(int slot) {
+        return this.setSlots.get(slot) ? this.encodedValues[slot] : null;
+    }
+
+    /**
+     *
+     * Decode a parameter with the codec of its definition
+     *
+     * @param slot
+     * @return null if the parameter is not set
+     */
+    public Object get(int slot) {
+        return this.setSlots.get(slot) ? this.definition.getParameterDef(slot).decode(this.encodedValues[slot]) : null;
+    }
+
+    public Object get(String parameterName) {
+        return this.get(this.definition.getSlot(parameterName));
+    }
+
+    public int getInt(int slot) {
+        return this.encodedBuffers[slot].getInt(0);
+    }
+
+    public long getLong(int slot) {
+        return this.encodedBuffers[slot].getLong(0);
+    }
+
+    public double getDouble(int slot) {
+        return this.encodedBuffers[slot].getDouble(0);
+    }
+
+    public int getVec2X(int slot) {
+        return this.encodedBuffers[slot].getInt(0);
+    }
+
+    public int getVec2Y(int slot) {
+        return this.encodedBuffers[slot].getInt(IntAttributeDef.ENCODED_LENGTH);
+    }
+
+    public byte[] getTag() {
+        return this.tag;
+    }
+
+    /**
+     *
+     * @param tag user supplied tag sent with the interaction, not copied
+     */
+    public void setTag(byte[] tag) {
+        this.tag = tag == null ? EMPTY_TAG : tag;
+    }
+
+    /**
+     *
+     * Put the set parameters into map, keyed by their ParameterHandles.  The
+     * values are not copied, the map must not outlive the next change to this
+     * interaction.
+     *
+     * @param map
+     * @return the encoded length of the parameters put
+     */
+    public int putParameters(ParameterHandleValueMap map) {
+        int encodedLength = 0;
+
+        for(int slot = this.setSlots.nextSetBit(0); slot >= 0; slot = this.setSlots.nextSetBit(slot + 1)) {
+            map.put(this.definition.getParameterHandle(slot), this.encodedValues[slot]);
+            encodedLength += this.encodedValues[slot].length;
+        }
+
+        return encodedLength;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(this.getClassName()).append('{');
+
+        for(int slot = this.setSlots.nextSetBit(0); slot >= 0; slot = this.setSlots.nextSetBit(slot + 1)) {
+            AttributeDef def = this.definition.getParameterDef(slot);
+
+            if(builder.charAt(builder.length() - 1) != '{') {
+                builder.append(", ");
+            }
+            builder.append(def.getName()).append('=').append(def.format(this.get(slot)));
+        }
+
+        return builder.append('}').toString();
+    }
+}
@@ -0,0 +1,199 @@
+package model;
+
+import federate.Federate;
+import hla.rti1516e.InteractionClassHandle;
+import hla.rti1516e.ParameterHandle;
+import hla.rti1516e.ParameterHandleValueMap;
+import hla.rti1516e.ParameterHandleValueMapFactory;
+import util.Log;
+
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ *
+ * Java representation of an interaction class defined by the HLA XML file,
+ * the interaction counterpart of EntityDef.  Parameters are described by
+ * AttributeDefs (they share the same data types and codecs) and addressed by
+ * slot, the InteractionClassHandle and ParameterHandles are looked up once
+ * and cached here.
+ *
+ * ParameterHandleValueMaps handed to sendInteraction are pooled, so sending
+ * does not allocate a map per interaction.
+ *
+ */
+public class InteractionDef {
+
+    private static final Log LOG = Log.getLog(InteractionDef.class);
+
+    //  Pooled maps kept per definition, more are dropped on release
+    private static final int MAX_POOLED_MAPS = 64;
+
+    private final String className;
+    private final Federate federate;
+
+    //  Parameter definitions indexed by slot, in the order passed to the constructor
+    private final AttributeDef[] parameterDefs;
+    private final HashMap<String, AttributeDef> parameterNameToDefMap;
+
+    //  Set by initializeFederationHandles, read by any thread afterwards
+    private volatile InteractionClassHandle classHandle;
+    private ParameterHandle[] parameterHandles;
+    private HashMap<ParameterHandle, Integer> parameterHandleToSlotMap;
+
+    private ParameterHandleValueMapFactory parameterMapFactory;
+    private final ConcurrentLinkedQueue<ParameterHandleValueMap> parameterMapPool;
+
+    /**
+     *
+     * Each parameter is assigned a slot (its index in parameterDefs), which
+     * Interactions use to address parameter values without name lookups.
+     *
+     * @param className
+     * @param parameterDefs
+     * @param federate
+     */
+    public InteractionDef(String className, AttributeDef[] parameterDefs, Federate federate) {
+        this.className = className;
+        this.federate = federate;
+        this.parameterDefs = parameterDefs.clone();
+        this.parameterNameToDefMap = new HashMap<>();
+        this.parameterMapPool = new ConcurrentLinkedQueue<>();
+
+        for(int slot = 0; slot < parameterDefs.length; slot++) {
+            AttributeDef def = parameterDefs[slot];
+
+            def.setSlot(slot);
+            this.parameterNameToDefMap.put(def.getName(), def);
+        }
+    }
+
+    /**
+     *
+     * Look up the InteractionClassHandle and every ParameterHandle, must be
+     * connected to the FedEx.  Does nothing when already initialized.
+     *
+     * @return false if any handle could not be resolved
+     */
+    public boolean initializeFederationHandles() {
+        assert this.federate.isConnected();
+
+        if(this.classHandle != null) {
+            return true;
+        }
+
+        try {
+            InteractionClassHandle classHandle = this.federate.getRtiAmbassador()
+                    .getInteractionClassHandle(this.className);
+
+            ParameterHandle[] parameterHandles = new ParameterHandle[this.parameterDefs.length];
+            HashMap<ParameterHandle, Integer> handleToSlotMap = new HashMap<>();
+
+            for(int slot = 0; slot < parameterHandles.length; slot++) {
+                parameterHandles[slot] = this.federate.getRtiAmbassador().getParameterHandle(
+                                                    classHandle, this.parameterDefs[slot].getName());
+                handleToSlotMap.put(parameterHandles[slot], slot);
+            }
+
+            this.parameterMapFactory = this.federate.getRtiAmbassador().getParameterHandleValueMapFactory();
+            this.parameterHandles = parameterHandles;
+            this.parameterHandleToSlotMap = handleToSlotMap;
+            this.classHandle = classHandle;
+
+            LOG.success("InitializedFederationHandles interactionDef: " + this.className);
+            return true;
+        } catch(Exception e) {
+            String msg = "Exception initializeFederationHandles for interaction : " + this.className
+                       + " Got Exception : " + e;
+
+            this.federate.getMetrics().recordException(e);
+            LOG.error(msg);
+            return false;
+        }
+    }
+
+    /**
+     *
+     * Take an empty map from the pool, or create one.  Return it with
+     * releaseParameterMap once the RTI call it was passed to returned.
+     *
+     * @return
+     */
+    public ParameterHandleValueMap acquireParameterMap() {
+        ParameterHandleValueMap map = this.parameterMapPool.poll();
+
+        return map != null ? map : this.parameterMapFactory.create(this.parameterDefs.length);
+    }
+
+    public void releaseParameterMap(ParameterHandleValueMap map) {
+        map.clear();
+
+        if(this.parameterMapPool.size() < MAX_POOLED_MAPS) {
+            this.parameterMapPool.offer(map);
+        }
+    }
+
+    /**
+     *
+     * Create an empty interaction of this class
+     *
+     * @return
+     */
+    public Interaction newInteraction() {
+        return new Interaction(this);
+    }
+
+    public String getClassName() {
+        return this.className;
+    }
+
+    public Federate getFederate() {
+        return this.federate;
+    }
+
+    public InteractionClassHandle getClassHandle() {
+        return this.classHandle;
+    }
+
+    public int getNumParameters() {
+        return this.parameterDefs.length;
+    }
+
+    public AttributeDef getParameterDef(int slot) {
+        return this.parameterDefs[slot];
+    }
+
+    public AttributeDef getParameterDef(String parameterName) {
+        return this.parameterNameToDefMap.get(parameterName);
+    }
+
+    public ParameterHandle getParameterHandle(int slot) {
+        return this.parameterHandles[slot];
+    }
+
+    /**
+     *
+     * Resolve a parameter name to its slot, meant to be called once at setup
+     * and the slot kept for the hot path.
+     *
+     * @param parameterName
+     * @return
+     */
+    public int getSlot(String parameterName) {
+        AttributeDef def = this.parameterNameToDefMap.get(parameterName);
+        assert def != null : "No parameter " + parameterName + " on " + this.className;
+
+        return def.getSlot();
+    }
+
+    /**
+     *
+     * @param handle
+     * @return the slot of the parameter, -1 if it is not one of this class
+     *         (IE: a parameter of a subclass we have no definition for)
+     */
+    public int getSlot(ParameterHandle handle) {
+        Integer slot = this.parameterHandleToSlotMap.get(handle);
+        return slot == null ? -1 : slot;
+    }
+}
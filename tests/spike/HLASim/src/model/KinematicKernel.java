@@ -0,0 +1,12 @@
+package model;
+
+/**
+ *
+ * Bulk integration kernel used by KinematicStore.  Implementations add
+ * velocity[i] to position[i] for every i in [0, length).
+ *
+ */
+public interface KinematicKernel {
+
+    void integrate(int[] position, int[] velocity, int length);
+}
@@ -0,0 +1,181 @@
+package model;
+
+import federate.Federate;
+
+import java.util.Arrays;
+
+/**
+ *
+ * Columnar (structure of arrays) storage for a homogeneous class of moving
+ * bodies shaped like BallEntity.  Position, velocity and radius live in
+ * primitive arrays indexed by slot, and the whole store is advanced in one
+ * pass by a KinematicKernel instead of one virtual tick() per entity.
+ *
+ * Slots can be exposed as Entity views (getView) so they can be registered
+ * and published through the regular Federate APIs.
+ *
+ */
+public class KinematicStore {
+
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private final Federate federate;
+    private final EntityDef definition;
+    private final int positionSlot, velocitySlot, radiusSlot;
+    private final KinematicKernel kernel;
+
+    private int size;
+    private int[] x, y, vx, vy, r;
+    private KinematicEntity[] views;
+
+    /**
+     *
+     * @param federate
+     * @param definition        Definition the slot views are instances of
+     * @param positionAttrName  Vector attribute the position is published as
+     * @param velocityAttrName  Vector attribute the velocity is published as
+     * @param radiusAttrName    Int attribute the radius is published as
+     */
+    public KinematicStore(Federate federate, EntityDef definition,
+                          String positionAttrName, String velocityAttrName, String radiusAttrName) {
+        this.federate = federate;
+        this.definition = definition;
+        this.positionSlot = definition.getSlot(positionAttrName);
+        this.velocitySlot = definition.getSlot(velocityAttrName);
+        this.radiusSlot = definition.getSlot(radiusAttrName);
+        this.kernel = loadKernel();
+
+        this.size = 0;
+        this.x = new int[DEFAULT_CAPACITY];
+        this.y = new int[DEFAULT_CAPACITY];
+        this.vx = new int[DEFAULT_CAPACITY];
+        this.vy = new int[DEFAULT_CAPACITY];
+        this.r = new int[DEFAULT_CAPACITY];
+        this.views = new KinematicEntity[DEFAULT_CAPACITY];
+    }
+
+    /**
+     *
+     * Use the Vector API kernel when it is on the classpath and the
+     * jdk.incubator.vector module is present, otherwise the scalar loop.
+     *
+     * @return
+     */
+    private static KinematicKernel loadKernel() {
+        try {
+            Class<?> kernelClass = Class.forName("model.VectorKinematicKernel");
+            return (KinematicKernel) kernelClass.getDeclaredConstructor().newInstance();
+        } catch(Throwable t) {
+            return new ScalarKinematicKernel();
+        }
+    }
+
+    /**
+     *
+     * Add a body to the store, returns the slot that addresses it from now on.
+     *
+     * @return
+     */
+    public int add(int x, int y, int vx, int vy, int r) {
+        if(this.size == this.x.length) {
+            this.grow();
+        }
+
+        int slot = this.size++;
+        this.x[slot] = x;
+        this.y[slot] = y;
+        this.vx[slot] = vx;
+        this.vy[slot] = vy;
+        this.r[slot] = r;
+
+        return slot;
+    }
+
+    private void grow() {
+        int capacity = this.x.length * 2;
+
+        this.x = Arrays.copyOf(this.x, capacity);
+        this.y = Arrays.copyOf(this.y, capacity);
+        this.vx = Arrays.copyOf(this.vx, capacity);
+        this.vy = Arrays.copyOf(this.vy, capacity);
+        this.r = Arrays.copyOf(this.r, capacity);
+        this.views = Arrays.copyOf(this.views, capacity);
+    }
+
+    /**
+     *
+     * Advance every body in the store by one tick.
+     *
+     */
+    public void tick() {
+        this.kernel.integrate(this.x, this.vx, this.size);
+        this.kernel.integrate(this.y, this.vy, this.size);
+    }
+
+    /**
+     *
+     * Get/Create the Entity view of a slot.  Views are created lazily since they
+     * carry the per-entity HLA maps, slots that are never published never pay for one.
+     *
+     * @param slot
+     * @return
+     */
+    public Entity getView(int slot) {
+        assert slot >= 0 && slot < this.size;
+
+        if(this.views[slot] == null) {
+            this.views[slot] = new KinematicEntity(this, slot);
+        }
+
+        return this.views[slot];
+    }
+
+    public int size() { return this.size; }
+    public int getX(int slot) { return this.x[slot]; }
+    public int getY(int slot) { return this.y[slot]; }
+    public int getVx(int slot) { return this.vx[slot]; }
+    public int getVy(int slot) { return this.vy[slot]; }
+    public int getRadius(int slot) { return this.r[slot]; }
+
+    public void setVelocity(int slot, int vx, int vy) {
+        this.vx[slot] = vx;
+        this.vy[slot] = vy;
+    }
+
+    public KinematicKernel getKernel() {
+        return this.kernel;
+    }
+
+    /**
+     *
+     * Entity view of a single store slot.  The store does the integration, so ticking
+     * the view only copies the slot's current values into the entity attributes.
+     *
+     */
+    private static class KinematicEntity extends Entity {
+
+        private final KinematicStore store;
+        private final int slot;
+
+        KinematicEntity(KinematicStore store, int slot) {
+            super(store.definition, store.federate);
+
+            this.store = store;
+            this.slot = slot;
+        }
+
+        @Override
+        public void tick() {
+            this.updateAttributes();
+        }
+
+        @Override
+        public void updateAttributes() {
+            KinematicStore s = this.store;
+
+            this.setVec2(s.positionSlot, s.x[this.slot], s.y[this.slot]);
+            this.setVec2(s.velocitySlot, s.vx[this.slot], s.vy[this.slot]);
+            this.setInt(s.radiusSlot, s.r[this.slot]);
+        }
+    }
+}
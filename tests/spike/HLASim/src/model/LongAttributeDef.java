@@ -0,0 +1,45 @@
+package model;
+
+import java.nio.ByteBuffer;
+
+/**
+ *
+ * HLAinteger64BE attribute, decoded as a boxed Long, see IntAttributeDef
+ *
+ */
+public final class LongAttributeDef extends AttributeDef {
+
+    public static final int ENCODED_LENGTH = 8;
+
+    public LongAttributeDef(String name) {
+        super(name);
+    }
+
+    @Override
+    public int getEncodedLength(Object value) {
+        return ENCODED_LENGTH;
+    }
+
+    @Override
+    public int getOctetBoundary() {
+        return ENCODED_LENGTH;
+    }
+
+    @Override
+    public void encode(Object value, ByteBuffer buffer) {
+        encodeLong((long) value, buffer);
+    }
+
+    @Override
+    public Object decode(ByteBuffer buffer) {
+        return decodeLong(buffer);
+    }
+
+    public static void encodeLong(long value, ByteBuffer buffer) {
+        buffer.putLong(value);
+    }
+
+    public static long decodeLong(ByteBuffer buffer) {
+        return buffer.getLong();
+    }
+}
@@ -0,0 +1,47 @@
+package model;
+
+import java.nio.ByteBuffer;
+
+/**
+ *
+ * HLAinteger64LE attribute, decoded as a boxed Long like LongAttributeDef.
+ * The bytes are reversed around the big endian buffer access, so no little
+ * endian view of the buffer is needed.
+ *
+ */
+public final class LongLEAttributeDef extends AttributeDef {
+
+    public static final int ENCODED_LENGTH = 8;
+
+    public LongLEAttributeDef(String name) {
+        super(name);
+    }
+
+    @Override
+    public int getEncodedLength(Object value) {
+        return ENCODED_LENGTH;
+    }
+
+    @Override
+    public int getOctetBoundary() {
+        return ENCODED_LENGTH;
+    }
+
+    @Override
+    public void encode(Object value, ByteBuffer buffer) {
+        encodeLongLE((long) value, buffer);
+    }
+
+    @Override
+    public Object decode(ByteBuffer buffer) {
+        return decodeLongLE(buffer);
+    }
+
+    public static void encodeLongLE(long value, ByteBuffer buffer) {
+        buffer.putLong(Long.reverseBytes(value));
+    }
+
+    public static long decodeLongLE(ByteBuffer buffer) {
+        return Long.reverseBytes(buffer.getLong());
+    }
+}
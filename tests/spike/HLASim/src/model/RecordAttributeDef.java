@@ -0,0 +1,112 @@
+package model;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ *
+ * HLAfixedRecord attribute, object = Object[] with one decoded value per
+ * field.  Fields are encoded one after the other with their own codecs, each
+ * preceded by the zero padding that puts it at its octet boundary from the
+ * start of the record (IE: {HLAoctet, HLAinteger32BE} is 1 + 3 + 4 bytes).
+ * Records of two HLAinteger32BE fields should use VectorAttributeDef, which
+ * avoids the boxing.
+ *
+ */
+public final class RecordAttributeDef extends AttributeDef {
+
+    private final AttributeDef[] fields;
+
+    //  Octet boundary of each field, all powers of two
+    private final int[] boundaries;
+    private final int octetBoundary;
+
+    /**
+     *
+     * @param name
+     * @param fields codecs of the fields in order, their names are the field names
+     */
+    public RecordAttributeDef(String name, AttributeDef[] fields) {
+        super(name);
+        this.fields = fields.clone();
+        this.boundaries = new int[fields.length];
+
+        int octetBoundary = 1;
+        for(int i = 0; i < fields.length; i++) {
+            this.boundaries[i] = fields[i].getOctetBoundary();
+            octetBoundary = Math.max(octetBoundary, this.boundaries[i]);
+        }
+        this.octetBoundary = octetBoundary;
+    }
+
+    /**
+     *
+     * @return the padding that brings offset to a multiple of boundary
+     */
+    private static int padding(int offset, int boundary) {
+        return -offset & (boundary - 1);
+    }
+
+    public int getFieldCount() {
+        return this.fields.length;
+    }
+
+    public AttributeDef getField(int index) {
+        return this.fields[index];
+    }
+
+    @Override
+    public int getEncodedLength(Object value) {
+        Object[] values = (Object[]) value;
+        int length = 0;
+
+        for(int i = 0; i < this.fields.length; i++) {
+            length += padding(length, this.boundaries[i]) + this.fields[i].getEncodedLength(values[i]);
+        }
+
+        return length;
+    }
+
+    @Override
+    public int getOctetBoundary() {
+        return this.octetBoundary;
+    }
+
+    @Override
+    public void encode(Object value, ByteBuffer buffer) {
+        Object[] values = (Object[]) value;
+        int start = buffer.position();
+
+        for(int i = 0; i < this.fields.length; i++) {
+            for(int pad = padding(buffer.position() - start, this.boundaries[i]); pad > 0; pad--) {
+                buffer.put((byte) 0);
+            }
+            this.fields[i].encode(values[i], buffer);
+        }
+    }
+
+    @Override
+    public Object decode(ByteBuffer buffer) {
+        Object[] values = new Object[this.fields.length];
+        int start = buffer.position();
+
+        for(int i = 0; i < this.fields.length; i++) {
+            buffer.position(buffer.position() + padding(buffer.position() - start, this.boundaries[i]));
+            values[i] = this.fields[i].decode(buffer);
+        }
+
+        return values;
+    }
+
+    @Override
+    public String format(Object value) {
+        Object[] values = (Object[]) value;
+        String[] formatted = new String[this.fields.length];
+
+        for(int i = 0; i < this.fields.length; i++) {
+            formatted[i] = this.fields[i].getName() + "=" + this.fields[i].format(values[i]);
+        }
+
+        return Arrays.toString(formatted);
+    }
+}
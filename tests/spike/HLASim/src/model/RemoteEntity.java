@@ -0,0 +1,137 @@
+package model;
+
+import hla.rti1516e.AttributeHandle;
+import hla.rti1516e.ObjectInstanceHandle;
+
+import java.nio.ByteBuffer;
+
+/**
+ *
+ * Local mirror of an object instance owned by another federate.  Remote entities
+ * are created when an instance is discovered and updated with the decoded values
+ * of reflected attributes, they are never ticked or published by this federate.
+ *
+ */
+public class RemoteEntity {
+
+    private final ObjectInstanceHandle instanceHandle;
+    private final String name;
+    private final EntityDef definition;
+
+    //  Decoded value of the last reflected update, indexed by attribute slot
+    private final Object[] attributeValues;
+
+    //  Federate tick at which each slot was last reflected
+    private final long[] reflectedTicks;
+
+    public RemoteEntity(ObjectInstanceHandle instanceHandle, String name, EntityDef definition) {
+        this.instanceHandle = instanceHandle;
+        this.name = name;
+        this.definition = definition;
+        this.attributeValues = new Object[definition.getNumAttributes()];
+        this.reflectedTicks = new long[definition.getNumAttributes()];
+    }
+
+    /**
+     *
+     * Decode a reflected attribute value with the attribute definition's codec.
+     * Attributes this federate has no definition for are ignored.
+     *
+     * @param handle
+     * @param bytes
+     * @param tick      the receiving federate's current tick
+     */
+    public void reflectAttribute(AttributeHandle handle, byte[] bytes, long tick) {
+        AttributeDef def = this.definition.getAttributeDef(handle);
+
+        if(def != null) {
+            this.attributeValues[def.getSlot()] = def.decode(bytes);
+            this.reflectedTicks[def.getSlot()] = tick;
+        }
+    }
+
+    /**
+     *
+     * Decode a value for slot from buffer, used when replaying a recording
+     *
+     * @param slot
+     * @param buffer    read from its position on
+     * @param tick
+     */
+    public void reflectAttribute(int slot, ByteBuffer buffer, long tick) {
+        this.attributeValues[slot] = this.definition.getAttributeDef(slot).decode(buffer);
+        this.reflectedTicks[slot] = tick;
+    }
+
+    /**
+     *
+     * Position extrapolated to tick with the definition's DeadReckoningModel
+     * (lastPosition + lastVelocity * ticksSinceReflected).  Before the first
+     * velocity update this is just the last reflected position.  Without a
+     * model there is no position attribute to go by.
+     *
+     * @param tick  the receiving federate's current tick
+     * @return int[] {x, y}, or null without a DeadReckoningModel or if no
+     *         position has been reflected
+     */
+    public int[] getDeadReckonedPosition(long tick) {
+        DeadReckoningModel model = this.definition.getDeadReckoningModel();
+
+        if(model == null) {
+            return null;
+        }
+
+        int[] position = (int[]) this.attributeValues[model.getPositionSlot()];
+        int[] velocity = (int[]) this.attributeValues[model.getVelocitySlot()];
+
+        if(position == null || velocity == null) {
+            return position;
+        }
+
+        long elapsed = tick - this.reflectedTicks[model.getPositionSlot()];
+        return new int[] {(int) (position[0] + velocity[0] * elapsed),
+                          (int) (position[1] + velocity[1] * elapsed)};
+    }
+
+    /**
+     *
+     * @return the receiving federate's tick of the latest reflection, 0 before the first
+     */
+    public long getLastReflectedTick() {
+        long last = 0;
+        for(long tick : this.reflectedTicks) {
+            last = Math.max(last, tick);
+        }
+
+        return last;
+    }
+
+    public Object getAttributeValue(int slot) {
+        return this.attributeValues[slot];
+    }
+
+    public Object getAttributeValue(String attrName) {
+        return this.attributeValues[this.definition.getSlot(attrName)];
+    }
+
+    public ObjectInstanceHandle getInstanceHandle() {
+        return this.instanceHandle;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public EntityDef getEntityDefinition() {
+        return this.definition;
+    }
+
+    public String getClassName() {
+        return this.definition.getClassName();
+    }
+
+    @Override
+    public String toString() {
+        return this.getClassName() + "(" + this.name + ")";
+    }
+}
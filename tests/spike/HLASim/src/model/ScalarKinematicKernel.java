@@ -0,0 +1,17 @@
+package model;
+
+/**
+ *
+ * Plain loop implementation of the kinematic kernel.  Always available, used
+ * whenever the Vector API kernel can not be loaded.
+ *
+ */
+public class ScalarKinematicKernel implements KinematicKernel {
+
+    @Override
+    public void integrate(int[] position, int[] velocity, int length) {
+        for(int i = 0; i < length; i++) {
+            position[i] += velocity[i];
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package model;
+
+import java.nio.ByteBuffer;
+
+/**
+ *
+ * HLAinteger16BE attribute, decoded as a boxed Short, see IntAttributeDef
+ *
+ */
+public final class ShortAttributeDef extends AttributeDef {
+
+    public static final int ENCODED_LENGTH = 2;
+
+    public ShortAttributeDef(String name) {
+        super(name);
+    }
+
+    @Override
+    public int getEncodedLength(Object value) {
+        return ENCODED_LENGTH;
+    }
+
+    @Override
+    public int getOctetBoundary() {
+        return ENCODED_LENGTH;
+    }
+
+    @Override
+    public void encode(Object value, ByteBuffer buffer) {
+        encodeShort((short) value, buffer);
+    }
+
+    @Override
+    public Object decode(ByteBuffer buffer) {
+        return decodeShort(buffer);
+    }
+
+    public static void encodeShort(short value, ByteBuffer buffer) {
+        buffer.putShort(value);
+    }
+
+    public static short decodeShort(ByteBuffer buffer) {
+        return buffer.getShort();
+    }
+}
@@ -0,0 +1,47 @@
+package model;
+
+import java.nio.ByteBuffer;
+
+/**
+ *
+ * HLAinteger16LE attribute, decoded as a boxed Short like ShortAttributeDef.
+ * The bytes are reversed around the big endian buffer access, so no little
+ * endian view of the buffer is needed.
+ *
+ */
+public final class ShortLEAttributeDef extends AttributeDef {
+
+    public static final int ENCODED_LENGTH = 2;
+
+    public ShortLEAttributeDef(String name) {
+        super(name);
+    }
+
+    @Override
+    public int getEncodedLength(Object value) {
+        return ENCODED_LENGTH;
+    }
+
+    @Override
+    public int getOctetBoundary() {
+        return ENCODED_LENGTH;
+    }
+
+    @Override
+    public void encode(Object value, ByteBuffer buffer) {
+        encodeShortLE((short) value, buffer);
+    }
+
+    @Override
+    public Object decode(ByteBuffer buffer) {
+        return decodeShortLE(buffer);
+    }
+
+    public static void encodeShortLE(short value, ByteBuffer buffer) {
+        buffer.putShort(Short.reverseBytes(value));
+    }
+
+    public static short decodeShortLE(ByteBuffer buffer) {
+        return Short.reverseBytes(buffer.getShort());
+    }
+}
@@ -0,0 +1,59 @@
+package model;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ *
+ * String attribute of form
+ *
+ * byte[] = HLAvariableArray {HLAinteger32BE count, count characters}
+ * object = String
+ *
+ * HLAASCIIstring characters are one octet, HLAunicodeString characters are
+ * two (UTF-16BE).
+ *
+ */
+public final class StringAttributeDef extends AttributeDef {
+
+    private final Charset charset;
+    private final int bytesPerCharacter;
+
+    public StringAttributeDef(String name, boolean unicode) {
+        super(name);
+
+        this.charset = unicode ? StandardCharsets.UTF_16BE : StandardCharsets.US_ASCII;
+        this.bytesPerCharacter = unicode ? 2 : 1;
+    }
+
+    public boolean isUnicode() {
+        return this.bytesPerCharacter == 2;
+    }
+
+    @Override
+    public int getEncodedLength(Object value) {
+        return IntAttributeDef.ENCODED_LENGTH + this.bytesPerCharacter * ((String) value).length();
+    }
+
+    @Override
+    public int getOctetBoundary() {
+        return IntAttributeDef.ENCODED_LENGTH;
+    }
+
+    @Override
+    public void encode(Object value, ByteBuffer buffer) {
+        String string = (String) value;
+
+        IntAttributeDef.encodeInt(string.length(), buffer);
+        buffer.put(string.getBytes(this.charset));
+    }
+
+    @Override
+    public Object decode(ByteBuffer buffer) {
+        byte[] bytes = new byte[this.bytesPerCharacter * IntAttributeDef.decodeInt(buffer)];
+        buffer.get(bytes);
+
+        return new String(bytes, this.charset);
+    }
+}
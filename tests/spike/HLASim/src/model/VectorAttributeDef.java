@@ -1,16 +1,19 @@
 package model;
 
+import java.nio.ByteBuffer;
+
 /**
  * Created by Andrew on 10/9/2016.
  */
 public class VectorAttributeDef extends AttributeDef {
 
+    public static final int ENCODED_LENGTH = 2 * IntAttributeDef.ENCODED_LENGTH;
 
     /**
      *
      * Simple vector attribute of form
      *
-     * byte[] = "(x,y)"
+     * byte[] = HLAfixedRecord IntVector2 {HLAinteger32BE x, HLAinteger32BE y}
      * object = int[] {x, y}
      *
      * @param name
@@ -20,13 +23,37 @@ public class VectorAttributeDef extends AttributeDef {
     }
 
     @Override
-    public byte[] encode(Object value) {
+    public int getEncodedLength(Object value) {
+        return ENCODED_LENGTH;
+    }
+
+    @Override
+    public int getOctetBoundary() {
+        return IntAttributeDef.ENCODED_LENGTH;
+    }
+
+    @Override
+    public void encode(Object value, ByteBuffer buffer) {
         int[] data = (int[]) value;
-        return ("("+data[0]+","+data[1]+")").getBytes();
+        encodeVector(data[0], data[1], buffer);
     }
 
     @Override
-    public Object decode(byte[] bytes) {
-        return null;
+    public Object decode(ByteBuffer buffer) {
+        int x = IntAttributeDef.decodeInt(buffer);
+        int y = IntAttributeDef.decodeInt(buffer);
+
+        return new int[] {x, y};
+    }
+
+    @Override
+    public String format(Object value) {
+        int[] data = (int[]) value;
+        return "(" + data[0] + "," + data[1] + ")";
+    }
+
+    public static void encodeVector(int x, int y, ByteBuffer buffer) {
+        IntAttributeDef.encodeInt(x, buffer);
+        IntAttributeDef.encodeInt(y, buffer);
     }
 }
@@ -0,0 +1,117 @@
+package rti;
+
+import hla.rti1516e.*;
+import hla.rti1516e.encoding.ByteWrapper;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ *
+ * Plain collection backed implementations of the HLA handle sets/maps handed
+ * out by the loopback RTI's factories.
+ *
+ */
+final class LoopbackCollections {
+
+    private LoopbackCollections() {
+    }
+
+    static class AttributeSet extends HashSet<AttributeHandle> implements AttributeHandleSet {
+
+        private static final long serialVersionUID = 1L;
+
+        AttributeSet() {
+        }
+
+        @Override
+        public AttributeSet clone() {
+            return (AttributeSet) super.clone();
+        }
+    }
+
+    static class DimensionSet extends HashSet<DimensionHandle> implements DimensionHandleSet {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public DimensionSet clone() {
+            return (DimensionSet) super.clone();
+        }
+    }
+
+    static class RegionSet extends HashSet<RegionHandle> implements RegionHandleSet {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public RegionSet clone() {
+            return (RegionSet) super.clone();
+        }
+    }
+
+    static class RegionPairList extends ArrayList<AttributeRegionAssociation> implements AttributeSetRegionSetPairList {
+
+        private static final long serialVersionUID = 1L;
+
+        RegionPairList(int capacity) {
+            super(capacity);
+        }
+
+        @Override
+        public RegionPairList clone() {
+            return (RegionPairList) super.clone();
+        }
+    }
+
+    static class AttributeValueMap extends HashMap<AttributeHandle, byte[]> implements AttributeHandleValueMap {
+
+        private static final long serialVersionUID = 1L;
+
+        AttributeValueMap(int capacity) {
+            super(Math.max(4, capacity * 2));
+        }
+
+        @Override
+        public ByteWrapper getValueReference(AttributeHandle key) {
+            byte[] value = this.get(key);
+            return value == null ? null : new ByteWrapper(value);
+        }
+
+        @Override
+        public ByteWrapper getValueReference(AttributeHandle key, ByteWrapper byteWrapper) {
+            return this.getValueReference(key);
+        }
+
+        @Override
+        public AttributeValueMap clone() {
+            return (AttributeValueMap) super.clone();
+        }
+    }
+
+    static class ParameterValueMap extends HashMap<ParameterHandle, byte[]> implements ParameterHandleValueMap {
+
+        private static final long serialVersionUID = 1L;
+
+        ParameterValueMap(int capacity) {
+            super(Math.max(4, capacity * 2));
+        }
+
+        @Override
+        public ByteWrapper getValueReference(ParameterHandle key) {
+            byte[] value = this.get(key);
+            return value == null ? null : new ByteWrapper(value);
+        }
+
+        @Override
+        public ByteWrapper getValueReference(ParameterHandle key, ByteWrapper byteWrapper) {
+            return this.getValueReference(key);
+        }
+
+        @Override
+        public ParameterValueMap clone() {
+            return (ParameterValueMap) super.clone();
+        }
+    }
+}
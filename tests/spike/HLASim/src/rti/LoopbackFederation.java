@@ -0,0 +1,1074 @@
+package rti;
+
+import hla.rti1516e.*;
+import hla.rti1516e.exceptions.*;
+import hla.rti1516e.time.HLAfloat64Interval;
+import hla.rti1516e.time.HLAfloat64Time;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ *
+ * One federation execution of the loopback RTI: the name tables, the joined
+ * federates, their publications/subscriptions and the registered object
+ * instances.
+ *
+ * Membership, (un)subscription, registration and deletion lock the federation,
+ * receive order updates and interactions only read concurrent structures so
+ * federates on different threads can publish at the same time.  Subscriber
+ * lists are copy on write since they change rarely and are iterated on every
+ * update.
+ *
+ * Time management is conservative: a constrained federate is granted a
+ * timeAdvanceRequest(t) once t is below its GALT, the least time any other
+ * regulating federate can still send at (its logical or requested time plus
+ * its lookahead), so lookahead must be positive for federates to advance
+ * together.  Timestamped updates from regulating to constrained federates are
+ * held back and delivered in timestamp order just before the grant.  Time
+ * management calls and timestamped updates lock the federation.
+ *
+ * Federation saves are coordinated (every member is told to save and the
+ * federation is saved once all of them completed) but the loopback RTI keeps
+ * no state of its own to save, and federation restores are always refused.
+ *
+ * Ownership is tracked per instance, not per attribute: whatever attributes an
+ * ownership call names, the whole instance changes hands, and only its owner
+ * may update it.  An instance has at most one pending acquisition.
+ *
+ */
+final class LoopbackFederation {
+
+    private static final String OBJECT_ROOT = "HLAobjectRoot.";
+    private static final String INTERACTION_ROOT = "HLAinteractionRoot.";
+
+    private final LoopbackRti rti;
+    private final String name;
+    private final Map<String, Long> dimensionUpperBounds;
+
+    //  Name -> handle and handle -> name for classes, attributes, interactions, parameters and dimensions
+    private final ConcurrentHashMap<String, LoopbackHandle> nameToHandleMap;
+    private final ConcurrentHashMap<LoopbackHandle, String> handleToNameMap;
+
+    private final CopyOnWriteArrayList<LoopbackRtiAmbassador> members;
+    private final ConcurrentHashMap<ObjectClassHandle, CopyOnWriteArrayList<Subscription>> objectSubscriptions;
+    private final ConcurrentHashMap<InteractionClassHandle, CopyOnWriteArrayList<LoopbackRtiAmbassador>> interactionSubscriptions;
+    private final ConcurrentHashMap<ObjectInstanceHandle, Instance> instances;
+    private final ConcurrentHashMap<String, Instance> nameToInstanceMap;
+    private final ConcurrentHashMap<String, LoopbackRtiAmbassador> reservedNames;
+    private final ConcurrentHashMap<RegionHandle, Region> regions;
+
+    //  Federation save in progress, guarded by this: its label (null when not
+    //  saving) and the members that have not completed it yet
+    private String saveLabel;
+    private final Set<LoopbackRtiAmbassador> saving;
+
+    LoopbackFederation(LoopbackRti rti, String name, Map<String, Long> dimensionUpperBounds) {
+        this.rti = rti;
+        this.name = name;
+        this.dimensionUpperBounds = dimensionUpperBounds;
+
+        this.nameToHandleMap = new ConcurrentHashMap<>();
+        this.handleToNameMap = new ConcurrentHashMap<>();
+        this.members = new CopyOnWriteArrayList<>();
+        this.objectSubscriptions = new ConcurrentHashMap<>();
+        this.interactionSubscriptions = new ConcurrentHashMap<>();
+        this.instances = new ConcurrentHashMap<>();
+        this.nameToInstanceMap = new ConcurrentHashMap<>();
+        this.reservedNames = new ConcurrentHashMap<>();
+        this.regions = new ConcurrentHashMap<>();
+        this.saving = new HashSet<>();
+    }
+
+    String getName() {
+        return this.name;
+    }
+
+    /*
+     * Names
+     */
+
+    private LoopbackHandle getHandle(String key) {
+        LoopbackHandle handle = this.nameToHandleMap.get(key);
+
+        if(handle == null) {
+            handle = this.nameToHandleMap.computeIfAbsent(key, k -> {
+                LoopbackHandle created = this.rti.newHandle();
+                this.handleToNameMap.put(created, k.substring(k.indexOf(':', k.indexOf(':') + 1) + 1));
+                return created;
+            });
+        }
+
+        return handle;
+    }
+
+    private static String stripRoot(String name, String root) {
+        return name.startsWith(root) ? name.substring(root.length()) : name;
+    }
+
+    LoopbackHandle getObjectClassHandle(String className) {
+        return this.getHandle("class::" + stripRoot(className, OBJECT_ROOT));
+    }
+
+    LoopbackHandle getAttributeHandle(ObjectClassHandle classHandle, String attributeName) {
+        return this.getHandle("attribute:" + classHandle + ":" + attributeName);
+    }
+
+    LoopbackHandle getInteractionClassHandle(String interactionName) {
+        return this.getHandle("interaction::" + stripRoot(interactionName, INTERACTION_ROOT));
+    }
+
+    LoopbackHandle getParameterHandle(InteractionClassHandle interactionHandle, String parameterName) {
+        return this.getHandle("parameter:" + interactionHandle + ":" + parameterName);
+    }
+
+    LoopbackHandle getDimensionHandle(String dimensionName) {
+        return this.getHandle("dimension::" + dimensionName);
+    }
+
+    long getDimensionUpperBound(DimensionHandle dimensionHandle) throws NameNotFound {
+        Long upperBound = this.dimensionUpperBounds.get(this.getHandleName(dimensionHandle));
+        return upperBound == null ? LoopbackRti.DEFAULT_DIMENSION_UPPER_BOUND : upperBound;
+    }
+
+    String getHandleName(Object handle) throws NameNotFound {
+        String handleName = this.handleToNameMap.get(handle);
+
+        if(handleName == null) {
+            throw new NameNotFound("Unknown handle " + handle);
+        }
+        return handleName;
+    }
+
+    /*
+     * Membership
+     */
+
+    synchronized void join(LoopbackRtiAmbassador ambassador) {
+        this.members.add(ambassador);
+    }
+
+    synchronized boolean hasMembers() {
+        return !this.members.isEmpty();
+    }
+
+    /**
+     *
+     * Remove a federate, its subscriptions and (when resignAction deletes
+     * objects) the instances it owns.
+     *
+     */
+    synchronized void resign(LoopbackRtiAmbassador ambassador, ResignAction resignAction) {
+        boolean deleteObjects = resignAction == ResignAction.DELETE_OBJECTS
+                             || resignAction == ResignAction.DELETE_OBJECTS_THEN_DIVEST
+                             || resignAction == ResignAction.CANCEL_THEN_DELETE_THEN_DIVEST;
+
+        for(Instance instance : new ArrayList<>(this.instances.values())) {
+            if(instance.acquirer == ambassador) {
+                instance.acquirer = null;
+            }
+
+            if(instance.owner == ambassador) {
+                if(deleteObjects) {
+                    this.deleteInstance(instance, new byte[0]);
+                    continue;
+                }
+
+                instance.owner = null;
+                if(instance.acquirer != null) {
+                    this.transfer(instance);
+                }
+            }
+            instance.discoveredBy.remove(ambassador);
+        }
+
+        for(List<Subscription> subscriptions : this.objectSubscriptions.values()) {
+            subscriptions.removeIf(subscription -> subscription.ambassador == ambassador);
+        }
+
+        for(List<LoopbackRtiAmbassador> subscribers : this.interactionSubscriptions.values()) {
+            subscribers.remove(ambassador);
+        }
+
+        this.reservedNames.values().removeIf(reserver -> reserver == ambassador);
+        this.members.remove(ambassador);
+        this.advanceTime();
+
+        if(this.saving.contains(ambassador)) {
+            this.finishSave(SaveFailureReason.FEDERATE_RESIGNED_DURING_SAVE);
+        }
+    }
+
+    /*
+     * Object classes
+     */
+
+    /**
+     *
+     * Subscribe to attributes of a class, with regions or without (regions null).
+     * Known instances the subscription now covers are discovered immediately.
+     *
+     */
+    synchronized void subscribe(LoopbackRtiAmbassador ambassador, ObjectClassHandle classHandle,
+                                AttributeHandleSet attributes, RegionHandleSet regions) {
+        List<Subscription> subscriptions =
+                this.objectSubscriptions.computeIfAbsent(classHandle, c -> new CopyOnWriteArrayList<>());
+        Subscription subscription = null;
+
+        for(Subscription existing : subscriptions) {
+            if(existing.ambassador == ambassador) {
+                subscription = existing;
+            }
+        }
+
+        if(subscription == null) {
+            subscription = new Subscription(ambassador);
+            subscriptions.add(subscription);
+        }
+
+        subscription.attributes.addAll(attributes);
+        if(regions == null) {
+            subscription.unbounded = true;
+        } else {
+            subscription.regions.addAll(regions);
+        }
+
+        for(Instance instance : this.instances.values()) {
+            if(instance.classHandle.equals(classHandle) && instance.owner != ambassador
+                    && this.matches(subscription, instance)) {
+                this.discover(ambassador, instance);
+            }
+        }
+    }
+
+    /**
+     *
+     * Remove regions from a subscription, or the whole subscription (regions null)
+     *
+     */
+    synchronized void unsubscribe(LoopbackRtiAmbassador ambassador, ObjectClassHandle classHandle,
+                                  RegionHandleSet regions) {
+        List<Subscription> subscriptions = this.objectSubscriptions.get(classHandle);
+        if(subscriptions == null) {
+            return;
+        }
+
+        for(Subscription subscription : subscriptions) {
+            if(subscription.ambassador != ambassador) {
+                continue;
+            }
+
+            if(regions != null) {
+                subscription.regions.removeAll(regions);
+            }
+
+            if(regions == null || (!subscription.unbounded && subscription.regions.isEmpty())) {
+                subscriptions.remove(subscription);
+            }
+        }
+    }
+
+    synchronized ObjectInstanceHandle register(LoopbackRtiAmbassador owner, ObjectClassHandle classHandle,
+                                               String instanceName) throws RTIexception {
+        LoopbackHandle handle = this.rti.newHandle();
+        String name = instanceName != null ? instanceName : this.getHandleName(classHandle) + "#" + handle.getId();
+
+        if(this.nameToInstanceMap.containsKey(name)) {
+            throw new RTIinternalError("Object instance name already in use " + name);
+        }
+        if(this.reservedNames.getOrDefault(name, owner) != owner) {
+            throw new ObjectInstanceNameNotReserved("Object instance name reserved by another federate " + name);
+        }
+        this.reservedNames.remove(name);
+
+        Instance instance = new Instance(handle, classHandle, name, owner);
+        this.instances.put(handle, instance);
+        this.nameToInstanceMap.put(name, instance);
+
+        List<Subscription> subscriptions = this.objectSubscriptions.get(classHandle);
+        if(subscriptions != null) {
+            for(Subscription subscription : subscriptions) {
+                if(subscription.ambassador != owner && this.matches(subscription, instance)) {
+                    this.discover(subscription.ambassador, instance);
+                }
+            }
+        }
+
+        return handle;
+    }
+
+    /**
+     *
+     * Reserve all names or none, names in use or reserved by another federate fail
+     * the whole set.  Registering with a name does not require reserving it first.
+     *
+     */
+    synchronized void reserve(LoopbackRtiAmbassador ambassador, Set<String> names, boolean single) {
+        for(String name : names) {
+            if(this.nameToInstanceMap.containsKey(name)
+                    || this.reservedNames.getOrDefault(name, ambassador) != ambassador) {
+                ambassador.nameReservation(names, single, false);
+                return;
+            }
+        }
+
+        for(String name : names) {
+            this.reservedNames.put(name, ambassador);
+        }
+        ambassador.nameReservation(names, single, true);
+    }
+
+    /**
+     *
+     * Names not reserved by ambassador are left alone
+     *
+     */
+    synchronized void release(LoopbackRtiAmbassador ambassador, Set<String> names) {
+        for(String name : names) {
+            this.reservedNames.remove(name, ambassador);
+        }
+    }
+
+    Instance getInstance(ObjectInstanceHandle instanceHandle) throws ObjectInstanceNotKnown {
+        Instance instance = this.instances.get(instanceHandle);
+
+        if(instance == null) {
+            throw new ObjectInstanceNotKnown("Unknown object instance " + instanceHandle);
+        }
+        return instance;
+    }
+
+    Instance getInstance(String instanceName) throws ObjectInstanceNotKnown {
+        Instance instance = this.nameToInstanceMap.get(instanceName);
+
+        if(instance == null) {
+            throw new ObjectInstanceNotKnown("Unknown object instance " + instanceName);
+        }
+        return instance;
+    }
+
+    /**
+     *
+     * Route an update to every subscriber of the instance's class whose
+     * subscription matches, each gets only the attributes it subscribed to.
+     * Values are copied once per update and the copy is shared by subscribers.
+     * Timestamped updates (time not null) go through timestampedUpdate.
+     *
+     */
+    void update(LoopbackRtiAmbassador sender, ObjectInstanceHandle instanceHandle,
+                AttributeHandleValueMap values, byte[] tag, HLAfloat64Time time) throws RTIexception {
+        if(time != null) {
+            this.timestampedUpdate(sender, instanceHandle, values, tag, time);
+            return;
+        }
+
+        Instance instance = this.getInstance(instanceHandle);
+        checkOwner(sender, instance);
+
+        List<Subscription> subscriptions = this.objectSubscriptions.get(instance.classHandle);
+        if(subscriptions == null || subscriptions.isEmpty()) {
+            return;
+        }
+
+        LoopbackCollections.AttributeValueMap copy = null;
+
+        for(Subscription subscription : subscriptions) {
+            if(subscription.ambassador == sender || !this.matches(subscription, instance)) {
+                continue;
+            }
+
+            if(copy == null) {
+                copy = new LoopbackCollections.AttributeValueMap(values.size());
+                for(Map.Entry<AttributeHandle, byte[]> entry : values.entrySet()) {
+                    copy.put(entry.getKey(), entry.getValue().clone());
+                }
+            }
+
+            AttributeHandleValueMap delivered = subscription.filter(copy);
+            if(delivered.isEmpty()) {
+                continue;
+            }
+
+            this.discover(subscription.ambassador, instance);
+            subscription.ambassador.reflect(instance.handle, delivered, tag, sender.getFederateHandle());
+        }
+    }
+
+    /**
+     *
+     * A regulating sender may only send at or after its (requested) time plus
+     * lookahead.  Constrained receivers of a regulating sender get the update in
+     * timestamp order, everyone else right away.
+     *
+     */
+    private synchronized void timestampedUpdate(LoopbackRtiAmbassador sender, ObjectInstanceHandle instanceHandle,
+                                                AttributeHandleValueMap values, byte[] tag, HLAfloat64Time time)
+            throws RTIexception {
+        Instance instance = this.getInstance(instanceHandle);
+        checkOwner(sender, instance);
+
+        if(sender.regulating && time.compareTo(this.getEarliestSendTime(sender)) < 0) {
+            throw new InvalidLogicalTime(time + " is before " + this.getEarliestSendTime(sender));
+        }
+
+        List<Subscription> subscriptions = this.objectSubscriptions.get(instance.classHandle);
+        if(subscriptions == null || subscriptions.isEmpty()) {
+            return;
+        }
+
+        LoopbackCollections.AttributeValueMap copy = null;
+
+        for(Subscription subscription : subscriptions) {
+            if(subscription.ambassador == sender || !this.matches(subscription, instance)) {
+                continue;
+            }
+
+            if(copy == null) {
+                copy = new LoopbackCollections.AttributeValueMap(values.size());
+                for(Map.Entry<AttributeHandle, byte[]> entry : values.entrySet()) {
+                    copy.put(entry.getKey(), entry.getValue().clone());
+                }
+            }
+
+            AttributeHandleValueMap delivered = subscription.filter(copy);
+            if(delivered.isEmpty()) {
+                continue;
+            }
+
+            this.discover(subscription.ambassador, instance);
+            subscription.ambassador.reflect(instance.handle, delivered, tag, sender.getFederateHandle(), time,
+                                            sender.regulating && subscription.ambassador.constrained);
+        }
+    }
+
+    synchronized void delete(ObjectInstanceHandle instanceHandle, byte[] tag) throws ObjectInstanceNotKnown {
+        this.deleteInstance(this.getInstance(instanceHandle), tag);
+    }
+
+    private void deleteInstance(Instance instance, byte[] tag) {
+        this.instances.remove(instance.handle);
+        this.nameToInstanceMap.remove(instance.name);
+
+        FederateHandle producer = instance.owner == null ? null : instance.owner.getFederateHandle();
+        for(LoopbackRtiAmbassador ambassador : instance.discoveredBy.keySet()) {
+            ambassador.remove(instance.handle, tag, producer);
+        }
+        instance.discoveredBy.clear();
+    }
+
+    /**
+     *
+     * Queue the discover callback the first time ambassador is sent anything of
+     * the instance.  Updates are not routed under the federation's lock, so the
+     * instance is only marked discovered once the callback is queued, under
+     * the instance's monitor: an update racing the first one waits for it
+     * instead of queueing a reflect ahead of the discover.
+     *
+     */
+    private void discover(LoopbackRtiAmbassador ambassador, Instance instance) {
+        if(instance.discoveredBy.containsKey(ambassador)) {
+            return;
+        }
+
+        synchronized(instance) {
+            if(!instance.discoveredBy.containsKey(ambassador)) {
+                ambassador.discover(instance.handle, instance.classHandle, instance.name,
+                                    instance.owner == null ? null : instance.owner.getFederateHandle());
+                instance.discoveredBy.put(ambassador, Boolean.TRUE);
+            }
+        }
+    }
+
+    /*
+     * Interactions
+     */
+
+    synchronized void subscribe(LoopbackRtiAmbassador ambassador, InteractionClassHandle interactionHandle) {
+        List<LoopbackRtiAmbassador> subscribers =
+                this.interactionSubscriptions.computeIfAbsent(interactionHandle, c -> new CopyOnWriteArrayList<>());
+
+        if(!subscribers.contains(ambassador)) {
+            subscribers.add(ambassador);
+        }
+    }
+
+    synchronized void unsubscribe(LoopbackRtiAmbassador ambassador, InteractionClassHandle interactionHandle) {
+        List<LoopbackRtiAmbassador> subscribers = this.interactionSubscriptions.get(interactionHandle);
+
+        if(subscribers != null) {
+            subscribers.remove(ambassador);
+        }
+    }
+
+    void send(LoopbackRtiAmbassador sender, InteractionClassHandle interactionHandle,
+              ParameterHandleValueMap parameters, byte[] tag) {
+        List<LoopbackRtiAmbassador> subscribers = this.interactionSubscriptions.get(interactionHandle);
+
+        if(subscribers == null || subscribers.isEmpty()) {
+            return;
+        }
+
+        LoopbackCollections.ParameterValueMap copy = new LoopbackCollections.ParameterValueMap(parameters.size());
+        for(Map.Entry<ParameterHandle, byte[]> entry : parameters.entrySet()) {
+            copy.put(entry.getKey(), entry.getValue().clone());
+        }
+
+        for(LoopbackRtiAmbassador subscriber : subscribers) {
+            if(subscriber != sender) {
+                subscriber.receive(interactionHandle, copy, tag, sender.getFederateHandle());
+            }
+        }
+    }
+
+    /*
+     * Time management
+     */
+
+    synchronized void enableTimeRegulation(LoopbackRtiAmbassador ambassador, HLAfloat64Interval lookahead)
+            throws RTIexception {
+        if(ambassador.regulating) {
+            throw new TimeRegulationAlreadyEnabled("Time regulation already enabled");
+        }
+        if(lookahead.getValue() < 0) {
+            throw new InvalidLookahead("Negative lookahead " + lookahead);
+        }
+
+        ambassador.regulating = true;
+        ambassador.lookahead = lookahead;
+        ambassador.timeRegulationEnabled(ambassador.logicalTime);
+    }
+
+    synchronized void disableTimeRegulation(LoopbackRtiAmbassador ambassador) {
+        ambassador.regulating = false;
+        this.advanceTime();
+    }
+
+    synchronized void enableTimeConstrained(LoopbackRtiAmbassador ambassador) throws RTIexception {
+        if(ambassador.constrained) {
+            throw new TimeConstrainedAlreadyEnabled("Time constrained already enabled");
+        }
+
+        ambassador.constrained = true;
+        ambassador.timeConstrainedEnabled(ambassador.logicalTime);
+    }
+
+    synchronized void disableTimeConstrained(LoopbackRtiAmbassador ambassador) {
+        ambassador.constrained = false;
+        ambassador.flushTimestampedCallbacks(null);
+        this.advanceTime();
+    }
+
+    synchronized void modifyLookahead(LoopbackRtiAmbassador ambassador, HLAfloat64Interval lookahead)
+            throws InvalidLookahead {
+        if(lookahead.getValue() < 0) {
+            throw new InvalidLookahead("Negative lookahead " + lookahead);
+        }
+
+        ambassador.lookahead = lookahead;
+        this.advanceTime();
+    }
+
+    synchronized void timeAdvanceRequest(LoopbackRtiAmbassador ambassador, HLAfloat64Time time)
+            throws RTIexception {
+        if(ambassador.requestedTime != null) {
+            throw new InTimeAdvancingState("Already requested " + ambassador.requestedTime);
+        }
+        if(time.compareTo(ambassador.logicalTime) < 0) {
+            throw new InvalidLogicalTime(time + " is before " + ambassador.logicalTime);
+        }
+
+        ambassador.requestedTime = time;
+        this.advanceTime();
+    }
+
+    /**
+     *
+     * The earliest time a regulating federate may still send a timestamped message at
+     *
+     */
+    private HLAfloat64Time getEarliestSendTime(LoopbackRtiAmbassador ambassador) {
+        HLAfloat64Time time = ambassador.requestedTime != null ? ambassador.requestedTime : ambassador.logicalTime;
+        return LoopbackTimeFactory.instance.makeTime(time.getValue() + ambassador.lookahead.getValue());
+    }
+
+    /**
+     *
+     * Greatest available logical time of a federate, null when no other
+     * federate is regulating (nothing can constrain it)
+     *
+     */
+    private HLAfloat64Time getGalt(LoopbackRtiAmbassador ambassador) {
+        HLAfloat64Time galt = null;
+
+        for(LoopbackRtiAmbassador member : this.members) {
+            if(member != ambassador && member.regulating) {
+                HLAfloat64Time earliest = this.getEarliestSendTime(member);
+
+                if(galt == null || earliest.compareTo(galt) < 0) {
+                    galt = earliest;
+                }
+            }
+        }
+
+        return galt;
+    }
+
+    /**
+     *
+     * Grant every outstanding request that can be granted.  A grant does not
+     * lower anyone's earliest send time, so one pass is enough.
+     *
+     */
+    private void advanceTime() {
+        for(LoopbackRtiAmbassador member : this.members) {
+            if(member.requestedTime == null) {
+                continue;
+            }
+
+            HLAfloat64Time galt = member.constrained ? this.getGalt(member) : null;
+            if(galt == null || member.requestedTime.compareTo(galt) < 0) {
+                member.grant();
+            }
+        }
+    }
+
+    /*
+     * Ownership
+     */
+
+    private static void checkOwner(LoopbackRtiAmbassador ambassador, Instance instance) throws AttributeNotOwned {
+        if(instance.owner != ambassador) {
+            throw new AttributeNotOwned(instance.name + " is not owned by this federate");
+        }
+    }
+
+    /**
+     *
+     * Give up an instance right away, to the pending acquirer if there is one,
+     * otherwise it is left unowned
+     *
+     */
+    synchronized void divest(LoopbackRtiAmbassador ambassador, ObjectInstanceHandle instanceHandle)
+            throws RTIexception {
+        Instance instance = this.getInstance(instanceHandle);
+        checkOwner(ambassador, instance);
+
+        instance.owner = null;
+        instance.divesting = false;
+        if(instance.acquirer != null) {
+            this.transfer(instance);
+        }
+    }
+
+    /**
+     *
+     * Offer an instance, the owner is asked to confirm once someone acquires it.
+     * Every other federate that knows the instance is asked to assume it.
+     *
+     */
+    synchronized void offer(LoopbackRtiAmbassador ambassador, ObjectInstanceHandle instanceHandle,
+                            AttributeHandleSet attributes, byte[] tag) throws RTIexception {
+        Instance instance = this.getInstance(instanceHandle);
+        checkOwner(ambassador, instance);
+
+        if(instance.divesting) {
+            throw new AttributeAlreadyBeingDivested(instance.name + " is already offered");
+        }
+        instance.divesting = true;
+
+        if(instance.acquirer != null) {
+            ambassador.requestDivestitureConfirmation(instance.handle, instance.acquiredAttributes);
+            return;
+        }
+
+        for(LoopbackRtiAmbassador member : instance.discoveredBy.keySet()) {
+            member.requestAssumption(instance.handle, attributes, tag);
+        }
+    }
+
+    synchronized void cancelOffer(LoopbackRtiAmbassador ambassador, ObjectInstanceHandle instanceHandle)
+            throws RTIexception {
+        Instance instance = this.getInstance(instanceHandle);
+        checkOwner(ambassador, instance);
+
+        if(!instance.divesting) {
+            throw new AttributeDivestitureWasNotRequested(instance.name + " is not offered");
+        }
+        instance.divesting = false;
+    }
+
+    /**
+     *
+     * Hand an offered instance to its pending acquirer, who is notified with
+     * the owner's tag rather than its own
+     *
+     */
+    synchronized void confirmDivestiture(LoopbackRtiAmbassador ambassador, ObjectInstanceHandle instanceHandle,
+                                         byte[] tag) throws RTIexception {
+        Instance instance = this.getInstance(instanceHandle);
+        checkOwner(ambassador, instance);
+
+        if(!instance.divesting) {
+            throw new AttributeDivestitureWasNotRequested(instance.name + " is not offered");
+        }
+        if(instance.acquirer == null) {
+            throw new NoAcquisitionPending("Nobody is acquiring " + instance.name);
+        }
+
+        instance.acquisitionTag = tag;
+        this.transfer(instance);
+    }
+
+    /**
+     *
+     * Hand the instance over to the pending acquirer if there is one
+     *
+     * @return the attributes divested, empty if nobody was acquiring
+     */
+    synchronized AttributeHandleSet divestIfWanted(LoopbackRtiAmbassador ambassador,
+                                                   ObjectInstanceHandle instanceHandle) throws RTIexception {
+        Instance instance = this.getInstance(instanceHandle);
+        checkOwner(ambassador, instance);
+
+        if(instance.acquirer == null) {
+            return new LoopbackCollections.AttributeSet();
+        }
+
+        AttributeHandleSet divested = instance.acquiredAttributes;
+        this.transfer(instance);
+        return divested;
+    }
+
+    /**
+     *
+     * Ask for an instance.  Unowned instances are acquired right away, an
+     * offered one once its owner confirms, otherwise the owner is asked to
+     * release it.  ifAvailable only takes instances that are unowned or
+     * offered, and is told attributeOwnershipUnavailable otherwise.
+     *
+     */
+    synchronized void acquire(LoopbackRtiAmbassador ambassador, ObjectInstanceHandle instanceHandle,
+                              AttributeHandleSet attributes, byte[] tag, boolean ifAvailable) throws RTIexception {
+        Instance instance = this.getInstance(instanceHandle);
+
+        if(instance.owner == ambassador) {
+            throw new AttributeAlreadyOwned(instance.name + " is already owned by this federate");
+        }
+        if(instance.acquirer != null) {
+            if(ifAvailable) {
+                ambassador.ownershipUnavailable(instance.handle, attributes);
+                return;
+            }
+            throw new AttributeAlreadyBeingAcquired(instance.name + " is already being acquired");
+        }
+        if(ifAvailable && instance.owner != null && !instance.divesting) {
+            ambassador.ownershipUnavailable(instance.handle, attributes);
+            return;
+        }
+
+        instance.acquirer = ambassador;
+        instance.acquiredAttributes = attributes;
+        instance.acquisitionTag = tag;
+
+        if(instance.owner == null) {
+            this.transfer(instance);
+        } else if(instance.divesting) {
+            instance.owner.requestDivestitureConfirmation(instance.handle, attributes);
+        } else {
+            instance.owner.requestRelease(instance.handle, attributes, tag);
+        }
+    }
+
+    synchronized void cancelAcquisition(LoopbackRtiAmbassador ambassador, ObjectInstanceHandle instanceHandle)
+            throws RTIexception {
+        Instance instance = this.getInstance(instanceHandle);
+
+        if(instance.acquirer != ambassador) {
+            throw new AttributeAcquisitionWasNotRequested(instance.name + " is not being acquired by this federate");
+        }
+        instance.acquirer = null;
+    }
+
+    boolean isOwnedBy(LoopbackRtiAmbassador ambassador, ObjectInstanceHandle instanceHandle)
+            throws ObjectInstanceNotKnown {
+        return this.getInstance(instanceHandle).owner == ambassador;
+    }
+
+    /**
+     *
+     * Make the pending acquirer the owner.  The previous owner keeps knowing the
+     * instance as a discovered one, it is not discovered again.
+     *
+     */
+    private void transfer(Instance instance) {
+        LoopbackRtiAmbassador previous = instance.owner;
+        LoopbackRtiAmbassador acquirer = instance.acquirer;
+
+        instance.owner = acquirer;
+        instance.acquirer = null;
+        instance.divesting = false;
+
+        instance.discoveredBy.remove(acquirer);
+        if(previous != null) {
+            instance.discoveredBy.put(previous, Boolean.TRUE);
+        }
+
+        acquirer.acquisitionNotification(instance.handle, instance.acquiredAttributes, instance.acquisitionTag);
+    }
+
+    /*
+     * Save
+     */
+
+    synchronized void requestSave(String label) throws SaveInProgress {
+        if(this.saveLabel != null) {
+            throw new SaveInProgress("Already saving " + this.saveLabel);
+        }
+
+        this.saveLabel = label;
+        this.saving.addAll(this.members);
+
+        for(LoopbackRtiAmbassador member : this.members) {
+            member.initiateSave(label);
+        }
+    }
+
+    /**
+     *
+     * A member completed its part of the save, or failed it
+     *
+     */
+    synchronized void saveComplete(LoopbackRtiAmbassador ambassador, boolean complete) throws SaveNotInitiated {
+        if(this.saveLabel == null) {
+            throw new SaveNotInitiated("No save in progress");
+        }
+
+        if(!complete) {
+            this.finishSave(SaveFailureReason.FEDERATE_REPORTED_FAILURE_DURING_SAVE);
+        } else if(this.saving.remove(ambassador) && this.saving.isEmpty()) {
+            this.finishSave(null);
+        }
+    }
+
+    synchronized void abortSave() throws SaveNotInitiated {
+        if(this.saveLabel == null) {
+            throw new SaveNotInitiated("No save in progress");
+        }
+
+        this.finishSave(SaveFailureReason.SAVE_ABORTED);
+    }
+
+    /**
+     *
+     * @param failure null when the federation was saved
+     */
+    private void finishSave(SaveFailureReason failure) {
+        this.saveLabel = null;
+        this.saving.clear();
+
+        for(LoopbackRtiAmbassador member : this.members) {
+            member.federationSaved(failure);
+        }
+    }
+
+    MessageRetractionHandle newRetractionHandle() {
+        return this.rti.newHandle();
+    }
+
+    /*
+     * Regions
+     */
+
+    RegionHandle createRegion(DimensionHandleSet dimensions) {
+        LoopbackHandle handle = this.rti.newHandle();
+        this.regions.put(handle, new Region(dimensions));
+        return handle;
+    }
+
+    Region getRegion(RegionHandle regionHandle) throws InvalidRegion {
+        Region region = this.regions.get(regionHandle);
+
+        if(region == null) {
+            throw new InvalidRegion("Unknown region " + regionHandle);
+        }
+        return region;
+    }
+
+    void deleteRegion(RegionHandle regionHandle) {
+        this.regions.remove(regionHandle);
+    }
+
+    /**
+     *
+     * Associate (or with associate false, unassociate) update regions with an instance
+     *
+     */
+    synchronized void associate(ObjectInstanceHandle instanceHandle, AttributeSetRegionSetPairList pairs,
+                                boolean associate) throws ObjectInstanceNotKnown {
+        Instance instance = this.getInstance(instanceHandle);
+        List<RegionHandle> updateRegions = new ArrayList<>(instance.updateRegions);
+
+        for(AttributeRegionAssociation pair : pairs) {
+            if(associate) {
+                for(RegionHandle region : pair.rhset) {
+                    if(!updateRegions.contains(region)) {
+                        updateRegions.add(region);
+                    }
+                }
+            } else {
+                updateRegions.removeAll(pair.rhset);
+            }
+        }
+
+        instance.updateRegions = Collections.unmodifiableList(updateRegions);
+
+        //  Subscribers whose regions the instance just moved into discover it now
+        List<Subscription> subscriptions = this.objectSubscriptions.get(instance.classHandle);
+        if(subscriptions != null) {
+            for(Subscription subscription : subscriptions) {
+                if(subscription.ambassador != instance.owner && this.matches(subscription, instance)) {
+                    this.discover(subscription.ambassador, instance);
+                }
+            }
+        }
+    }
+
+    /**
+     *
+     * A subscription without regions matches everything, as does an instance
+     * without update regions (it is in the default region).  Otherwise some
+     * update region must overlap some subscription region.
+     *
+     */
+    private boolean matches(Subscription subscription, Instance instance) {
+        List<RegionHandle> updateRegions = instance.updateRegions;
+
+        if(subscription.unbounded || updateRegions.isEmpty()) {
+            return true;
+        }
+
+        for(RegionHandle updateRegionHandle : updateRegions) {
+            Region updateRegion = this.regions.get(updateRegionHandle);
+            if(updateRegion == null) {
+                continue;
+            }
+
+            for(RegionHandle subscriptionRegionHandle : subscription.regions) {
+                Region subscriptionRegion = this.regions.get(subscriptionRegionHandle);
+
+                if(subscriptionRegion != null && updateRegion.overlaps(subscriptionRegion)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     *
+     * A registered object instance
+     *
+     */
+    static final class Instance {
+
+        final LoopbackHandle handle;
+        final ObjectClassHandle classHandle;
+        final String name;
+
+        volatile LoopbackRtiAmbassador owner;
+        volatile List<RegionHandle> updateRegions;
+
+        //  Ownership transfer in progress, guarded by the federation's lock
+        boolean divesting;
+        LoopbackRtiAmbassador acquirer;
+        AttributeHandleSet acquiredAttributes;
+        byte[] acquisitionTag;
+
+        //  Federates that have discovered this instance (used as a concurrent set)
+        final ConcurrentHashMap<LoopbackRtiAmbassador, Boolean> discoveredBy;
+
+        Instance(LoopbackHandle handle, ObjectClassHandle classHandle, String name, LoopbackRtiAmbassador owner) {
+            this.handle = handle;
+            this.classHandle = classHandle;
+            this.name = name;
+            this.owner = owner;
+            this.updateRegions = Collections.emptyList();
+            this.discoveredBy = new ConcurrentHashMap<>();
+        }
+    }
+
+    /**
+     *
+     * One federate's subscription to one object class
+     *
+     */
+    private static final class Subscription {
+
+        final LoopbackRtiAmbassador ambassador;
+        final Set<AttributeHandle> attributes;
+        final Set<RegionHandle> regions;
+        volatile boolean unbounded;
+
+        Subscription(LoopbackRtiAmbassador ambassador) {
+            this.ambassador = ambassador;
+            this.attributes = ConcurrentHashMap.newKeySet();
+            this.regions = ConcurrentHashMap.newKeySet();
+        }
+
+        /**
+         *
+         * The subscribed part of values, values itself if all of it is subscribed
+         *
+         */
+        AttributeHandleValueMap filter(LoopbackCollections.AttributeValueMap values) {
+            if(this.attributes.containsAll(values.keySet())) {
+                return values;
+            }
+
+            LoopbackCollections.AttributeValueMap filtered = new LoopbackCollections.AttributeValueMap(values.size());
+            for(Map.Entry<AttributeHandle, byte[]> entry : values.entrySet()) {
+                if(this.attributes.contains(entry.getKey())) {
+                    filtered.put(entry.getKey(), entry.getValue());
+                }
+            }
+
+            return filtered;
+        }
+    }
+
+    /**
+     *
+     * Range bounds per dimension.  Dimensions without bounds span their whole range.
+     *
+     */
+    static final class Region {
+
+        final Set<DimensionHandle> dimensions;
+        final ConcurrentHashMap<DimensionHandle, RangeBounds> bounds;
+
+        Region(DimensionHandleSet dimensions) {
+            this.dimensions = Collections.unmodifiableSet(new java.util.HashSet<>(dimensions));
+            this.bounds = new ConcurrentHashMap<>();
+        }
+
+        boolean overlaps(Region other) {
+            for(Map.Entry<DimensionHandle, RangeBounds> entry : this.bounds.entrySet()) {
+                RangeBounds otherBounds = other.bounds.get(entry.getKey());
+
+                if(otherBounds != null && (entry.getValue().upper <= otherBounds.lower
+                                        || otherBounds.upper <= entry.getValue().lower)) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package rti;
+
+import hla.rti1516e.*;
+import hla.rti1516e.exceptions.CouldNotDecode;
+
+/**
+ *
+ * Every kind of handle the loopback RTI hands out.  Handles are numbered from
+ * one process wide counter, so a handle is never equal to a handle of another
+ * kind or of another federation.
+ *
+ */
+final class LoopbackHandle implements AttributeHandle, ObjectClassHandle, ObjectInstanceHandle,
+                                      FederateHandle, InteractionClassHandle, ParameterHandle,
+                                      DimensionHandle, RegionHandle, TransportationTypeHandle,
+                                      MessageRetractionHandle {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long id;
+
+    LoopbackHandle(long id) {
+        this.id = id;
+    }
+
+    long getId() {
+        return this.id;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(this.id);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof LoopbackHandle && ((LoopbackHandle) other).id == this.id;
+    }
+
+    @Override
+    public int encodedLength() {
+        return 8;
+    }
+
+    @Override
+    public void encode(byte[] buffer, int offset) {
+        for(int i = 0; i < 8; i++) {
+            buffer[offset + i] = (byte) (this.id >>> (56 - 8 * i));
+        }
+    }
+
+    /**
+     *
+     * Inverse of encode, used by all the handle factories
+     *
+     */
+    static LoopbackHandle decode(byte[] buffer, int offset) throws CouldNotDecode {
+        if(buffer.length - offset < 8) {
+            throw new CouldNotDecode("Loopback handles need 8 bytes");
+        }
+
+        long id = 0;
+        for(int i = 0; i < 8; i++) {
+            id = (id << 8) | (buffer[offset + i] & 0xFF);
+        }
+
+        return new LoopbackHandle(id);
+    }
+
+    @Override
+    public String toString() {
+        return "LoopbackHandle(" + this.id + ")";
+    }
+}
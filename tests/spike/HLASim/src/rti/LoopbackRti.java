@@ -0,0 +1,153 @@
+package rti;
+
+import hla.rti1516e.RTIambassador;
+import util.Log;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.InputStream;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *
+ * In-process RTI.  Federates in the same JVM connect to it through ordinary
+ * RTIambassadors (see getRtiAmbassador) and it routes registrations, updates,
+ * deletions and interactions between them directly, without any network or
+ * vendor RTI.  Meant for headless scale testing of many federates on one box.
+ *
+ * Supported: connect/disconnect, create/destroy/join/resign federation
+ * executions, publish/subscribe of object classes and interactions,
+ * register/update/delete of object instances, send interaction, DDM regions
+ * (update regions are matched against subscription regions per dimension),
+ * both callback models and conservative time management with HLAfloat64Time
+ * (regulation, constraint, lookahead, timeAdvanceRequest and timestamped
+ * updates), federation saves and ownership transfer (per instance, see
+ * LoopbackFederation).  Names are resolved lazily, any class or attribute name
+ * gets a handle the first time it is asked for, and subscriptions do not
+ * follow the class hierarchy.  Dimension upper bounds are read from the FOM
+ * modules given to createFederationExecution.  Anything else throws
+ * RTIinternalError.
+ *
+ */
+public final class LoopbackRti {
+
+    private static final Log LOG = Log.getLog(LoopbackRti.class);
+
+    //  Upper bound of dimensions not declared in any FOM module
+    static final long DEFAULT_DIMENSION_UPPER_BOUND = 1L << 16;
+
+    private static final LoopbackRti instance = new LoopbackRti();
+
+    private final ConcurrentHashMap<String, LoopbackFederation> federations;
+    private final AtomicLong nextHandle;
+
+    private LoopbackRti() {
+        this.federations = new ConcurrentHashMap<>();
+        this.nextHandle = new AtomicLong(1);
+    }
+
+    /**
+     *
+     * The process wide loopback RTI, shared by all federates in this JVM
+     *
+     * @return
+     */
+    public static LoopbackRti getInstance() {
+        return instance;
+    }
+
+    /**
+     *
+     * Create a new, unconnected RTIambassador for one federate
+     *
+     * @return
+     */
+    public RTIambassador getRtiAmbassador() {
+        return (RTIambassador) Proxy.newProxyInstance(RTIambassador.class.getClassLoader(),
+                                                      new Class<?>[] {RTIambassador.class},
+                                                      new LoopbackRtiAmbassador(this));
+    }
+
+    LoopbackHandle newHandle() {
+        return new LoopbackHandle(this.nextHandle.getAndIncrement());
+    }
+
+    /**
+     *
+     * @param name
+     * @param fomModules
+     * @return false if a federation with that name already exists
+     */
+    boolean createFederation(String name, URL[] fomModules) {
+        Map<String, Long> dimensionUpperBounds = new HashMap<>();
+
+        for(URL fomModule : fomModules) {
+            readDimensions(fomModule, dimensionUpperBounds);
+        }
+
+        LoopbackFederation federation = new LoopbackFederation(this, name, dimensionUpperBounds);
+        if(this.federations.putIfAbsent(name, federation) != null) {
+            return false;
+        }
+
+        LOG.info("Loopback RTI created federation " + name);
+        return true;
+    }
+
+    LoopbackFederation getFederation(String name) {
+        return this.federations.get(name);
+    }
+
+    /**
+     *
+     * @param federation
+     * @return false if federates are still joined
+     */
+    boolean destroyFederation(LoopbackFederation federation) {
+        synchronized(federation) {
+            if(federation.hasMembers()) {
+                return false;
+            }
+
+            this.federations.remove(federation.getName(), federation);
+            return true;
+        }
+    }
+
+    /**
+     *
+     * Collect the upperBound of every dimension declared in an FDD, unreadable
+     * modules only log a warning.
+     *
+     */
+    private static void readDimensions(URL fomModule, Map<String, Long> dimensionUpperBounds) {
+        if(fomModule == null) {
+            return;
+        }
+
+        try(InputStream in = fomModule.openStream()) {
+            Document fdd = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(in);
+            NodeList dimensions = fdd.getElementsByTagName("dimension");
+
+            for(int i = 0; i < dimensions.getLength(); i++) {
+                Element dimension = (Element) dimensions.item(i);
+                NodeList names = dimension.getElementsByTagName("name");
+                NodeList upperBounds = dimension.getElementsByTagName("upperBound");
+
+                if(names.getLength() > 0 && upperBounds.getLength() > 0) {
+                    dimensionUpperBounds.put(names.item(0).getTextContent().trim(),
+                                             Long.parseLong(upperBounds.item(0).getTextContent().trim()));
+                }
+            }
+        } catch(Exception e) {
+            LOG.warning("Loopback RTI could not read dimensions from " + fomModule + " : " + e);
+        }
+    }
+}
@@ -0,0 +1,695 @@
+package rti;
+
+import hla.rti1516e.*;
+import hla.rti1516e.exceptions.*;
+import hla.rti1516e.time.HLAfloat64Interval;
+import hla.rti1516e.time.HLAfloat64Time;
+import util.Log;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ *
+ * One federate's connection to the LoopbackRti, the InvocationHandler behind
+ * the RTIambassador proxies it hands out.  Calls are dispatched by method name
+ * to the federation, callbacks for this federate are either run right away on
+ * the sending federate's thread (HLA_IMMEDIATE) or queued until evokeCallback
+ * or evokeMultipleCallbacks (HLA_EVOKED).
+ *
+ */
+final class LoopbackRtiAmbassador implements InvocationHandler {
+
+    private static final Log LOG = Log.getLog(LoopbackRtiAmbassador.class);
+
+    private static final OrderType RECEIVE = OrderType.RECEIVE;
+    private static final OrderType TIMESTAMP = OrderType.TIMESTAMP;
+
+    private final LoopbackRti rti;
+    private final TransportationTypeHandle transport;
+
+    private volatile FederateAmbassador federateAmbassador;
+    private volatile CallbackModel callbackModel;
+    private volatile LoopbackFederation federation;
+    private volatile FederateHandle federateHandle;
+    private String federateName;
+
+    //  Callbacks waiting for evokeCallback(s) in HLA_EVOKED mode
+    private final ConcurrentLinkedQueue<Callback> pendingCallbacks;
+
+    //  Time management state, guarded by the federation's lock.  requestedTime is
+    //  null unless a timeAdvanceRequest is outstanding, timestamped messages wait
+    //  in timestampedCallbacks until the federate is granted their time.
+    HLAfloat64Time logicalTime;
+    HLAfloat64Time requestedTime;
+    HLAfloat64Interval lookahead;
+    boolean regulating, constrained;
+    final PriorityQueue<TimestampedCallback> timestampedCallbacks;
+    private long nextSequence;
+
+    /**
+     * A callback to the federate ambassador
+     */
+    private interface Callback {
+        void run(FederateAmbassador federateAmbassador) throws FederateInternalError;
+    }
+
+    LoopbackRtiAmbassador(LoopbackRti rti) {
+        this.rti = rti;
+        this.transport = rti.newHandle();
+        this.pendingCallbacks = new ConcurrentLinkedQueue<>();
+
+        this.logicalTime = LoopbackTimeFactory.instance.makeInitial();
+        this.lookahead = LoopbackTimeFactory.instance.makeZero();
+        this.timestampedCallbacks = new PriorityQueue<>();
+    }
+
+    FederateHandle getFederateHandle() {
+        return this.federateHandle;
+    }
+
+    /*
+     * Dispatch
+     */
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        int argCount = args == null ? 0 : args.length;
+
+        switch(name) {
+            case "toString":
+                return "LoopbackRtiAmbassador(" + this.federateName + ")";
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0];
+
+            case "getHLAversion":
+                return "IEEE 1516-2010 (loopback)";
+            case "connect":
+                this.connect((FederateAmbassador) args[0], (CallbackModel) args[1]);
+                return null;
+            case "disconnect":
+                this.disconnect();
+                return null;
+            case "createFederationExecution":
+                this.createFederationExecution((String) args[0], argCount > 1 ? args[1] : null);
+                return null;
+            case "destroyFederationExecution":
+                this.destroyFederationExecution((String) args[0]);
+                return null;
+            case "joinFederationExecution":
+                //  (name, type, federation[, modules]) or (type, federation[, modules])
+                if(argCount >= 3 && args[2] instanceof String) {
+                    return this.join((String) args[0], (String) args[2]);
+                }
+                return this.join(null, (String) args[1]);
+            case "resignFederationExecution":
+                this.resign((ResignAction) args[0]);
+                return null;
+
+            case "evokeCallback":
+                return this.evokeCallbacks((Double) args[0], (Double) args[0], 1);
+            case "evokeMultipleCallbacks":
+                return this.evokeCallbacks((Double) args[0], (Double) args[1], Integer.MAX_VALUE);
+            case "enableCallbacks":
+            case "disableCallbacks":
+                return null;
+
+            case "getAttributeHandleSetFactory":
+                return (AttributeHandleSetFactory) LoopbackCollections.AttributeSet::new;
+            case "getAttributeHandleValueMapFactory":
+                return (AttributeHandleValueMapFactory) LoopbackCollections.AttributeValueMap::new;
+            case "getParameterHandleValueMapFactory":
+                return (ParameterHandleValueMapFactory) LoopbackCollections.ParameterValueMap::new;
+            case "getDimensionHandleSetFactory":
+                return (DimensionHandleSetFactory) LoopbackCollections.DimensionSet::new;
+            case "getRegionHandleSetFactory":
+                return (RegionHandleSetFactory) LoopbackCollections.RegionSet::new;
+            case "getAttributeSetRegionSetPairListFactory":
+                return (AttributeSetRegionSetPairListFactory) LoopbackCollections.RegionPairList::new;
+            case "getTimeFactory":
+                return LoopbackTimeFactory.instance;
+
+            case "getObjectClassHandleFactory":
+                return (ObjectClassHandleFactory) LoopbackHandle::decode;
+            case "getAttributeHandleFactory":
+                return (AttributeHandleFactory) LoopbackHandle::decode;
+            case "getObjectInstanceHandleFactory":
+                return (ObjectInstanceHandleFactory) LoopbackHandle::decode;
+        }
+
+        //  Everything else needs a joined federation
+        LoopbackFederation federation = this.getJoinedFederation();
+
+        switch(name) {
+            case "getObjectClassHandle":
+                return federation.getObjectClassHandle((String) args[0]);
+            case "getAttributeHandle":
+                return federation.getAttributeHandle((ObjectClassHandle) args[0], (String) args[1]);
+            case "getInteractionClassHandle":
+                return federation.getInteractionClassHandle((String) args[0]);
+            case "getParameterHandle":
+                return federation.getParameterHandle((InteractionClassHandle) args[0], (String) args[1]);
+            case "getDimensionHandle":
+                return federation.getDimensionHandle((String) args[0]);
+            case "getDimensionUpperBound":
+                return federation.getDimensionUpperBound((DimensionHandle) args[0]);
+            case "getObjectClassName":
+            case "getAttributeName":
+            case "getInteractionClassName":
+            case "getParameterName":
+            case "getDimensionName":
+                return federation.getHandleName(args[argCount - 1]);
+            case "getObjectInstanceName":
+                return federation.getInstance((ObjectInstanceHandle) args[0]).name;
+            case "getObjectInstanceHandle":
+                return federation.getInstance((String) args[0]).handle;
+            case "getKnownObjectClassHandle":
+                return federation.getInstance((ObjectInstanceHandle) args[0]).classHandle;
+            case "getFederateName":
+                return this.federateName;
+
+            case "publishObjectClassAttributes":
+            case "unpublishObjectClass":
+            case "unpublishObjectClassAttributes":
+            case "publishInteractionClass":
+            case "unpublishInteractionClass":
+                //  Publication is not enforced
+                return null;
+
+            case "subscribeObjectClassAttributes":
+            case "subscribeObjectClassAttributesPassively":
+                federation.subscribe(this, (ObjectClassHandle) args[0], (AttributeHandleSet) args[1], null);
+                return null;
+            case "unsubscribeObjectClass":
+            case "unsubscribeObjectClassAttributes":
+                federation.unsubscribe(this, (ObjectClassHandle) args[0], null);
+                return null;
+            case "subscribeObjectClassAttributesWithRegions":
+            case "subscribeObjectClassAttributesPassivelyWithRegions":
+                for(AttributeRegionAssociation pair : (AttributeSetRegionSetPairList) args[1]) {
+                    federation.subscribe(this, (ObjectClassHandle) args[0], pair.ahset, pair.rhset);
+                }
+                return null;
+            case "unsubscribeObjectClassAttributesWithRegions":
+                for(AttributeRegionAssociation pair : (AttributeSetRegionSetPairList) args[1]) {
+                    federation.unsubscribe(this, (ObjectClassHandle) args[0], pair.rhset);
+                }
+                return null;
+            case "subscribeInteractionClass":
+            case "subscribeInteractionClassPassively":
+                federation.subscribe(this, (InteractionClassHandle) args[0]);
+                return null;
+            case "unsubscribeInteractionClass":
+                federation.unsubscribe(this, (InteractionClassHandle) args[0]);
+                return null;
+
+            case "reserveObjectInstanceName":
+                federation.reserve(this, Collections.singleton((String) args[0]), true);
+                return null;
+            case "reserveMultipleObjectInstanceName":
+                federation.reserve(this, copyNames(args[0]), false);
+                return null;
+            case "releaseObjectInstanceName":
+                federation.release(this, Collections.singleton((String) args[0]));
+                return null;
+            case "releaseMultipleObjectInstanceName":
+                federation.release(this, copyNames(args[0]));
+                return null;
+            case "registerObjectInstance":
+                return federation.register(this, (ObjectClassHandle) args[0], argCount > 1 ? (String) args[1] : null);
+            case "updateAttributeValues":
+                if(argCount > 3) {
+                    federation.update(this, (ObjectInstanceHandle) args[0], (AttributeHandleValueMap) args[1],
+                                      (byte[]) args[2], (HLAfloat64Time) args[3]);
+                    return federation.newRetractionHandle();
+                }
+                federation.update(this, (ObjectInstanceHandle) args[0], (AttributeHandleValueMap) args[1],
+                                  (byte[]) args[2], null);
+                return null;
+            case "unconditionalAttributeOwnershipDivestiture":
+                federation.divest(this, (ObjectInstanceHandle) args[0]);
+                return null;
+            case "negotiatedAttributeOwnershipDivestiture":
+                federation.offer(this, (ObjectInstanceHandle) args[0], (AttributeHandleSet) args[1], (byte[]) args[2]);
+                return null;
+            case "cancelNegotiatedAttributeOwnershipDivestiture":
+                federation.cancelOffer(this, (ObjectInstanceHandle) args[0]);
+                return null;
+            case "confirmDivestiture":
+                federation.confirmDivestiture(this, (ObjectInstanceHandle) args[0], (byte[]) args[2]);
+                return null;
+            case "attributeOwnershipDivestitureIfWanted":
+                return federation.divestIfWanted(this, (ObjectInstanceHandle) args[0]);
+            case "attributeOwnershipReleaseDenied":
+                //  The acquisition stays pending until the owner divests or the acquirer cancels
+                return null;
+            case "attributeOwnershipAcquisition":
+                federation.acquire(this, (ObjectInstanceHandle) args[0], (AttributeHandleSet) args[1],
+                                   (byte[]) args[2], false);
+                return null;
+            case "attributeOwnershipAcquisitionIfAvailable":
+                federation.acquire(this, (ObjectInstanceHandle) args[0], (AttributeHandleSet) args[1],
+                                   new byte[0], true);
+                return null;
+            case "cancelAttributeOwnershipAcquisition":
+                federation.cancelAcquisition(this, (ObjectInstanceHandle) args[0]);
+                return null;
+            case "isAttributeOwnedByFederate":
+                return federation.isOwnedBy(this, (ObjectInstanceHandle) args[0]);
+
+            case "deleteObjectInstance":
+                federation.delete((ObjectInstanceHandle) args[0], (byte[]) args[1]);
+                return null;
+            case "sendInteraction":
+                federation.send(this, (InteractionClassHandle) args[0], (ParameterHandleValueMap) args[1],
+                                (byte[]) args[2]);
+                return null;
+
+            case "enableTimeRegulation":
+                federation.enableTimeRegulation(this, (HLAfloat64Interval) args[0]);
+                return null;
+            case "disableTimeRegulation":
+                federation.disableTimeRegulation(this);
+                return null;
+            case "enableTimeConstrained":
+                federation.enableTimeConstrained(this);
+                return null;
+            case "disableTimeConstrained":
+                federation.disableTimeConstrained(this);
+                return null;
+            case "modifyLookahead":
+                federation.modifyLookahead(this, (HLAfloat64Interval) args[0]);
+                return null;
+            case "timeAdvanceRequest":
+                federation.timeAdvanceRequest(this, (HLAfloat64Time) args[0]);
+                return null;
+            case "queryLogicalTime":
+                synchronized(federation) {
+                    return this.logicalTime;
+                }
+            case "queryLookahead":
+                synchronized(federation) {
+                    return this.lookahead;
+                }
+
+            case "requestFederationSave":
+                federation.requestSave((String) args[0]);
+                return null;
+            case "federateSaveBegun":
+                return null;
+            case "federateSaveComplete":
+                federation.saveComplete(this, true);
+                return null;
+            case "federateSaveNotComplete":
+                federation.saveComplete(this, false);
+                return null;
+            case "abortFederationSave":
+                federation.abortSave();
+                return null;
+            case "requestFederationRestore":
+                //  Nothing to restore the federation's own state from
+                String label = (String) args[0];
+                this.callback(ambassador -> ambassador.requestFederationRestoreFailed(label));
+                return null;
+
+            case "createRegion":
+                return federation.createRegion((DimensionHandleSet) args[0]);
+            case "setRangeBounds":
+                federation.getRegion((RegionHandle) args[0]).bounds.put((DimensionHandle) args[1], (RangeBounds) args[2]);
+                return null;
+            case "getRangeBounds":
+                return federation.getRegion((RegionHandle) args[0]).bounds.get((DimensionHandle) args[1]);
+            case "commitRegionModifications":
+                return null;
+            case "deleteRegion":
+                federation.deleteRegion((RegionHandle) args[0]);
+                return null;
+            case "associateRegionsForUpdates":
+                federation.associate((ObjectInstanceHandle) args[0], (AttributeSetRegionSetPairList) args[1], true);
+                return null;
+            case "unassociateRegionsForUpdates":
+                federation.associate((ObjectInstanceHandle) args[0], (AttributeSetRegionSetPairList) args[1], false);
+                return null;
+        }
+
+        throw new RTIinternalError("Loopback RTI does not support " + name);
+    }
+
+    private static Set<String> copyNames(Object names) {
+        Set<String> copy = new HashSet<>();
+
+        for(Object name : (Set<?>) names) {
+            copy.add((String) name);
+        }
+
+        return copy;
+    }
+
+    /*
+     * Federation management
+     */
+
+    private void connect(FederateAmbassador federateAmbassador, CallbackModel callbackModel) throws AlreadyConnected {
+        if(this.federateAmbassador != null) {
+            throw new AlreadyConnected("Already connected");
+        }
+
+        this.federateAmbassador = federateAmbassador;
+        this.callbackModel = callbackModel;
+    }
+
+    private void disconnect() throws FederateNotExecutionMember {
+        if(this.federation != null) {
+            this.resign(ResignAction.DELETE_OBJECTS);
+        }
+
+        this.federateAmbassador = null;
+        this.pendingCallbacks.clear();
+    }
+
+    private void createFederationExecution(String federationName, Object fomModules)
+            throws NotConnected, FederationExecutionAlreadyExists {
+        this.checkConnected();
+
+        URL[] modules = fomModules instanceof URL[] ? (URL[]) fomModules
+                      : new URL[] {fomModules instanceof URL ? (URL) fomModules : null};
+
+        if(!this.rti.createFederation(federationName, modules)) {
+            throw new FederationExecutionAlreadyExists(federationName);
+        }
+    }
+
+    private void destroyFederationExecution(String federationName)
+            throws NotConnected, FederationExecutionDoesNotExist, FederatesCurrentlyJoined {
+        this.checkConnected();
+
+        LoopbackFederation federation = this.rti.getFederation(federationName);
+        if(federation == null) {
+            throw new FederationExecutionDoesNotExist(federationName);
+        }
+
+        if(!this.rti.destroyFederation(federation)) {
+            throw new FederatesCurrentlyJoined(federationName);
+        }
+    }
+
+    private FederateHandle join(String federateName, String federationName) throws RTIexception {
+        this.checkConnected();
+
+        if(this.federation != null) {
+            throw new FederateAlreadyExecutionMember("Already joined " + this.federation.getName());
+        }
+
+        LoopbackFederation federation = this.rti.getFederation(federationName);
+        if(federation == null) {
+            throw new FederationExecutionDoesNotExist(federationName);
+        }
+
+        this.federateHandle = this.rti.newHandle();
+        this.federateName = federateName != null ? federateName : this.federateHandle.toString();
+        this.federation = federation;
+        federation.join(this);
+
+        LOG.info("Loopback RTI joined " + this.federateName + " to " + federationName);
+        return this.federateHandle;
+    }
+
+    private void resign(ResignAction resignAction) throws FederateNotExecutionMember {
+        this.getJoinedFederation().resign(this, resignAction);
+        this.federation = null;
+    }
+
+    private void checkConnected() throws NotConnected {
+        if(this.federateAmbassador == null) {
+            throw new NotConnected("Not connected");
+        }
+    }
+
+    private LoopbackFederation getJoinedFederation() throws FederateNotExecutionMember {
+        LoopbackFederation federation = this.federation;
+
+        if(federation == null) {
+            throw new FederateNotExecutionMember("Not joined to a federation");
+        }
+        return federation;
+    }
+
+    /*
+     * Callbacks, called by the federation on the sending federate's thread
+     */
+
+    void discover(ObjectInstanceHandle instanceHandle, ObjectClassHandle classHandle, String name,
+                  FederateHandle producer) {
+        this.callback(ambassador -> ambassador.discoverObjectInstance(instanceHandle, classHandle, name, producer));
+    }
+
+    void reflect(ObjectInstanceHandle instanceHandle, AttributeHandleValueMap values, byte[] tag,
+                 FederateHandle producer) {
+        SupplementalInfo info = new SupplementalInfo(producer);
+        this.callback(ambassador -> ambassador.reflectAttributeValues(instanceHandle, values, tag, RECEIVE,
+                                                                      this.transport, info));
+    }
+
+    /**
+     *
+     * Timestamped reflect, delivered right away in receive order, or queued until
+     * granted in timestamp order when both sides are time managed
+     *
+     */
+    void reflect(ObjectInstanceHandle instanceHandle, AttributeHandleValueMap values, byte[] tag,
+                 FederateHandle producer, HLAfloat64Time time, boolean timestampOrder) {
+        SupplementalInfo info = new SupplementalInfo(producer);
+        OrderType receivedOrder = timestampOrder ? TIMESTAMP : RECEIVE;
+        Callback callback = ambassador -> ambassador.reflectAttributeValues(instanceHandle, values, tag, TIMESTAMP,
+                                                                            this.transport, time, receivedOrder,
+                                                                            info);
+        if(timestampOrder) {
+            this.timestampedCallbacks.add(new TimestampedCallback(time, this.nextSequence++, callback));
+        } else {
+            this.callback(callback);
+        }
+    }
+
+    /**
+     *
+     * Single name reservations get the single name callbacks
+     *
+     */
+    void nameReservation(Set<String> names, boolean single, boolean succeeded) {
+        if(single) {
+            String name = names.iterator().next();
+
+            this.callback(succeeded ? ambassador -> ambassador.objectInstanceNameReservationSucceeded(name)
+                                    : ambassador -> ambassador.objectInstanceNameReservationFailed(name));
+        } else {
+            this.callback(succeeded ? ambassador -> ambassador.multipleObjectInstanceNameReservationSucceeded(names)
+                                    : ambassador -> ambassador.multipleObjectInstanceNameReservationFailed(names));
+        }
+    }
+
+    void requestAssumption(ObjectInstanceHandle instanceHandle, AttributeHandleSet attributes, byte[] tag) {
+        this.callback(ambassador -> ambassador.requestAttributeOwnershipAssumption(instanceHandle, attributes, tag));
+    }
+
+    void requestRelease(ObjectInstanceHandle instanceHandle, AttributeHandleSet attributes, byte[] tag) {
+        this.callback(ambassador -> ambassador.requestAttributeOwnershipRelease(instanceHandle, attributes, tag));
+    }
+
+    void requestDivestitureConfirmation(ObjectInstanceHandle instanceHandle, AttributeHandleSet attributes) {
+        this.callback(ambassador -> ambassador.requestDivestitureConfirmation(instanceHandle, attributes));
+    }
+
+    void acquisitionNotification(ObjectInstanceHandle instanceHandle, AttributeHandleSet attributes, byte[] tag) {
+        this.callback(ambassador -> ambassador.attributeOwnershipAcquisitionNotification(instanceHandle, attributes,
+                                                                                         tag));
+    }
+
+    void ownershipUnavailable(ObjectInstanceHandle instanceHandle, AttributeHandleSet attributes) {
+        this.callback(ambassador -> ambassador.attributeOwnershipUnavailable(instanceHandle, attributes));
+    }
+
+    void initiateSave(String label) {
+        this.callback(ambassador -> ambassador.initiateFederateSave(label));
+    }
+
+    /**
+     *
+     * @param failure null when the federation was saved
+     */
+    void federationSaved(SaveFailureReason failure) {
+        this.callback(failure == null ? ambassador -> ambassador.federationSaved()
+                                      : ambassador -> ambassador.federationNotSaved(failure));
+    }
+
+    void timeRegulationEnabled(HLAfloat64Time time) {
+        this.callback(ambassador -> ambassador.timeRegulationEnabled(time));
+    }
+
+    void timeConstrainedEnabled(HLAfloat64Time time) {
+        this.callback(ambassador -> ambassador.timeConstrainedEnabled(time));
+    }
+
+    /**
+     *
+     * Grant the outstanding request, delivering the timestamped messages up to it first
+     *
+     */
+    void grant() {
+        HLAfloat64Time time = this.requestedTime;
+        this.flushTimestampedCallbacks(time);
+
+        this.logicalTime = time;
+        this.requestedTime = null;
+        this.callback(ambassador -> ambassador.timeAdvanceGrant(time));
+    }
+
+    /**
+     *
+     * Deliver queued timestamped messages up to time, all of them for null
+     *
+     */
+    void flushTimestampedCallbacks(HLAfloat64Time time) {
+        while(!this.timestampedCallbacks.isEmpty()
+                && (time == null || this.timestampedCallbacks.peek().time.compareTo(time) <= 0)) {
+            this.callback(this.timestampedCallbacks.poll().callback);
+        }
+    }
+
+    void remove(ObjectInstanceHandle instanceHandle, byte[] tag, FederateHandle producer) {
+        SupplementalInfo info = new SupplementalInfo(producer);
+        this.callback(ambassador -> ambassador.removeObjectInstance(instanceHandle, tag, RECEIVE, info));
+    }
+
+    void receive(InteractionClassHandle interactionHandle, ParameterHandleValueMap parameters, byte[] tag,
+                 FederateHandle producer) {
+        SupplementalInfo info = new SupplementalInfo(producer);
+        this.callback(ambassador -> ambassador.receiveInteraction(interactionHandle, parameters, tag, RECEIVE,
+                                                                  this.transport, info));
+    }
+
+    private void callback(Callback callback) {
+        FederateAmbassador federateAmbassador = this.federateAmbassador;
+        if(federateAmbassador == null) {
+            return;
+        }
+
+        if(this.callbackModel == CallbackModel.HLA_IMMEDIATE) {
+            this.run(federateAmbassador, callback);
+        } else {
+            this.pendingCallbacks.add(callback);
+        }
+    }
+
+    private void run(FederateAmbassador federateAmbassador, Callback callback) {
+        try {
+            callback.run(federateAmbassador);
+        } catch(Exception e) {
+            LOG.error("Federate " + this.federateName + " failed handling a callback : " + e, e);
+        }
+    }
+
+    /**
+     *
+     * Deliver queued callbacks, waiting up to minSeconds for the first one and
+     * delivering for at most maxSeconds.
+     *
+     * @return whether callbacks are still pending
+     */
+    private boolean evokeCallbacks(double minSeconds, double maxSeconds, int maxCallbacks) {
+        FederateAmbassador federateAmbassador = this.federateAmbassador;
+        long now = System.nanoTime();
+        long minDeadline = now + (long) (minSeconds * TimeUnit.SECONDS.toNanos(1));
+        long maxDeadline = now + (long) (maxSeconds * TimeUnit.SECONDS.toNanos(1));
+        int delivered = 0;
+
+        while(federateAmbassador != null && delivered < maxCallbacks) {
+            Callback callback = this.pendingCallbacks.poll();
+
+            if(callback != null) {
+                this.run(federateAmbassador, callback);
+                delivered++;
+            } else if(delivered == 0 && System.nanoTime() < minDeadline) {
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+            } else {
+                break;
+            }
+
+            if(System.nanoTime() >= maxDeadline && delivered > 0) {
+                break;
+            }
+        }
+
+        return !this.pendingCallbacks.isEmpty();
+    }
+
+    /**
+     *
+     * A queued timestamp order message, ordered by time then by send order
+     *
+     */
+    private static final class TimestampedCallback implements Comparable<TimestampedCallback> {
+
+        final HLAfloat64Time time;
+        final long sequence;
+        final Callback callback;
+
+        TimestampedCallback(HLAfloat64Time time, long sequence, Callback callback) {
+            this.time = time;
+            this.sequence = sequence;
+            this.callback = callback;
+        }
+
+        @Override
+        public int compareTo(TimestampedCallback other) {
+            int byTime = this.time.compareTo(other.time);
+            return byTime != 0 ? byTime : Long.compare(this.sequence, other.sequence);
+        }
+    }
+
+    /**
+     *
+     * Supplemental info of reflect, receive and remove callbacks
+     *
+     */
+    private static final class SupplementalInfo implements FederateAmbassador.SupplementalReflectInfo,
+                                                           FederateAmbassador.SupplementalReceiveInfo,
+                                                           FederateAmbassador.SupplementalRemoveInfo {
+
+        private final FederateHandle producer;
+
+        SupplementalInfo(FederateHandle producer) {
+            this.producer = producer;
+        }
+
+        @Override
+        public boolean hasProducingFederate() {
+            return this.producer != null;
+        }
+
+        @Override
+        public boolean hasSentRegions() {
+            return false;
+        }
+
+        @Override
+        public FederateHandle getProducingFederate() {
+            return this.producer;
+        }
+
+        @Override
+        public RegionHandleSet getSentRegions() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package rti;
+
+import hla.rti1516e.exceptions.CouldNotDecode;
+import hla.rti1516e.time.HLAfloat64Interval;
+import hla.rti1516e.time.HLAfloat64Time;
+import hla.rti1516e.time.HLAfloat64TimeFactory;
+
+import java.nio.ByteBuffer;
+
+/**
+ *
+ * HLAfloat64Time implementation of the loopback RTI, the only time
+ * representation it supports.
+ *
+ */
+final class LoopbackTimeFactory implements HLAfloat64TimeFactory {
+
+    private static final long serialVersionUID = 1L;
+
+    static final String NAME = "HLAfloat64Time";
+
+    static final LoopbackTimeFactory instance = new LoopbackTimeFactory();
+
+    private LoopbackTimeFactory() {
+    }
+
+    @Override
+    public HLAfloat64Time makeTime(double value) {
+        return new Time(value);
+    }
+
+    @Override
+    public HLAfloat64Interval makeInterval(double value) {
+        return new Interval(value);
+    }
+
+    @Override
+    public HLAfloat64Time decodeTime(byte[] buffer, int offset) throws CouldNotDecode {
+        if(buffer.length - offset < 8) {
+            throw new CouldNotDecode("HLAfloat64Time needs 8 bytes");
+        }
+        return new Time(ByteBuffer.wrap(buffer, offset, 8).getDouble());
+    }
+
+    @Override
+    public HLAfloat64Interval decodeInterval(byte[] buffer, int offset) throws CouldNotDecode {
+        if(buffer.length - offset < 8) {
+            throw new CouldNotDecode("HLAfloat64Interval needs 8 bytes");
+        }
+        return new Interval(ByteBuffer.wrap(buffer, offset, 8).getDouble());
+    }
+
+    @Override
+    public HLAfloat64Time makeInitial() {
+        return new Time(0);
+    }
+
+    @Override
+    public HLAfloat64Time makeFinal() {
+        return new Time(Double.MAX_VALUE);
+    }
+
+    @Override
+    public HLAfloat64Interval makeZero() {
+        return new Interval(0);
+    }
+
+    @Override
+    public HLAfloat64Interval makeEpsilon() {
+        return new Interval(Double.MIN_VALUE);
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    static final class Time implements HLAfloat64Time {
+
+        private static final long serialVersionUID = 1L;
+
+        private final double value;
+
+        Time(double value) {
+            this.value = value;
+        }
+
+        @Override
+        public double getValue() {
+            return this.value;
+        }
+
+        @Override
+        public boolean isInitial() {
+            return this.value == 0;
+        }
+
+        @Override
+        public boolean isFinal() {
+            return this.value == Double.MAX_VALUE;
+        }
+
+        @Override
+        public HLAfloat64Time add(HLAfloat64Interval interval) {
+            return new Time(this.value + interval.getValue());
+        }
+
+        @Override
+        public HLAfloat64Time subtract(HLAfloat64Interval interval) {
+            return new Time(this.value - interval.getValue());
+        }
+
+        @Override
+        public HLAfloat64Interval distance(HLAfloat64Time other) {
+            return new Interval(Math.abs(this.value - other.getValue()));
+        }
+
+        @Override
+        public int compareTo(HLAfloat64Time other) {
+            return Double.compare(this.value, other.getValue());
+        }
+
+        @Override
+        public int encodedLength() {
+            return 8;
+        }
+
+        @Override
+        public void encode(byte[] buffer, int offset) {
+            ByteBuffer.wrap(buffer, offset, 8).putDouble(this.value);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof HLAfloat64Time && ((HLAfloat64Time) other).getValue() == this.value;
+        }
+
+        @Override
+        public int hashCode() {
+            return Double.hashCode(this.value);
+        }
+
+        @Override
+        public String toString() {
+            return "HLAfloat64Time(" + this.value + ")";
+        }
+    }
+
+    static final class Interval implements HLAfloat64Interval {
+
+        private static final long serialVersionUID = 1L;
+
+        private final double value;
+
+        Interval(double value) {
+            this.value = value;
+        }
+
+        @Override
+        public double getValue() {
+            return this.value;
+        }
+
+        @Override
+        public boolean isZero() {
+            return this.value == 0;
+        }
+
+        @Override
+        public boolean isEpsilon() {
+            return this.value == Double.MIN_VALUE;
+        }
+
+        @Override
+        public HLAfloat64Interval add(HLAfloat64Interval addend) {
+            return new Interval(this.value + addend.getValue());
+        }
+
+        @Override
+        public HLAfloat64Interval subtract(HLAfloat64Interval subtrahend) {
+            return new Interval(this.value - subtrahend.getValue());
+        }
+
+        @Override
+        public int compareTo(HLAfloat64Interval other) {
+            return Double.compare(this.value, other.getValue());
+        }
+
+        @Override
+        public int encodedLength() {
+            return 8;
+        }
+
+        @Override
+        public void encode(byte[] buffer, int offset) {
+            ByteBuffer.wrap(buffer, offset, 8).putDouble(this.value);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof HLAfloat64Interval && ((HLAfloat64Interval) other).getValue() == this.value;
+        }
+
+        @Override
+        public int hashCode() {
+            return Double.hashCode(this.value);
+        }
+
+        @Override
+        public String toString() {
+            return "HLAfloat64Interval(" + this.value + ")";
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package sim;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ *
+ * Runs ticks back to back as fast as possible, simulation time still advances
+ * by a fixed simPeriod per tick.  Used for batch runs that don't need to be
+ * watched in real time.
+ *
+ */
+public class BatchScheduler extends TickScheduler {
+
+    public BatchScheduler(long simPeriodNanos) {
+        super(simPeriodNanos);
+    }
+
+    @Override
+    public void run(Runnable tick, BooleanSupplier running) {
+        this.onStart();
+
+        while(running.getAsBoolean()) {
+            tick.run();
+            this.onFrame();
+        }
+    }
+}
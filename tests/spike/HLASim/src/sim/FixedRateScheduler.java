@@ -0,0 +1,81 @@
+package sim;
+
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ *
+ * Runs ticks at a fixed wall clock rate of timeScale / simPeriod.  Deadlines are
+ * computed from the start of the run (start + n * wallPeriod) rather than from
+ * the end of the previous tick, so time spent inside tick does not accumulate
+ * as drift.
+ *
+ */
+public class FixedRateScheduler extends TickScheduler {
+
+    /**
+     *
+     * What to do when a tick finishes after the next deadline has already passed.
+     * CATCH_UP   - run the late ticks back to back until the schedule is met again,
+     *              sim time stays locked to wall time (up to MAX_CATCH_UP_FRAMES)
+     * SKIP       - drop the missed frames and resume at the next future deadline,
+     *              sim time falls behind wall time by the skipped frames
+     *
+     */
+    public enum OverrunPolicy { CATCH_UP, SKIP }
+
+    //  Beyond this many frames behind, catching up is hopeless, resynchronize instead
+    private static final long MAX_CATCH_UP_FRAMES = 10;
+
+    private final long wallPeriodNanos;
+    private final OverrunPolicy policy;
+
+    /**
+     *
+     * @param simPeriodNanos  simulation time per tick
+     * @param timeScale       simulation seconds per wall second (1.0 is real time)
+     * @param policy
+     */
+    public FixedRateScheduler(long simPeriodNanos, double timeScale, OverrunPolicy policy) {
+        super(simPeriodNanos);
+        assert timeScale > 0;
+
+        this.wallPeriodNanos = Math.max(1, (long) (simPeriodNanos / timeScale));
+        this.policy = policy;
+    }
+
+    @Override
+    public void run(Runnable tick, BooleanSupplier running) {
+        this.onStart();
+        long deadline = System.nanoTime();
+
+        while(running.getAsBoolean()) {
+            tick.run();
+            this.onFrame();
+
+            deadline += this.wallPeriodNanos;
+            long now = System.nanoTime();
+
+            if(now > deadline) {
+                this.onOverrun();
+
+                long behind = (now - deadline) / this.wallPeriodNanos;
+                if(this.policy == OverrunPolicy.SKIP || behind > MAX_CATCH_UP_FRAMES) {
+                    //  Jump the schedule forward past the missed frames
+                    this.onSkippedFrames(behind);
+                    deadline += behind * this.wallPeriodNanos;
+                }
+                //  Otherwise run the next tick immediately to catch up
+            } else {
+                //  parkNanos may return early, loop until the deadline is reached
+                while((now = System.nanoTime()) < deadline) {
+                    LockSupport.parkNanos(deadline - now);
+                }
+            }
+        }
+    }
+
+    public long getWallPeriodNanos() {
+        return this.wallPeriodNanos;
+    }
+}
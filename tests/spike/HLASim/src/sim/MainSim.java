@@ -1,13 +1,19 @@
 package sim;
 
 import federate.Federate;
+import federate.SpatialPartitioner;
+import hla.rti1516e.CallbackModel;
 import model.BallEntity;
 import model.BallEntityDef;
+import model.DeadReckoningModel;
 import model.EntityDef;
+import util.Log;
 
 import java.io.File;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  *
@@ -21,16 +27,61 @@ import java.util.List;
  *
  * 3. Trace through sim execution starting in run()
  *    This is a very simplistic way to handle simulation execution
- *    A Simple Tick() to update the federate and all entities.
+ *    A Simple Tick() to update the federate and all entities, paced
+ *    by a TickScheduler.
+ *
+ * Scheduling is configured with system properties:
+ *    hlasim.scheduler       realtime (default), scaled or batch
+ *    hlasim.periodMillis    simulation time per tick, default 200
+ *    hlasim.timeScale       sim seconds per wall second in scaled mode, default 1
+ *    hlasim.overrunPolicy   CATCH_UP (default) or SKIP
+ *    hlasim.simSeconds      stop after this much simulation time, default 0 (never)
+ *
+ * RTI callbacks:
+ *    hlasim.callbackModel         immediate (default) or evoked, evoked runs them
+ *                                 on a dedicated callback thread
+ *    hlasim.callbackBudgetMillis  longest one evoke pass of that thread, default 5
+ *
+ * HLA time management is off unless hlasim.timeManaged is true:
+ *    hlasim.timeStep        logical time per tick in seconds, default the period
+ *    hlasim.lookahead       lookahead in seconds, default the time step
+ * Time managed federates pace each other through their grants, so the batch
+ * scheduler is usually the one to pair with it.
+ *
+ * Checkpoints (see Federate.checkpoint):
+ *    hlasim.checkpointFile   checkpoint the balls to this file every
+ *    hlasim.checkpointTicks  ticks, default 0 (never)
+ *    hlasim.restoreFile      start from this checkpoint instead of new balls
+ *    hlasim.checkpointDir    where federation saves are written, default
+ *                            java.io.tmpdir/hlasim-checkpoints
+ *
+ * Recording (see Federate.startRecording, replayed by ReplaySim):
+ *    hlasim.recordDir        record every update sent and reflected to this
+ *                            new directory, default off
+ *
+ * Partitioning (see Federate.enablePartitioning), the balls are split by
+ * position between the federates over a grid of partitions:
+ *    hlasim.federateName     default Main Sim Federate, must differ per federate
+ *    hlasim.partitions       comma separated partitions this federate owns,
+ *                            possibly none, default off
+ *    hlasim.partitionCell    grid cell size, default 50
+ *    hlasim.partitionColumns, hlasim.partitionRows   grid size, default 2 x 1
+ *    hlasim.rebalanceTicks   how often to move a partition off an overloaded
+ *                            federate, default 50, 0 never
+ *    hlasim.rebalanceFactor  load over the mean that is overloaded, default 1.5
  *
  * Created by Andrew on 10/8/2016.
  */
 public class MainSim {
 
+    private static final Log LOG = Log.getLog(MainSim.class);
+
     private String[] args;
-    private boolean running;
+    private volatile boolean running;
     private Federate federate;
     private List<EntityDef> entityDefinitions;
+    private TickScheduler scheduler;
+    private long simDurationNanos;
 
     public MainSim(String[] args) {
         this.args = args;
@@ -44,22 +95,96 @@ public class MainSim {
 
             URL fddPath = new File("MainSim.xml").toURL();
 
-            this.federate = new Federate("Main Sim Federation", "Main Sim Federate", fddPath);
-            this.federate.addEntityDefinition(new BallEntityDef(this.federate));
+            this.federate = new Federate("Main Sim Federation",
+                                         System.getProperty("hlasim.federateName", "Main Sim Federate"), fddPath);
+            //  Balls move in straight lines, dead reckoning only needs the occasional heartbeat
+            BallEntityDef ballEntityDef = new BallEntityDef(this.federate);
+            ballEntityDef.setDeadReckoningModel(new DeadReckoningModel(
+                    ballEntityDef, "PositionVector", "VelocityVector", 1.0, 25));
+
+            this.federate.addEntityDefinition(ballEntityDef);
+
+            //  Every other object class and every interaction class of the FOM is
+            //  defined from the FDD, and the balls are checked against it.  Only the
+            //  balls are published, the other object classes are only reflected
+            this.federate.addFddEntityDefinitions();
+            this.federate.addFddInteractionDefinitions();
+
+            String partitions = System.getProperty("hlasim.partitions");
+            if(partitions != null) {
+                SpatialPartitioner partitioner = new SpatialPartitioner(Integer.getInteger("hlasim.partitionCell", 50),
+                                                                        Integer.getInteger("hlasim.partitionColumns", 2),
+                                                                        Integer.getInteger("hlasim.partitionRows", 1));
+                partitioner.addEntityDefinition(ballEntityDef, "PositionVector");
+
+                //  None at all joins to take partitions off the others when they rebalance
+                List<Integer> owned = new ArrayList<>();
+                for(String partition : partitions.split(",")) {
+                    if(!partition.trim().isEmpty()) {
+                        owned.add(Integer.parseInt(partition.trim()));
+                    }
+                }
+
+                this.federate.enablePartitioning(partitioner, owned).setRebalancing(
+                        Long.getLong("hlasim.rebalanceTicks", 50),
+                        Double.parseDouble(System.getProperty("hlasim.rebalanceFactor", "1.5")));
+            }
+
+            this.federate.setTickParallelism(Integer.getInteger("hlasim.tickParallelism", 1));
+
+            if("evoked".equals(System.getProperty("hlasim.callbackModel", "immediate"))) {
+                this.federate.setCallbackModel(CallbackModel.HLA_EVOKED,
+                                               Long.getLong("hlasim.callbackBudgetMillis", 5) / 1000.0);
+            }
+
+            long periodNanos = TimeUnit.MILLISECONDS.toNanos(Long.getLong("hlasim.periodMillis", 200));
+            if(Boolean.getBoolean("hlasim.timeManaged")) {
+                String periodSeconds = Double.toString(periodNanos / 1e9);
+                double timeStep = Double.parseDouble(System.getProperty("hlasim.timeStep", periodSeconds));
+                double lookahead = Double.parseDouble(System.getProperty("hlasim.lookahead", Double.toString(timeStep)));
+
+                this.federate.enableTimeManagement(timeStep, lookahead);
+            }
 
             if(!this.federate.initialize()) {
-                System.out.println("ERROR: Could not initialize federate");
+                LOG.error("Could not initialize federate");
                 System.exit(-1);
             }
 
-            for(int i=0; i< 10; i++) {
-                BallEntity entity = new BallEntity(0+i, 0+i, (5*i)%7, (8*i)%11, 1, this.federate, this.federate.getEntityDefForClass("BallEntity"));
-                federate.addEntity(entity);
+            this.scheduler = TickScheduler.create(
+                    System.getProperty("hlasim.scheduler", "realtime"),
+                    periodNanos,
+                    Double.parseDouble(System.getProperty("hlasim.timeScale", "1")),
+                    FixedRateScheduler.OverrunPolicy.valueOf(System.getProperty("hlasim.overrunPolicy", "CATCH_UP")));
+            this.simDurationNanos = TimeUnit.SECONDS.toNanos(Long.getLong("hlasim.simSeconds", 0));
+
+            String restoreFile = System.getProperty("hlasim.restoreFile");
+            if(restoreFile != null) {
+                if(!this.federate.restore(new File(restoreFile))) {
+                    LOG.error("Could not restore " + restoreFile);
+                    System.exit(-1);
+                }
+            } else {
+                for(int i=0; i< 10; i++) {
+                    BallEntity entity = new BallEntity(0+i, 0+i, (5*i)%7, (8*i)%11, 1, this.federate, this.federate.getEntityDefForClass("BallEntity"));
+                    federate.addEntity(entity);
+                }
+            }
+
+            long checkpointTicks = Long.getLong("hlasim.checkpointTicks", 0);
+            if(checkpointTicks > 0) {
+                this.federate.setCheckpointInterval(
+                        new File(System.getProperty("hlasim.checkpointFile", "MainSim.checkpoint")), checkpointTicks);
+            }
+
+            String recordDir = System.getProperty("hlasim.recordDir");
+            if(recordDir != null && !this.federate.startRecording(new File(recordDir))) {
+                LOG.error("Could not record to " + recordDir);
+                System.exit(-1);
             }
 
         } catch (Exception e) {
-            System.out.println("ERROR: Unhandled outer exception initializing simulation: " + e);
-            e.printStackTrace();
+            LOG.error("Unhandled outer exception initializing simulation: " + e, e);
 
             System.exit(-1);
         }
@@ -68,22 +193,34 @@ public class MainSim {
     public void run() {
         this.running = true;
 
-        while(this.running) {
-            try {
-                this.federate.tick();
-                Thread.sleep(200);
-            } catch(Exception e) {
-                System.out.println("ERROR: Unhandled outer exception in run: " + e);
-                e.printStackTrace();
+        try {
+            this.scheduler.run(this.federate::tick, this::isRunning);
+        } catch(Exception e) {
+            LOG.error("Unhandled outer exception in run: " + e, e);
 
-                System.exit(-1);
-            }
+            System.exit(-1);
         }
+
+        this.federate.stopRecording();
+
+        LOG.success(String.format("Finished run, frames=%d rate=%.1fHz overruns=%d skipped=%d",
+                this.scheduler.getFrames(), this.scheduler.getAchievedHz(),
+                this.scheduler.getOverruns(), this.scheduler.getSkippedFrames()));
+    }
+
+    private boolean isRunning() {
+        return this.running
+            && (this.simDurationNanos <= 0 || this.scheduler.getSimTimeNanos() < this.simDurationNanos);
+    }
+
+    public void stop() {
+        this.running = false;
     }
 
     public static void main(String[] args) {
         MainSim sim = new MainSim(args);
         sim.run();
+        Log.flush();
     }
 
 
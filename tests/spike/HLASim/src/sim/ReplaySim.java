@@ -0,0 +1,56 @@
+package sim;
+
+import federate.ReplayMirror;
+import federate.StateSnapshot;
+import federate.UpdateReplayer;
+import model.EntityDef;
+import model.FddReader;
+import util.Log;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ *
+ * Replays a recording of MainSim (hlasim.recordDir) without an RTI, into a
+ * ReplayMirror that analysis code can read snapshots from while it runs.
+ *
+ * Configured with system properties:
+ *    hlasim.replayDir     the recording, default MainSim.recording
+ *    hlasim.replaySpeed   recorded time per replay time, default 100, 0 replays
+ *                         as fast as possible
+ *    hlasim.replayFrom    first tick to replay, default the first recorded
+ *    hlasim.replayTo      last tick to replay, default the last recorded
+ *    hlasim.fdd           FDD the recorded classes are read from, default MainSim.xml
+ *
+ */
+public class ReplaySim {
+
+    private static final Log LOG = Log.getLog(ReplaySim.class);
+
+    public static void main(String[] args) throws Exception {
+        File directory = new File(System.getProperty("hlasim.replayDir", "MainSim.recording"));
+        double speed = Double.parseDouble(System.getProperty("hlasim.replaySpeed", "100"));
+
+        //  Definitions are only used for their codecs, no federate needed
+        List<EntityDef> entityDefinitions = new FddReader(new File(System.getProperty("hlasim.fdd", "MainSim.xml"))
+                                                                  .toURI().toURL()).createEntityDefs(null);
+
+        UpdateReplayer replayer = new UpdateReplayer(directory);
+        ReplayMirror mirror = new ReplayMirror(entityDefinitions);
+
+        long from = Long.getLong("hlasim.replayFrom", replayer.getFirstTick());
+        long to = Long.getLong("hlasim.replayTo", replayer.getLastTick());
+
+        LOG.info("Replaying ticks " + from + " to " + to + " of " + directory + " at " + speed + "x");
+        long records = replayer.replay(from, to, speed, mirror);
+        mirror.finish();
+
+        try(StateSnapshot snapshot = mirror.acquireSnapshot()) {
+            LOG.success("Replayed " + records + " records, tick " + snapshot.getTickCount() + " has "
+                        + snapshot.getRemoteEntityCount() + " entities");
+        }
+
+        Log.flush();
+    }
+}
@@ -0,0 +1,126 @@
+package sim;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import util.Log;
+
+/**
+ *
+ * A tick scheduler decides when the simulation loop calls tick.  Every tick
+ * advances simulation time by a fixed simPeriod regardless of how much wall
+ * time it took, implementations only differ in how they pace ticks against
+ * the wall clock.  Schedulers also keep frame statistics (achieved rate,
+ * overruns, skipped frames) and print a summary periodically.
+ *
+ */
+public abstract class TickScheduler {
+
+    private static final Log LOG = Log.getLog(TickScheduler.class);
+
+    private static final long REPORT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    protected final long simPeriodNanos;
+
+    private volatile long frames, overruns, skippedFrames;
+    private volatile long startNanos;
+    private long lastReportNanos, lastReportFrames;
+
+    /**
+     *
+     * @param simPeriodNanos  simulation time advanced by each tick
+     */
+    protected TickScheduler(long simPeriodNanos) {
+        assert simPeriodNanos > 0;
+        this.simPeriodNanos = simPeriodNanos;
+    }
+
+    /**
+     *
+     * Call tick repeatedly until running returns false.  Exceptions thrown by
+     * tick propagate to the caller and end the run.
+     *
+     * @param tick
+     * @param running
+     */
+    public abstract void run(Runnable tick, BooleanSupplier running);
+
+    protected void onStart() {
+        this.startNanos = System.nanoTime();
+        this.lastReportNanos = this.startNanos;
+        this.lastReportFrames = 0;
+        this.frames = 0;
+        this.overruns = 0;
+        this.skippedFrames = 0;
+    }
+
+    protected void onFrame() {
+        this.frames++;
+
+        long now = System.nanoTime();
+        if(now - this.lastReportNanos >= REPORT_INTERVAL_NANOS) {
+            double hz = (this.frames - this.lastReportFrames) * 1e9 / (now - this.lastReportNanos);
+
+            LOG.info(String.format(
+                    "%s frame=%d simTime=%.1fs rate=%.1fHz overruns=%d skipped=%d",
+                    this.getClass().getSimpleName(), this.frames, this.getSimTimeNanos() / 1e9,
+                    hz, this.overruns, this.skippedFrames));
+
+            this.lastReportNanos = now;
+            this.lastReportFrames = this.frames;
+        }
+    }
+
+    protected void onOverrun() {
+        this.overruns++;
+    }
+
+    protected void onSkippedFrames(long count) {
+        this.skippedFrames += count;
+    }
+
+    public long getFrames() { return this.frames; }
+    public long getOverruns() { return this.overruns; }
+    public long getSkippedFrames() { return this.skippedFrames; }
+
+    public long getSimTimeNanos() {
+        return this.frames * this.simPeriodNanos;
+    }
+
+    /**
+     *
+     * Average tick rate over the whole run, in wall clock ticks per second.
+     *
+     * @return
+     */
+    public double getAchievedHz() {
+        long elapsed = System.nanoTime() - this.startNanos;
+        return elapsed > 0 ? this.frames * 1e9 / elapsed : 0;
+    }
+
+    /**
+     *
+     * Build a scheduler from a mode name, as used by MainSim's hlasim.scheduler property.
+     * realtime  - fixed rate, one simPeriod of sim time per simPeriod of wall time
+     * scaled    - fixed rate, timeScale simPeriods of sim time per simPeriod of wall time
+     * batch     - as fast as possible
+     *
+     * @param mode
+     * @param simPeriodNanos
+     * @param timeScale
+     * @param policy
+     * @return
+     */
+    public static TickScheduler create(String mode, long simPeriodNanos, double timeScale,
+                                       FixedRateScheduler.OverrunPolicy policy) {
+        switch(mode) {
+            case "realtime":
+                return new FixedRateScheduler(simPeriodNanos, 1.0, policy);
+            case "scaled":
+                return new FixedRateScheduler(simPeriodNanos, timeScale, policy);
+            case "batch":
+                return new BatchScheduler(simPeriodNanos);
+            default:
+                throw new IllegalArgumentException("Unknown scheduler mode " + mode);
+        }
+    }
+}
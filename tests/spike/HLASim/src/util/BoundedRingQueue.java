@@ -0,0 +1,149 @@
+package util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ *
+ * Bounded, lock-free multi-producer multi-consumer queue backed by a ring buffer
+ * (D. Vyukov's bounded MPMC design).  Every cell carries a sequence number which
+ * tells producers and consumers whether the cell is free for the current lap,
+ * so neither side ever takes a lock and offer simply fails when the ring is full.
+ *
+ * @param <E>
+ */
+public class BoundedRingQueue<E> {
+
+    private final int mask;
+    private final AtomicReferenceArray<E> buffer;
+    private final AtomicLongArray sequences;
+
+    //  Next position to read / write, only ever increase
+    private final AtomicLong head;
+    private final AtomicLong tail;
+
+    /**
+     *
+     * @param capacity  rounded up to the next power of two
+     */
+    public BoundedRingQueue(int capacity) {
+        assert capacity > 0;
+
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.mask = size - 1;
+        this.buffer = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        this.head = new AtomicLong();
+        this.tail = new AtomicLong();
+
+        for(int i = 0; i < size; i++) {
+            this.sequences.set(i, i);
+        }
+    }
+
+    /**
+     *
+     * Add an element without blocking.
+     *
+     * @param element
+     * @return false if the queue is full
+     */
+    public boolean offer(E element) {
+        assert element != null;
+
+        long position = this.tail.get();
+        int index;
+
+        while(true) {
+            index = (int) position & this.mask;
+            long difference = this.sequences.get(index) - position;
+
+            if(difference == 0) {
+                if(this.tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = this.tail.get();
+            } else if(difference < 0) {
+                //  The consumer hasn't freed this cell yet, full
+                return false;
+            } else {
+                position = this.tail.get();
+            }
+        }
+
+        this.buffer.lazySet(index, element);
+        this.sequences.lazySet(index, position + 1);
+        return true;
+    }
+
+    /**
+     *
+     * Remove an element without blocking.
+     *
+     * @return null if the queue is empty
+     */
+    public E poll() {
+        long position = this.head.get();
+        int index;
+
+        while(true) {
+            index = (int) position & this.mask;
+            long difference = this.sequences.get(index) - (position + 1);
+
+            if(difference == 0) {
+                if(this.head.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = this.head.get();
+            } else if(difference < 0) {
+                //  No producer has filled this cell yet, empty
+                return null;
+            } else {
+                position = this.head.get();
+            }
+        }
+
+        E element = this.buffer.get(index);
+        this.buffer.lazySet(index, null);
+        this.sequences.lazySet(index, position + this.mask + 1);
+        return element;
+    }
+
+    /**
+     *
+     * Poll up to limit elements, handing each to consumer.
+     *
+     * @param consumer
+     * @param limit
+     * @return number of elements drained
+     */
+    public int drainTo(Consumer<? super E> consumer, int limit) {
+        int drained = 0;
+        E element;
+
+        while(drained < limit && (element = this.poll()) != null) {
+            consumer.accept(element);
+            drained++;
+        }
+
+        return drained;
+    }
+
+    /**
+     *
+     * Approximate number of queued elements, exact only when no other thread is
+     * offering or polling.
+     *
+     * @return
+     */
+    public int size() {
+        long size = this.tail.get() - this.head.get();
+        return (int) Math.max(0, Math.min(size, this.capacity()));
+    }
+
+    public int capacity() {
+        return this.mask + 1;
+    }
+}
@@ -0,0 +1,236 @@
+package util;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ *
+ * Asynchronous logging.  Callers format a message and hand it to a ring buffer,
+ * a single background thread writes it to System.out, so logging never blocks
+ * the tick thread on console I/O.
+ *
+ * Each class gets its own Log through getLog, configured from system properties
+ * when it is first created:
+ * -    hlasim.log.level                    default level, INFO if not set
+ * -    hlasim.log.[SimpleClassName].level  level for one class
+ * -    hlasim.log.[SimpleClassName].sample only 1 in N DEBUG/TRACE messages of
+ *                                          that class are written
+ *
+ * Per tick diagnostics should be guarded so nothing is formatted unless the
+ * message will be written:
+ *
+ *      if(LOG.isSampled(Log.Level.TRACE)) {
+ *          LOG.trace("..." + expensive());
+ *      }
+ *
+ * A disabled level is a compare against a final field, so this costs nothing
+ * when the level is off.  Lines are written with the same "LEVEL: " prefix the
+ * simulation always printed.
+ *
+ */
+public final class Log {
+
+    /**
+     * Most to least severe, a Log writes its level and everything above it
+     */
+    public enum Level { ERROR, WARNING, SUCCESS, INFO, DEBUG, TRACE }
+
+    private static final int QUEUE_CAPACITY = Integer.getInteger("hlasim.log.capacity", 1 << 16);
+
+    //  Important messages retry this many times when the buffer is full before being dropped
+    private static final int MAX_OFFER_ATTEMPTS = 10000;
+    private static final long IDLE_PARK_NANOS = 1_000_000L;
+
+    private static final ConcurrentHashMap<String, Log> logs = new ConcurrentHashMap<>();
+    private static final Writer writer = new Writer(System.out);
+
+    private final String name;
+    private final Level level;
+    private final int sampleEvery;
+    private final AtomicLong sampleCounter;
+
+    private Log(String name, Level level, int sampleEvery) {
+        this.name = name;
+        this.level = level;
+        this.sampleEvery = Math.max(1, sampleEvery);
+        this.sampleCounter = new AtomicLong();
+    }
+
+    /**
+     *
+     * Get/Create the Log for a class
+     *
+     * @param cls
+     * @return
+     */
+    public static Log getLog(Class<?> cls) {
+        return logs.computeIfAbsent(cls.getSimpleName(), Log::configure);
+    }
+
+    private static Log configure(String name) {
+        Level defaultLevel = Level.valueOf(System.getProperty("hlasim.log.level", "INFO").toUpperCase());
+        Level level = Level.valueOf(
+                System.getProperty("hlasim.log." + name + ".level", defaultLevel.name()).toUpperCase());
+        int sampleEvery = Integer.getInteger("hlasim.log." + name + ".sample", 1);
+
+        return new Log(name, level, sampleEvery);
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public boolean isEnabled(Level level) {
+        return level.ordinal() <= this.level.ordinal();
+    }
+
+    /**
+     *
+     * Whether a message at level should be formatted and written.  DEBUG and
+     * TRACE are sampled, every call counts towards the class's sample interval.
+     *
+     * @param level
+     * @return
+     */
+    public boolean isSampled(Level level) {
+        if(!this.isEnabled(level)) {
+            return false;
+        }
+
+        if(this.sampleEvery == 1 || level.ordinal() < Level.DEBUG.ordinal()) {
+            return true;
+        }
+
+        return this.sampleCounter.getAndIncrement() % this.sampleEvery == 0;
+    }
+
+    public void error(String msg) { this.log(Level.ERROR, msg); }
+    public void warning(String msg) { this.log(Level.WARNING, msg); }
+    public void success(String msg) { this.log(Level.SUCCESS, msg); }
+    public void info(String msg) { this.log(Level.INFO, msg); }
+    public void debug(String msg) { this.log(Level.DEBUG, msg); }
+    public void trace(String msg) { this.log(Level.TRACE, msg); }
+
+    /**
+     *
+     * Log an error with the exception's stack trace, the trace is formatted on
+     * the calling thread since the exception may not outlive it unchanged.
+     *
+     * @param msg
+     * @param e
+     */
+    public void error(String msg, Throwable e) {
+        if(!this.isEnabled(Level.ERROR)) {
+            return;
+        }
+
+        StringWriter trace = new StringWriter();
+        e.printStackTrace(new PrintWriter(trace));
+
+        this.log(Level.ERROR, msg + "\n" + trace.toString().trim());
+    }
+
+    public void log(Level level, String msg) {
+        if(this.isEnabled(level)) {
+            writer.write(level.name() + ": " + msg, level.ordinal() <= Level.WARNING.ordinal());
+        }
+    }
+
+    /**
+     *
+     * Block until everything logged so far has been written
+     *
+     */
+    public static void flush() {
+        writer.flush();
+    }
+
+    public static long getDroppedCount() {
+        return writer.dropped.get();
+    }
+
+    /**
+     *
+     * Background writer, drains the ring buffer to the output stream and parks
+     * when there is nothing to write.
+     *
+     */
+    private static class Writer implements Runnable {
+
+        private final PrintStream out;
+        private final BoundedRingQueue<String> queue;
+        private final Thread thread;
+
+        private final AtomicLong written, dropped;
+        private final AtomicLong offered;
+        private long reportedDropped;
+
+        Writer(PrintStream out) {
+            this.out = out;
+            this.queue = new BoundedRingQueue<>(QUEUE_CAPACITY);
+            this.written = new AtomicLong();
+            this.dropped = new AtomicLong();
+            this.offered = new AtomicLong();
+
+            this.thread = new Thread(this, "hlasim-log");
+            this.thread.setDaemon(true);
+            this.thread.start();
+
+            Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "hlasim-log-flush"));
+        }
+
+        void write(String line, boolean important) {
+            int attempts = important ? MAX_OFFER_ATTEMPTS : 1;
+
+            for(int attempt = 0; attempt < attempts; attempt++) {
+                if(this.queue.offer(line)) {
+                    this.offered.incrementAndGet();
+                    LockSupport.unpark(this.thread);
+                    return;
+                }
+                Thread.yield();
+            }
+
+            this.dropped.incrementAndGet();
+        }
+
+        @Override
+        public void run() {
+            while(true) {
+                if(this.drain() == 0) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+            }
+        }
+
+        private synchronized int drain() {
+            int count = this.queue.drainTo(this.out::println, Integer.MAX_VALUE);
+
+            long droppedNow = this.dropped.get();
+            if(droppedNow != this.reportedDropped) {
+                this.out.println("WARNING: Log buffer full, dropped " + (droppedNow - this.reportedDropped)
+                               + " messages");
+                this.reportedDropped = droppedNow;
+            }
+
+            if(count > 0) {
+                this.out.flush();
+                this.written.addAndGet(count);
+            }
+
+            return count;
+        }
+
+        void flush() {
+            long target = this.offered.get();
+
+            while(this.written.get() < target) {
+                this.drain();
+            }
+        }
+    }
+}
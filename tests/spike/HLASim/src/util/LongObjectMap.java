@@ -0,0 +1,187 @@
+package util;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ *
+ * Open addressing hash map from primitive long keys to non-null values.  Keys
+ * and values live in two parallel arrays probed linearly from a mixed hash, so
+ * lookups neither box the key nor chase entry objects.  A null value marks a
+ * free slot, removal shifts the following run back instead of leaving
+ * tombstones.  Not thread-safe.
+ *
+ * @param <V>
+ */
+public class LongObjectMap<V> {
+
+    private static final int MIN_CAPACITY = 16;
+
+    //  Grow once more than this fraction of the slots is used
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] keys;
+    private Object[] values;
+    private int mask, size, resizeAt;
+
+    public LongObjectMap() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     *
+     * @param expectedSize entries the map should hold without growing
+     */
+    public LongObjectMap(int expectedSize) {
+        this.allocate(tableSize(expectedSize));
+    }
+
+    private static int tableSize(int expectedSize) {
+        long needed = (long) Math.ceil(Math.max(expectedSize, 1) / (double) LOAD_FACTOR);
+        return (int) Math.max(MIN_CAPACITY, Long.highestOneBit(needed - 1) << 1);
+    }
+
+    private void allocate(int capacity) {
+        this.keys = new long[capacity];
+        this.values = new Object[capacity];
+        this.mask = capacity - 1;
+        this.resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private int slot(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & this.mask;
+    }
+
+    /**
+     *
+     * @param key
+     * @return the slot holding key, or the free slot ending its probe run as ~slot
+     */
+    private int find(long key) {
+        int slot = this.slot(key);
+
+        while(this.values[slot] != null) {
+            if(this.keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & this.mask;
+        }
+
+        return ~slot;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int slot = this.find(key);
+        return slot >= 0 ? (V) this.values[slot] : null;
+    }
+
+    public boolean containsKey(long key) {
+        return this.find(key) >= 0;
+    }
+
+    /**
+     *
+     * @param key
+     * @param value not null
+     * @return the previous value for key, or null
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        assert value != null;
+
+        int slot = this.find(key);
+        if(slot >= 0) {
+            V previous = (V) this.values[slot];
+            this.values[slot] = value;
+            return previous;
+        }
+
+        slot = ~slot;
+        this.keys[slot] = key;
+        this.values[slot] = value;
+
+        if(++this.size > this.resizeAt) {
+            this.rehash(this.keys.length << 1);
+        }
+        return null;
+    }
+
+    /**
+     *
+     * @param key
+     * @return the removed value, or null if key was not mapped
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int slot = this.find(key);
+        if(slot < 0) {
+            return null;
+        }
+
+        V removed = (V) this.values[slot];
+        this.values[slot] = null;
+        this.size--;
+
+        //  Move back every following entry of the run that could not be found
+        //  anymore now that slot is free
+        int free = slot;
+        for(int next = (slot + 1) & this.mask; this.values[next] != null; next = (next + 1) & this.mask) {
+            int home = this.slot(this.keys[next]);
+            boolean reachable = free <= next ? (free < home && home <= next)
+                                             : (free < home || home <= next);
+
+            if(!reachable) {
+                this.keys[free] = this.keys[next];
+                this.values[free] = this.values[next];
+                this.values[next] = null;
+                free = next;
+            }
+        }
+
+        return removed;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = this.keys;
+        Object[] oldValues = this.values;
+
+        this.allocate(capacity);
+        for(int i = 0; i < oldValues.length; i++) {
+            if(oldValues[i] != null) {
+                int slot = ~this.find(oldKeys[i]);
+                this.keys[slot] = oldKeys[i];
+                this.values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(this.values, null);
+        this.size = 0;
+    }
+
+    /**
+     *
+     * Visit every value, in no particular order
+     *
+     * @param consumer
+     */
+    @SuppressWarnings("unchecked")
+    public void forEachValue(Consumer<? super V> consumer) {
+        for(Object value : this.values) {
+            if(value != null) {
+                consumer.accept((V) value);
+            }
+        }
+    }
+}